@@ -36,6 +36,7 @@ import org.cloudifysource.shell.installer.CLIEventsDisplayer;
 public abstract class InstallationProcessInspector {
 
 	private static final int POLLING_INTERVAL_MILLI_SECONDS = 500;
+	private static final int EVENTS_WAIT_TIMEOUT_SECONDS = 5;
 	protected static final int RESOURCE_NOT_FOUND_EXCEPTION_CODE = 404;
 
 	protected RestClient restClient;
@@ -84,7 +85,8 @@ public abstract class InstallationProcessInspector {
 					printInstalledInstances();
 					boolean ended = lifeCycleEnded();
 
-					List<String> latestEvents = getLatestEvents();
+					// no point in waiting for more events once the life cycle has ended.
+					List<String> latestEvents = getLatestEvents(ended ? 0 : EVENTS_WAIT_TIMEOUT_SECONDS);
 					if (!latestEvents.isEmpty()) {
 						displayer.printEvents(latestEvents);
 					} else {
@@ -143,7 +145,8 @@ public abstract class InstallationProcessInspector {
 	public abstract String getTimeoutErrorMessage();
 
 	/**
-	 * Gets the latest events of this deployment id. Events are sorted by event index.
+	 * Gets the latest events of this deployment id. Events are sorted by event index. Returns immediately, even if
+	 * there are no new events.
 	 *
 	 * @return A list of events. If this is the first time events are requested, all events are retrieved. Otherwise,
 	 *         only new events (that were not reported earlier) are retrieved.
@@ -151,14 +154,33 @@ public abstract class InstallationProcessInspector {
 	 *             Indicates a failure to get events from the server.
 	 */
 	public List<String> getLatestEvents() throws RestClientException {
+		return getLatestEvents(0);
+	}
+
+	/**
+	 * Gets the latest events of this deployment id. Events are sorted by event index.
+	 *
+	 * @param waitTimeoutInSeconds
+	 *            The maximum time the server should wait for new events. 0 means return immediately.
+	 * @return A list of events. If this is the first time events are requested, all events are retrieved. Otherwise,
+	 *         only new events (that were not reported earlier) are retrieved.
+	 * @throws RestClientException
+	 *             Indicates a failure to get events from the server.
+	 */
+	public List<String> getLatestEvents(final int waitTimeoutInSeconds) throws RestClientException {
 
 		List<String> eventsStrings = new ArrayList<String>();
 
-		DeploymentEvents events = restClient.getDeploymentEvents(deploymentId, lastEventIndex, -1);
+		DeploymentEvents events =
+				restClient.waitForDeploymentEvents(deploymentId, lastEventIndex, -1, waitTimeoutInSeconds);
 		if (events == null || events.getEvents().isEmpty()) {
 			return eventsStrings;
 		}
 
+		if (events.isTruncated()) {
+			eventsStrings.add("Some events were dropped by the server before they could be read, "
+					+ "showing the events still available.");
+		}
 		for (DeploymentEvent event : events.getEvents()) {
 			eventsStrings.add(event.getDescription());
 		}
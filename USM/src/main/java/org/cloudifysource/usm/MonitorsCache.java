@@ -20,11 +20,24 @@ import groovy.lang.Closure;
 import groovy.lang.GString;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import org.cloudifysource.dsl.internal.CloudifyConstants;
@@ -37,10 +50,23 @@ import org.openspaces.pu.service.ServiceDetails;
 import org.openspaces.pu.service.ServiceMonitors;
 
 /*****************
- * A synchronized wrapper to the monitors functionality. The last monitors
- * results are cached for a set time. Note: this class also contains the code to
- * create the service details. The code for services and details is very
- * similar, even though service details is called exactly once.
+ * A thread-safe wrapper to the monitors functionality. Monitors are sampled in
+ * the background, in parallel, once every cache expiration timeout, and the
+ * results are published as an immutable snapshot. Readers never execute
+ * monitors or wait for them: they read the last snapshot, and add the default
+ * USM monitors (such as the USM state) which are always up to date.
+ * 
+ * A monitor that does not complete within the monitor timeout keeps its
+ * previous values, and is not executed again until it completes. Every
+ * snapshot records when its oldest values were collected, and readers publish
+ * that time and the resulting staleness with the monitors.
+ * 
+ * A cache expiration timeout of zero or less disables the cache: as before
+ * background sampling was added, every read samples all monitors.
+ * 
+ * Note: this class also contains the code to create the service details. The
+ * code for services and details is very similar, even though service details
+ * is called exactly once.
  * 
  * 
  * @author barakme
@@ -49,13 +75,24 @@ import org.openspaces.pu.service.ServiceMonitors;
  */
 public class MonitorsCache {
 
+	private static final long DEFAULT_MONITOR_TIMEOUT_MILLIS = 10000;
+
 	private final USMLifecycleBean lifecycleBean;
 
-	private ServiceMonitors[] lastResult;
 	private final UniversalServiceManagerBean usm;
 
 	private final long cacheExpirationTimeout;
-	private long cacheExpirationTime = 0;
+	private long monitorTimeoutMillis = DEFAULT_MONITOR_TIMEOUT_MILLIS;
+
+	private volatile MonitorsSnapshot snapshot = MonitorsSnapshot.EMPTY;
+
+	private ScheduledExecutorService scheduler;
+	private ExecutorService monitorsExecutor;
+
+	// the following are only accessed by the sampling thread, or under the
+	// samples lock when sampling on read.
+	private final Map<Monitor, MonitorSample> samples = new LinkedHashMap<Monitor, MonitorSample>();
+	private final Map<Monitor, Future<MonitorSample>> inFlight = new HashMap<Monitor, Future<MonitorSample>>();
 
 	private final String serviceSubType = "USM";
 	private final String serviceDescription = "USM";
@@ -69,23 +106,100 @@ public class MonitorsCache {
 		this.lifecycleBean = lifecycleBean;
 	}
 
+	public void setMonitorTimeoutMillis(final long monitorTimeoutMillis) {
+		this.monitorTimeoutMillis = monitorTimeoutMillis;
+	}
+
+	/***********
+	 * Starts sampling the monitors in the background.
+	 */
+	public synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		monitorsExecutor = Executors.newCachedThreadPool(createThreadFactory("USM-Monitor-"));
+		if (!isCacheEnabled()) {
+			logger.fine("Monitors cache is disabled, monitors are sampled on every read");
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(createThreadFactory("USM-MonitorsSampler-"));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (final Exception e) {
+					// never let an exception cancel the scheduled task.
+					logger.log(Level.SEVERE, "Failed to sample USM service monitors", e);
+				}
+			}
+		}, 0, cacheExpirationTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	/***********
+	 * Stops sampling. Monitors that are still executing are interrupted.
+	 */
+	public synchronized void stop() {
+		if (monitorsExecutor == null) {
+			return;
+		}
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		monitorsExecutor.shutdownNow();
+		scheduler = null;
+		monitorsExecutor = null;
+	}
+
+	private boolean isCacheEnabled() {
+		return cacheExpirationTimeout > 0;
+	}
+
 	/***********
-	 * Returns the monitors from the cache if the cache expiration time has not
-	 * been exceeded, or reads the new monitor values and caches them, returning
-	 * the result.
+	 * Returns the monitors of the last sample, along with the current default
+	 * monitors. Never blocks on monitor execution, unless the cache is
+	 * disabled, in which case the monitors are sampled first.
 	 * 
 	 * @return the monitors.
 	 */
-	public synchronized ServiceMonitors[] getMonitors() {
-		final long now = System.currentTimeMillis();
+	public ServiceMonitors[] getMonitors() {
+		final CustomServiceMonitors csm = new CustomServiceMonitors(
+				CloudifyConstants.USM_MONITORS_SERVICE_ID);
+
+		final ServiceMonitors[] res = new ServiceMonitors[] { csm };
+
+		final USMState currentState = usm.getState();
+		// If the underlying service is not running
+		if (currentState != USMState.RUNNING) {
+			csm.getMonitors().put(CloudifyConstants.USM_MONITORS_STATE_ID,
+					currentState.ordinal());
+			return res;
+		}
 
-		if (now >= cacheExpirationTime) {
-			logger.fine("Reloading monitors at: " + now);
-			this.lastResult = createMonitors();
-			this.cacheExpirationTime = now + cacheExpirationTimeout;
+		if (!isCacheEnabled()) {
+			sampleOnRead();
 		}
 
-		return this.lastResult;
+		final MonitorsSnapshot current = this.snapshot;
+		final Map<String, Object> map = csm.getMonitors();
+		map.putAll(current.values);
+		// default monitors
+		putDefaultMonitorsInMap(map);
+		map.putAll(lifecycleBean.getStartDetectionTimes());
+		if (current.collectionTime > 0) {
+			map.put(CloudifyConstants.USM_MONITORS_COLLECTION_TIME_ID, current.collectionTime);
+			map.put(CloudifyConstants.USM_MONITORS_STALENESS_ID,
+					System.currentTimeMillis() - current.collectionTime);
+		}
+
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.finest("Monitors are: " + Arrays.toString(res));
+		}
+
+		return res;
 
 	}
 
@@ -119,44 +233,73 @@ public class MonitorsCache {
 		}
 	}
 
-	private ServiceMonitors[] createMonitors() {
-		final CustomServiceMonitors csm = new CustomServiceMonitors(
-				CloudifyConstants.USM_MONITORS_SERVICE_ID);
-
-		final ServiceMonitors[] res = new ServiceMonitors[] { csm };
-
-		final USMState currentState = usm.getState();
-		// If the underlying service is not running
-		if (currentState != USMState.RUNNING) {
-			csm.getMonitors().put(CloudifyConstants.USM_MONITORS_STATE_ID,
-					currentState.ordinal());
-			return res;
+	private void sampleOnRead() {
+		synchronized (samples) {
+			try {
+				sample();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (final Exception e) {
+				logger.log(Level.SEVERE, "Failed to sample USM service monitors", e);
+			}
 		}
+	}
 
-		final Map<String, Object> map = csm.getMonitors();
-		// default monitors
-		putDefaultMonitorsInMap(map);
+	/***********
+	 * Runs a single sampling cycle: executes all monitors in parallel, waits
+	 * up to the monitor timeout for them, and publishes a new snapshot.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting for monitors.
+	 */
+	void sample() throws InterruptedException {
+		if (usm.getState() != USMState.RUNNING) {
+			// values of a previous run are meaningless once the service restarts.
+			samples.clear();
+			this.snapshot = MonitorsSnapshot.EMPTY;
+			return;
+		}
 
+		final Map<Monitor, Future<MonitorSample>> executions = new LinkedHashMap<Monitor, Future<MonitorSample>>();
 		for (final Monitor monitor : lifecycleBean.getMonitors()) {
-			try {
-				logger.fine("Executing monitor: " + monitor);
-				final Map<String, Number> monitorValues = monitor
-						.getMonitorValues(usm, lifecycleBean.getConfiguration());
-				removeNonSerializableObjectsFromMap(monitorValues, "monitors");
-				// add monitor values to Monitors map
-				map.putAll(monitorValues);
-			} catch (final Exception e) {
-				logger.log(Level.SEVERE,
-						"Failed to execute a USM service monitor", e);
+			final Future<MonitorSample> previous = inFlight.get(monitor);
+			if (previous != null && !previous.isDone()) {
+				// still executing since a previous cycle. keep its last values.
+				executions.put(monitor, previous);
+				continue;
 			}
+			executions.put(monitor, monitorsExecutor.submit(new Callable<MonitorSample>() {
+
+				@Override
+				public MonitorSample call() throws Exception {
+					logger.fine("Executing monitor: " + monitor);
+					final Map<String, Number> monitorValues = monitor
+							.getMonitorValues(usm, lifecycleBean.getConfiguration());
+					removeNonSerializableObjectsFromMap(monitorValues, "monitors");
+					return new MonitorSample(monitorValues, System.currentTimeMillis());
+				}
+			}));
 		}
 
-		if (logger.isLoggable(Level.FINE)) {
-			logger.fine("Monitors are: " + Arrays.toString(res));
+		final long deadline = System.currentTimeMillis() + monitorTimeoutMillis;
+		for (final Entry<Monitor, Future<MonitorSample>> entry : executions.entrySet()) {
+			final Monitor monitor = entry.getKey();
+			try {
+				samples.put(monitor, entry.getValue().get(
+						Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+				inFlight.remove(monitor);
+			} catch (final TimeoutException e) {
+				logger.warning("USM service monitor " + monitor + " did not complete within "
+						+ monitorTimeoutMillis + " ms, its previous values are kept");
+				inFlight.put(monitor, entry.getValue());
+			} catch (final ExecutionException e) {
+				logger.log(Level.SEVERE,
+						"Failed to execute a USM service monitor", e.getCause());
+				samples.remove(monitor);
+				inFlight.remove(monitor);
+			}
 		}
 
-		return res;
-
+		this.snapshot = MonitorsSnapshot.of(samples.values());
 	}
 
 	private void putDefaultMonitorsInMap(final Map<String, Object> map) {
@@ -232,4 +375,64 @@ public class MonitorsCache {
 		}
 	}
 
+	private ThreadFactory createThreadFactory(final String namePrefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**********
+	 * The values returned by a single monitor execution, and when they were
+	 * collected.
+	 */
+	private static final class MonitorSample {
+
+		private final Map<String, Number> values;
+		private final long collectionTime;
+
+		private MonitorSample(final Map<String, Number> values, final long collectionTime) {
+			this.values = values;
+			this.collectionTime = collectionTime;
+		}
+	}
+
+	/**********
+	 * Immutable merge of the latest monitor samples.
+	 */
+	private static final class MonitorsSnapshot {
+
+		private static final MonitorsSnapshot EMPTY =
+				new MonitorsSnapshot(Collections.<String, Object>emptyMap(), 0);
+
+		private final Map<String, Object> values;
+		// collection time of the oldest sample, or 0 if there are no samples.
+		private final long collectionTime;
+
+		private MonitorsSnapshot(final Map<String, Object> values, final long collectionTime) {
+			this.values = values;
+			this.collectionTime = collectionTime;
+		}
+
+		private static MonitorsSnapshot of(final Iterable<MonitorSample> samples) {
+			final Map<String, Object> values = new HashMap<String, Object>();
+			long oldest = 0;
+			for (final MonitorSample sample : samples) {
+				if (sample.values != null) {
+					values.putAll(sample.values);
+				}
+				if (oldest == 0 || sample.collectionTime < oldest) {
+					oldest = sample.collectionTime;
+				}
+			}
+			return new MonitorsSnapshot(Collections.unmodifiableMap(values), oldest);
+		}
+	}
+
 }
@@ -13,9 +13,11 @@
 package org.cloudifysource.usm;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Properties;
 import java.util.logging.Logger;
 
+import org.apache.commons.io.FileUtils;
 import org.cloudifysource.dsl.Service;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.DSLException;
@@ -56,6 +58,8 @@ public class USMConfigurationFactoryBean implements FactoryBean<ServiceConfigura
 
 	private String propertiesFileName;
 
+	private String mergedProperties;
+
 	private boolean isRunningInGSC;
 
 	private static final Logger logger =
@@ -74,6 +78,10 @@ public class USMConfigurationFactoryBean implements FactoryBean<ServiceConfigura
 	}
 
 	private ServiceConfiguration handleDsl() throws DSLException {
+		if (mergedProperties != null) {
+			writeMergedProperties();
+		}
+
 		File dslFile = null;
 
 		if (serviceFileName != null) {
@@ -99,6 +107,19 @@ public class USMConfigurationFactoryBean implements FactoryBean<ServiceConfigura
 				dslReader.getDSLClassLoader());
 	}
 
+	// the recipe is deployed as uploaded, so the service properties merged with the overrides are written here.
+	private void writeMergedProperties() throws DSLException {
+		final File propertiesFile = new File(this.puExtDir,
+				DSLUtils.getPropertiesFileName(this.puExtDir, DSLUtils.SERVICE_DSL_FILE_NAME_SUFFIX));
+		logger.fine("Writing merged service properties to " + propertiesFile);
+		try {
+			FileUtils.writeStringToFile(propertiesFile, mergedProperties);
+		} catch (final IOException e) {
+			throw new DSLException("Failed to write merged service properties to " + propertiesFile + ": "
+					+ e.getMessage(), e);
+		}
+	}
+
 	@Override
 	public Class<?> getObjectType() {
 		return ServiceConfiguration.class;
@@ -138,6 +159,7 @@ public class USMConfigurationFactoryBean implements FactoryBean<ServiceConfigura
 		if (props != null) {
 			this.serviceFileName = props.getProperty(CloudifyConstants.CONTEXT_PROPERTY_SERVICE_FILE_NAME);
 			this.propertiesFileName = props.getProperty(CloudifyConstants.CONTEXT_PROPERTY_PROPERTIES_FILE_NAME);
+			this.mergedProperties = props.getProperty(CloudifyConstants.CONTEXT_PROPERTY_MERGED_PROPERTIES);
 
 		}
 	}
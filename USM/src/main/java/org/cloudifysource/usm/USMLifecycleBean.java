@@ -14,13 +14,25 @@ package org.cloudifysource.usm;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import javax.annotation.PostConstruct;
@@ -89,6 +101,13 @@ public class USMLifecycleBean implements ClusterInfoAware {
 	@Autowired(required = false)
 	private final ProcessLocator[] processLocators = new ProcessLocator[0];
 
+	// first delay between executions of a start detector that did not pass yet. doubled on every execution, up to the
+	// start detection interval.
+	private static final long START_DETECTION_INITIAL_RETRY_MILLIS = 500;
+
+	// time it took each start detector to pass, and the whole start detection (by metric name), from the last start.
+	private volatile Map<String, Object> startDetectionTimes = Collections.emptyMap();
+
 	private static final java.util.logging.Logger logger = java.util.logging.Logger.getLogger(USMLifecycleBean.class
 			.getName());
 	// Initialized in getClusterInfo
@@ -685,8 +704,10 @@ public class USMLifecycleBean implements ClusterInfoAware {
 	}
 
 	/********
-	 * Executes all start detection implementations, until all have passed or a timeout is reached. Once a start
-	 * detector passes, it is not executed again.
+	 * Executes all start detection implementations concurrently, until all have passed or a timeout is reached. Each
+	 * start detector is executed repeatedly until it passes, with a delay that grows up to the start detection interval,
+	 * and is not executed again once it passed. The time it took each one to pass is available from
+	 * {@link #getStartDetectionTimes()}.
 	 *
 	 * @param launchedProcess
 	 *            the process launched by the service's 'start' implementation.
@@ -709,28 +730,139 @@ public class USMLifecycleBean implements ClusterInfoAware {
 				startTime
 						+ TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
 								.getStartDetectionTimeoutSecs());
-		int currentTestIndex = 0;
+		final long intervalMillis = TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
+				.getStartDetectionIntervalSecs());
+
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Executing liveness detectors: " + Arrays.toString(this.livenessDetectors));
+		}
 
+		final ExecutorService executor = Executors.newFixedThreadPool(this.livenessDetectors.length,
+				createStartDetectorThreadFactory());
+		final CompletionService<Long> completionService = new ExecutorCompletionService<Long>(executor);
+		final Map<Future<Long>, String> detectorNames = new HashMap<Future<Long>, String>();
+		final String[] names = getStartDetectorNames();
+		for (int i = 0; i < this.livenessDetectors.length; i++) {
+			final Future<Long> future = completionService.submit(
+					new StartDetectorTask(this.livenessDetectors[i], startTime, endTime, intervalMillis));
+			detectorNames.put(future, names[i]);
+		}
+
+		final Map<String, Object> times = new LinkedHashMap<String, Object>();
 		// indicates if the process launched by START (if it exitst) is still running
 		boolean processIsRunning = (launchedProcess != null);
-		while (System.currentTimeMillis() < endTime && currentTestIndex < this.livenessDetectors.length) {
+		try {
+			while (times.size() < this.livenessDetectors.length) {
+				// first check if process ended
+				if (processIsRunning) {
+					processIsRunning = checkProcessIsRunning(launchedProcess);
+				}
 
-			// first check if process ended
-			if (processIsRunning) {
-				processIsRunning = checkProcessIsRunning(launchedProcess);
+				final long remaining = endTime - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return false;
+				}
+				final Future<Long> future =
+						completionService.poll(Math.min(remaining, intervalMillis), TimeUnit.MILLISECONDS);
+				if (future == null) {
+					continue;
+				}
+				final long timeToReady = getStartDetectorResult(future);
+				if (timeToReady < 0) {
+					// the detector did not pass before the timeout.
+					return false;
+				}
+				final String name = detectorNames.get(future);
+				logger.fine("Start detector " + name + " passed after " + timeToReady + " ms");
+				times.put(CloudifyConstants.USM_MONITORS_START_DETECTION_TIME_ID + " - " + name, timeToReady);
 			}
+		} catch (final InterruptedException e) {
+			throw new USMException("Interruped while waiting for start detection", e);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// all tests passed
+		times.put(CloudifyConstants.USM_MONITORS_START_DETECTION_TIME_ID, System.currentTimeMillis() - startTime);
+		this.startDetectionTimes = Collections.unmodifiableMap(times);
+		return true;
 
-			int index = currentTestIndex;
-			if (logger.isLoggable(Level.FINE)) {
-				logger.fine("Executing iteration of liveness detection test");
-				logger.fine("Executing liveness detectors from index: " + index);
-				logger.fine("Liveness detectors: " + Arrays.toString(this.livenessDetectors));
-				logger.fine("detectors length: " + this.livenessDetectors.length);
+	}
+
+	private long getStartDetectorResult(final Future<Long> future)
+			throws USMException, TimeoutException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			throw new USMException("Interruped while waiting for start detection", e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof USMException) {
+				throw (USMException) cause;
+			}
+			if (cause instanceof TimeoutException) {
+				throw (TimeoutException) cause;
 			}
-			while (index < this.livenessDetectors.length) {
-				logger.fine("getting detector at index: " + index);
-				final LivenessDetector detector = this.livenessDetectors[index];
+			throw new USMException("A start detector failed: " + cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Names of the start detectors, as used in the start detection metrics: the class name, with the detector index
+	 * if the service has more than one detector of the same class.
+	 */
+	private String[] getStartDetectorNames() {
+		final Map<String, Integer> counts = new HashMap<String, Integer>();
+		for (final LivenessDetector detector : this.livenessDetectors) {
+			final String name = detector.getClass().getSimpleName();
+			final Integer count = counts.get(name);
+			counts.put(name, count == null ? 1 : count + 1);
+		}
+		final String[] names = new String[this.livenessDetectors.length];
+		for (int i = 0; i < names.length; i++) {
+			final String name = this.livenessDetectors[i].getClass().getSimpleName();
+			names[i] = counts.get(name) > 1 ? name + "-" + i : name;
+		}
+		return names;
+	}
 
+	private ThreadFactory createStartDetectorThreadFactory() {
+		return new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "USM-StartDetector-" + threadNumber.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Executes a start detector until it passes, returning the time it took in milliseconds, or -1 if the start
+	 * detection timeout was reached first.
+	 */
+	private static final class StartDetectorTask implements Callable<Long> {
+
+		private final LivenessDetector detector;
+		private final long startTime;
+		private final long endTime;
+		private final long maxRetryMillis;
+
+		private StartDetectorTask(final LivenessDetector detector, final long startTime, final long endTime,
+				final long maxRetryMillis) {
+			this.detector = detector;
+			this.startTime = startTime;
+			this.endTime = endTime;
+			this.maxRetryMillis = maxRetryMillis;
+		}
+
+		@Override
+		public Long call()
+				throws USMException, TimeoutException {
+			long retryMillis = Math.min(START_DETECTION_INITIAL_RETRY_MILLIS, maxRetryMillis);
+			while (true) {
 				boolean testResult = false;
 				try {
 					testResult = detector.isProcessAlive();
@@ -738,38 +870,39 @@ public class USMLifecycleBean implements ClusterInfoAware {
 				} catch (final USMException e) {
 					// may indicate that the underlying process has terminated
 					if (e.getCause() instanceof InterruptedException) {
-						// ignore
+						if (Thread.currentThread().isInterrupted()) {
+							// start detection is over.
+							return -1L;
+						}
 						logger.info("A start detector failed due to an InterruptedException");
 					} else {
 						throw e;
 					}
 				}
-
 				if (testResult) {
-					// this liveness detector has succeeded.
-					++index;
-				} else {
-					break;
+					return System.currentTimeMillis() - startTime;
 				}
 
-			}
-
-			if (index == this.livenessDetectors.length) {
-				// all tests passed
-				return true;
-			} else {
-				currentTestIndex = index;
-			}
-
-			try {
-				Thread.sleep(TimeUnit.SECONDS.toMillis(configuration.getService().getLifecycle()
-						.getStartDetectionIntervalSecs()));
-			} catch (final InterruptedException e) {
-				throw new USMException("Interruped while waiting for start detection", e);
+				final long remaining = endTime - System.currentTimeMillis();
+				if (remaining <= 0) {
+					return -1L;
+				}
+				try {
+					Thread.sleep(Math.min(retryMillis, remaining));
+				} catch (final InterruptedException e) {
+					return -1L;
+				}
+				retryMillis = Math.min(retryMillis * 2, maxRetryMillis);
 			}
 		}
-		return false;
+	}
 
+	/**
+	 * @return the time it took each start detector to pass, and the whole start detection, in milliseconds, by metric
+	 *         name. Empty if start detection did not pass yet.
+	 */
+	public Map<String, Object> getStartDetectionTimes() {
+		return startDetectionTimes;
 	}
 
 	private boolean checkProcessIsRunning(final Process launchedProcess)
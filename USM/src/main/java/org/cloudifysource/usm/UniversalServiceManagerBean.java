@@ -25,10 +25,14 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -45,23 +49,32 @@ import org.cloudifysource.dsl.cloud.storage.ServiceVolume;
 import org.cloudifysource.dsl.cloud.storage.StorageTemplate;
 import org.cloudifysource.dsl.context.ServiceContext;
 import org.cloudifysource.dsl.context.blockstorage.StorageFacade;
+import org.cloudifysource.dsl.context.kvstorage.AttributesFacade;
 import org.cloudifysource.dsl.context.kvstorage.AttributesFacadeImpl;
 import org.cloudifysource.dsl.entry.ExecutableDSLEntry;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
 import org.cloudifysource.dsl.internal.space.ServiceInstanceAttemptData;
+import org.cloudifysource.dsl.internal.space.ServiceInstanceStateData;
 import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.dsl.utils.ServiceUtils.FullServiceName;
 import org.cloudifysource.usm.dsl.DSLEntryExecutor;
+import org.cloudifysource.usm.dsl.ServiceConfiguration;
 import org.cloudifysource.usm.events.EventResult;
 import org.cloudifysource.usm.events.StartReason;
 import org.cloudifysource.usm.events.StopReason;
+import org.cloudifysource.usm.jmx.JmxConnectionPool;
+import org.cloudifysource.usm.process.ProcessExitWatcher;
+import org.cloudifysource.usm.process.ProcessTable;
+import org.cloudifysource.usm.tail.DirectoryChangeWatcher;
 import org.cloudifysource.usm.tail.RollingFileAppenderTailer;
 import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
+import org.cloudifysource.usm.tail.WatchingTailerTask;
 import org.hyperic.sigar.Sigar;
 import org.hyperic.sigar.SigarException;
 import org.jini.rio.boot.ServiceClassLoader;
 import org.openspaces.admin.Admin;
+import org.openspaces.admin.gsc.GridServiceContainer;
 import org.openspaces.admin.pu.ProcessingUnit;
 import org.openspaces.admin.pu.ProcessingUnitInstance;
 import org.openspaces.admin.pu.events.ProcessingUnitInstanceAddedEventListener;
@@ -113,6 +126,9 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	private static final String OUTPUT_FILE_NAME_SUFFIX = ".out";
 	private static final int WAIT_FOR_DEPENDENCIES_INTERVAL_MILLIS = 5000;
 	private static final int WAIT_FOR_DEPENDENCIES_TIMEOUT_MILLIS = 1000 * 60 * 30;
+	private static final int WAIT_FOR_DEPENDENCY_STATE_READ_TIMEOUT_MILLIS = 1000 * 60;
+	private static final long STATE_LEASE_MILLIS = 1000 * 60;
+	private static final long STATE_LEASE_RENEWAL_INTERVAL_MILLIS = STATE_LEASE_MILLIS / 3;
 	private static final String ASYNC_INSTALL_DEFAULT_VALUE = "true";
 	private static final int FILE_TAILER_INTERVAL_SECS_DEFAULT = 5;
 	private static final int DEFAULT_POST_LAUNCH_WAIT_PERIOD_MILLIS = 2000;
@@ -126,7 +142,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 
 	private final Object stateMutex = new Object();
 	private final Object deallocationMutext = new Object();
-	private USMState state = USMState.INITIALIZING;
+	private volatile USMState state = USMState.INITIALIZING;
 
 	public USMState getState() {
 		return state;
@@ -158,18 +174,26 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 	private String clusterName;
 	private String uniqueFileNamePrefix;
 	private ProcessDeathNotifier processDeathNotifier;
+	// exit notifications for the monitored processes, which trigger stop detection immediately.
+	private final List<ProcessExitWatcher.Watch> processExitWatches =
+			new CopyOnWriteArrayList<ProcessExitWatcher.Watch>();
 	private RollingFileAppenderTailer tailer;
+	private volatile DirectoryChangeWatcher tailerWatcher;
 
 	private int fileTailerIntervalSecs = FILE_TAILER_INTERVAL_SECS_DEFAULT;
+	private boolean fileTailerNotifications = true;
 
 	// asynchronous installation
 	private boolean asyncInstall = true;
 	private List<Long> serviceProcessPIDs;
 
-	// monitors accessor and thread-safe cache.
+	// monitors accessor and background sampler.
 	private MonitorsCache monitorsCache;
 
 	private GigaSpace managementSpace;
+	// writes the USM state to the management space. null in test-recipe.
+	private ScheduledExecutorService statePublisher;
+	private final AtomicReference<USMState> unpublishedState = new AtomicReference<USMState>();
 	private int retries;
 	private int currentAttempt;
 	private ServiceInstanceAttemptData instanceAttemptData;
@@ -195,6 +219,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		initRetryData();
 
 		initManagementSpace();
+		initStatePublisher();
 
 		// Initialize and sort events
 		initEvents();
@@ -278,6 +303,86 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		return template;
 	}
 
+	private void setState(final USMState newState) {
+		this.state = newState;
+		publishState(newState);
+	}
+
+	private void initStatePublisher() {
+		if (this.managementSpace == null) {
+			// test-recipe
+			return;
+		}
+		this.statePublisher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "USM-StatePublisher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// renews the lease of the state entry, which expires if this GSC dies.
+		this.statePublisher.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				writeState(state);
+			}
+		}, STATE_LEASE_RENEWAL_INTERVAL_MILLIS, STATE_LEASE_RENEWAL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	// hands the state to the publisher thread, so that state transitions, which hold the state mutex, never wait for
+	// the management space. Only the latest of several states set before the publisher runs is written.
+	private void publishState(final USMState newState) {
+		if (this.statePublisher == null) {
+			return;
+		}
+		if (this.unpublishedState.getAndSet(newState) != null) {
+			// a publish task is already pending, and will write the new state.
+			return;
+		}
+		try {
+			this.statePublisher.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					writeState(unpublishedState.getAndSet(null));
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			logger.fine("USM state " + newState + " was not published, the state publisher is shut down");
+		}
+	}
+
+	// writes the state to the management space, where dependent services wait for it.
+	private void writeState(final USMState newState) {
+		if (newState == null) {
+			return;
+		}
+		final FullServiceName fullName = ServiceUtils.getFullServiceName(this.clusterName);
+		final ServiceInstanceStateData stateData = new ServiceInstanceStateData();
+		stateData.setId(ServiceInstanceStateData.createId(fullName.getApplicationName(),
+				fullName.getServiceName(), this.instanceId));
+		stateData.setApplicationName(fullName.getApplicationName());
+		stateData.setServiceName(fullName.getServiceName());
+		stateData.setInstanceId(this.instanceId);
+		stateData.setGscPid(this.myPid);
+		stateData.setState(newState);
+		try {
+			this.managementSpace.write(stateData, STATE_LEASE_MILLIS);
+		} catch (final Exception e) {
+			logger.log(Level.WARNING, "Failed to write USM state " + newState + " to the management space", e);
+		}
+	}
+
+	private void stopStatePublisher() {
+		if (this.statePublisher != null) {
+			// a pending state is still written, but the lease is no longer renewed.
+			this.statePublisher.shutdown();
+		}
+	}
+
 	/**********
 	 * Bean shutdown method, responsible for shutting down the external service and releasing all resource.
 	 */
@@ -287,7 +392,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		logger.info("USM is shutting down!");
 
 		synchronized (this.stateMutex) {
-			this.state = USMState.SHUTTING_DOWN;
+			setState(USMState.SHUTTING_DOWN);
 
 			if (!FileUtils.deleteQuietly(getPidFile())) {
 				logger.severe("Attempted to delete PID file: "
@@ -301,6 +406,11 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 				executors.shutdown();
 			}
 
+			closeTailerWatcher();
+			cancelProcessExitWatches();
+			monitorsCache.stop();
+			JmxConnectionPool.getInstance().closeAll();
+
 			try {
 				getUsmLifecycleBean().fireShutdown();
 			} catch (final USMException e) {
@@ -320,6 +430,9 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 				// Integrated PU
 			}
 
+			closeAttributes();
+			stopStatePublisher();
+
 			try {
 				deAllocateStorageSync();
 			} catch (final Exception e) {
@@ -346,6 +459,18 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 
 	}
 
+	// stops the attribute notifications of the near cache and of attribute listeners.
+	private void closeAttributes() {
+		final ServiceConfiguration configuration = getUsmLifecycleBean().getConfiguration();
+		if (configuration == null) {
+			return;
+		}
+		final AttributesFacade attributes = configuration.getServiceContext().getAttributes();
+		if (attributes instanceof AttributesFacadeImpl) {
+			((AttributesFacadeImpl) attributes).close();
+		}
+	}
+
 	private void initManagementSpace() throws USMException {
 		// initialize management space, except if running in test-recipe container.
 		if (this.isRunningInGSC()) {
@@ -382,7 +507,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 			TimeoutException {
 		synchronized (this.stateMutex) {
 
-			this.state = USMState.INITIALIZING;
+			setState(USMState.INITIALIZING);
 			logger.info("USM Started. Configuration is: "
 					+ getUsmLifecycleBean().getConfiguration());
 
@@ -398,7 +523,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 				// start file monitoring task too
 				startFileMonitoringTask();
 
-				this.state = USMState.RUNNING;
+				setState(USMState.RUNNING);
 
 				return;
 			}
@@ -630,6 +755,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		}
 		this.monitorsCache = new MonitorsCache(this, this.usmLifecycleBean,
 				cacheExpirationTimeout);
+		this.monitorsCache.start();
 	}
 
 	private void initCustomProperties() {
@@ -639,6 +765,10 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 			this.fileTailerIntervalSecs = Integer.parseInt(props
 					.get(CloudifyConstants.USM_PARAMETERS_TAILER_INTERVAL));
 		}
+		if (props.containsKey(CloudifyConstants.USM_PARAMETERS_TAILER_FILE_NOTIFICATIONS)) {
+			this.fileTailerNotifications = Boolean.parseBoolean(props
+					.get(CloudifyConstants.USM_PARAMETERS_TAILER_FILE_NOTIFICATIONS));
+		}
 
 	}
 
@@ -857,7 +987,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 						"An exception was encountered while executing the service lifecycle. "
 								+ "Self-healing is disabled so this service will not be restarted.",
 						e);
-				this.state = USMState.ERROR;
+				setState(USMState.ERROR);
 			} else if (isRetryLimitExceeded()) {
 				//
 				logger.log(
@@ -867,7 +997,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 								+ " which exceeds the The retry limit(" + this.retries
 								+ "), so this service will not be restarted.",
 						e);
-				this.state = USMState.ERROR;
+				setState(USMState.ERROR);
 			} else {
 				writeRetryData();
 				throw e;
@@ -884,10 +1014,14 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		for (final String dependantService : this.dependencies) {
 
 			logger.info("Waiting for dependency: " + dependantService);
-			final ProcessingUnit pu = waitForPU(endTime, admin,
-					dependantService);
+			if (this.managementSpace == null) {
+				final ProcessingUnit pu = waitForPU(endTime, admin,
+						dependantService);
 
-			waitForPUI(endTime, dependantService, pu);
+				waitForPUI(endTime, dependantService, pu);
+			} else {
+				waitForRunningInstance(endTime, admin, dependantService);
+			}
 			logger.info("Dependency " + dependantService + " is available");
 
 		}
@@ -895,6 +1029,73 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		logger.info("All dependencies are available");
 	}
 
+	// blocks until a dependency instance writes its RUNNING state to the management space. An entry is only trusted
+	// if its instance is still deployed in the same GSC: the entry of an instance whose GSC crashed stays RUNNING.
+	private void waitForRunningInstance(final long endTime, final Admin admin, final String dependantService) {
+		final FullServiceName fullName = ServiceUtils.getFullServiceName(dependantService);
+		final ServiceInstanceStateData template = new ServiceInstanceStateData();
+		template.setApplicationName(fullName.getApplicationName());
+		template.setServiceName(fullName.getServiceName());
+		template.setState(USMState.RUNNING);
+
+		while (true) {
+			final long waitPeriod = endTime - System.currentTimeMillis();
+			if (waitPeriod <= 0) {
+				throw new IllegalStateException("Could not find dependency "
+						+ dependantService + " required for this service");
+			}
+
+			try {
+				final ServiceInstanceStateData[] running = this.managementSpace.readMultiple(template);
+				if (running.length == 0) {
+					// nothing to check yet, wait for a state to be written.
+					if (this.managementSpace.read(template,
+							Math.min(waitPeriod, WAIT_FOR_DEPENDENCY_STATE_READ_TIMEOUT_MILLIS)) == null) {
+						logger.info("Could not find a running instance of service: "
+								+ dependantService + ". Waiting for one to start");
+					}
+					continue;
+				}
+				for (final ServiceInstanceStateData stateData : running) {
+					if (isDeployedInstance(admin, dependantService, stateData)) {
+						logger.info("Found a running instance of dependant service: " + dependantService
+								+ ", instance: " + stateData.getInstanceId());
+						return;
+					}
+				}
+				logger.info("Found " + running.length + " running instances of service " + dependantService
+						+ " in the management space, but none of them is deployed. Sleeping before trying again");
+			} catch (final Exception e) {
+				logger.log(Level.WARNING, "Failed to read the state of service " + dependantService
+						+ " from the management space. Sleeping before trying again", e);
+			}
+			try {
+				Thread.sleep(WAIT_FOR_DEPENDENCIES_INTERVAL_MILLIS);
+			} catch (final InterruptedException ie) {
+				// ignore.
+			}
+		}
+	}
+
+	private boolean isDeployedInstance(final Admin admin, final String dependantService,
+			final ServiceInstanceStateData stateData) {
+		final ProcessingUnit pu = admin.getProcessingUnits().getProcessingUnit(dependantService);
+		if (pu == null) {
+			return false;
+		}
+		for (final ProcessingUnitInstance pui : pu.getInstances()) {
+			if (stateData.getInstanceId() == null || pui.getInstanceId() != stateData.getInstanceId()) {
+				continue;
+			}
+			final GridServiceContainer gsc = pui.getGridServiceContainer();
+			if (stateData.getGscPid() == null || gsc == null
+					|| gsc.getVirtualMachine().getDetails().getPid() == stateData.getGscPid()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private void waitForPUI(final long endTime, final String dependantService,
 			final ProcessingUnit pu) {
 		while (true) {
@@ -1103,7 +1304,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 		// The mutex is required as onProcessDeath fires on a separate
 		// thread.
 		synchronized (this.stateMutex) {
-			this.state = USMState.LAUNCHING;
+			setState(USMState.LAUNCHING);
 			getUsmLifecycleBean().firePreStart(StartReason.DEPLOY);
 
 			// bit of a hack, but not that bad.
@@ -1190,7 +1391,7 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 			// to fire even though the process is running
 			startAsyncTasks();
 
-			this.state = USMState.RUNNING;
+			setState(USMState.RUNNING);
 			// notify threads that are waiting for process to start
 			this.stateMutex.notifyAll();
 
@@ -1286,18 +1487,83 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 				STOP_DETECTION_INITIAL_INTERVAL_SECS,
 				STOP_DETECTION_INTERVAL_SECS, TimeUnit.SECONDS);
 
+		// stop detection also runs as soon as a monitored process exits,
+		// instead of waiting for the next scheduled run.
+		watchProcessExits(task);
+
+	}
+
+	private void watchProcessExits(final Runnable stopDetectionTask) {
+		cancelProcessExitWatches();
+		final ProcessExitWatcher.Listener listener = new ProcessExitWatcher.Listener() {
+
+			@Override
+			public void processExited(final long pid) {
+				logger.info("Process " + pid + " exited, running stop detection");
+				try {
+					// make sure stop detectors do not use a process table read before the exit.
+					ProcessTable.getInstance().getSnapshot(0);
+				} catch (final USMException e) {
+					logger.log(Level.FINE, "Failed to read the process table: " + e.getMessage(), e);
+				}
+				try {
+					executors.execute(stopDetectionTask);
+				} catch (final RejectedExecutionException e) {
+					// the USM is shutting down or restarting.
+					logger.fine("Stop detection was not executed after process exit: " + e.getMessage());
+				}
+			}
+		};
+
+		final ProcessExitWatcher watcher = ProcessExitWatcher.getInstance();
+		if (this.process != null && this.processMode == USMProcessMode.FOREGROUND) {
+			this.processExitWatches.add(watcher.watch(this.process, 0, listener));
+		}
+		for (final Long pid : this.serviceProcessPIDs) {
+			try {
+				this.processExitWatches.add(watcher.watch(pid, listener));
+			} catch (final USMException e) {
+				logger.log(Level.WARNING, "Failed to watch process " + pid
+						+ ". Its exit will be detected by the periodic stop detection: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private void cancelProcessExitWatches() {
+		for (final ProcessExitWatcher.Watch watch : this.processExitWatches) {
+			watch.cancel();
+		}
+		this.processExitWatches.clear();
 	}
 
 	private void startFileMonitoringTask() {
-		// We should switch this to the file system notifier when Java 7 comes
-		// out
 		// Schedule task for reading output and error files.
 		if (this.tailer == null) {
 			this.tailer = createFileTailerTask();
 		}
-		logger.info("Launching tailer task");
-		executors.scheduleWithFixedDelay(tailer, 1, fileTailerIntervalSecs,
-				TimeUnit.SECONDS);
+		closeTailerWatcher();
+		final DirectoryChangeWatcher watcher = this.fileTailerNotifications
+				? DirectoryChangeWatcher.create(new File(getLogsDir()))
+				: null;
+		if (watcher != null) {
+			// read new lines when the files change, instead of every interval.
+			logger.info("Launching tailer task, using file system notifications");
+			this.tailerWatcher = watcher;
+			executors.execute(new WatchingTailerTask(tailer, watcher,
+					TimeUnit.SECONDS.toMillis(fileTailerIntervalSecs)));
+		} else {
+			logger.info("Launching tailer task");
+			executors.scheduleWithFixedDelay(tailer, 1, fileTailerIntervalSecs,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	private void closeTailerWatcher() {
+		final DirectoryChangeWatcher watcher = this.tailerWatcher;
+		if (watcher != null) {
+			watcher.close();
+			this.tailerWatcher = null;
+		}
 	}
 
 	private RollingFileAppenderTailer createFileTailerTask() {
@@ -1445,9 +1711,10 @@ public class UniversalServiceManagerBean implements ApplicationContextAware,
 			}
 
 			// kill all current tasks, and create new thread pool for tasks
+			cancelProcessExitWatches();
 			this.executors.shutdownNow();
 
-			this.state = USMState.LAUNCHING;
+			setState(USMState.LAUNCHING);
 			this.executors = Executors.newScheduledThreadPool(THREAD_POOL_SIZE);
 
 			// Restart USM
@@ -117,6 +117,8 @@ public abstract class AbstractJmxPlugin implements Plugin {
 			client.setHost(this.host);
 			client.setPort(this.port);
 			client.setTargets(this.targets);
+			client.setUsername(this.username);
+			client.setPassword(this.password);
 		}
 
 		return client.getAttributes();
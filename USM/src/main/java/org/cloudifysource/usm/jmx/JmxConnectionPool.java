@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.jmx;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**********
+ * Keeps one open JMX connection per target (JMX URL and user name), shared by all JMX plugins of the USM.
+ * Connections are opened on first use and reused across samples, instead of paying a full RMI handshake on each
+ * sample. A connection is dropped, and reopened on next use, when the connector reports that it failed or closed,
+ * or when a caller reports a communication error with {@link #invalidate(JMXServiceURL, Map)}.
+ * 
+ * @since 2.6.0
+ */
+public final class JmxConnectionPool {
+
+	private static final java.util.logging.Logger logger =
+			java.util.logging.Logger.getLogger(JmxConnectionPool.class.getName());
+
+	private static final JmxConnectionPool INSTANCE = new JmxConnectionPool();
+
+	private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<String, Target>();
+
+	private JmxConnectionPool() {
+	}
+
+	public static JmxConnectionPool getInstance() {
+		return INSTANCE;
+	}
+
+	/**********
+	 * Returns an open connection to the target, connecting if there is no healthy pooled connection. Connecting only
+	 * holds the lock of the target, so a slow or unreachable target does not block samples of other targets.
+	 * 
+	 * @param url the JMX URL.
+	 * @param env the connection environment, including credentials if any.
+	 * @return the connection.
+	 * @throws IOException if connecting failed.
+	 */
+	public MBeanServerConnection getConnection(final JMXServiceURL url, final Map<String, ?> env)
+			throws IOException {
+		final String key = createKey(url, env);
+		Target target = targets.get(key);
+		if (target == null) {
+			final Target created = new Target(url, env);
+			target = targets.putIfAbsent(key, created);
+			if (target == null) {
+				target = created;
+			}
+		}
+		return target.getConnection();
+	}
+
+	/**********
+	 * Closes the pooled connection to the target, if any. The next call to
+	 * {@link #getConnection(JMXServiceURL, Map)} reconnects.
+	 * 
+	 * @param url the JMX URL.
+	 * @param env the connection environment.
+	 */
+	public void invalidate(final JMXServiceURL url, final Map<String, ?> env) {
+		final Target target = targets.get(createKey(url, env));
+		if (target != null) {
+			target.invalidate();
+		}
+	}
+
+	/**********
+	 * Closes all pooled connections.
+	 */
+	public void closeAll() {
+		for (final String key : targets.keySet()) {
+			final Target target = targets.remove(key);
+			if (target != null) {
+				target.invalidate();
+			}
+		}
+	}
+
+	private static String createKey(final JMXServiceURL url, final Map<String, ?> env) {
+		final Object credentials = env == null ? null : env.get(JMXConnector.CREDENTIALS);
+		if (credentials instanceof String[] && ((String[]) credentials).length > 0) {
+			return url + "|" + ((String[]) credentials)[0];
+		}
+		return url.toString();
+	}
+
+	private static void close(final JMXConnector connector) {
+		try {
+			connector.close();
+		} catch (final IOException e) {
+			logger.log(Level.FINE, "Failed to close JMX connector: " + e.getMessage(), e);
+		}
+	}
+
+	/**********
+	 * The connection to a single target. Connecting is guarded by the target's own lock.
+	 */
+	private static final class Target {
+
+		private final JMXServiceURL url;
+		private final Map<String, ?> env;
+		private volatile PooledConnection pooled;
+
+		private Target(final JMXServiceURL url, final Map<String, ?> env) {
+			this.url = url;
+			this.env = env;
+		}
+
+		private MBeanServerConnection getConnection()
+				throws IOException {
+			final PooledConnection current = pooled;
+			if (current != null && !current.failed) {
+				return current.connection;
+			}
+			synchronized (this) {
+				// another thread may have reconnected while this one waited for the lock.
+				if (pooled != null && !pooled.failed) {
+					return pooled.connection;
+				}
+				if (pooled != null) {
+					pooled.close();
+					pooled = null;
+				}
+
+				logger.fine("Opening JMX connection to " + url);
+				final JMXConnector connector = JMXConnectorFactory.connect(url, env);
+				final PooledConnection created;
+				try {
+					created = new PooledConnection(connector, connector.getMBeanServerConnection());
+				} catch (final IOException e) {
+					close(connector);
+					throw e;
+				}
+				connector.addConnectionNotificationListener(created, null, null);
+				pooled = created;
+				return created.connection;
+			}
+		}
+
+		// does not take the lock, so it never waits for a connect in progress.
+		private void invalidate() {
+			final PooledConnection current = pooled;
+			if (current != null) {
+				current.failed = true;
+				current.close();
+			}
+		}
+	}
+
+	/**********
+	 * A pooled connection, marked as failed by its connector notifications.
+	 */
+	private static final class PooledConnection implements NotificationListener {
+
+		private final JMXConnector connector;
+		private final MBeanServerConnection connection;
+		private volatile boolean failed;
+
+		private PooledConnection(final JMXConnector connector, final MBeanServerConnection connection) {
+			this.connector = connector;
+			this.connection = connection;
+		}
+
+		@Override
+		public void handleNotification(final Notification notification, final Object handback) {
+			final String type = notification.getType();
+			if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+				failed = true;
+			}
+		}
+
+		private void close() {
+			JmxConnectionPool.close(connector);
+		}
+	}
+}
@@ -30,12 +30,11 @@ import javax.management.AttributeList;
 import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
 /**
  * Generic fetcher for external-process JMX data.
+ * Connections are taken from the shared {@link JmxConnectionPool}, and kept open between samples.
  *
  * @author giladh
  * @since 8.0.1
@@ -61,6 +60,8 @@ public class JmxGenericClient {
 
 	private int numOfTargets;
 
+	private volatile long lastSampleDurationMillis = -1;
+
 	public void setHost(final String host) {
 		this.host = host.trim();
 	}
@@ -80,6 +81,9 @@ public class JmxGenericClient {
 		private String objectName = "";
 		private final List<JmxAttribute> attributes = new LinkedList<JmxAttribute>();
 		private final Map<String, JmxAttribute> attributesByName = new HashMap<String, JmxAttribute>();
+		// parsed once, on first use.
+		private ObjectName beanName;
+		private String[] attributeNames;
 
 		public JmxBeanAttributes(final String objectName) {
 			this.objectName = objectName;
@@ -89,19 +93,31 @@ public class JmxGenericClient {
 			return objectName;
 		}
 
+		public ObjectName getBeanName() throws MalformedObjectNameException {
+			if (beanName == null) {
+				beanName = new ObjectName(objectName);
+			}
+			return beanName;
+		}
+
 		public void add(final JmxAttribute att) {
 			this.attributes.add(att);
 			this.attributesByName.put(att.getAttributeName(), att);
+			this.attributeNames = null;
 
 		}
 
 		public String[] getAttributeNames() {
+			if (attributeNames != null) {
+				return attributeNames;
+			}
 			final String[] arr = new String[this.attributes.size()];
 			int i = 0;
 			for (final JmxAttribute att : this.attributes) {
 				arr[i] = att.getAttributeName();
 				++i;
 			}
+			attributeNames = arr;
 			return arr;
 
 		}
@@ -145,46 +161,64 @@ public class JmxGenericClient {
 		this.numOfTargets = list.size();
 	}
 
+	/**********
+	 * Reads all target attributes, using a pooled connection to the JMX server.
+	 * If the pooled connection turns out to be broken, e.g. since the server restarted, it is reopened once.
+	 * @return the attributes read, or null if the JMX server could not be reached.
+	 */
 	public ArrayList<JmxAttribute> getData() {
 
 		final JMXServiceURL jmxUrl = createJMXServiceURL();
 
-		JMXConnector jmxc = null;
-
 		final Map<String, Object> env = createEnvironment();
 
-		final ArrayList<JmxAttribute> resultList = new ArrayList<JmxAttribute>(this.numOfTargets);
-
+		final long start = System.currentTimeMillis();
 		try {
-			jmxc = JMXConnectorFactory.connect(jmxUrl, env);
-			final MBeanServerConnection mbsc = jmxc.getMBeanServerConnection();
-
-			for (final JmxBeanAttributes t : targetList) {
-
-				handleJMXBean(resultList, mbsc, t);
-
+			try {
+				return fetchData(jmxUrl, env);
+			} catch (final IOException e) {
+				logger.fine("JMX connection to " + host + ":" + port + " failed, reconnecting. Error: " + e);
+				JmxConnectionPool.getInstance().invalidate(jmxUrl, env);
+				return fetchData(jmxUrl, env);
 			}
-
-			return resultList;
+		} catch (final IOException e) {
+			JmxConnectionPool.getInstance().invalidate(jmxUrl, env);
+			logger.severe("Failed to fetch JMX values for " + host + ":" + port + ". Error: " + e);
 		} catch (final Exception e) {
+			// not a communication failure, so the pooled connection is kept.
 			final String msg = "Failed to fetch JMX values for " + host + ":" + port + ". Error: " + e;
 			logger.severe(msg);
 		} finally {
-			if (jmxc != null) {
-				try {
-					jmxc.close();
-				} catch (final IOException e) {
-				}
-			}
+			lastSampleDurationMillis = System.currentTimeMillis() - start;
 		}
 		return null;
 	}
 
+	private ArrayList<JmxAttribute> fetchData(final JMXServiceURL jmxUrl, final Map<String, Object> env)
+			throws IOException, MalformedObjectNameException {
+		final MBeanServerConnection mbsc = JmxConnectionPool.getInstance().getConnection(jmxUrl, env);
+
+		final ArrayList<JmxAttribute> resultList = new ArrayList<JmxAttribute>(this.numOfTargets);
+		for (final JmxBeanAttributes t : targetList) {
+
+			handleJMXBean(resultList, mbsc, t);
+
+		}
+		return resultList;
+	}
+
+	/**********
+	 * @return the duration of the last call to {@link #getData()} in milliseconds, or -1 if it was never called.
+	 */
+	public long getLastSampleDurationMillis() {
+		return lastSampleDurationMillis;
+	}
+
 	protected void handleJMXBean(final ArrayList<JmxAttribute> resultList, final MBeanServerConnection mbsc,
 			final JmxBeanAttributes t)
-			throws MalformedObjectNameException {
+			throws MalformedObjectNameException, IOException {
 
-		final ObjectName beanName = new ObjectName(t.getObjectName());
+		final ObjectName beanName = t.getBeanName();
 		final String[] attributeNames = t.getAttributeNames();
 
 		try {
@@ -202,6 +236,9 @@ public class JmxGenericClient {
                 }
             }
 
+		} catch (final IOException e) {
+			// a communication failure, not a bean failure. let the caller reconnect.
+			throw e;
 		} catch (final Exception e) {
 			if (logger.isLoggable(Level.WARNING)) {
 				logger.warning("Failed to read Attributes for JMX Bean: " + t + ": " + e.getMessage());
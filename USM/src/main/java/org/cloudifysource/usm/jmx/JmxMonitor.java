@@ -17,6 +17,7 @@ package org.cloudifysource.usm.jmx;
 
 import java.util.Map;
 
+import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.usm.USMUtils;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.dsl.ServiceConfiguration;
@@ -38,6 +39,10 @@ public class JmxMonitor extends AbstractJmxPlugin implements Monitor {
 
 		final Map<String, Object> jmxAttributes = getJmxAttributes();
 
-		return USMUtils.convertMapToNumericValues(jmxAttributes);
+		final Map<String, Number> values = USMUtils.convertMapToNumericValues(jmxAttributes);
+		// one latency metric per target, so that several JMX monitors of a service do not overwrite each other.
+		values.put(CloudifyConstants.USM_METRIC_JMX_SAMPLE_LATENCY + " (" + host + ":" + port + ")",
+				client.getLastSampleDurationMillis());
+		return values;
 	}
 }
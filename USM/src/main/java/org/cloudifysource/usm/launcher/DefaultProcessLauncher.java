@@ -19,9 +19,11 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -78,12 +80,15 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 	private static final int POST_SYNC_PROCESS_SLEEP_INTERVAL = 200;
 	private static final String LINUX_EXECUTE_PREFIX = "./";
 	private static final String[] WINDOWS_BATCH_FILE_PREFIX_PARAMS = { "cmd.exe", "/c " };
+	private static final int GROOVY_SCRIPT_CACHE_SIZE = 32;
 	private List<String> groovyCommandLinePrefixParams;
 	// last command line to be executed
 	private List<String> commandLine;
 	private final Sigar sigar = SigarHolder.getSigar();
 	private ClusterInfo clusterInfo;
 	private String groovyEnvironmentClassPath;
+	private Boolean inProcessGroovyScripts;
+	private GroovyScriptCache groovyScriptCache;
 
 	@Autowired
 	private ServiceConfiguration configutaion;
@@ -829,6 +834,15 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 					"If redirectError option is chosen, neither output file or error file can be set");
 		}
 
+		// the start process is monitored by its pid, and debugged events must run in a shell
+		if (event != LifecycleEvents.START && !isDebugEvent(event)) {
+			final Process scriptProcess = launchGroovyScriptInProcess(commandLineParams, workingDir,
+					redirectErrorStream, outputFile, errorFile);
+			if (scriptProcess != null) {
+				return scriptProcess;
+			}
+		}
+
 		List<String> modifiedCommandLineParams = null;
 		modifiedCommandLineParams = commandLineParams;
 		if (isDebugEvent(event)) {
@@ -899,6 +913,92 @@ public class DefaultProcessLauncher implements ProcessLauncher, ClusterInfoAware
 		throw ex;
 	}
 
+	private Process launchGroovyScriptInProcess(final List<String> commandLineParams, final File workingDir,
+			final boolean redirectErrorStream, final File outputFile, final File errorFile)
+			throws USMException {
+		if (!isInProcessGroovyScripts() || !commandLineParams.get(0).endsWith(".groovy")) {
+			return null;
+		}
+		final File scriptFile = getFileFromRelativeOrAbsolutePath(workingDir,
+				commandLineParams.get(0));
+		if (scriptFile == null) {
+			return null;
+		}
+
+		final byte[] content;
+		try {
+			content = FileUtils.readFileToByteArray(scriptFile);
+		} catch (final IOException e) {
+			throw new USMException("Failed to read groovy script: " + scriptFile, e);
+		}
+
+		final List<String> args = new ArrayList<String>(commandLineParams.size() - 1);
+		for (final String param : commandLineParams.subList(1,
+				commandLineParams.size())) {
+			// quotes are removed, as the shell would do for a forked script
+			args.add(StringUtils.replace(param, "\"", ""));
+		}
+
+		this.commandLine = commandLineParams;
+		logger.info("Running groovy script in-process: " + commandLineParams);
+		final GroovyScriptCache cache = getGroovyScriptCache(workingDir);
+		final InProcessGroovyProcess process;
+		if (outputFile == null) {
+			process = new InProcessGroovyProcess(scriptFile, content, args.toArray(new String[args.size()]), cache,
+					this.configutaion.getServiceContext(), redirectErrorStream);
+		} else {
+			OutputStream out = null;
+			try {
+				final String fileInitialMessage =
+						"Starting in-process groovy script in working directory:'" + workingDir + "' "
+								+ "at:'" + new Date() + "' with command:'" + commandLineParams + "'"
+								+ System.getProperty("line.separator");
+				appendMessageToFile(fileInitialMessage,
+						outputFile);
+				appendMessageToFile(fileInitialMessage,
+						errorFile);
+				out = new FileOutputStream(outputFile, true);
+				final OutputStream err = new FileOutputStream(errorFile, true);
+				process = new InProcessGroovyProcess(scriptFile, content, args.toArray(new String[args.size()]),
+						cache, this.configutaion.getServiceContext(), out, err);
+			} catch (final IOException e) {
+				if (out != null) {
+					try {
+						out.close();
+					} catch (final IOException ioe) {
+						// ignore
+					}
+				}
+				throw new USMException("Failed to open output files of groovy script: " + scriptFile, e);
+			}
+		}
+		return process.start();
+	}
+
+	private synchronized boolean isInProcessGroovyScripts() {
+		if (this.inProcessGroovyScripts == null) {
+			final String inProcess = this.configutaion.getService().getCustomProperties()
+					.get(CloudifyConstants.CUSTOM_PROPERTY_IN_PROCESS_GROOVY_SCRIPTS);
+			this.inProcessGroovyScripts = Boolean.parseBoolean(inProcess);
+		}
+		return this.inProcessGroovyScripts;
+	}
+
+	private synchronized GroovyScriptCache getGroovyScriptCache(final File workingDir) {
+		if (this.groovyScriptCache == null) {
+			ClassLoader parent = this.configutaion.getDslClassLoader();
+			if (parent == null) {
+				parent = DefaultProcessLauncher.class.getClassLoader();
+			}
+			// the GS jars are already available to the USM, only the PU's lib jars are added
+			final List<File> jars = new LinkedList<File>();
+			addJarsFromDirectoryToList(new File(workingDir.getParentFile(), "lib"),
+					jars);
+			this.groovyScriptCache = new GroovyScriptCache(parent, jars, GROOVY_SCRIPT_CACHE_SIZE);
+		}
+		return this.groovyScriptCache;
+	}
+
 	private File createTempFileForJDK7(File workingDir) throws USMException {
 		try {
 			final File file = File.createTempFile("ProcessLauncherScript", ".bat", workingDir);
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.GroovyShell;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles Groovy lifecycle scripts for in-process execution, and caches the compiled classes by the SHA-1 hash of the
+ * script content, so running an unchanged script again skips the compilation.
+ * <p>
+ * Every script is compiled by its own {@link GroovyClassLoader}, so classes declared by one script are not visible to
+ * other scripts, and an evicted script can be unloaded. The parent of these class loaders is the service's DSL class
+ * loader, and their class path is the directory of the script and the jar files of the PU's lib directory, like the
+ * class path of a forked groovy process.
+ *
+ * @since 2.6.0
+ */
+public final class GroovyScriptCache {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final ClassLoader parent;
+	private final List<File> classpath;
+	private final Map<String, Class<?>> scriptClasses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param parent
+	 *            the parent class loader of the script class loaders.
+	 * @param classpath
+	 *            additional class path entries of the script class loaders.
+	 * @param maxSize
+	 *            the maximum number of compiled scripts kept by the cache.
+	 */
+	public GroovyScriptCache(final ClassLoader parent, final List<File> classpath, final int maxSize) {
+		this.parent = parent;
+		this.classpath = classpath;
+		this.scriptClasses = new LinkedHashMap<String, Class<?>>(maxSize, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, Class<?>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the compiled class of a script, compiling it if a script with the same content was not compiled yet.
+	 *
+	 * @param scriptFile
+	 *            the script file.
+	 * @param content
+	 *            the content of the script file.
+	 * @return the script class.
+	 * @throws IOException
+	 *             if the script file could not be read.
+	 */
+	public Class<?> getScriptClass(final File scriptFile, final byte[] content)
+			throws IOException {
+		final String key = hash(content);
+		synchronized (scriptClasses) {
+			final Class<?> cached = scriptClasses.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		// compiled outside the lock, a script compiled concurrently by two threads is simply compiled twice.
+		final Class<?> scriptClass = compile(scriptFile, content);
+		synchronized (scriptClasses) {
+			scriptClasses.put(key, scriptClass);
+		}
+		return scriptClass;
+	}
+
+	/**
+	 * Returns the number of compiled scripts kept by the cache.
+	 *
+	 * @return the number of cached scripts.
+	 */
+	public int size() {
+		synchronized (scriptClasses) {
+			return scriptClasses.size();
+		}
+	}
+
+	private Class<?> compile(final File scriptFile, final byte[] content) {
+		final GroovyClassLoader loader = new GroovyClassLoader(parent);
+		final File scriptDir = scriptFile.getAbsoluteFile().getParentFile();
+		if (scriptDir != null) {
+			loader.addClasspath(scriptDir.getAbsolutePath());
+		}
+		for (final File entry : classpath) {
+			loader.addClasspath(entry.getAbsolutePath());
+		}
+		// compiles the content that was hashed, even if the file changed since it was read. The code source is named
+		// after the script's path, as a forked groovy process names it in errors.
+		final GroovyCodeSource codeSource = new GroovyCodeSource(new String(content, Charset.defaultCharset()),
+				scriptFile.getAbsolutePath(), GroovyShell.DEFAULT_CODE_BASE);
+		codeSource.setCachable(false);
+		return loader.parseClass(codeSource, false);
+	}
+
+	/**
+	 * Returns the hex encoded SHA-1 hash of a script's content.
+	 *
+	 * @param content
+	 *            the script content.
+	 * @return the hash.
+	 */
+	static String hash(final byte[] content) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+		}
+		final byte[] bytes = digest.digest(content);
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import groovy.lang.Binding;
+import groovy.lang.Script;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.cloudifysource.dsl.context.ServiceContext;
+import org.cloudifysource.dsl.context.ServiceContextFactory;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/**
+ * A {@link Process} that runs a Groovy script on a thread of the USM, instead of in a forked groovy JVM.
+ * <p>
+ * The script gets its command line arguments in the 'args' variable, and the service context in the 'context' variable
+ * and from {@link ServiceContextFactory#getServiceContext()}. Its System.out and System.err are captured into the
+ * process output and error streams, or into the given output and error streams. The exit value is 0 if the script
+ * completed, and 1 if it failed, in which case the exception is written to the error stream like the groovy command
+ * line does. Destroying the process interrupts the script thread.
+ *
+ * @since 2.6.0
+ */
+public class InProcessGroovyProcess extends Process {
+
+	private static final java.util.logging.Logger logger = java.util.logging.Logger
+			.getLogger(InProcessGroovyProcess.class.getName());
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final File scriptFile;
+	private final byte[] content;
+	private final String[] args;
+	private final GroovyScriptCache cache;
+	private final ServiceContext context;
+
+	private final OutputStream out;
+	private final OutputStream err;
+	private final InputStream inputStream;
+	private final InputStream errorStream;
+
+	private final Thread thread;
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile int exitValue;
+
+	/**
+	 * Creates a process whose output and error are read from {@link #getInputStream()} and {@link #getErrorStream()}.
+	 *
+	 * @param scriptFile
+	 *            the script file.
+	 * @param content
+	 *            the content of the script file.
+	 * @param args
+	 *            the script arguments.
+	 * @param cache
+	 *            the cache the script class is compiled by.
+	 * @param context
+	 *            the service context.
+	 * @param redirectErrorStream
+	 *            true if the error should be merged into the output, like {@link ProcessBuilder#redirectErrorStream()}.
+	 */
+	public InProcessGroovyProcess(final File scriptFile, final byte[] content, final String[] args,
+			final GroovyScriptCache cache, final ServiceContext context, final boolean redirectErrorStream) {
+		this.scriptFile = scriptFile;
+		this.content = content;
+		this.args = args;
+		this.cache = cache;
+		this.context = context;
+
+		final OutputPipe outPipe = new OutputPipe();
+		this.out = outPipe;
+		this.inputStream = outPipe.getInputStream();
+		if (redirectErrorStream) {
+			this.err = outPipe;
+			this.errorStream = new OutputPipe().closedInputStream();
+		} else {
+			final OutputPipe errPipe = new OutputPipe();
+			this.err = errPipe;
+			this.errorStream = errPipe.getInputStream();
+		}
+		this.thread = createThread();
+	}
+
+	/**
+	 * Creates a process whose output and error are written to the given streams, which are closed when the script
+	 * ends. The output and error streams of the process itself are empty.
+	 *
+	 * @param scriptFile
+	 *            the script file.
+	 * @param content
+	 *            the content of the script file.
+	 * @param args
+	 *            the script arguments.
+	 * @param cache
+	 *            the cache the script class is compiled by.
+	 * @param context
+	 *            the service context.
+	 * @param out
+	 *            the stream the script output is written to.
+	 * @param err
+	 *            the stream the script error is written to.
+	 */
+	public InProcessGroovyProcess(final File scriptFile, final byte[] content, final String[] args,
+			final GroovyScriptCache cache, final ServiceContext context, final OutputStream out,
+			final OutputStream err) {
+		this.scriptFile = scriptFile;
+		this.content = content;
+		this.args = args;
+		this.cache = cache;
+		this.context = context;
+		this.out = out;
+		this.err = err;
+		this.inputStream = new OutputPipe().closedInputStream();
+		this.errorStream = new OutputPipe().closedInputStream();
+		this.thread = createThread();
+	}
+
+	private Thread createThread() {
+		final Thread scriptThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				runScript();
+			}
+		}, "USM-Groovy-Script-" + THREAD_COUNTER.incrementAndGet() + "-" + scriptFile.getName());
+		scriptThread.setDaemon(true);
+		return scriptThread;
+	}
+
+	/**
+	 * Starts running the script.
+	 *
+	 * @return this process.
+	 */
+	public InProcessGroovyProcess start() {
+		ScriptOutputRouter.install();
+		thread.start();
+		return this;
+	}
+
+	private void runScript() {
+		final PrintStream errPrintStream = new PrintStream(err, true);
+		ScriptOutputRouter.route(out, err);
+		ServiceContextFactory.setThreadServiceContext(context);
+		int result = 0;
+		try {
+			final Class<?> scriptClass = cache.getScriptClass(scriptFile, content);
+			thread.setContextClassLoader(scriptClass.getClassLoader());
+
+			final Binding binding = new Binding();
+			binding.setVariable("args", args);
+			binding.setVariable("context", context);
+			final Script script = InvokerHelper.createScript(scriptClass, binding);
+			script.run();
+		} catch (final Throwable t) {
+			result = 1;
+			logger.log(Level.FINE, "In-process groovy script " + scriptFile + " failed", t);
+			errPrintStream.println("Caught: " + t);
+			t.printStackTrace(errPrintStream);
+		} finally {
+			System.out.flush();
+			System.err.flush();
+			ServiceContextFactory.setThreadServiceContext(null);
+			ScriptOutputRouter.clear();
+			this.exitValue = result;
+			closeQuietly(out);
+			closeQuietly(err);
+			done.countDown();
+		}
+	}
+
+	private static void closeQuietly(final OutputStream stream) {
+		try {
+			stream.close();
+		} catch (final IOException e) {
+			// ignore
+		}
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		// scripts have no standard input, and nothing written here is ever read.
+		return new OutputStream() {
+
+			@Override
+			public void write(final int b) {
+				// ignore
+			}
+		};
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	@Override
+	public InputStream getErrorStream() {
+		return errorStream;
+	}
+
+	@Override
+	public int waitFor()
+			throws InterruptedException {
+		done.await();
+		return exitValue;
+	}
+
+	@Override
+	public int exitValue() {
+		if (done.getCount() > 0) {
+			throw new IllegalThreadStateException("Script " + scriptFile + " is still running");
+		}
+		return exitValue;
+	}
+
+	@Override
+	public void destroy() {
+		thread.interrupt();
+	}
+
+	/**
+	 * An in-memory pipe: written by the script, read by the launcher. Unlike a {@link java.io.PipedOutputStream}, it
+	 * may be written by any number of threads, and writing never blocks, so an unread error stream can not stall the
+	 * script. Instead, the pipe holds at most {@link #MAX_CAPACITY} unread bytes, and drops the oldest ones when a write
+	 * would exceed it, so the latest output is kept. Writes after the pipe is closed, by threads the script left behind,
+	 * are dropped.
+	 */
+	private static final class OutputPipe extends OutputStream {
+
+		private static final int INITIAL_CAPACITY = 4096;
+		private static final int MAX_CAPACITY = 1024 * 1024;
+
+		private byte[] buffer = new byte[INITIAL_CAPACITY];
+		private int readPosition;
+		private int writePosition;
+		private boolean closed;
+
+		@Override
+		public synchronized void write(final int b) {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public synchronized void write(final byte[] b, final int off, final int len) {
+			if (closed) {
+				return;
+			}
+			int offset = off;
+			int length = len;
+			if (length > MAX_CAPACITY) {
+				offset += length - MAX_CAPACITY;
+				length = MAX_CAPACITY;
+			}
+			final int overflow = writePosition - readPosition + length - MAX_CAPACITY;
+			if (overflow > 0) {
+				readPosition += overflow;
+			}
+			if (writePosition + length > buffer.length) {
+				final int size = writePosition - readPosition;
+				if (size + length > buffer.length) {
+					final byte[] newBuffer =
+							new byte[Math.min(MAX_CAPACITY, Math.max(buffer.length * 2, size + length))];
+					System.arraycopy(buffer, readPosition, newBuffer, 0, size);
+					buffer = newBuffer;
+				} else {
+					System.arraycopy(buffer, readPosition, buffer, 0, size);
+				}
+				writePosition = size;
+				readPosition = 0;
+			}
+			System.arraycopy(b, offset, buffer, writePosition, length);
+			writePosition += length;
+			notifyAll();
+		}
+
+		@Override
+		public synchronized void close() {
+			closed = true;
+			notifyAll();
+		}
+
+		private synchronized int read(final byte[] b, final int off, final int len)
+				throws InterruptedIOException {
+			if (len == 0) {
+				return 0;
+			}
+			while (readPosition == writePosition && !closed) {
+				try {
+					wait();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while reading script output");
+				}
+			}
+			if (readPosition == writePosition) {
+				return -1;
+			}
+			final int count = Math.min(len, writePosition - readPosition);
+			System.arraycopy(buffer, readPosition, b, off, count);
+			readPosition += count;
+			return count;
+		}
+
+		private synchronized int available() {
+			return writePosition - readPosition;
+		}
+
+		InputStream getInputStream() {
+			return new InputStream() {
+
+				@Override
+				public int read()
+						throws IOException {
+					final byte[] b = new byte[1];
+					final int count = OutputPipe.this.read(b, 0, 1);
+					return count < 0 ? -1 : b[0] & 0xFF;
+				}
+
+				@Override
+				public int read(final byte[] b, final int off, final int len)
+						throws IOException {
+					return OutputPipe.this.read(b, off, len);
+				}
+
+				@Override
+				public int available() {
+					return OutputPipe.this.available();
+				}
+			};
+		}
+
+		InputStream closedInputStream() {
+			close();
+			return getInputStream();
+		}
+	}
+}
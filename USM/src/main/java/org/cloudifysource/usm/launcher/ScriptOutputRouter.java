@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Routes {@link System#out} and {@link System#err} of in-process scripts to their own output streams.
+ * <p>
+ * Once installed, System.out and System.err write to the streams routed for the current thread, or to the original
+ * System.out and System.err when none are. The routing is not inherited: threads started by a script may outlive its
+ * streams, so they write to the original System.out and System.err.
+ *
+ * @since 2.6.0
+ */
+final class ScriptOutputRouter {
+
+	private static final RoutedOutputStream OUT = new RoutedOutputStream();
+	private static final RoutedOutputStream ERR = new RoutedOutputStream();
+	private static boolean installed;
+
+	private ScriptOutputRouter() {
+		// private constructor to prevent initialization.
+	}
+
+	/**
+	 * Replaces System.out and System.err with routing streams, if not done yet.
+	 */
+	static synchronized void install() {
+		if (installed) {
+			return;
+		}
+		OUT.defaultStream = System.out;
+		ERR.defaultStream = System.err;
+		System.setOut(new PrintStream(OUT, true));
+		System.setErr(new PrintStream(ERR, true));
+		installed = true;
+	}
+
+	/**
+	 * Routes System.out and System.err of the current thread.
+	 *
+	 * @param out
+	 *            the stream for System.out.
+	 * @param err
+	 *            the stream for System.err.
+	 */
+	static void route(final OutputStream out, final OutputStream err) {
+		OUT.route.set(out);
+		ERR.route.set(err);
+	}
+
+	/**
+	 * Stops routing System.out and System.err of the current thread.
+	 */
+	static void clear() {
+		OUT.route.remove();
+		ERR.route.remove();
+	}
+
+	/**
+	 * An output stream that writes to the stream routed for the current thread.
+	 */
+	private static final class RoutedOutputStream extends OutputStream {
+
+		private final ThreadLocal<OutputStream> route = new ThreadLocal<OutputStream>();
+		private volatile OutputStream defaultStream;
+
+		private OutputStream target() {
+			final OutputStream routed = route.get();
+			return routed == null ? defaultStream : routed;
+		}
+
+		@Override
+		public void write(final int b)
+				throws IOException {
+			target().write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len)
+				throws IOException {
+			target().write(b, off, len);
+		}
+
+		@Override
+		public void flush()
+				throws IOException {
+			target().flush();
+		}
+
+		@Override
+		public void close() {
+			// System.out and System.err are never closed through the router.
+		}
+	}
+}
@@ -17,14 +17,17 @@ package org.cloudifysource.usm.liveness;
 
 import java.io.File;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
-import org.apache.commons.io.input.Tailer;
 import org.cloudifysource.dsl.Plugin;
 import org.cloudifysource.dsl.context.ServiceContext;
 import org.cloudifysource.usm.USMException;
 import org.cloudifysource.usm.events.AbstractUSMEventListener;
+import org.cloudifysource.usm.tail.FileTailMatcher;
 
 /**
  * FileLivenessDetector class is responsible for verifying that the process has finished loading by checking whether the
@@ -50,8 +53,8 @@ public class FileLivenessDetector extends AbstractUSMEventListener implements Li
 	private String filePath = "";
 	private String regex = "";
 	private int timeoutInSeconds = 60;
+	private Pattern pattern;
 
-	private static final int TIMEOUT_BETWEEN_FILE_QUERYING = 1000;
 	private String serviceDirectory;
 
 	@Override
@@ -68,13 +71,14 @@ public class FileLivenessDetector extends AbstractUSMEventListener implements Li
 		final String regex = (String) config.get(REGULAR_EXPRESSION_KEY);
 		if (regex != null) {
 			this.regex = regex;
+			this.pattern = null;
 		}
 	}
 
 	/**
-	 * isProcessAlive will sample the file defined in the groovy configuration file every second for the specified
-	 * timeout period looking for a regex in the log that confirms the process has loaded successfully and return true
-	 * if the regex was found.
+	 * isProcessAlive will look for a regex in the file defined in the groovy configuration file for the specified
+	 * timeout period, and return true if the regex, which confirms the process has loaded successfully, was found in the
+	 * log. The file is read by the shared {@link FileTailMatcher}, whenever it changes.
 	 * 
 	 * @throws USMException .
 	 * 
@@ -90,36 +94,42 @@ public class FileLivenessDetector extends AbstractUSMEventListener implements Li
 		if (!file.isAbsolute()) {
 			file = new File(serviceDirectory, this.filePath);
 		}
-		final FileTailerListener listener = new FileTailerListener(this.regex);
-		Tailer tailer = null;
+		final FileTailMatcher.Match match =
+				FileTailMatcher.getInstance().match(file, getPattern(), timeoutInSeconds, TimeUnit.SECONDS);
+		final String line;
 		try {
-			final long startTime = System.currentTimeMillis();
-			while (System.currentTimeMillis() < startTime + TimeUnit.SECONDS.toMillis(timeoutInSeconds)) {
-				if (file.exists()) {
-					if (tailer == null) {
-						tailer = Tailer.create(file, listener, TIMEOUT_BETWEEN_FILE_QUERYING, false);
-					}
-					if (listener.isProcessUp()) {
-						logger.info("The regular expression " + this.regex + " was found in the process log");
-						return true;
-					}
-				}
-				try {
-					Thread.sleep(TIMEOUT_BETWEEN_FILE_QUERYING);
-				} catch (final InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-		} finally {
-			if (tailer != null) {
-				tailer.stop();
-			}
+			line = match.get();
+		} catch (final InterruptedException e) {
+			match.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new USMException("Interrupted while looking for the regular expression " + this.regex
+					+ " in the process log", e);
+		} catch (final ExecutionException e) {
+			throw new USMException("Failed to look for the regular expression " + this.regex
+					+ " in the process log: " + e.getCause().getMessage(), e.getCause());
+		}
+		if (line != null) {
+			logger.info("The regular expression " + this.regex + " was found in the process log after "
+					+ match.getDurationMillis() + " ms");
+			return true;
 		}
 		logger.info("The regular expression " + this.regex + " was NOT found in the process log");
 		return false;
 
 	}
 
+	private Pattern getPattern()
+			throws USMException {
+		if (this.pattern == null) {
+			try {
+				this.pattern = Pattern.compile(this.regex);
+			} catch (final PatternSyntaxException e) {
+				throw new USMException("Invalid regular expression for the FileLivenessDetector: " + this.regex, e);
+			}
+		}
+		return this.pattern;
+	}
+
 	@Override
 	public void setServiceContext(final ServiceContext context) {
 		serviceDirectory = context.getServiceDirectory();
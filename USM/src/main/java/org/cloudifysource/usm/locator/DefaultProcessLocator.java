@@ -15,11 +15,8 @@ package org.cloudifysource.usm.locator;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 
@@ -29,6 +26,8 @@ import org.cloudifysource.usm.events.AbstractUSMEventListener;
 import org.cloudifysource.usm.events.EventResult;
 import org.cloudifysource.usm.events.PreStartListener;
 import org.cloudifysource.usm.events.StartReason;
+import org.cloudifysource.usm.process.ProcessTable;
+import org.cloudifysource.usm.process.ProcessTableSnapshot;
 import org.hyperic.sigar.Sigar;
 import org.hyperic.sigar.SigarException;
 
@@ -40,6 +39,8 @@ import com.gigaspaces.internal.sigar.SigarHolder;
  * detection passed successfully. Then it select the 'leaf' nodes of this tree. This gives us the 'interesting'
  * processes, assuming the service process runs in the foreground.
  *
+ * The process tree is read from the {@link ProcessTable} shared by all USMs in this JVM.
+ *
  * This implementation is a heuristic, and works best when executing a single process in the foreground, typical for
  * multi-threaded processes like java application servers. It is generally a good idea for a process to explicitly
  * define its process locator, so that this locator is not used.
@@ -78,7 +79,8 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 		this.myPid = this.sigar.getPid();
 
 		try {
-			this.childrenBeforeStart = getChildProcesses(this.myPid);
+			// a new snapshot, so a process started just before this one is not taken for a process of the service.
+			this.childrenBeforeStart = toSet(ProcessTable.getInstance().getSnapshot(0).getChildren(this.myPid));
 		} catch (final USMException e) {
 			throw new IllegalStateException("Failed to read child processes", e);
 		}
@@ -87,45 +89,12 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 
 	}
 
-	/**********
-	 * Creates a process tree of the given Process IDs. Each entry in the map maps a PID to the set of its child PIDs.
-	 *
-	 * @param pids
-	 * @return
-	 */
-	private Map<Long, Set<Long>> createProcessTree(final long[] pids) {
-
-		final HashMap<Long, Set<Long>> map = new HashMap<Long, Set<Long>>();
-		for (final long pid : pids) {
-			final Set<Long> childSet = map.get(pid);
-			if (childSet == null) {
-				map.put(pid, new HashSet<Long>());
-			}
-
-			try {
-				final long ppid = this.sigar.getProcState(pid).getPpid();
-
-				Set<Long> set = map.get(ppid);
-				if (set == null) {
-					set = new HashSet<Long>();
-					map.put(ppid, set);
-				}
-				set.add(pid);
-			} catch (final SigarException e) {
-				logger.log(Level.WARNING, "Failed to get Parent Process for process: " + pid, e);
-			}
-		}
-
-		return map;
-
-	}
-
-	private long findNewChildProcessID(final Set<Long> childrenBefore, final Map<Long, Set<Long>> procTree)
+	private long findNewChildProcessID(final Set<Long> childrenBefore, final ProcessTableSnapshot snapshot)
 			throws USMException {
-		final Set<Long> childrenAfter = procTree.get(this.myPid);
-		if (childrenAfter == null) {
+		if (!snapshot.contains(this.myPid)) {
 			throw new USMException("Could not find container process (" + this.myPid + ") in generated process tree");
 		}
+		final Set<Long> childrenAfter = toSet(snapshot.getChildren(this.myPid));
 		childrenAfter.removeAll(childrenBefore);
 
 		if (childrenAfter.isEmpty()) {
@@ -143,41 +112,12 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 		return newChildProcessID;
 	}
 
-	/**********
-	 * Recursive function that scans the given process tree, rooted at the given parent PID, and add all leaf pids to
-	 * the result list.
-	 *
-	 * @param parentProcessID
-	 *            the root of the tree.
-	 * @param procTree
-	 *            the full process tree.
-	 * @param leafPids
-	 *            the result leaf pids list.
-	 */
-	private void findLeafProcessIDs(final long parentProcessID, final Map<Long, Set<Long>> procTree,
-			final List<Long> leafPids) {
-
-		final Set<Long> pids = procTree.get(parentProcessID);
-
-		if (pids == null || pids.isEmpty()) {
-			leafPids.add(parentProcessID);
-			return;
-		}
-
-		for (final Long pid : pids) {
-			// Recursive call
-			findLeafProcessIDs(pid, procTree, leafPids);
-
-		}
-
-	}
-
 	private void findProcessIDs()
 			throws USMException {
 
-		final long[] allPids = getAllPids();
-		final Map<Long, Set<Long>> procTree = createProcessTree(allPids);
-		this.childProcessID = findNewChildProcessID(childrenBeforeStart, procTree);
+		// a new snapshot: a recent one may have been taken before the service process was launched.
+		final ProcessTableSnapshot snapshot = ProcessTable.getInstance().getSnapshot(0);
+		this.childProcessID = findNewChildProcessID(childrenBeforeStart, snapshot);
 		if (this.childProcessID == 0) {
 			logger.warning("Default foreground process locator was unable to locate a new child process. "
 					+ "The default implementation can only locate foreground processes. "
@@ -187,8 +127,10 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 		} else {
 
 			logger.info("Looking for actual process ID in process tree");
-			final List<Long> resultList = new LinkedList<Long>();
-			findLeafProcessIDs(this.childProcessID, procTree, resultList);
+			final List<Long> resultList = new ArrayList<Long>();
+			for (final long pid : snapshot.getLeafDescendants(this.childProcessID)) {
+				resultList.add(pid);
+			}
 
 			if (resultList.isEmpty()) {
 				logger.warning("Default process locator was unable to locate service processes. "
@@ -237,40 +179,12 @@ public class DefaultProcessLocator extends AbstractUSMEventListener implements P
 
 	}
 
-	private Set<Long> getChildProcesses(final long ppid)
-			throws USMException {
-		final long[] pids = getAllPids();
-		return getChildProcesses(ppid, pids);
-	}
-
-	private long[] getAllPids()
-			throws USMException {
-		long[] pids;
-		try {
-			pids = this.sigar.getProcList();
-		} catch (final SigarException se) {
-			throw new USMException("Failed to look up process IDs. Error was: " + se.getMessage(), se);
-		}
-		return pids;
-	}
-
-	private Set<Long> getChildProcesses(final long ppid, final long[] pids) {
-
-		final Set<Long> children = new HashSet<Long>();
+	private static Set<Long> toSet(final long[] pids) {
+		final Set<Long> set = new HashSet<Long>(pids.length * 2);
 		for (final long pid : pids) {
-			try {
-				if (ppid == this.sigar.getProcState(pid).getPpid()) {
-					children.add(pid);
-				}
-			} catch (final SigarException e) {
-				logger.log(Level.WARNING, "While scanning for child processes of process " + ppid
-						+ ", could not read process state of Process: " + pid + ". Ignoring.", e);
-
-			}
-
+			set.add(pid);
 		}
-		return children;
-
+		return set;
 	}
 
 	@Override
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.monitors.process;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.hyperic.sigar.ProcCred;
+import org.hyperic.sigar.ProcMem;
+import org.hyperic.sigar.ProcState;
+import org.hyperic.sigar.ProcTime;
+import org.hyperic.sigar.Sigar;
+import org.hyperic.sigar.SigarException;
+
+/**
+ * Samples operating system metrics of the service processes, keeping the state of each process between samples.
+ * <p>
+ * The CPU usage is computed from the difference in CPU time since the previous sample of the process, and the process
+ * credentials are read once per process. Values are kept in primitive arrays, metric names (including the pid suffix
+ * used when the service has several processes) are created once per set of processes, and samples are written into
+ * two maps used alternately, so a sample does not allocate new maps or keys while the processes do not change.
+ * Samples of several processes can also be aggregated, instead of reported per process.
+ * <p>
+ * Not thread safe: samples are taken by one thread at a time, and a returned map is only valid until the next sample
+ * but one.
+ *
+ * @since 2.6.0
+ */
+public class ProcessMetricsSampler {
+
+	private static java.util.logging.Logger logger =
+			java.util.logging.Logger.getLogger(ProcessMetricsSampler.class.getName());
+
+	private static final String[] KEYS = {
+		CloudifyConstants.USM_METRIC_PROCESS_CPU_USAGE,
+		CloudifyConstants.USM_METRIC_PROCESS_CPU_KERNEL_TIME,
+		CloudifyConstants.USM_METRIC_PROCESS_TOTAL_CPU_TIME,
+		CloudifyConstants.USM_METRIC_PROCESS_GROUP_ID,
+		CloudifyConstants.USM_METRIC_PROCESS_USER_ID,
+		CloudifyConstants.USM_METRIC_PROCESS_TOTAL_PAGE_FAULTS,
+		CloudifyConstants.USM_METRIC_PROCESS_TOTAL_RESIDENTAL_MEMORY,
+		CloudifyConstants.USM_METRIC_PROCESS_TOTAL_SHARED_MEMORY,
+		CloudifyConstants.USM_METRIC_PROCESS_CPU_TOTAL_VIRTUAL_MEMORY,
+		CloudifyConstants.USM_METRIC_PROCESS_KERNEL_SCHEDULING_PRIORITY,
+		CloudifyConstants.USM_METRIC_PROCESS_ACTIVE_THREADS,
+		CloudifyConstants.USM_METRIC_AVAILABLE_PROCESSORS,
+		CloudifyConstants.USM_METRIC_COMMITTED_VIRTUAL_MEM_SIZE,
+		CloudifyConstants.USM_METRIC_PROCESS_CPU_TIME,
+		CloudifyConstants.USM_METRIC_THREAD_COUNT,
+		CloudifyConstants.USM_METRIC_PEAK_THREAD_COUNT,
+	};
+
+	// metric indices in KEYS.
+	private static final int CPU_USAGE = 0;
+	private static final int CPU_KERNEL_TIME = 1;
+	private static final int TOTAL_CPU_TIME = 2;
+	private static final int GROUP_ID = 3;
+	private static final int USER_ID = 4;
+	private static final int PAGE_FAULTS = 5;
+	private static final int RESIDENT_MEMORY = 6;
+	private static final int SHARED_MEMORY = 7;
+	private static final int VIRTUAL_MEMORY = 8;
+	private static final int SCHEDULING_PRIORITY = 9;
+	private static final int ACTIVE_THREADS = 10;
+	private static final int AVAILABLE_PROCESSORS = 11;
+	private static final int THREAD_COUNT = 14;
+	private static final int PEAK_THREAD_COUNT = 15;
+	private static final int METRICS = KEYS.length;
+
+	// metrics that are reported as integers, all others except the CPU usage are longs.
+	private static final boolean[] INTEGER_METRICS = new boolean[METRICS];
+	// metrics that are summed when processes are aggregated, all others are taken from the first process.
+	private static final boolean[] ADDITIVE_METRICS = new boolean[METRICS];
+	static {
+		INTEGER_METRICS[SCHEDULING_PRIORITY] = true;
+		INTEGER_METRICS[AVAILABLE_PROCESSORS] = true;
+		INTEGER_METRICS[THREAD_COUNT] = true;
+		INTEGER_METRICS[PEAK_THREAD_COUNT] = true;
+		for (final int metric : new int[] { CPU_USAGE, CPU_KERNEL_TIME, TOTAL_CPU_TIME, PAGE_FAULTS, RESIDENT_MEMORY,
+				SHARED_MEMORY, VIRTUAL_MEMORY, ACTIVE_THREADS }) {
+			ADDITIVE_METRICS[metric] = true;
+		}
+	}
+
+	private final Sigar sigar;
+	private final boolean aggregate;
+
+	// per process state, process i at index i.
+	private long[] pids = new long[0];
+	private long[] previousCpuTime = new long[0];
+	private long[] previousSampleTime = new long[0];
+	private boolean[] credentialsRead = new boolean[0];
+	// metric m of process i at index i * METRICS + m. the CPU usage is kept separately, as a double.
+	private long[] values = new long[0];
+	private double[] cpuUsage = new double[0];
+	// metric names, by index in the values array.
+	private String[] keys = new String[0];
+
+	@SuppressWarnings("unchecked")
+	private final Map<String, Number>[] buffers = new Map[] {
+		new HashMap<String, Number>(), new HashMap<String, Number>() };
+	// the processes each buffer was last written for, to clear its keys when they change.
+	private final long[][] bufferPids = new long[][] { null, null };
+	private int currentBuffer;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sigar The SIGAR instance.
+	 * @param aggregate true to sum the metrics of all processes under the plain metric names, false to report each
+	 *        process with its pid appended to the metric names (when there is more than one process).
+	 */
+	public ProcessMetricsSampler(final Sigar sigar, final boolean aggregate) {
+		this.sigar = sigar;
+		this.aggregate = aggregate;
+	}
+
+	/**
+	 * Samples the given processes.
+	 *
+	 * @param processIds The process ids.
+	 * @return the metrics, valid until the next sample but one.
+	 */
+	public Map<String, Number> sample(final List<Long> processIds) {
+		updateProcesses(processIds);
+		final long now = System.currentTimeMillis();
+		for (int i = 0; i < pids.length; i++) {
+			sampleProcess(i, now);
+		}
+
+		currentBuffer = 1 - currentBuffer;
+		final Map<String, Number> map = buffers[currentBuffer];
+		if (bufferPids[currentBuffer] != pids) {
+			map.clear();
+			bufferPids[currentBuffer] = pids;
+		}
+		if (aggregate || pids.length == 1) {
+			emitAggregated(map);
+		} else {
+			for (int i = 0; i < values.length; i++) {
+				put(map, keys[i], i % METRICS, values[i], cpuUsage[i / METRICS]);
+			}
+		}
+		return map;
+	}
+
+	private void emitAggregated(final Map<String, Number> map) {
+		if (pids.length == 0) {
+			return;
+		}
+		double totalCpuUsage = 0;
+		for (final double usage : cpuUsage) {
+			totalCpuUsage += usage;
+		}
+		for (int metric = 0; metric < METRICS; metric++) {
+			long value = values[metric];
+			if (ADDITIVE_METRICS[metric]) {
+				for (int i = 1; i < pids.length; i++) {
+					value += values[i * METRICS + metric];
+				}
+			}
+			put(map, KEYS[metric], metric, value, totalCpuUsage);
+		}
+	}
+
+	private static void put(final Map<String, Number> map, final String key, final int metric, final long value,
+			final double cpuUsage) {
+		if (metric == CPU_USAGE) {
+			map.put(key, cpuUsage);
+		} else if (INTEGER_METRICS[metric]) {
+			map.put(key, (int) value);
+		} else {
+			map.put(key, value);
+		}
+	}
+
+	private void sampleProcess(final int index, final long now) {
+		final long pid = pids[index];
+		final int base = index * METRICS;
+
+		try {
+			final ProcTime time = sigar.getProcTime(pid);
+			values[base + CPU_KERNEL_TIME] = time.getSys();
+			values[base + TOTAL_CPU_TIME] = time.getTotal();
+			if (previousSampleTime[index] > 0 && now > previousSampleTime[index]) {
+				cpuUsage[index] = (double) Math.max(0, time.getTotal() - previousCpuTime[index])
+						/ (now - previousSampleTime[index]);
+			}
+			previousCpuTime[index] = time.getTotal();
+			previousSampleTime[index] = now;
+		} catch (final SigarException e) {
+			logger.log(Level.FINE, "Failed to gather process info from Sigar: " + e.getMessage(), e);
+		}
+
+		if (!credentialsRead[index]) {
+			try {
+				final ProcCred cred = sigar.getProcCred(pid);
+				values[base + GROUP_ID] = cred.getGid();
+				values[base + USER_ID] = cred.getUid();
+				credentialsRead[index] = true;
+			} catch (final SigarException e) {
+				logger.log(Level.FINE, "Failed to gather process info from Sigar: " + e.getMessage(), e);
+			}
+		}
+
+		try {
+			final ProcMem mem = sigar.getProcMem(pid);
+			values[base + PAGE_FAULTS] = mem.getPageFaults();
+			values[base + RESIDENT_MEMORY] = mem.getResident();
+			values[base + SHARED_MEMORY] = mem.getShare();
+			values[base + VIRTUAL_MEMORY] = mem.getSize();
+		} catch (final SigarException e) {
+			logger.log(Level.FINE, "Failed to gather process info from Sigar: " + e.getMessage(), e);
+		}
+
+		try {
+			final ProcState state = sigar.getProcState(pid);
+			values[base + SCHEDULING_PRIORITY] = state.getPriority();
+			values[base + ACTIVE_THREADS] = state.getThreads();
+		} catch (final SigarException e) {
+			logger.log(Level.FINE, "Failed to gather process info from Sigar: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Resets the per process state if the processes changed since the previous sample.
+	 */
+	private void updateProcesses(final List<Long> processIds) {
+		if (processIds.size() == pids.length) {
+			boolean same = true;
+			for (int i = 0; i < pids.length && same; i++) {
+				same = pids[i] == processIds.get(i);
+			}
+			if (same) {
+				return;
+			}
+		}
+
+		final int count = processIds.size();
+		pids = new long[count];
+		for (int i = 0; i < count; i++) {
+			pids[i] = processIds.get(i);
+		}
+		previousCpuTime = new long[count];
+		previousSampleTime = new long[count];
+		credentialsRead = new boolean[count];
+		values = new long[count * METRICS];
+		cpuUsage = new double[count];
+		keys = new String[count * METRICS];
+		for (int i = 0; i < count; i++) {
+			final String postfix = "-" + pids[i];
+			for (int metric = 0; metric < METRICS; metric++) {
+				keys[i * METRICS + metric] = KEYS[metric] + postfix;
+			}
+		}
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Sampling processes: " + Arrays.toString(pids));
+		}
+	}
+}
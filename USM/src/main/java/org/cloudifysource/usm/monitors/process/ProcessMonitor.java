@@ -18,9 +18,8 @@ package org.cloudifysource.usm.monitors.process;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
+import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.usm.UniversalServiceManagerBean;
 import org.cloudifysource.usm.dsl.ServiceConfiguration;
 import org.cloudifysource.usm.monitors.Monitor;
@@ -39,6 +38,7 @@ import com.gigaspaces.internal.sigar.SigarHolder;
 public class ProcessMonitor implements Monitor {
 
 	private final Sigar sigar = SigarHolder.getSigar();
+	private ProcessMetricsSampler sampler;
 
 	@Override
 	public Map<String, Number> getMonitorValues(final UniversalServiceManagerBean usm,
@@ -49,28 +49,19 @@ public class ProcessMonitor implements Monitor {
 
 		if (pids.isEmpty()) {
 			return new HashMap<String, Number>();
-		} else if (pids.size() == 1) {
-			final MonitorData data = new MonitorData(sigar, pids.get(0));
-			final Map<String, Number> map = data.getDataMap();
-			return map;
-		} else {
-			// Collect data for all processes, add PID to key name, and return all in one map.
-			final Map<String, Number> allProcessesMap = new HashMap<String, Number>();
-			for (final Long pid : pids) {
-				final MonitorData data = new MonitorData(sigar, pid);
-				final Map<String, Number> map = data.getDataMap();
-				final Set<Entry<String, Number>> entries = map.entrySet();
-				final String postfix = "-" + pid;
-				for (final Entry<String, Number> entry : entries) {
-					allProcessesMap.put(entry.getKey() + postfix, entry.getValue());
-				}
-
-			}
+		}
+		return getSampler(config).sample(pids);
 
-			return allProcessesMap;
+	}
 
+	private synchronized ProcessMetricsSampler getSampler(final ServiceConfiguration config) {
+		if (this.sampler == null) {
+			// per process metrics (with the pid appended to the metric names) unless configured otherwise.
+			final String aggregate = config.getService().getCustomProperties()
+					.get(CloudifyConstants.CUSTOM_PROPERTY_AGGREGATE_PROCESS_METRICS);
+			this.sampler = new ProcessMetricsSampler(sigar, Boolean.parseBoolean(aggregate));
 		}
-
+		return this.sampler;
 	}
 
 }
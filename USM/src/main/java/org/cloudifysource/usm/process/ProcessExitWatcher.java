@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.process;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.cloudifysource.usm.USMException;
+
+/**
+ * Notifies listeners as soon as watched processes exit, for all the USMs running in this JVM.
+ * <p>
+ * A process launched by this JVM is watched by a thread blocked in {@link Process#waitFor()}. Any other process is
+ * watched by pid: a single thread checks all the watched pids every {@value #DEFAULT_POLL_MILLIS} ms (set with the
+ * {@value #POLL_MILLIS_SYSTEM_PROPERTY} system property), which on Linux only reads /proc/[pid]/stat of the watched
+ * processes. A pid is watched together with the start time of the process, so a reused pid is not taken for the
+ * watched process.
+ *
+ * @since 2.6.0
+ */
+public final class ProcessExitWatcher {
+
+	/**
+	 * System property for the interval between checks of the watched pids, in milliseconds.
+	 */
+	public static final String POLL_MILLIS_SYSTEM_PROPERTY = "org.cloudifysource.usm.process-exit-poll-millis";
+	/**
+	 * Default interval between checks of the watched pids, in milliseconds.
+	 */
+	public static final long DEFAULT_POLL_MILLIS = 200;
+
+	private static final java.util.logging.Logger logger =
+			java.util.logging.Logger.getLogger(ProcessExitWatcher.class.getName());
+
+	private static final ProcessExitWatcher INSTANCE = new ProcessExitWatcher(ProcessTable.getInstance(),
+			Long.getLong(POLL_MILLIS_SYSTEM_PROPERTY, DEFAULT_POLL_MILLIS));
+
+	/**
+	 * Receives process exit notifications.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called once, on a watcher thread, when the watched process exited.
+		 *
+		 * @param pid the process id, 0 if not known.
+		 */
+		void processExited(long pid);
+	}
+
+	/**
+	 * A registration of a listener for the exit of a process.
+	 */
+	public static final class Watch {
+
+		private final long pid;
+		private final long startTime;
+		private final Listener listener;
+		private volatile boolean done;
+
+		private Watch(final long pid, final long startTime, final Listener listener) {
+			this.pid = pid;
+			this.startTime = startTime;
+			this.listener = listener;
+		}
+
+		/**
+		 * Stops watching. The listener is not called after this method returns, unless it is already running.
+		 */
+		public void cancel() {
+			done = true;
+		}
+
+		public boolean isDone() {
+			return done;
+		}
+
+		private void exited() {
+			if (done) {
+				return;
+			}
+			done = true;
+			try {
+				listener.processExited(pid);
+			} catch (final RuntimeException e) {
+				logger.log(Level.WARNING, "A process exit listener failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private final ProcessTable processTable;
+	private final long pollMillis;
+	private final List<Watch> watches = new CopyOnWriteArrayList<Watch>();
+	private final AtomicInteger threadNumber = new AtomicInteger(1);
+	// guarded by watches.
+	private Thread pollingThread;
+
+	ProcessExitWatcher(final ProcessTable processTable, final long pollMillis) {
+		this.processTable = processTable;
+		this.pollMillis = pollMillis;
+	}
+
+	public static ProcessExitWatcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Watches a process launched by this JVM.
+	 *
+	 * @param process the process.
+	 * @param pid the process id, passed to the listener. 0 if not known.
+	 * @param listener called when the process exited.
+	 * @return the watch.
+	 */
+	public Watch watch(final Process process, final long pid, final Listener listener) {
+		final Watch watch = new Watch(pid, 0, listener);
+		final Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					process.waitFor();
+					watch.exited();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "ProcessExitWatcher-" + threadNumber.getAndIncrement());
+		thread.setDaemon(true);
+		thread.start();
+		return watch;
+	}
+
+	/**
+	 * Watches a process by pid. If the process is not alive, the listener is called shortly.
+	 *
+	 * @param pid the process id.
+	 * @param listener called when the process exited.
+	 * @return the watch.
+	 * @throws USMException if the process table could not be read.
+	 */
+	public Watch watch(final long pid, final Listener listener)
+			throws USMException {
+		final ProcessTableSnapshot snapshot = processTable.getSnapshot();
+		final Watch watch = new Watch(pid, Math.max(0, snapshot.getStartTime(pid)), listener);
+		synchronized (watches) {
+			watches.add(watch);
+			if (pollingThread == null) {
+				pollingThread = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						pollLoop();
+					}
+				}, "ProcessExitWatcher");
+				pollingThread.setDaemon(true);
+				pollingThread.start();
+			}
+		}
+		return watch;
+	}
+
+	private void pollLoop() {
+		try {
+			while (true) {
+				for (final Watch watch : watches) {
+					if (!watch.isDone() && !isAlive(watch)) {
+						logger.fine("Process " + watch.pid + " exited");
+						watch.exited();
+					}
+					if (watch.isDone()) {
+						watches.remove(watch);
+					}
+				}
+				synchronized (watches) {
+					if (watches.isEmpty()) {
+						pollingThread = null;
+						return;
+					}
+				}
+				Thread.sleep(pollMillis);
+			}
+		} catch (final InterruptedException e) {
+			synchronized (watches) {
+				pollingThread = null;
+			}
+		}
+	}
+
+	private boolean isAlive(final Watch watch) {
+		try {
+			return processTable.isAlive(watch.pid, watch.startTime);
+		} catch (final USMException e) {
+			// may be a temporary failure, the pid is checked again in the next round.
+			logger.log(Level.FINE, "Failed to check if process " + watch.pid + " is alive: " + e.getMessage(), e);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.process;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.logging.Level;
+
+import org.cloudifysource.usm.USMException;
+import org.hyperic.sigar.ProcState;
+import org.hyperic.sigar.Sigar;
+import org.hyperic.sigar.SigarException;
+
+/**
+ * Takes snapshots of the process table, shared by all the USMs running in this JVM.
+ * <p>
+ * On Linux the table is read from /proc in a single pass. Elsewhere, SIGAR is used. A snapshot is reused by all callers
+ * until it is older than the freshness window, which is set with the
+ * {@value #FRESHNESS_MILLIS_SYSTEM_PROPERTY} system property (default {@value #DEFAULT_FRESHNESS_MILLIS} ms).
+ *
+ * @since 2.6.0
+ */
+public final class ProcessTable {
+
+	/**
+	 * System property for the maximum age of a shared snapshot, in milliseconds.
+	 */
+	public static final String FRESHNESS_MILLIS_SYSTEM_PROPERTY = "org.cloudifysource.usm.process-table-freshness-millis";
+	/**
+	 * Default maximum age of a shared snapshot, in milliseconds.
+	 */
+	public static final long DEFAULT_FRESHNESS_MILLIS = 1000;
+
+	private static final java.util.logging.Logger logger =
+			java.util.logging.Logger.getLogger(ProcessTable.class.getName());
+
+	private static final ProcessTable INSTANCE = new ProcessTable(new File("/proc"),
+			Long.getLong(FRESHNESS_MILLIS_SYSTEM_PROPERTY, DEFAULT_FRESHNESS_MILLIS));
+
+	// SIGAR sometimes does not detect the death of a process, so its instance is recreated periodically.
+	private static final long SIGAR_RECREATION_INTERVAL = 60 * 1000;
+	private static final int STAT_BUFFER_SIZE = 1024;
+	private static final int INITIAL_CAPACITY = 512;
+	// fields of /proc/[pid]/stat, counting from the state, which follows the command name.
+	private static final int STAT_PPID_FIELD = 1;
+	private static final int STAT_START_TIME_FIELD = 19;
+
+	private final File procDirectory;
+	private final long freshnessMillis;
+	private final boolean procAvailable;
+
+	private volatile ProcessTableSnapshot snapshot;
+
+	// guarded by this.
+	private final byte[] statBuffer = new byte[STAT_BUFFER_SIZE];
+	private Sigar sigar;
+	private long sigarCreationTime;
+
+	ProcessTable(final File procDirectory, final long freshnessMillis) {
+		this.procDirectory = procDirectory;
+		this.freshnessMillis = freshnessMillis;
+		this.procAvailable = new File(procDirectory, "self/stat").isFile();
+	}
+
+	public static ProcessTable getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns a snapshot taken within the freshness window, taking a new one if needed.
+	 *
+	 * @return the snapshot.
+	 * @throws USMException if the process table could not be read.
+	 */
+	public ProcessTableSnapshot getSnapshot()
+			throws USMException {
+		return getSnapshot(freshnessMillis);
+	}
+
+	/**
+	 * Returns a snapshot no older than the given age, taking a new one if needed.
+	 *
+	 * @param maxAgeMillis the maximum age of the snapshot. 0 always takes a new snapshot.
+	 * @return the snapshot.
+	 * @throws USMException if the process table could not be read.
+	 */
+	public ProcessTableSnapshot getSnapshot(final long maxAgeMillis)
+			throws USMException {
+		final long requestTime = System.currentTimeMillis();
+		ProcessTableSnapshot current = this.snapshot;
+		if (isFresh(current, requestTime, maxAgeMillis)) {
+			return current;
+		}
+		synchronized (this) {
+			// another caller may have taken a snapshot while we waited.
+			current = this.snapshot;
+			if (current != null && current.getCreationTime() >= requestTime) {
+				return current;
+			}
+			if (isFresh(current, System.currentTimeMillis(), maxAgeMillis)) {
+				return current;
+			}
+			current = procAvailable ? readProc() : readSigar();
+			this.snapshot = current;
+			return current;
+		}
+	}
+
+	/**
+	 * Checks if a single process is alive, without reading the whole process table on Linux.
+	 *
+	 * @param pid the process id.
+	 * @param startTime the start time of the process, as reported by {@link ProcessTableSnapshot#getStartTime(long)},
+	 *        to detect a reused pid, or 0 to ignore.
+	 * @return true if the process exists with the given start time, and is not stopped, a zombie or dead.
+	 * @throws USMException if the process table could not be read.
+	 */
+	public boolean isAlive(final long pid, final long startTime)
+			throws USMException {
+		if (!procAvailable) {
+			final ProcessTableSnapshot current = getSnapshot();
+			return current.isAlive(pid) && (startTime <= 0 || current.getStartTime(pid) == startTime);
+		}
+		final long[] stat = new long[2];
+		final char state;
+		synchronized (this) {
+			state = readStat(new File(new File(procDirectory, Long.toString(pid)), "stat"), stat);
+		}
+		return state != 0 && (startTime <= 0 || stat[1] == startTime) && ProcessTableSnapshot.isAliveState(state);
+	}
+
+	private boolean isFresh(final ProcessTableSnapshot current, final long now, final long maxAgeMillis) {
+		return maxAgeMillis > 0 && current != null && now - current.getCreationTime() < maxAgeMillis;
+	}
+
+	private ProcessTableSnapshot readProc()
+			throws USMException {
+		final long creationTime = System.currentTimeMillis();
+		final String[] names = procDirectory.list();
+		if (names == null) {
+			throw new USMException("Failed to list the process table in " + procDirectory);
+		}
+
+		int count = 0;
+		long[] pids = new long[Math.max(INITIAL_CAPACITY, names.length)];
+		long[] ppids = new long[pids.length];
+		long[] startTimes = new long[pids.length];
+		char[] states = new char[pids.length];
+		final long[] stat = new long[2];
+		for (final String name : names) {
+			final long pid = parsePid(name);
+			if (pid < 0) {
+				continue;
+			}
+			final char state = readStat(new File(new File(procDirectory, name), "stat"), stat);
+			if (state == 0) {
+				// the process ended while the table was read.
+				continue;
+			}
+			if (count == pids.length) {
+				pids = Arrays.copyOf(pids, count * 2);
+				ppids = Arrays.copyOf(ppids, count * 2);
+				startTimes = Arrays.copyOf(startTimes, count * 2);
+				states = Arrays.copyOf(states, count * 2);
+			}
+			pids[count] = pid;
+			ppids[count] = stat[0];
+			startTimes[count] = stat[1];
+			states[count] = state;
+			count++;
+		}
+		return new ProcessTableSnapshot(creationTime, Arrays.copyOf(pids, count), Arrays.copyOf(ppids, count),
+				Arrays.copyOf(startTimes, count), Arrays.copyOf(states, count));
+	}
+
+	private static long parsePid(final String name) {
+		if (name.isEmpty() || name.length() > 10) {
+			return -1;
+		}
+		long pid = 0;
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			pid = pid * 10 + (c - '0');
+		}
+		return pid;
+	}
+
+	/**
+	 * Reads a /proc/[pid]/stat file: "pid (command) state ppid ... starttime ...". The command may contain spaces and
+	 * parentheses, so fields are counted from the last ')'.
+	 *
+	 * @return the process state, or 0 if the file could not be read. The ppid and start time are set in result.
+	 */
+	private char readStat(final File file, final long[] result) {
+		int length = 0;
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			int read;
+			while (length < statBuffer.length && (read = in.read(statBuffer, length, statBuffer.length - length)) > 0) {
+				length += read;
+			}
+		} catch (final IOException e) {
+			return 0;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException e) {
+					// ignore
+				}
+			}
+		}
+
+		int position = length - 1;
+		while (position >= 0 && statBuffer[position] != ')') {
+			position--;
+		}
+		// skip ") "
+		position += 2;
+		if (position <= 1 || position >= length) {
+			return 0;
+		}
+		final char state = (char) statBuffer[position];
+		result[0] = 0;
+		result[1] = 0;
+		int field = 0;
+		long value = 0;
+		for (int i = position + 1; i < length && field <= STAT_START_TIME_FIELD; i++) {
+			final byte b = statBuffer[i];
+			if (b == ' ') {
+				if (field == STAT_PPID_FIELD) {
+					result[0] = value;
+				} else if (field == STAT_START_TIME_FIELD) {
+					result[1] = value;
+				}
+				field++;
+				value = 0;
+			} else if (b >= '0' && b <= '9') {
+				value = value * 10 + (b - '0');
+			}
+		}
+		return state;
+	}
+
+	private ProcessTableSnapshot readSigar()
+			throws USMException {
+		final long creationTime = System.currentTimeMillis();
+		if (sigar == null || sigarCreationTime + SIGAR_RECREATION_INTERVAL < creationTime) {
+			if (sigar != null) {
+				logger.log(Level.FINE, "recycling Sigar instance");
+				sigar.close();
+			}
+			sigar = new Sigar();
+			sigarCreationTime = creationTime;
+		}
+
+		final long[] allPids;
+		try {
+			allPids = sigar.getProcList();
+		} catch (final SigarException e) {
+			throw new USMException("Failed to look up process IDs. Error was: " + e.getMessage(), e);
+		}
+		int count = 0;
+		final long[] pids = new long[allPids.length];
+		final long[] ppids = new long[allPids.length];
+		final long[] startTimes = new long[allPids.length];
+		final char[] states = new char[allPids.length];
+		for (final long pid : allPids) {
+			try {
+				final ProcState procState = sigar.getProcState(pid);
+				pids[count] = pid;
+				ppids[count] = procState.getPpid();
+				states[count] = procState.getState();
+				count++;
+			} catch (final SigarException e) {
+				// the process ended while the table was read.
+				logger.log(Level.FINEST, "Could not read process state of process: " + pid + ". Ignoring.", e);
+			}
+		}
+		return new ProcessTableSnapshot(creationTime, Arrays.copyOf(pids, count), Arrays.copyOf(ppids, count),
+				Arrays.copyOf(startTimes, count), Arrays.copyOf(states, count));
+	}
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.process;
+
+import java.util.Arrays;
+
+/**
+ * An immutable view of the process table at a point in time.
+ * <p>
+ * Processes are kept in primitive arrays sorted by pid, with the children of each process stored contiguously, so
+ * looking up a process takes O(log N) and listing its children takes O(children), regardless of the number of
+ * processes on the host.
+ *
+ * @since 2.6.0
+ */
+public final class ProcessTableSnapshot {
+
+	/**
+	 * Process state of a stopped process, as reported in /proc/[pid]/stat.
+	 */
+	public static final char STATE_STOPPED = 'T';
+	/**
+	 * Process state of a zombie process, as reported in /proc/[pid]/stat.
+	 */
+	public static final char STATE_ZOMBIE = 'Z';
+	/**
+	 * Process state of a dead process, as reported in /proc/[pid]/stat.
+	 */
+	public static final char STATE_DEAD = 'X';
+	/**
+	 * Process state used when the actual state is not known.
+	 */
+	public static final char STATE_UNKNOWN = '?';
+
+	private static final long[] NO_PIDS = new long[0];
+
+	private final long creationTime;
+	private final long[] pids;
+	private final long[] ppids;
+	private final long[] startTimes;
+	private final char[] states;
+	// children of the process at index i are at childIndices[childOffsets[i]] to childIndices[childOffsets[i + 1] - 1].
+	private final int[] childOffsets;
+	private final int[] childIndices;
+
+	/**
+	 * Constructor. The arrays are owned by the snapshot from now on.
+	 *
+	 * @param creationTime the time the process table was read.
+	 * @param pids the process ids.
+	 * @param ppids the parent process id of each process.
+	 * @param startTimes the start time of each process, in an operating system specific unit, or 0 if unknown.
+	 * @param states the state of each process.
+	 */
+	ProcessTableSnapshot(final long creationTime, final long[] pids, final long[] ppids, final long[] startTimes,
+			final char[] states) {
+		this.creationTime = creationTime;
+		final int count = pids.length;
+
+		// sort all arrays by pid.
+		final long[] sortKeys = new long[count];
+		for (int i = 0; i < count; i++) {
+			// pids are non negative ints, so the pid and the original index fit in one long.
+			sortKeys[i] = (pids[i] << Integer.SIZE) | i;
+		}
+		Arrays.sort(sortKeys);
+		this.pids = new long[count];
+		this.ppids = new long[count];
+		this.startTimes = new long[count];
+		this.states = new char[count];
+		for (int i = 0; i < count; i++) {
+			final int original = (int) (sortKeys[i] & 0xFFFFFFFFL);
+			this.pids[i] = pids[original];
+			this.ppids[i] = ppids[original];
+			this.startTimes[i] = startTimes[original];
+			this.states[i] = states[original];
+		}
+
+		// counting sort of the processes by parent index.
+		final int[] parentIndices = new int[count];
+		this.childOffsets = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			parentIndices[i] = indexOf(this.ppids[i]);
+			if (parentIndices[i] >= 0 && parentIndices[i] != i) {
+				childOffsets[parentIndices[i] + 1]++;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			childOffsets[i + 1] += childOffsets[i];
+		}
+		this.childIndices = new int[childOffsets[count]];
+		final int[] next = Arrays.copyOf(childOffsets, count);
+		for (int i = 0; i < count; i++) {
+			if (parentIndices[i] >= 0 && parentIndices[i] != i) {
+				childIndices[next[parentIndices[i]]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * @return the time this snapshot was taken, in milliseconds.
+	 */
+	public long getCreationTime() {
+		return creationTime;
+	}
+
+	/**
+	 * @return the number of processes in the snapshot.
+	 */
+	public int size() {
+		return pids.length;
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return true if the process existed when the snapshot was taken.
+	 */
+	public boolean contains(final long pid) {
+		return indexOf(pid) >= 0;
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return true if the process existed and was not stopped, a zombie or dead when the snapshot was taken.
+	 */
+	public boolean isAlive(final long pid) {
+		final int index = indexOf(pid);
+		if (index < 0) {
+			return false;
+		}
+		return isAliveState(states[index]);
+	}
+
+	static boolean isAliveState(final char state) {
+		final char upperState = Character.toUpperCase(state);
+		return upperState != STATE_STOPPED && upperState != STATE_ZOMBIE && upperState != STATE_DEAD;
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return the parent process id, or -1 if the process does not exist.
+	 */
+	public long getParent(final long pid) {
+		final int index = indexOf(pid);
+		return index < 0 ? -1 : ppids[index];
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return the process start time, in an operating system specific unit, 0 if unknown, or -1 if the process does not
+	 *         exist. Together with the pid, it identifies a process even if its pid was reused.
+	 */
+	public long getStartTime(final long pid) {
+		final int index = indexOf(pid);
+		return index < 0 ? -1 : startTimes[index];
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return the process state, or {@link #STATE_UNKNOWN} if the process does not exist.
+	 */
+	public char getState(final long pid) {
+		final int index = indexOf(pid);
+		return index < 0 ? STATE_UNKNOWN : states[index];
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return the ids of the direct children of the process, ordered by pid.
+	 */
+	public long[] getChildren(final long pid) {
+		final int index = indexOf(pid);
+		if (index < 0) {
+			return NO_PIDS;
+		}
+		final long[] children = new long[childOffsets[index + 1] - childOffsets[index]];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = pids[childIndices[childOffsets[index] + i]];
+		}
+		return children;
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return the ids of all the descendants of the process, parents before their children.
+	 */
+	public long[] getDescendants(final long pid) {
+		return collectDescendants(pid, false);
+	}
+
+	/**
+	 * @param pid a process id.
+	 * @return the ids of the descendants of the process that have no children, or the process itself if it has no
+	 *         children.
+	 */
+	public long[] getLeafDescendants(final long pid) {
+		if (indexOf(pid) < 0) {
+			return NO_PIDS;
+		}
+		return collectDescendants(pid, true);
+	}
+
+	private long[] collectDescendants(final long pid, final boolean leavesOnly) {
+		final int root = indexOf(pid);
+		if (root < 0) {
+			return NO_PIDS;
+		}
+		// breadth first, the queue holds process indices and grows with the subtree. the walk is bounded by the table
+		// size, in case the parent pointers form a cycle (a pid reused while the table was read).
+		int[] queue = new int[Math.max(1, childOffsets[root + 1] - childOffsets[root]) + 1];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = root;
+		long[] result = new long[queue.length];
+		int resultSize = 0;
+		while (head < tail && head <= pids.length) {
+			final int index = queue[head++];
+			final int childCount = childOffsets[index + 1] - childOffsets[index];
+			if (index != root && (!leavesOnly || childCount == 0)) {
+				if (resultSize == result.length) {
+					result = Arrays.copyOf(result, result.length * 2);
+				}
+				result[resultSize++] = pids[index];
+			}
+			if (tail + childCount > queue.length) {
+				queue = Arrays.copyOf(queue, Math.max(queue.length * 2, tail + childCount));
+			}
+			System.arraycopy(childIndices, childOffsets[index], queue, tail, childCount);
+			tail += childCount;
+		}
+		if (leavesOnly && resultSize == 0) {
+			return new long[] { pid };
+		}
+		return Arrays.copyOf(result, resultSize);
+	}
+
+	private int indexOf(final long pid) {
+		final int index = Arrays.binarySearch(pids, pid);
+		return index < 0 ? -1 : index;
+	}
+
+	@Override
+	public String toString() {
+		return "ProcessTableSnapshot{" + "size=" + pids.length + ", creationTime=" + creationTime + '}';
+	}
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Blocks until files are created or modified in watched directories, using the file system notifications of the JVM
+ * (inotify on Linux) instead of polling.
+ * <p>
+ * The notifications API (java.nio.file.WatchService) was added in Java 7, while this code must still run on Java 6,
+ * so it is accessed by reflection. {@link #create()} returns null when it is not available, or when the JVM
+ * implements it by polling anyway, and callers fall back to polling the files themselves.
+ * 
+ * @since 2.6.0
+ */
+public final class DirectoryChangeWatcher {
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(DirectoryChangeWatcher.class
+			.getName());
+
+	private static final String POLLING_WATCH_SERVICE_CLASS_SUFFIX = "PollingWatchService";
+
+	private final Object watchService;
+	private final Object kinds;
+	private final Method toPath;
+	private final Method register;
+	private final Method pollWithTimeout;
+	private final Method poll;
+	private final Method pollEvents;
+	private final Method reset;
+	private final Method close;
+	private final Class<?> closedWatchServiceExceptionClass;
+	private volatile boolean closed;
+
+	private DirectoryChangeWatcher(final Object watchService, final Object kinds, final Class<?> pathClass,
+			final Class<?> watchServiceClass, final Class<?> watchKeyClass,
+			final Class<?> closedWatchServiceExceptionClass)
+			throws NoSuchMethodException {
+		this.watchService = watchService;
+		this.kinds = kinds;
+		this.toPath = File.class.getMethod("toPath");
+		this.register = pathClass.getMethod("register", watchServiceClass, kinds.getClass());
+		this.pollWithTimeout = watchServiceClass.getMethod("poll", long.class, TimeUnit.class);
+		this.poll = watchServiceClass.getMethod("poll");
+		this.close = watchServiceClass.getMethod("close");
+		this.pollEvents = watchKeyClass.getMethod("pollEvents");
+		this.reset = watchKeyClass.getMethod("reset");
+		this.closedWatchServiceExceptionClass = closedWatchServiceExceptionClass;
+	}
+
+	/**
+	 * Creates a watcher of a single directory.
+	 * 
+	 * @param directory The directory to watch.
+	 * @return the watcher, or null if file system notifications are not available in this JVM, or the directory could
+	 *         not be watched.
+	 */
+	public static DirectoryChangeWatcher create(final File directory) {
+		final DirectoryChangeWatcher watcher = create();
+		if (watcher != null && !watcher.register(directory)) {
+			watcher.close();
+			return null;
+		}
+		return watcher;
+	}
+
+	/**
+	 * Creates a watcher that watches no directory yet. Directories are added with {@link #register(File)}.
+	 * 
+	 * @return the watcher, or null if file system notifications are not available in this JVM.
+	 */
+	public static DirectoryChangeWatcher create() {
+		try {
+			final Class<?> pathClass = Class.forName("java.nio.file.Path");
+			final Class<?> watchServiceClass = Class.forName("java.nio.file.WatchService");
+			final Class<?> kindClass = Class.forName("java.nio.file.WatchEvent$Kind");
+			final Class<?> kindsClass = Class.forName("java.nio.file.StandardWatchEventKinds");
+			final Class<?> fileSystemsClass = Class.forName("java.nio.file.FileSystems");
+			final Class<?> fileSystemClass = Class.forName("java.nio.file.FileSystem");
+
+			final Object fileSystem = fileSystemsClass.getMethod("getDefault").invoke(null);
+			final Object watchService = fileSystemClass.getMethod("newWatchService").invoke(fileSystem);
+			if (watchService.getClass().getName().endsWith(POLLING_WATCH_SERVICE_CLASS_SUFFIX)) {
+				// no native notifications on this platform, polling the files directly is cheaper.
+				watchServiceClass.getMethod("close").invoke(watchService);
+				return null;
+			}
+
+			final Object kinds = Array.newInstance(kindClass, 2);
+			Array.set(kinds, 0, kindsClass.getField("ENTRY_CREATE").get(null));
+			Array.set(kinds, 1, kindsClass.getField("ENTRY_MODIFY").get(null));
+
+			return new DirectoryChangeWatcher(watchService, kinds, pathClass, watchServiceClass,
+					Class.forName("java.nio.file.WatchKey"),
+					Class.forName("java.nio.file.ClosedWatchServiceException"));
+		} catch (final ClassNotFoundException e) {
+			logger.fine("File system notifications are not available in this JVM");
+			return null;
+		} catch (final Exception e) {
+			logger.log(Level.WARNING, "Failed to create a file system watch service: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Starts watching a directory for created and modified files. Registering a directory again has no effect.
+	 * 
+	 * @param directory The directory to watch.
+	 * @return true if the directory is watched, false if it could not be watched, for example because it does not
+	 *         exist yet.
+	 */
+	public boolean register(final File directory) {
+		try {
+			register.invoke(toPath.invoke(directory), watchService, kinds);
+			return true;
+		} catch (final Exception e) {
+			final Throwable cause = e instanceof InvocationTargetException ? e.getCause() : e;
+			logger.fine("Failed to watch directory " + directory + " for changes: " + cause);
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for files to be created or modified. All pending notifications are consumed.
+	 * 
+	 * @param timeout the maximum time to wait.
+	 * @param unit the timeout unit.
+	 * @return true if files changed, false if the timeout elapsed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws IllegalStateException if the watcher was closed.
+	 */
+	public boolean await(final long timeout, final TimeUnit unit)
+			throws InterruptedException {
+		Object key = invoke(pollWithTimeout, timeout, unit);
+		if (key == null) {
+			return false;
+		}
+		while (key != null) {
+			invokeOnKey(pollEvents, key);
+			invokeOnKey(reset, key);
+			key = invoke(poll);
+		}
+		return true;
+	}
+
+	/**
+	 * Stops watching. A thread blocked in {@link #await(long, TimeUnit)} gets an {@link IllegalStateException}.
+	 */
+	public void close() {
+		closed = true;
+		try {
+			invoke(close);
+		} catch (final Exception e) {
+			logger.log(Level.FINE, "Failed to close watch service: " + e.getMessage(), e);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	private Object invoke(final Method method, final Object... args)
+			throws InterruptedException {
+		try {
+			return method.invoke(watchService, args);
+		} catch (final InvocationTargetException e) {
+			throw translate(e.getCause());
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void invokeOnKey(final Method method, final Object key)
+			throws InterruptedException {
+		try {
+			method.invoke(key);
+		} catch (final InvocationTargetException e) {
+			throw translate(e.getCause());
+		} catch (final IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private RuntimeException translate(final Throwable cause)
+			throws InterruptedException {
+		if (cause instanceof InterruptedException) {
+			throw (InterruptedException) cause;
+		}
+		if (closedWatchServiceExceptionClass.isInstance(cause)) {
+			return new IllegalStateException("Watcher was closed", cause);
+		}
+		if (cause instanceof RuntimeException) {
+			return (RuntimeException) cause;
+		}
+		return new IllegalStateException(cause);
+	}
+}
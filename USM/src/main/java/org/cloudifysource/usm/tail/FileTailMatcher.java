@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
+
+/**
+ * Looks for lines matching regular expressions in files, for many callers at once, using a single thread per JVM.
+ * <p>
+ * Callers register a file, a pattern and a deadline, and get a {@link Match} that completes when a line of the file
+ * (from its beginning) matches the pattern, or when the deadline passes. The thread reads the files when file system
+ * notifications report changes in their directories, see {@link DirectoryChangeWatcher}, or every second if
+ * notifications are not available. It is started by the first registration and ends when no registrations are left.
+ * When notifications are used, a second thread blocks on them, and wakes the first one up whenever they arrive, so the
+ * first thread waits on a single monitor for both notifications and new registrations.
+ * 
+ * @since 2.6.0
+ */
+public final class FileTailMatcher {
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(FileTailMatcher.class
+			.getName());
+
+	private static final FileTailMatcher INSTANCE = new FileTailMatcher();
+
+	private static final long POLLING_INTERVAL_MILLIS = 1000;
+	// files are still read periodically when notifications are used, in case a notification was missed.
+	private static final long WATCHING_INTERVAL_MILLIS = 5000;
+	private static final int CHUNK_SIZE = 8 * 1024;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final List<Match> matches = new CopyOnWriteArrayList<Match>();
+	private final Object lock = new Object();
+	// guarded by lock.
+	private Thread thread;
+	private DirectoryChangeWatcher watcher;
+	private final Set<File> watchedDirectories = new HashSet<File>();
+	// set when files changed or a match was added since the matcher thread last read the files.
+	private boolean signalled;
+
+	private FileTailMatcher() {
+	}
+
+	public static FileTailMatcher getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts looking for a pattern in a file. The file does not have to exist yet.
+	 * 
+	 * @param file The file to read.
+	 * @param pattern The pattern to find in a line of the file.
+	 * @param timeout The time to look for the pattern.
+	 * @param unit The timeout unit.
+	 * @return the match, which completes with the first matching line, or with null once the timeout elapsed.
+	 */
+	public Match match(final File file, final Pattern pattern, final long timeout, final TimeUnit unit) {
+		final Match match = new Match(file, pattern, System.currentTimeMillis() + unit.toMillis(timeout));
+		synchronized (lock) {
+			watchDirectory(file);
+		}
+		// the match is not visible to the matcher thread yet, so the file can be read here.
+		match.read();
+		if (match.isDone()) {
+			synchronized (lock) {
+				if (thread == null) {
+					closeWatcher();
+				}
+			}
+			return match;
+		}
+		synchronized (lock) {
+			matches.add(match);
+			if (thread == null) {
+				thread = new Thread(new Runnable() {
+
+					@Override
+					public void run() {
+						matchLoop();
+					}
+				}, "FileTailMatcher");
+				thread.setDaemon(true);
+				thread.start();
+			} else {
+				// the new match may have an earlier deadline, or a directory the watcher could not register yet.
+				signalled = true;
+				lock.notifyAll();
+			}
+		}
+		return match;
+	}
+
+	private void watchDirectory(final File file) {
+		if (watcher == null) {
+			watcher = DirectoryChangeWatcher.create();
+			if (watcher != null) {
+				startWatcherThread(watcher);
+			}
+		}
+		final File directory = file.getAbsoluteFile().getParentFile();
+		if (watcher != null && directory != null && !watchedDirectories.contains(directory)
+				&& watcher.register(directory)) {
+			watchedDirectories.add(directory);
+		}
+	}
+
+	private void startWatcherThread(final DirectoryChangeWatcher changeWatcher) {
+		final Thread watcherThread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				watchLoop(changeWatcher);
+			}
+		}, "FileTailMatcher-Watcher");
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+	}
+
+	// runs until the watcher is closed, which happens when the matcher thread ends.
+	private void watchLoop(final DirectoryChangeWatcher changeWatcher) {
+		try {
+			while (true) {
+				if (changeWatcher.await(WATCHING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+					synchronized (lock) {
+						signalled = true;
+						lock.notifyAll();
+					}
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final RuntimeException e) {
+			if (changeWatcher.isClosed()) {
+				return;
+			}
+			logger.log(Level.WARNING, "File tail matcher stopped watching directories: " + e.getMessage(), e);
+		}
+		synchronized (lock) {
+			// the matcher thread creates another watcher, and polls the files if that fails too.
+			changeWatcher.close();
+			if (watcher == changeWatcher) {
+				watcher = null;
+				watchedDirectories.clear();
+			}
+		}
+	}
+
+	private void matchLoop() {
+		try {
+			while (true) {
+				long nextDeadline = Long.MAX_VALUE;
+				boolean changed = false;
+				for (final Match match : matches) {
+					if (!match.isDone()) {
+						changed |= match.read();
+					}
+					if (match.isDone()) {
+						matches.remove(match);
+					} else {
+						nextDeadline = Math.min(nextDeadline, match.deadline);
+					}
+				}
+
+				synchronized (lock) {
+					if (matches.isEmpty()) {
+						closeWatcher();
+						thread = null;
+						return;
+					}
+					for (final Match match : matches) {
+						// directories that did not exist when the match was registered.
+						watchDirectory(match.file);
+					}
+
+					// after a change, come back soon enough to flush a line that was not terminated.
+					final long interval = watcher == null || changed
+							? POLLING_INTERVAL_MILLIS
+							: WATCHING_INTERVAL_MILLIS;
+					final long wait = Math.max(1, Math.min(interval, nextDeadline - System.currentTimeMillis()));
+					if (!signalled) {
+						lock.wait(wait);
+					}
+					signalled = false;
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stopAfterFailure(e);
+		} catch (final RuntimeException e) {
+			logger.log(Level.WARNING, "File tail matcher failed: " + e.getMessage(), e);
+			stopAfterFailure(e);
+		}
+	}
+
+	private void stopAfterFailure(final Exception e) {
+		synchronized (lock) {
+			for (final Match match : matches) {
+				match.fail(e);
+			}
+			matches.clear();
+			closeWatcher();
+			thread = null;
+		}
+	}
+
+	// called with lock held.
+	private void closeWatcher() {
+		if (watcher != null) {
+			watcher.close();
+			watcher = null;
+			watchedDirectories.clear();
+		}
+	}
+
+	/**
+	 * The result of looking for a pattern in a file.
+	 */
+	public static final class Match implements Future<String>, LineHandler {
+
+		private final File file;
+		private final Pattern pattern;
+		private final long deadline;
+		private final long startTime = System.currentTimeMillis();
+		private final RollingFileReader reader;
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private volatile String matchedLine;
+		private volatile long durationMillis = -1;
+		private volatile boolean cancelled;
+		private volatile Exception failure;
+
+		private Match(final File file, final Pattern pattern, final long deadline) {
+			this.file = file;
+			this.pattern = pattern;
+			this.deadline = deadline;
+			this.reader = new RollingFileReader(file, CHARSET, CHUNK_SIZE);
+		}
+
+		// called by one thread at a time. returns true if the file was modified.
+		private boolean read() {
+			if (System.currentTimeMillis() >= deadline) {
+				complete(null);
+				return false;
+			}
+			if (!file.exists()) {
+				return false;
+			}
+			try {
+				if (reader.wasModified()) {
+					reader.readLines(this);
+					return true;
+				}
+				// the process may print the expected text without terminating the line.
+				reader.flushPartialLine(this);
+			} catch (final IOException e) {
+				logger.log(Level.FINE, "Failed to read " + file + ": " + e.getMessage(), e);
+			}
+			return false;
+		}
+
+		@Override
+		public void handleLine(final String fileName, final String line) {
+			if (!isDone() && pattern.matcher(line).find()) {
+				complete(line);
+			}
+		}
+
+		private synchronized void complete(final String line) {
+			if (isDone()) {
+				return;
+			}
+			this.matchedLine = line;
+			this.durationMillis = System.currentTimeMillis() - startTime;
+			done.countDown();
+		}
+
+		private synchronized void fail(final Exception e) {
+			if (isDone()) {
+				return;
+			}
+			this.failure = e;
+			done.countDown();
+		}
+
+		@Override
+		public synchronized boolean cancel(final boolean mayInterruptIfRunning) {
+			if (isDone()) {
+				return false;
+			}
+			cancelled = true;
+			done.countDown();
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isDone() {
+			return done.getCount() == 0;
+		}
+
+		/**
+		 * Waits until the pattern is found, or the deadline passes.
+		 * 
+		 * @return the first line that matched the pattern, or null if it was not found.
+		 * @throws InterruptedException if interrupted while waiting.
+		 * @throws CancellationException if the match was cancelled.
+		 * @throws ExecutionException if the matcher failed.
+		 */
+		@Override
+		public String get()
+				throws InterruptedException, ExecutionException {
+			done.await();
+			return result();
+		}
+
+		@Override
+		public String get(final long timeout, final TimeUnit unit)
+				throws InterruptedException, ExecutionException, TimeoutException {
+			if (!done.await(timeout, unit)) {
+				throw new TimeoutException("Pattern " + pattern + " not found in " + file + " yet");
+			}
+			return result();
+		}
+
+		private String result()
+				throws ExecutionException {
+			if (cancelled) {
+				throw new CancellationException();
+			}
+			if (failure != null) {
+				throw new ExecutionException(failure);
+			}
+			return matchedLine;
+		}
+
+		/**
+		 * @return the time it took to find the pattern, or to give up, in milliseconds. -1 if not done yet.
+		 */
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+
+		public File getFile() {
+			return file;
+		}
+	}
+}
@@ -20,7 +20,6 @@ import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 
 /**
  * tail a RollingFileAppender logs folder without interfering with the RFA rolling action. in-order to avoid locking the
@@ -68,11 +67,9 @@ public class RollingFileAppenderTailer implements Runnable {
 
 	}
 
-	private static final String BREAK_BY_LINES_NO_EMPTY_LINES_REGEX = "\\r?\\n+";
 	private static final int DEFAULT_SAMPLING_DELAY = 2000;
 	private final String logsDirectory;
 	private final String regex;
-	private final Pattern lineSplitPattern = Pattern.compile(BREAK_BY_LINES_NO_EMPTY_LINES_REGEX);
 
 	private final Map<String, RollingFileReader> logFileMap = new HashMap<String, RollingFileReader>();
 
@@ -170,14 +167,12 @@ public class RollingFileAppenderTailer implements Runnable {
 
 		try {
 			getLogFilesMap(logFileMap);
-			for (final String key : logFileMap.keySet()) {
-				if (logFileMap.get(key).wasModified()) {
-					final String lines = logFileMap.get(key).readLines();
-					final String[] seporatedLines = lineSplitPattern.split(lines);
-					for (final String line : seporatedLines) {
-						handler.handleLine(key, line);
-						// logger.info(line);
-					}
+			for (final RollingFileReader reader : logFileMap.values()) {
+				if (reader.wasModified()) {
+					reader.readLines(handler);
+				} else {
+					// nothing was appended since the last run, so a line that is still not terminated is complete.
+					reader.flushPartialLine(handler);
 				}
 			}
 
@@ -19,12 +19,29 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
 
 /**
  * RollingFileReader was created in-order for an application to be able to access a file and tail it without locking it.
  * whenever lines are added to the file, the RFR will open the file for a brief moment, "grab" the new lines added and
  * close the file. the RFR remembers it's file-pointer and when reopening the file, the RFR will read the lines from the
  * point where it left-off.
+ * <p>
+ * New data is read through a {@link FileChannel} in fixed size chunks, into buffers that are allocated once per reader,
+ * so the memory used does not depend on how much data was written since the last read. Bytes are decoded
+ * incrementally (a multi-byte character may span two chunks), and complete lines are passed to a {@link LineHandler}
+ * as they are found. A line that was not terminated yet is kept until the rest of it is read, or until
+ * {@link #flushPartialLine(LineHandler)} is called.
+ * <p>
+ * The file is considered rolled if it became shorter than the read position, or if its first bytes changed.
  * 
  * @author adaml
  */
@@ -32,6 +49,12 @@ public class RollingFileReader {
 
 	private static final int TIMEOUT_BETWEEN_RETRIES = 1000;
 	private static final int DEFAULT_NUMBER_OF_RETRIES = 5;
+	private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
+	// number of bytes from the start of the file used to identify it.
+	private static final int HEAD_SIZE = 64;
+	private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
+
 	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(RollingFileReader.class
 			.getName());
 
@@ -43,16 +66,43 @@ public class RollingFileReader {
 	private int retryCounter;
 	private long fileLength;
 
+	private final CharsetDecoder decoder;
+	// holds bytes read from the file that were not decoded yet.
+	private final ByteBuffer byteBuffer;
+	private final CharBuffer charBuffer;
+	private final StringBuilder partialLine = new StringBuilder();
+
+	private final byte[] head = new byte[HEAD_SIZE];
+	private final byte[] currentHead = new byte[HEAD_SIZE];
+	private int headLength;
+	private final ByteBuffer headBuffer = ByteBuffer.allocate(HEAD_SIZE);
+
 	/**
-	 * Constructor.
+	 * Constructor. The file is decoded as UTF-8.
 	 * 
 	 * @param file The file to read
 	 */
 	public RollingFileReader(final File file) {
+		this(file, DEFAULT_CHARSET, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param file The file to read
+	 * @param charset The file charset.
+	 * @param chunkSize The maximum number of bytes read from the file at once.
+	 */
+	public RollingFileReader(final File file, final Charset charset, final int chunkSize) {
 		this.lastModified = 0;
 		this.file = file;
 		this.fileLength = file.length();
 		this.exists = true;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.byteBuffer = ByteBuffer.allocateDirect(chunkSize);
+		this.charBuffer = CharBuffer.allocate(chunkSize);
 	}
 
 	/**
@@ -74,10 +124,10 @@ public class RollingFileReader {
 	 * note that the file is being closed in-order to enable the RFA to properly roll the file without having lock
 	 * issues.
 	 * 
-	 * @return new lines added to the log file.
+	 * @param handler Receives the new lines, without line terminators. Empty lines are skipped.
 	 * @throws IOException Indicates the lines were not read because of an IO exception
 	 */
-	public String readLines()
+	public void readLines(final LineHandler handler)
 			throws IOException {
 
 		RandomAccessFile randomAccessFile = null;
@@ -85,33 +135,46 @@ public class RollingFileReader {
 		try {
 
 			randomAccessFile = new RandomAccessFile(this.file, "r");
+			final FileChannel channel = randomAccessFile.getChannel();
+			final long size = channel.size();
 
-			if (this.filePointer > randomAccessFile.length()) {
-				// the file must have been rolled. Start form the beginning of the new file.
+			if (wasRolled(channel, size)) {
+				// Start form the beginning of the new file.
+				logger.fine("File " + file.getName() + " was rolled, reading it from the beginning");
+				flushPartialLine(handler);
+				this.decoder.reset();
+				this.byteBuffer.clear();
 				this.filePointer = 0;
+				this.headLength = 0;
 			}
 
-			// set the file pointer in the new RandomFileAccess.
-			randomAccessFile.seek(filePointer);
+			channel.position(this.filePointer);
+			long remaining = size - this.filePointer;
+			while (remaining > 0) {
+				// the buffer may still hold the first bytes of a character that was split between chunks.
+				this.byteBuffer.limit(this.byteBuffer.position()
+						+ (int) Math.min(this.byteBuffer.remaining(), remaining));
+				final int read = channel.read(this.byteBuffer);
+				if (read <= 0) {
+					break;
+				}
+				this.filePointer += read;
+				remaining -= read;
 
-			// allocate buffer size.
-			final byte[] buffer = new byte[(int) randomAccessFile.length() - (int) this.filePointer];
-
-			// read all new data into the buffer.
-			randomAccessFile.read(buffer);
-
-			// save the last filePointer location before closing the file.
-			this.filePointer = randomAccessFile.length();
+				this.byteBuffer.flip();
+				decode(handler);
+				this.byteBuffer.compact();
+			}
 
-			randomAccessFile.close();
+			if (this.headLength < HEAD_SIZE && size > this.headLength) {
+				this.headLength = readHead(channel, size, head);
+			}
 
 			this.lastModified = this.file.lastModified();
 
 			retryCounter = 0;
 
-			this.fileLength = file.length();
-
-			return new String(buffer);
+			this.fileLength = size;
 		} catch (final FileNotFoundException e) {
 			// in-case we try to access the file at the exact time it is being rolled.
 			retryCounter++;
@@ -119,15 +182,16 @@ public class RollingFileReader {
 				logger.warning("In RollingFileReader: file not found." + DEFAULT_NUMBER_OF_RETRIES
 						+ " Retries failed.");
 				this.exists = false;
-				return "";
+				return;
 			}
 			try {
 				logger.warning("file not found: " + file.getName() + ". Retring attempt #" + retryCounter);
 				Thread.sleep(TIMEOUT_BETWEEN_RETRIES);
 			} catch (final InterruptedException e1) {
-				e1.printStackTrace();
+				Thread.currentThread().interrupt();
+				return;
 			}
-			return readLines();
+			readLines(handler);
 		} finally {
 			if (randomAccessFile != null) {
 				randomAccessFile.close();
@@ -136,6 +200,93 @@ public class RollingFileReader {
 
 	}
 
+	/**
+	 * Passes the last line read to the handler, even though it was not terminated yet.
+	 * 
+	 * @param handler Receives the line, if there is one.
+	 */
+	public void flushPartialLine(final LineHandler handler) {
+		if (partialLine.length() > 0) {
+			handleLine(handler);
+		}
+	}
+
+	private boolean wasRolled(final FileChannel channel, final long size)
+			throws IOException {
+		if (size < this.filePointer) {
+			return true;
+		}
+		if (this.headLength == 0) {
+			return false;
+		}
+		if (readHead(channel, Math.min(size, this.headLength), currentHead) != this.headLength) {
+			return true;
+		}
+		for (int i = 0; i < this.headLength; i++) {
+			if (currentHead[i] != head[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int readHead(final FileChannel channel, final long maxLength, final byte[] target)
+			throws IOException {
+		headBuffer.clear();
+		headBuffer.limit((int) Math.min(target.length, maxLength));
+		int total = 0;
+		while (headBuffer.hasRemaining()) {
+			final int read = channel.read(headBuffer, total);
+			if (read <= 0) {
+				break;
+			}
+			total += read;
+		}
+		headBuffer.flip();
+		headBuffer.get(target, 0, total);
+		return total;
+	}
+
+	private void decode(final LineHandler handler) {
+		CoderResult result;
+		do {
+			this.charBuffer.clear();
+			result = this.decoder.decode(this.byteBuffer, this.charBuffer, false);
+			this.charBuffer.flip();
+			splitLines(handler);
+		} while (result.isOverflow());
+	}
+
+	private void splitLines(final LineHandler handler) {
+		final char[] chars = this.charBuffer.array();
+		final int end = this.charBuffer.limit();
+		int lineStart = this.charBuffer.position();
+		for (int i = lineStart; i < end; i++) {
+			if (chars[i] == '\n') {
+				partialLine.append(chars, lineStart, i - lineStart);
+				handleLine(handler);
+				lineStart = i + 1;
+			}
+		}
+		partialLine.append(chars, lineStart, end - lineStart);
+		if (partialLine.length() >= MAX_LINE_LENGTH) {
+			// do not buffer a never ending line.
+			handleLine(handler);
+		}
+		this.charBuffer.position(end);
+	}
+
+	private void handleLine(final LineHandler handler) {
+		int length = partialLine.length();
+		if (length > 0 && partialLine.charAt(length - 1) == '\r') {
+			length--;
+		}
+		if (length > 0) {
+			handler.handleLine(file.getName(), partialLine.substring(0, length));
+		}
+		partialLine.setLength(0);
+	}
+
 	/**
 	 * returns false if the file has been removed from the system and was not recreated after a certain time period.
 	 * 
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a {@link RollingFileAppenderTailer} whenever files change in the tailed directory, as reported by a
+ * {@link DirectoryChangeWatcher}, so new lines are handled as soon as they are written.
+ * <p>
+ * If no change is reported for a while, the tailer still runs, as a safety net against lost notifications: after a
+ * change, once the polling interval elapses (which also flushes lines that were not terminated), and after that once
+ * every idle interval.
+ * 
+ * @since 2.6.0
+ */
+public class WatchingTailerTask implements Runnable {
+
+	private static java.util.logging.Logger logger = java.util.logging.Logger.getLogger(WatchingTailerTask.class
+			.getName());
+
+	private static final long DEFAULT_IDLE_INTERVAL_MILLIS = 60 * 1000;
+
+	private final RollingFileAppenderTailer tailer;
+	private final DirectoryChangeWatcher watcher;
+	private final long pollingIntervalMillis;
+	private final long idleIntervalMillis;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param tailer The tailer to run.
+	 * @param watcher The watcher of the tailed directory. Closed when this task ends.
+	 * @param pollingIntervalMillis The interval of the polling tailer this task replaces.
+	 */
+	public WatchingTailerTask(final RollingFileAppenderTailer tailer, final DirectoryChangeWatcher watcher,
+			final long pollingIntervalMillis) {
+		this.tailer = tailer;
+		this.watcher = watcher;
+		this.pollingIntervalMillis = pollingIntervalMillis;
+		this.idleIntervalMillis = Math.max(pollingIntervalMillis, DEFAULT_IDLE_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * Runs until interrupted or until the watcher is closed.
+	 */
+	@Override
+	public void run() {
+		boolean changed = true;
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				changed = watcher.await(changed ? pollingIntervalMillis : idleIntervalMillis, TimeUnit.MILLISECONDS);
+				tailer.run();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final IllegalStateException e) {
+			if (!watcher.isClosed()) {
+				logger.warning("Tailing by file system notifications failed: " + e.getMessage());
+			}
+		} finally {
+			watcher.close();
+			logger.fine("Tailer task ended");
+		}
+	}
+}
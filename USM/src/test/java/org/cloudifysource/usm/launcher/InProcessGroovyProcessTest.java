@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.launcher;
+
+import groovy.lang.Script;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link InProcessGroovyProcess} and {@link GroovyScriptCache}.
+ */
+public class InProcessGroovyProcessTest {
+
+	private File dir;
+	private GroovyScriptCache cache;
+
+	@Before
+	public void before() throws IOException {
+		dir = File.createTempFile("InProcessGroovyProcessTest", "");
+		dir.delete();
+		dir.mkdirs();
+		cache = new GroovyScriptCache(getClass().getClassLoader(), Collections.<File>emptyList(), 2);
+	}
+
+	@After
+	public void after() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private InProcessGroovyProcess start(final String name, final String script, final boolean redirectErrorStream,
+			final String... args) throws IOException {
+		final File file = new File(dir, name);
+		FileUtils.writeStringToFile(file, script);
+		return new InProcessGroovyProcess(file, script.getBytes(), args, cache, null, redirectErrorStream).start();
+	}
+
+	@Test
+	public void testOutputAndArgs() throws Exception {
+		final Process process = start("hello.groovy", "println 'hello ' + args[0]\nSystem.err.println 'oops'", false,
+				"world");
+		Assert.assertEquals("hello world" + System.getProperty("line.separator"),
+				IOUtils.toString(process.getInputStream()));
+		Assert.assertEquals("oops" + System.getProperty("line.separator"), IOUtils.toString(process.getErrorStream()));
+		Assert.assertEquals(0, process.waitFor());
+		Assert.assertEquals(0, process.exitValue());
+	}
+
+	@Test
+	public void testUnreadOutputIsCapped() throws Exception {
+		// 2 MB of output, nobody reading until the script ended: only the latest 1 MB is kept
+		final Process process = start("chatty.groovy",
+				"def line = 'x' * 1023\n2048.times { print line + '\\n' }\nprint 'last'", false);
+		Assert.assertEquals(0, process.waitFor());
+		final String output = IOUtils.toString(process.getInputStream());
+		Assert.assertEquals(1024 * 1024, output.length());
+		Assert.assertTrue(output.endsWith("x\nlast"));
+	}
+
+	@Test
+	public void testFailure() throws Exception {
+		final Process process = start("fail.groovy", "throw new IllegalStateException('broken')", true);
+		final String output = IOUtils.toString(process.getInputStream());
+		Assert.assertEquals(1, process.waitFor());
+		Assert.assertTrue(output, output.contains("Caught: java.lang.IllegalStateException: broken"));
+	}
+
+	@Test
+	public void testCompilationFailure() throws Exception {
+		final Process process = start("broken.groovy", "def x = {", true);
+		final String output = IOUtils.toString(process.getInputStream());
+		Assert.assertEquals(1, process.waitFor());
+		Assert.assertTrue(output, output.contains(new File(dir, "broken.groovy").getAbsolutePath()));
+	}
+
+	@Test
+	public void testScriptClassCachedByContent() throws Exception {
+		final File first = new File(dir, "first.groovy");
+		final File second = new File(dir, "second.groovy");
+		FileUtils.writeStringToFile(first, "1");
+		FileUtils.writeStringToFile(second, "1");
+
+		final Class<?> firstClass = cache.getScriptClass(first, "1".getBytes());
+		Assert.assertSame(firstClass, cache.getScriptClass(second, "1".getBytes()));
+		Assert.assertEquals(1, cache.size());
+
+		FileUtils.writeStringToFile(first, "2");
+		Assert.assertNotSame(firstClass, cache.getScriptClass(first, "2".getBytes()));
+
+		FileUtils.writeStringToFile(first, "3");
+		cache.getScriptClass(first, "3".getBytes());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testScriptClassCompiledFromContent() throws Exception {
+		final File script = new File(dir, "changed.groovy");
+		FileUtils.writeStringToFile(script, "return 2");
+
+		final Class<?> scriptClass = cache.getScriptClass(script, "return 1".getBytes());
+		Assert.assertEquals(1, ((Script) scriptClass.newInstance()).run());
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.process;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ProcessExitWatcher}.
+ */
+public class ProcessExitWatcherTest {
+
+	private final File proc = new File("/proc");
+	private final CountDownLatch exited = new CountDownLatch(1);
+	private final AtomicLong exitedPid = new AtomicLong(-1);
+	private final ProcessExitWatcher.Listener listener = new ProcessExitWatcher.Listener() {
+
+		@Override
+		public void processExited(final long pid) {
+			exitedPid.set(pid);
+			exited.countDown();
+		}
+	};
+	private Process process;
+
+	@Before
+	public void before() throws Exception {
+		Assume.assumeTrue(new File(proc, "self/stat").isFile());
+		process = new ProcessBuilder("sleep", "60").start();
+	}
+
+	@After
+	public void after() {
+		if (process != null) {
+			process.destroy();
+		}
+	}
+
+	@Test
+	public void testWatchByPid() throws Exception {
+		final ProcessTable table = new ProcessTable(proc, 0);
+		final long myPid = Long.parseLong(new File(proc, "self").getCanonicalFile().getName());
+		final long[] children = table.getSnapshot().getChildren(myPid);
+		Assert.assertEquals(1, children.length);
+
+		final ProcessExitWatcher watcher = new ProcessExitWatcher(table, 50);
+		watcher.watch(children[0], listener);
+		Assert.assertFalse(exited.await(200, TimeUnit.MILLISECONDS));
+
+		process.destroy();
+		process.waitFor();
+		Assert.assertTrue(exited.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(children[0], exitedPid.get());
+	}
+
+	@Test
+	public void testWatchProcess() throws Exception {
+		final ProcessExitWatcher watcher = new ProcessExitWatcher(new ProcessTable(proc, 0), 50);
+		watcher.watch(process, 1, listener);
+		Assert.assertFalse(exited.await(200, TimeUnit.MILLISECONDS));
+
+		process.destroy();
+		Assert.assertTrue(exited.await(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, exitedPid.get());
+	}
+
+	@Test
+	public void testCancelledWatch() throws Exception {
+		final ProcessExitWatcher watcher = new ProcessExitWatcher(new ProcessTable(proc, 0), 50);
+		watcher.watch(process, 1, listener).cancel();
+
+		process.destroy();
+		Assert.assertFalse(exited.await(500, TimeUnit.MILLISECONDS));
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.process;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ProcessTableSnapshot} and {@link ProcessTable}.
+ */
+public class ProcessTableSnapshotTest {
+
+	// 1 -> 10 -> (11 -> 13, 12), 1 -> 20 (zombie), unordered on purpose.
+	private final ProcessTableSnapshot snapshot = new ProcessTableSnapshot(0,
+			new long[] { 12, 1, 20, 13, 10, 11 },
+			new long[] { 10, 0, 1, 11, 1, 10 },
+			new long[] { 5, 1, 3, 6, 2, 4 },
+			new char[] { 'S', 'S', 'Z', 'R', 'S', 'S' });
+
+	@Test
+	public void testChildren() {
+		Assert.assertArrayEquals(new long[] { 10, 20 }, snapshot.getChildren(1));
+		Assert.assertArrayEquals(new long[] { 11, 12 }, snapshot.getChildren(10));
+		Assert.assertArrayEquals(new long[0], snapshot.getChildren(13));
+		Assert.assertArrayEquals(new long[0], snapshot.getChildren(99));
+	}
+
+	@Test
+	public void testDescendants() {
+		Assert.assertArrayEquals(new long[] { 11, 12, 13 }, snapshot.getDescendants(10));
+		Assert.assertArrayEquals(new long[] { 12, 13 }, snapshot.getLeafDescendants(10));
+		Assert.assertArrayEquals(new long[] { 13 }, snapshot.getLeafDescendants(13));
+		Assert.assertArrayEquals(new long[0], snapshot.getLeafDescendants(99));
+	}
+
+	@Test
+	public void testProcessDetails() {
+		Assert.assertEquals(11, snapshot.getParent(13));
+		Assert.assertEquals(6, snapshot.getStartTime(13));
+		Assert.assertEquals(-1, snapshot.getParent(99));
+		Assert.assertTrue(snapshot.isAlive(13));
+		Assert.assertFalse(snapshot.isAlive(20));
+		Assert.assertFalse(snapshot.isAlive(99));
+		Assert.assertEquals(6, snapshot.size());
+	}
+
+	@Test
+	public void testReadProc() throws Exception {
+		final File proc = new File("/proc");
+		Assume.assumeTrue(new File(proc, "self/stat").isFile());
+		final long myPid = getMyPid(proc);
+
+		final ProcessTable table = new ProcessTable(proc, 60 * 1000);
+		final ProcessTableSnapshot current = table.getSnapshot();
+		Assert.assertTrue(current.isAlive(myPid));
+		Assert.assertTrue(current.getStartTime(myPid) > 0);
+		final long parent = current.getParent(myPid);
+		boolean found = false;
+		for (final long child : current.getChildren(parent)) {
+			found |= child == myPid;
+		}
+		Assert.assertTrue(found);
+
+		// shared within the freshness window.
+		Assert.assertSame(current, table.getSnapshot());
+		Assert.assertNotSame(current, table.getSnapshot(0));
+	}
+
+	private static long getMyPid(final File proc) throws IOException {
+		return Long.parseLong(new File(proc, "self").getCanonicalFile().getName());
+	}
+}
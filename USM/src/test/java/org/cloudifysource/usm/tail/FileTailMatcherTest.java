@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FileTailMatcher}.
+ */
+public class FileTailMatcherTest {
+
+	private File file;
+
+	@Before
+	public void before() throws IOException {
+		file = File.createTempFile("fileTailMatcherTest", ".log");
+	}
+
+	@After
+	public void after() {
+		file.delete();
+	}
+
+	@Test
+	public void testMatchInExistingContent() throws Exception {
+		append("starting\nserver started on port 8080\n");
+		final FileTailMatcher.Match match =
+				FileTailMatcher.getInstance().match(file, Pattern.compile("started on port \\d+"), 5, TimeUnit.SECONDS);
+		Assert.assertTrue(match.isDone());
+		Assert.assertEquals("server started on port 8080", match.get());
+	}
+
+	@Test
+	public void testMatchInAppendedContent() throws Exception {
+		append("starting\n");
+		final FileTailMatcher.Match match =
+				FileTailMatcher.getInstance().match(file, Pattern.compile("started"), 10, TimeUnit.SECONDS);
+		Assert.assertFalse(match.isDone());
+		append("still starting\nserver started");
+		Assert.assertEquals("server started", match.get(10, TimeUnit.SECONDS));
+		Assert.assertTrue(match.getDurationMillis() >= 0);
+	}
+
+	@Test
+	public void testMatchInFileCreatedLater() throws Exception {
+		Assert.assertTrue(file.delete());
+		final FileTailMatcher.Match match =
+				FileTailMatcher.getInstance().match(file, Pattern.compile("ready"), 10, TimeUnit.SECONDS);
+		append("ready\n");
+		Assert.assertEquals("ready", match.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testNoMatchBeforeDeadline() throws Exception {
+		append("starting\n");
+		final FileTailMatcher.Match match =
+				FileTailMatcher.getInstance().match(file, Pattern.compile("started"), 1, TimeUnit.SECONDS);
+		Assert.assertNull(match.get(10, TimeUnit.SECONDS));
+		Assert.assertTrue(match.getDurationMillis() >= TimeUnit.SECONDS.toMillis(1));
+	}
+
+	@Test
+	public void testNewMatchDoesNotWaitForRunningOnes() throws Exception {
+		append("starting\n");
+		final FileTailMatcher.Match running =
+				FileTailMatcher.getInstance().match(file, Pattern.compile("never"), 60, TimeUnit.SECONDS);
+		try {
+			// let the matcher thread go idle on the running match.
+			Thread.sleep(500);
+			final long start = System.currentTimeMillis();
+			final FileTailMatcher.Match match =
+					FileTailMatcher.getInstance().match(file, Pattern.compile("started"), 500, TimeUnit.MILLISECONDS);
+			Assert.assertNull(match.get(10, TimeUnit.SECONDS));
+			Assert.assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(2));
+		} finally {
+			running.cancel(false);
+		}
+	}
+
+	private void append(final String text) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(text.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+}
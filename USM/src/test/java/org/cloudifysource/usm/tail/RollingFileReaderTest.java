@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.usm.tail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudifysource.usm.tail.RollingFileAppenderTailer.LineHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RollingFileReader}.
+ */
+public class RollingFileReaderTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int SMALL_CHUNK_SIZE = 7;
+
+	private File file;
+	private final List<String> lines = new ArrayList<String>();
+	private final LineHandler handler = new LineHandler() {
+
+		@Override
+		public void handleLine(final String fileName, final String line) {
+			lines.add(line);
+		}
+	};
+
+	@Before
+	public void before() throws IOException {
+		file = File.createTempFile("rollingFileReaderTest", ".log");
+	}
+
+	@After
+	public void after() {
+		file.delete();
+	}
+
+	@Test
+	public void testLinesSpanningChunks() throws IOException {
+		final RollingFileReader reader = new RollingFileReader(file, UTF8, SMALL_CHUNK_SIZE);
+		append("first line\r\n\nsecond line that is longer than a chunk\n", false);
+		reader.readLines(handler);
+		Assert.assertEquals(Arrays.asList("first line", "second line that is longer than a chunk"), lines);
+	}
+
+	@Test
+	public void testMultiByteCharactersSpanningChunks() throws IOException {
+		final RollingFileReader reader = new RollingFileReader(file, UTF8, SMALL_CHUNK_SIZE);
+		final String line = "\u05e9\u05dc\u05d5\u05dd \u4e16\u754c \u00e9\u00e8";
+		append(line + "\n" + line + "\n", false);
+		reader.readLines(handler);
+		Assert.assertEquals(Arrays.asList(line, line), lines);
+	}
+
+	@Test
+	public void testPartialLineIsKeptUntilTerminated() throws IOException {
+		final RollingFileReader reader = new RollingFileReader(file, UTF8, SMALL_CHUNK_SIZE);
+		append("incomp", false);
+		reader.readLines(handler);
+		Assert.assertTrue(lines.isEmpty());
+
+		append("lete\nnext", false);
+		reader.readLines(handler);
+		Assert.assertEquals(Arrays.asList("incomplete"), lines);
+
+		reader.flushPartialLine(handler);
+		Assert.assertEquals(Arrays.asList("incomplete", "next"), lines);
+	}
+
+	@Test
+	public void testRolledFileIsReadFromTheBeginning() throws IOException {
+		final RollingFileReader reader = new RollingFileReader(file, UTF8, SMALL_CHUNK_SIZE);
+		append("old 1\nold 2\n", false);
+		reader.readLines(handler);
+
+		// the new file is longer than the old one, so only its content tells it was rolled.
+		append("new 1\nnew 2\nnew 3\n", true);
+		Assert.assertTrue(reader.wasModified());
+		reader.readLines(handler);
+		Assert.assertEquals(Arrays.asList("old 1", "old 2", "new 1", "new 2", "new 3"), lines);
+	}
+
+	@Test
+	public void testTruncatedFileIsReadFromTheBeginning() throws IOException {
+		final RollingFileReader reader = new RollingFileReader(file, UTF8, SMALL_CHUNK_SIZE);
+		append("a long line before rolling\n", false);
+		reader.readLines(handler);
+
+		append("short\n", true);
+		reader.readLines(handler);
+		Assert.assertEquals(Arrays.asList("a long line before rolling", "short"), lines);
+	}
+
+	private void append(final String text, final boolean truncate) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file, !truncate);
+		try {
+			out.write(text.getBytes(UTF8));
+		} finally {
+			out.close();
+		}
+	}
+}
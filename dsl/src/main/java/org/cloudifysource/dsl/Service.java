@@ -598,6 +598,17 @@ public class Service {
 						+ " property must be a long value", e);
 			}
 		}
+		if (this.customProperties.containsKey(CloudifyConstants.CUSTOM_PROPERTY_ATTRIBUTES_NEAR_CACHE_SIZE)) {
+			try {
+				Integer.parseInt(this.customProperties
+						.get(CloudifyConstants.CUSTOM_PROPERTY_ATTRIBUTES_NEAR_CACHE_SIZE));
+
+			} catch (final NumberFormatException e) {
+				throw new DSLValidationException("The "
+						+ CloudifyConstants.CUSTOM_PROPERTY_ATTRIBUTES_NEAR_CACHE_SIZE
+						+ " property must be an integer value", e);
+			}
+		}
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -40,6 +40,7 @@ public final class ServiceContextFactory {
 			.getLogger(ServiceContextFactory.class.getName());
 	private static Admin admin = null;
 	private static ServiceContext context = null;
+	private static final ThreadLocal<ServiceContext> THREAD_CONTEXT = new ThreadLocal<ServiceContext>();
 
 	/*****
 	 * Private constructor to avoid initialization.
@@ -49,12 +50,18 @@ public final class ServiceContextFactory {
 	}
 
 	/****
-	 * NEVER USE THIS INSIDE THE GSC. Should only be used by external scripts.
+	 * NEVER USE THIS INSIDE THE GSC. Should only be used by external scripts, or by scripts the USM runs in-process,
+	 * which get the context set with {@link #setThreadServiceContext(ServiceContext)}.
 	 *
 	 * @return A newly created service context.
 	 */
 	public static synchronized ServiceContext getServiceContext() {
 
+		final ServiceContext threadContext = THREAD_CONTEXT.get();
+		if (threadContext != null) {
+			return threadContext;
+		}
+
 		if (context == null) {
 
 			// TODO - this code does not support setting a specific service file
@@ -90,6 +97,21 @@ public final class ServiceContextFactory {
 		return context;
 	}
 
+	/****
+	 * Sets the service context returned to the current thread. Used by the USM when it
+	 * runs a script in-process, where the environment variables this factory relies on are not set.
+	 *
+	 * @param threadContext
+	 *            the service context, or null to clear it.
+	 */
+	public static void setThreadServiceContext(final ServiceContext threadContext) {
+		if (threadContext == null) {
+			THREAD_CONTEXT.remove();
+		} else {
+			THREAD_CONTEXT.set(threadContext);
+		}
+	}
+
 	private static synchronized Admin getAdmin() {
 		if (admin != null) {
 			return admin;
@@ -15,10 +15,17 @@
  *******************************************************************************/
 package org.cloudifysource.dsl.context.kvstorage;
 
+import groovy.lang.Closure;
 import groovy.lang.GroovyObjectSupport;
 import groovy.lang.MissingPropertyException;
 
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.CloudifyAttributesWriter;
 import org.openspaces.core.GigaSpace;
 
 /**
@@ -63,12 +70,33 @@ public abstract class AbstractAttributesAccessor extends GroovyObjectSupport {
 	private Object put(final String key, final Object value) {
 		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		final AbstractCloudifyAttribute attributeEntry = prepareAttributeTemplate(key);
-		final AbstractCloudifyAttribute previousValue = managementSpace.take(attributeEntry);
 		attributeEntry.setValue(value);
-		managementSpace.write(attributeEntry);
+		final AbstractCloudifyAttribute previousValue = CloudifyAttributesWriter.put(managementSpace, attributeEntry);
+		invalidateNearCache(attributeEntry.getUid());
 		return previousValue != null ? previousValue.getValue() : null;
 	}
 
+	/**********
+	 * Sets several attributes in a single write to the management space.
+	 * @param attributes the attributes to set, mapped by key.
+	 */
+	public void putAll(final Map<String, Object> attributes) {
+		final AbstractCloudifyAttribute[] attributeEntries = new AbstractCloudifyAttribute[attributes.size()];
+		int i = 0;
+		for (final Map.Entry<String, Object> entry : attributes.entrySet()) {
+			if (entry.getKey() == null) {
+				throw new IllegalArgumentException("key must be a string");
+			}
+			final AbstractCloudifyAttribute attributeEntry = prepareAttributeTemplate(entry.getKey());
+			attributeEntry.setValue(entry.getValue());
+			attributeEntries[i++] = attributeEntry;
+		}
+		CloudifyAttributesWriter.putAll(attributesFacade.getManagementSpace(), attributeEntries);
+		for (final AbstractCloudifyAttribute attributeEntry : attributeEntries) {
+			invalidateNearCache(attributeEntry.getUid());
+		}
+	}
+
 	/************
 	 * Groovy getter.
 	 * @param key element key.
@@ -100,6 +128,7 @@ public abstract class AbstractAttributesAccessor extends GroovyObjectSupport {
 		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		final AbstractCloudifyAttribute removeTemplate = prepareAttributeTemplate(key);
 		final AbstractCloudifyAttribute previousValue = managementSpace.take(removeTemplate);
+		invalidateNearCache(removeTemplate.getUid());
 		return previousValue != null ? previousValue.getValue() : null;
 	}
 
@@ -110,6 +139,10 @@ public abstract class AbstractAttributesAccessor extends GroovyObjectSupport {
 		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		final AbstractCloudifyAttribute clearTemplate = prepareAttributeTemplate(null);
 		managementSpace.clear(clearTemplate);
+		final AttributesNearCache nearCache = attributesFacade.getNearCache();
+		if (nearCache != null) {
+			nearCache.invalidateScope(clearTemplate.createScopeUidPrefix());
+		}
 	}
 
 	/*********
@@ -118,8 +151,12 @@ public abstract class AbstractAttributesAccessor extends GroovyObjectSupport {
 	 * @return the element value.
 	 */
 	public Object get(final String key) {
-		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		final AbstractCloudifyAttribute propertyEntry = prepareAttributeTemplate(key);
+		final AttributesNearCache nearCache = attributesFacade.getNearCache();
+		if (nearCache != null) {
+			return nearCache.get(propertyEntry);
+		}
+		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		final AbstractCloudifyAttribute valueEntry = managementSpace.read(propertyEntry);
 		return valueEntry != null ? valueEntry.getValue() : null;
 	}
@@ -130,11 +167,102 @@ public abstract class AbstractAttributesAccessor extends GroovyObjectSupport {
 	 * @return true if the an element with this key exists, false otherwise.
 	 */
 	public boolean containsKey(final String key) {
-		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		final AbstractCloudifyAttribute propertyEntry = prepareAttributeTemplate(key);
+		final AttributesNearCache nearCache = attributesFacade.getNearCache();
+		if (nearCache != null) {
+			return nearCache.containsKey(propertyEntry);
+		}
+		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
 		return managementSpace.count(propertyEntry) > 0;
 	}
 
+	/*********
+	 * Waits for an attribute to be set. Returns immediately if the attribute already exists.
+	 * Waiting does not poll the management space, it is notified when the attribute is written.
+	 * @param key the element key.
+	 * @param timeout the maximum time to wait.
+	 * @param unit the timeout unit.
+	 * @return the element value, or null if the timeout elapsed before the attribute was set.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 */
+	public Object waitFor(final String key, final long timeout, final TimeUnit unit) throws InterruptedException {
+		final AbstractCloudifyAttribute template = prepareAttributeTemplate(key);
+		final AtomicReference<Object> writtenValue = new AtomicReference<Object>();
+		final CountDownLatch written = new CountDownLatch(1);
+		final AttributeChangeListener listener = new AttributeChangeListener() {
+
+			@Override
+			public void attributeChanged(final AbstractCloudifyAttribute attribute, final boolean removed) {
+				if (!removed) {
+					writtenValue.set(attribute.getValue());
+					written.countDown();
+				}
+			}
+		};
+
+		attributesFacade.addKeyListener(template.getUid(), listener);
+		try {
+			// read only after registering, so a value written in between is not missed.
+			final AbstractCloudifyAttribute current = attributesFacade.getManagementSpace().read(template);
+			if (current != null) {
+				return current.getValue();
+			}
+			if (written.await(timeout, unit)) {
+				return writtenValue.get();
+			}
+			return null;
+		} finally {
+			attributesFacade.removeKeyListener(template.getUid(), listener);
+		}
+	}
+
+	/*********
+	 * Waits for an attribute to be set.
+	 * @param key the element key.
+	 * @param timeoutInSeconds the maximum time to wait, in seconds.
+	 * @return the element value, or null if the timeout elapsed before the attribute was set.
+	 * @throws InterruptedException if the thread was interrupted while waiting.
+	 * @see #waitFor(String, long, TimeUnit)
+	 */
+	public Object waitFor(final String key, final long timeoutInSeconds) throws InterruptedException {
+		return waitFor(key, timeoutInSeconds, TimeUnit.SECONDS);
+	}
+
+	/*********
+	 * Registers a closure called whenever an attribute is set or removed. The closure is called with the new
+	 * value, or with null when the attribute is removed, on a notification thread.
+	 * @param key the element key.
+	 * @param closure the closure to call.
+	 * @return the registered listener, to be passed to {@link #removeChangeListener(String, AttributeChangeListener)}.
+	 */
+	public AttributeChangeListener onChange(final String key, final Closure<?> closure) {
+		final AttributeChangeListener listener = new AttributeChangeListener() {
+
+			@Override
+			public void attributeChanged(final AbstractCloudifyAttribute attribute, final boolean removed) {
+				closure.call(removed ? null : attribute.getValue());
+			}
+		};
+		attributesFacade.addKeyListener(prepareAttributeTemplate(key).getUid(), listener);
+		return listener;
+	}
+
+	/*********
+	 * Removes a listener registered with {@link #onChange(String, Closure)}.
+	 * @param key the element key.
+	 * @param listener the listener returned by onChange.
+	 */
+	public void removeChangeListener(final String key, final AttributeChangeListener listener) {
+		attributesFacade.removeKeyListener(prepareAttributeTemplate(key).getUid(), listener);
+	}
+
+	private void invalidateNearCache(final String uid) {
+		final AttributesNearCache nearCache = attributesFacade.getNearCache();
+		if (nearCache != null) {
+			nearCache.invalidate(uid);
+		}
+	}
+
 	private AbstractCloudifyAttribute prepareAttributeTemplate(final String key) {
 		final AbstractCloudifyAttribute propertyAttribute = prepareAttributeTemplate();
 		propertyAttribute.setApplicationName(applicationName);
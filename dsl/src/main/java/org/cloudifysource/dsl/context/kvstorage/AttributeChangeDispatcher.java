@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.ApplicationCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.GlobalCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.InstanceCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.ServiceCloudifyAttribute;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.events.SpaceDataEventListener;
+import org.openspaces.events.notify.SimpleNotifyContainerConfigurer;
+import org.openspaces.events.notify.SimpleNotifyEventListenerContainer;
+import org.springframework.transaction.TransactionStatus;
+
+import com.gigaspaces.events.NotifyActionType;
+import com.j_spaces.core.client.EntryArrivedRemoteEvent;
+
+/**
+ * Registers for notifications on the attributes visible to a service (global attributes and attributes of its
+ * application), and dispatches them to the registered listeners.
+ * A single notify container is registered per attribute scope, and shared by all listeners.
+ * 
+ * @since 2.6.0
+ */
+public class AttributeChangeDispatcher {
+
+	private static final Logger logger = Logger.getLogger(AttributeChangeDispatcher.class.getName());
+
+	private final AttributesFacadeImpl attributesFacade;
+	private final String applicationName;
+
+	private final List<AttributeChangeListener> listeners = new CopyOnWriteArrayList<AttributeChangeListener>();
+	private final List<SimpleNotifyEventListenerContainer> containers =
+			new ArrayList<SimpleNotifyEventListenerContainer>();
+
+	public AttributeChangeDispatcher(final AttributesFacadeImpl attributesFacade, final String applicationName) {
+		this.attributesFacade = attributesFacade;
+		this.applicationName = applicationName;
+	}
+
+	public void addListener(final AttributeChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(final AttributeChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**********
+	 * Registers the notify containers on the management space. Does nothing if already started.
+	 */
+	public synchronized void start() {
+		if (!containers.isEmpty()) {
+			return;
+		}
+		final GigaSpace managementSpace = attributesFacade.getManagementSpace();
+		final SpaceDataEventListener<AbstractCloudifyAttribute> eventListener =
+				new SpaceDataEventListener<AbstractCloudifyAttribute>() {
+
+					@Override
+					public void onEvent(final AbstractCloudifyAttribute data, final GigaSpace gigaSpace,
+							final TransactionStatus txStatus, final Object source) {
+						dispatch(data, isTake(source));
+					}
+				};
+		try {
+			for (final AbstractCloudifyAttribute template : createScopeTemplates()) {
+				containers.add(new SimpleNotifyContainerConfigurer(managementSpace)
+						.template(template)
+						.notifyWrite(true)
+						.notifyUpdate(true)
+						.notifyTake(true)
+						.eventListener(eventListener)
+						.notifyContainer());
+			}
+		} catch (final RuntimeException e) {
+			stop();
+			throw e;
+		}
+	}
+
+	/**********
+	 * Unregisters the notify containers.
+	 */
+	public synchronized void stop() {
+		for (final SimpleNotifyEventListenerContainer container : containers) {
+			container.destroy();
+		}
+		containers.clear();
+	}
+
+	void dispatch(final AbstractCloudifyAttribute attribute, final boolean removed) {
+		for (final AttributeChangeListener listener : listeners) {
+			try {
+				listener.attributeChanged(attribute, removed);
+			} catch (final Exception e) {
+				logger.log(Level.WARNING, "Attribute change listener failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private boolean isTake(final Object source) {
+		if (source instanceof EntryArrivedRemoteEvent) {
+			return NotifyActionType.NOTIFY_TAKE.equals(((EntryArrivedRemoteEvent) source).getNotifyActionType());
+		}
+		return false;
+	}
+
+	private List<AbstractCloudifyAttribute> createScopeTemplates() {
+		final List<AbstractCloudifyAttribute> templates = new ArrayList<AbstractCloudifyAttribute>();
+		templates.add(new GlobalCloudifyAttribute());
+		templates.add(new ApplicationCloudifyAttribute(applicationName, null, null));
+		templates.add(new ServiceCloudifyAttribute(applicationName, null, null, null));
+		templates.add(new InstanceCloudifyAttribute(applicationName, null, null, null, null));
+		return templates;
+	}
+}
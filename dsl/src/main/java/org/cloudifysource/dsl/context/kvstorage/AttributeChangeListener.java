@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage;
+
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+
+/**
+ * Receives notifications on attributes written to or removed from the management space.
+ * 
+ * @since 2.6.0
+ */
+public interface AttributeChangeListener {
+
+	/**********
+	 * Called when an attribute was written, updated or removed.
+	 * @param attribute the attribute. For a removed attribute, this is the last value it had.
+	 * @param removed true if the attribute was removed, false if it was written or updated.
+	 */
+	void attributeChanged(AbstractCloudifyAttribute attribute, boolean removed);
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.CloudifyAttributesWriter;
+
+/**
+ * Routes attribute notifications to the listeners registered on a specific attribute.
+ * Listeners are looked up by the attribute space id, so a notification only reaches the listeners of its key.
+ * 
+ * @since 2.6.0
+ */
+public class AttributeKeyListeners implements AttributeChangeListener {
+
+	private static final Logger logger = Logger.getLogger(AttributeKeyListeners.class.getName());
+
+	private final ConcurrentMap<String, List<AttributeChangeListener>> listenersByUid =
+			new ConcurrentHashMap<String, List<AttributeChangeListener>>();
+
+	/**********
+	 * @param uid the attribute space id.
+	 * @param listener the listener to notify on changes of the attribute.
+	 */
+	public synchronized void add(final String uid, final AttributeChangeListener listener) {
+		List<AttributeChangeListener> listeners = listenersByUid.get(uid);
+		if (listeners == null) {
+			listeners = new CopyOnWriteArrayList<AttributeChangeListener>();
+			listenersByUid.put(uid, listeners);
+		}
+		listeners.add(listener);
+	}
+
+	/**********
+	 * @param uid the attribute space id.
+	 * @param listener the listener to remove.
+	 */
+	public synchronized void remove(final String uid, final AttributeChangeListener listener) {
+		final List<AttributeChangeListener> listeners = listenersByUid.get(uid);
+		if (listeners == null) {
+			return;
+		}
+		listeners.remove(listener);
+		if (listeners.isEmpty()) {
+			listenersByUid.remove(uid);
+		}
+	}
+
+	@Override
+	public void attributeChanged(final AbstractCloudifyAttribute attribute, final boolean removed) {
+		// listeners are registered under the derived id, also when the space entry has a legacy id.
+		final List<AttributeChangeListener> listeners =
+				listenersByUid.get(CloudifyAttributesWriter.getDerivedUid(attribute));
+		if (listeners == null) {
+			return;
+		}
+		for (final AttributeChangeListener listener : listeners) {
+			// a failing listener must not keep the others from being notified.
+			try {
+				listener.attributeChanged(attribute, removed);
+			} catch (final Exception e) {
+				logger.log(Level.WARNING, "Listener of attribute " + attribute.getKey() + " failed: "
+						+ e.getMessage(), e);
+			}
+		}
+	}
+}
@@ -24,9 +24,12 @@ import org.openspaces.admin.space.Space;
 import org.openspaces.core.GigaSpace;
 
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Facade for putting and getting attributes over cloudify management space.
+ * Reads can optionally go through a local near cache, see {@link AttributesNearCache}.
  * 
  * @author eitany
  * @since 2.0
@@ -36,6 +39,8 @@ public class AttributesFacadeImpl extends GroovyObjectSupport implements Attribu
 	private static final long MANAGEMENT_SPACE_FIND_TIMEOUT = 10; // 10 seconds
 	private static final long MANAGEMENT_SPACE_FIND_REPEAT = 3; // 3 repeats
 
+	private static final Logger logger = Logger.getLogger(AttributesFacadeImpl.class.getName());
+
 	private final ServiceContext serviceContext;
 	private final ApplicationAttributesAccessor applicationAttributesAccessor;
 	private final ServiceAttributesAccessor serviceAttributesAccessor;
@@ -47,9 +52,29 @@ public class AttributesFacadeImpl extends GroovyObjectSupport implements Attribu
 	private final Object managementSpaceLock = new Object();
 	private final Admin admin;
 
+	private final int nearCacheSize;
+	private final AttributeChangeDispatcher changeDispatcher;
+	private final AttributeKeyListeners keyListeners = new AttributeKeyListeners();
+	private volatile AttributesNearCache nearCache;
+	private volatile boolean nearCacheDisabled;
+
 	public AttributesFacadeImpl(final ServiceContext serviceContext, final Admin admin) {
+		this(serviceContext, admin, 0);
+	}
+
+	/**********
+	 * Constructor.
+	 * @param serviceContext the service context.
+	 * @param admin the admin used to locate the management space.
+	 * @param nearCacheSize the maximum number of attributes cached locally, or 0 to read from the management space
+	 *        on every access.
+	 */
+	public AttributesFacadeImpl(final ServiceContext serviceContext, final Admin admin, final int nearCacheSize) {
 		this.serviceContext = serviceContext;
 		this.admin = admin;
+		this.nearCacheSize = nearCacheSize;
+		this.changeDispatcher = new AttributeChangeDispatcher(this, serviceContext.getApplicationName());
+		this.changeDispatcher.addListener(keyListeners);
 		this.applicationAttributesAccessor =
 				new ApplicationAttributesAccessor(this, serviceContext.getApplicationName());
 		this.serviceAttributesAccessor =
@@ -119,4 +144,67 @@ public class AttributesFacadeImpl extends GroovyObjectSupport implements Attribu
 			return managementSpace;
 		}
 	}
+
+	/**********
+	 * Returns the near cache, creating it on first access.
+	 * @return the near cache, or null if it is disabled or the attribute notifications could not be registered.
+	 */
+	public AttributesNearCache getNearCache() {
+		if (nearCache != null || nearCacheDisabled || nearCacheSize <= 0) {
+			return nearCache;
+		}
+		synchronized (managementSpaceLock) {
+			if (nearCache != null || nearCacheDisabled) {
+				return nearCache;
+			}
+			final AttributesNearCache cache = new AttributesNearCache(this, nearCacheSize);
+			changeDispatcher.addListener(cache);
+			try {
+				changeDispatcher.start();
+			} catch (final RuntimeException e) {
+				changeDispatcher.removeListener(cache);
+				nearCacheDisabled = true;
+				logger.log(Level.WARNING, "Failed to register for attribute notifications, "
+						+ "attributes will be read from the management space on every access: " + e.getMessage(), e);
+				return null;
+			}
+			nearCache = cache;
+			return nearCache;
+		}
+	}
+
+	/**********
+	 * Unregisters the attribute notifications and drops the near cache. Attributes are read from the management
+	 * space on every access afterwards.
+	 */
+	public void close() {
+		synchronized (managementSpaceLock) {
+			nearCacheDisabled = true;
+			if (nearCache != null) {
+				changeDispatcher.removeListener(nearCache);
+				nearCache = null;
+			}
+		}
+		changeDispatcher.stop();
+	}
+
+	/**********
+	 * Registers a listener on a single attribute. The attribute notifications are registered on first use, and
+	 * shared by all listeners.
+	 * @param uid the attribute space id.
+	 * @param listener the listener.
+	 */
+	void addKeyListener(final String uid, final AttributeChangeListener listener) {
+		keyListeners.add(uid, listener);
+		try {
+			changeDispatcher.start();
+		} catch (final RuntimeException e) {
+			keyListeners.remove(uid, listener);
+			throw e;
+		}
+	}
+
+	void removeKeyListener(final String uid, final AttributeChangeListener listener) {
+		keyListeners.remove(uid, listener);
+	}
 }
@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.CloudifyAttributesWriter;
+
+/**
+ * Local read-through cache of attribute values, kept coherent by management space notifications.
+ * <p>
+ * Entries are keyed by the attribute space id, which identifies the attribute scope and key. Missing attributes
+ * are cached as well, so polling for an attribute that was not published yet does not reach the space.
+ * Any notification on an attribute evicts its entry. A read that started before an eviction does not populate
+ * the cache, so a stale value read concurrently with a change is never cached.
+ * The number of entries is bounded, the least recently used entry is evicted first.
+ * <p>
+ * A notification may be lost, e.g. while the management space fails over, so entries also expire after a maximum
+ * age, set with the {@value #MAX_AGE_SYSTEM_PROPERTY} system property in milliseconds. A missed change is served for
+ * at most that long.
+ * 
+ * @since 2.6.0
+ */
+public class AttributesNearCache implements AttributeChangeListener {
+
+	/**
+	 * System property for the maximum age of a cached attribute, in milliseconds.
+	 */
+	public static final String MAX_AGE_SYSTEM_PROPERTY = "org.cloudifysource.attributes-near-cache-max-age";
+	private static final long DEFAULT_MAX_AGE_MILLIS = 30 * 1000;
+
+	private final AttributesFacadeImpl attributesFacade;
+	private final Map<String, CachedAttribute> entries;
+	private final long maxAgeMillis;
+
+	// incremented on every eviction. guarded by this.
+	private long generation;
+
+	public AttributesNearCache(final AttributesFacadeImpl attributesFacade, final int maxSize) {
+		this(attributesFacade, maxSize, Long.getLong(MAX_AGE_SYSTEM_PROPERTY, DEFAULT_MAX_AGE_MILLIS));
+	}
+
+	/**********
+	 * Constructor.
+	 * @param attributesFacade the facade of the management space attributes are read from.
+	 * @param maxSize the maximum number of cached attributes.
+	 * @param maxAgeMillis the time after which a cached attribute is read again from the management space.
+	 */
+	public AttributesNearCache(final AttributesFacadeImpl attributesFacade, final int maxSize,
+			final long maxAgeMillis) {
+		this.attributesFacade = attributesFacade;
+		this.maxAgeMillis = maxAgeMillis;
+		this.entries = new LinkedHashMap<String, CachedAttribute>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CachedAttribute> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**********
+	 * @param template the attribute template, with its key set.
+	 * @return the attribute value, or null if it does not exist.
+	 */
+	public Object get(final AbstractCloudifyAttribute template) {
+		return lookup(template).value;
+	}
+
+	/**********
+	 * @param template the attribute template, with its key set.
+	 * @return true if the attribute exists.
+	 */
+	public boolean containsKey(final AbstractCloudifyAttribute template) {
+		return lookup(template).present;
+	}
+
+	/**********
+	 * Evicts a single attribute.
+	 * @param uid the attribute space id.
+	 */
+	public synchronized void invalidate(final String uid) {
+		generation++;
+		entries.remove(uid);
+	}
+
+	/**********
+	 * Evicts all attributes of a scope.
+	 * @param scopePrefix the common prefix of the space ids of the scope attributes.
+	 */
+	public synchronized void invalidateScope(final String scopePrefix) {
+		generation++;
+		final Iterator<String> iterator = entries.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().startsWith(scopePrefix)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	@Override
+	public void attributeChanged(final AbstractCloudifyAttribute attribute, final boolean removed) {
+		// entries are cached under the derived id, also when the space entry has a legacy id.
+		invalidate(CloudifyAttributesWriter.getDerivedUid(attribute));
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	private CachedAttribute lookup(final AbstractCloudifyAttribute template) {
+		final String uid = template.getUid();
+		final long readGeneration;
+		synchronized (this) {
+			final CachedAttribute cached = entries.get(uid);
+			if (cached != null) {
+				if (System.currentTimeMillis() - cached.loadTime < maxAgeMillis) {
+					return cached;
+				}
+				entries.remove(uid);
+			}
+			readGeneration = generation;
+		}
+
+		final long loadTime = System.currentTimeMillis();
+		final AbstractCloudifyAttribute entry = read(template);
+		final CachedAttribute loaded = entry != null ? new CachedAttribute(true, entry.getValue(), loadTime)
+				: new CachedAttribute(false, null, loadTime);
+
+		synchronized (this) {
+			if (generation == readGeneration) {
+				entries.put(uid, loaded);
+			}
+		}
+		return loaded;
+	}
+
+	AbstractCloudifyAttribute read(final AbstractCloudifyAttribute template) {
+		return attributesFacade.getManagementSpace().read(template);
+	}
+
+	/**
+	 * A cached lookup result, distinguishing a missing attribute from an attribute with a null value.
+	 */
+	private static final class CachedAttribute {
+
+		private final boolean present;
+		private final Object value;
+		// when the read started, so the age also covers the time the read took.
+		private final long loadTime;
+
+		private CachedAttribute(final boolean present, final Object value, final long loadTime) {
+			this.present = present;
+			this.value = value;
+			this.loadTime = loadTime;
+		}
+	}
+}
@@ -21,6 +21,8 @@ import com.gigaspaces.annotation.pojo.SpaceIndex;
 
 /**
  * Base pojo for context properties which is stored in the space.
+ * The space id of an attribute is derived from its scope and key, so writing an attribute with
+ * UPDATE_OR_WRITE replaces the previous value of the same key in a single operation.
  * 
  * @author eitany
  * @since 2.0
@@ -37,16 +39,70 @@ public abstract class AbstractCloudifyAttribute {
 		this.value = value;
 	}
 
+	/**
+	 * Separates the parts of a generated attribute id. Each part is prefixed with its length, so a separator inside a
+	 * name or key can not make the ids of two attributes equal.
+	 */
+	protected static final String UID_SEPARATOR = "/";
+
 	private String applicationName;
 	private String key;
 	private Object value;
 	private String uid;
 
-	@SpaceId(autoGenerate = true)
+	/*********
+	 * The space id. Unless explicitly set, it is generated from the attribute scope and key, or null if the key is
+	 * not set (as in templates matching several attributes).
+	 * @return the space id.
+	 */
+	@SpaceId(autoGenerate = false)
 	public String getUid() {
+		if (uid == null && key != null) {
+			return generateUid();
+		}
 		return uid;
 	}
 
+	/*********
+	 * Generates the space id of this attribute, from its scope and key.
+	 * @return the generated id.
+	 */
+	protected String generateUid() {
+		return generateScopeUid() + UID_SEPARATOR + encodeUidPart(key);
+	}
+
+	/*********
+	 * Generates the id of the attribute scope, which starts the space ids of all the attributes of the scope.
+	 * Subclasses which add scope fields must include them, encoded with {@link #encodeUidPart(Object)}.
+	 * @return the scope id.
+	 */
+	protected String generateScopeUid() {
+		return getClass().getSimpleName() + UID_SEPARATOR + encodeUidPart(applicationName);
+	}
+
+	/*********
+	 * Returns the prefix shared by the space ids of all the attributes in the scope of this attribute, and only by
+	 * them.
+	 * @return the prefix.
+	 */
+	public String createScopeUidPrefix() {
+		return generateScopeUid() + UID_SEPARATOR;
+	}
+
+	/*********
+	 * Encodes a part of a generated id, prefixed with its length. A null part has no length, so it does not match a
+	 * "null" string.
+	 * @param part the part.
+	 * @return the encoded part.
+	 */
+	protected static String encodeUidPart(final Object part) {
+		if (part == null) {
+			return "-";
+		}
+		final String value = part.toString();
+		return value.length() + ":" + value;
+	}
+
 	public void setUid(final String uid) {
 		this.uid = uid;
 	}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage.spaceentries;
+
+import net.jini.core.lease.Lease;
+
+import org.openspaces.core.EntryAlreadyInSpaceException;
+import org.openspaces.core.GigaSpace;
+
+import com.gigaspaces.client.WriteModifiers;
+import com.j_spaces.core.LeaseContext;
+
+/**
+ * Writes attributes to the management space using upsert semantics.
+ * Since the space id of an attribute is derived from its scope and key, an attribute replaces the previous value
+ * of the same key in a single space operation, and the key is never missing from the space while being updated.
+ * Attributes written before ids were derived are moved to their derived id by
+ * {@link #migrateLegacyAttributes(GigaSpace)}.
+ * 
+ * @since 2.6.0
+ */
+public final class CloudifyAttributesWriter {
+
+	private static final WriteModifiers UPSERT_RETURN_PREVIOUS =
+			WriteModifiers.UPDATE_OR_WRITE.add(WriteModifiers.RETURN_PREV_ON_UPDATE);
+
+	private CloudifyAttributesWriter() {
+	}
+
+	/**********
+	 * Writes an attribute, replacing the previous value of the same key, if any.
+	 * @param gigaSpace the management space.
+	 * @param attribute the attribute to write. Its key must be set.
+	 * @param <T> the attribute type.
+	 * @return the previous attribute, or null if the key did not exist.
+	 */
+	public static <T extends AbstractCloudifyAttribute> T put(final GigaSpace gigaSpace, final T attribute) {
+		validateKey(attribute);
+		final LeaseContext<T> leaseContext = gigaSpace.write(attribute, Lease.FOREVER, 0, UPSERT_RETURN_PREVIOUS);
+		return leaseContext != null ? leaseContext.getObject() : null;
+	}
+
+	/**********
+	 * Writes several attributes in a single space operation, replacing the previous values of the same keys.
+	 * @param gigaSpace the management space.
+	 * @param attributes the attributes to write. Their keys must be set.
+	 */
+	public static void putAll(final GigaSpace gigaSpace, final AbstractCloudifyAttribute[] attributes) {
+		if (attributes.length == 0) {
+			return;
+		}
+		for (final AbstractCloudifyAttribute attribute : attributes) {
+			validateKey(attribute);
+		}
+		gigaSpace.writeMultiple(attributes, Lease.FOREVER, WriteModifiers.UPDATE_OR_WRITE);
+	}
+
+	/**********
+	 * Moves attributes stored with an auto generated space id, as written by earlier versions into a persistent
+	 * management space, or with an id in an earlier derived format, to the id derived from their scope and key. Otherwise, writing such a key would add a second
+	 * entry next to the old one. If a value was already written under the derived id, it is newer and is kept, and
+	 * the legacy entry is removed. Safe to run concurrently and more than once.
+	 * @param gigaSpace the management space.
+	 * @return the number of legacy attributes removed.
+	 */
+	public static int migrateLegacyAttributes(final GigaSpace gigaSpace) {
+		final AbstractCloudifyAttribute[] templates = { new GlobalCloudifyAttribute(),
+				new ApplicationCloudifyAttribute(), new ServiceCloudifyAttribute(), new InstanceCloudifyAttribute() };
+		int migrated = 0;
+		for (final AbstractCloudifyAttribute template : templates) {
+			for (final AbstractCloudifyAttribute attribute : gigaSpace.readMultiple(template, Integer.MAX_VALUE)) {
+				final String legacyUid = attribute.getUid();
+				if (attribute.getKey() == null || attribute.generateUid().equals(legacyUid)) {
+					continue;
+				}
+				attribute.setUid(null);
+				try {
+					gigaSpace.write(attribute, Lease.FOREVER, 0, WriteModifiers.WRITE_ONLY);
+				} catch (final EntryAlreadyInSpaceException e) {
+					// written under the derived id since, or a duplicate legacy entry of the same key.
+				}
+				gigaSpace.takeById(attribute.getClass(), legacyUid);
+				migrated++;
+			}
+		}
+		return migrated;
+	}
+
+	/**********
+	 * Returns the space id derived from the scope and key of an attribute. Unlike
+	 * {@link AbstractCloudifyAttribute#getUid()}, this is also the derived id for an attribute read from the space
+	 * with a legacy auto generated id.
+	 * @param attribute the attribute.
+	 * @return the derived id, or the attribute id if its key is not set.
+	 */
+	public static String getDerivedUid(final AbstractCloudifyAttribute attribute) {
+		return attribute.getKey() != null ? attribute.generateUid() : attribute.getUid();
+	}
+
+	private static void validateKey(final AbstractCloudifyAttribute attribute) {
+		if (attribute.getKey() == null) {
+			throw new IllegalArgumentException("Attribute key must not be null");
+		}
+	}
+}
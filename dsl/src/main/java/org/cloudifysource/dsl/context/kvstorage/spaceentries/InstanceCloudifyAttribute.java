@@ -53,4 +53,10 @@ public class InstanceCloudifyAttribute extends AbstractCloudifyAttribute {
 		return instanceId;
 	}
 
+	@Override
+	protected String generateScopeUid() {
+		return super.generateScopeUid() + UID_SEPARATOR + encodeUidPart(serviceName) + UID_SEPARATOR
+				+ encodeUidPart(instanceId);
+	}
+
 }
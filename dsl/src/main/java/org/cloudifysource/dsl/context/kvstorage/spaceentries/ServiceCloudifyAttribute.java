@@ -42,4 +42,9 @@ public class ServiceCloudifyAttribute extends AbstractCloudifyAttribute {
 		return serviceName;
 	}
 
+	@Override
+	protected String generateScopeUid() {
+		return super.generateScopeUid() + UID_SEPARATOR + encodeUidPart(serviceName);
+	}
+
 }
@@ -63,6 +63,11 @@ public final class CloudifyConstants {
     public static final String CONTEXT_PROPERTY_CLOUD_FILE_NAME = "com.gs.cloudify.cloud-file-name";
     public static final String CONTEXT_PROPERTY_CLOUD_NAME = "com.gs.cloudify.cloud-name";
     public static final String CONTEXT_PROPERTY_PROPERTIES_FILE_NAME = "com.gs.cloudify.properties-file-name";
+    /**
+     * The merged application properties, service properties and overrides of a service. Written over the service
+     * properties file of the deployed recipe before it is read, instead of re-packing the recipe with the merged file.
+     */
+    public static final String CONTEXT_PROPERTY_MERGED_PROPERTIES = "com.gs.cloudify.merged-properties";
     public static final String CONTEXT_PROPERTY_ASYNC_INSTALL = "com.gs.cloudify.async-install";
     public static final String CONTEXT_PROPERTY_DEPLOYMENT_ID = "com.gs.cloudify.deployment-id";
     public static final String CONTEXT_PROPERTY_DISABLE_SELF_HEALING = "com.gs.cloudify.disable-self-healing";
@@ -104,6 +109,9 @@ public final class CloudifyConstants {
     public static final String USM_MONITORS_STATE_ID = "USM_State";
     public static final String USM_MONITORS_CHILD_PROCESS_ID = "USM_Child Process ID";
     public static final String USM_MONITORS_ACTUAL_PROCESS_ID = "USM_Actual Process ID";
+    public static final String USM_MONITORS_COLLECTION_TIME_ID = "USM_Monitors Collection Time";
+    public static final String USM_MONITORS_STALENESS_ID = "USM_Monitors Staleness";
+    public static final String USM_MONITORS_START_DETECTION_TIME_ID = "USM_Start Detection Time";
 
     /****************
      * Key names for USM Details
@@ -129,6 +137,7 @@ public final class CloudifyConstants {
      *
      */
     public static final String USM_PARAMETERS_TAILER_INTERVAL = "TailerInterval";
+    public static final String USM_PARAMETERS_TAILER_FILE_NOTIFICATIONS = "TailerFileNotifications";
 
     /*************************************
      * Keys for Elastic Provisioning properties used with ESM machine
@@ -209,6 +218,14 @@ public final class CloudifyConstants {
     public static final String CUSTOM_PROPERTY_STOP_DETECTION_ON_ALL_PROCESSES = "org.cloudifysource.stop-detection-on-all-processes";
     public static final String CUSTOM_PROPERTY_MONITORS_CACHE_EXPIRATION_TIMEOUT = "org.cloudifysource.monitors-cache-timeout";
     public static final String CUSTOM_PROPERTY_PIDS_SIZE_LIMIT = "org.cloudifysource.pids-size-limit";
+    public static final String CUSTOM_PROPERTY_ATTRIBUTES_NEAR_CACHE_SIZE = "org.cloudifysource.attributes-near-cache-size";
+    public static final String CUSTOM_PROPERTY_AGGREGATE_PROCESS_METRICS = "org.cloudifysource.aggregate-process-metrics";
+    /**
+     * When true, groovy lifecycle scripts run on a thread of the USM instead of in a forked groovy JVM. Only enable it
+     * for services whose scripts never end the JVM: a script that calls System.exit or Runtime.halt, directly or
+     * through a class it uses, terminates the USM itself, so such scripts must keep running in a separate process.
+     */
+    public static final String CUSTOM_PROPERTY_IN_PROCESS_GROOVY_SCRIPTS = "org.cloudifysource.in-process-groovy-scripts";
     public static final String CUSTOM_CLOUD_PROPERTY_UNICAST_DISCOVERY_PORT = "org.cloudifysource.unicast-discovery-port";
     public static final String CUSTOM_PROPERTY_CLEAN_REMOTE_DIR_ON_START = "org.cloudifysource.clearRemoteDirectoryOnStart";
 	public static final String NEW_REST_CLIENT_ENABLE_PROPERTY = "org.cloudifysource.rest-client.enable-new-rest-client";
@@ -253,6 +270,8 @@ public final class CloudifyConstants {
     public static final String USM_METRIC_COMMITTED_VIRTUAL_MEM_SIZE = "Committed Virtual Memory Size";
     public static final String USM_METRIC_THREAD_COUNT = "Thread Count";
     public static final String USM_METRIC_PEAK_THREAD_COUNT = "Peak Thread Count";
+    // followed by the host and port of the JMX target.
+    public static final String USM_METRIC_JMX_SAMPLE_LATENCY = "JMX Sample Latency";
 
     public static final int SSH_PORT = 22;
 
@@ -14,19 +14,16 @@ package org.cloudifysource.dsl.internal;
 
 import groovy.lang.Binding;
 import groovy.lang.GroovyClassLoader;
-import groovy.lang.GroovyShell;
 import groovy.lang.MissingMethodException;
 import groovy.lang.MissingPropertyException;
+import groovy.lang.Script;
 import groovy.util.ConfigObject;
 import groovy.util.ConfigSlurper;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.SequenceInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -63,6 +60,7 @@ public class DSLReader {
 	// Groovy DSL prefix, used for handling print and println correctly
 	private static final String GROOVY_SERVICE_PREFIX =
 			"Object.metaClass.println = {x->this.println(x)}; Object.metaClass.print =  {x->this.print(x)};";
+	private static final String DSL_SCRIPT_NAME = "dslEntity";
 	/*****
 	 * Name of the logger used to process dsl print/println statements.
 	 */
@@ -374,9 +372,9 @@ public class DSLReader {
 
 		}
 
-		// create the groovy shell, loaded with our settings
-		final GroovyShell gs = createGroovyShell(properties);
-		final Object result = evaluateGroovyScript(gs);
+		// compile the DSL, unless an identical DSL was already compiled, and run it with this reader's binding
+		final DSLScriptCache.CompiledScript compiledScript = compileGroovyScript();
+		final Object result = evaluateGroovyScript(compiledScript, createGroovyBinding(properties));
 
 		if (result == null) {
 			throw new DSLException("The DSL evaluated to a null - check your syntax and try again");
@@ -402,7 +400,7 @@ public class DSLReader {
 			}
 		}
 
-		this.dslClassLoader = gs.getClassLoader();
+		this.dslClassLoader = compiledScript.getClassLoader();
 		return result;
 
 	}
@@ -436,53 +434,47 @@ public class DSLReader {
 		}
 	}
 
-	@SuppressWarnings("deprecation")
-	private Object evaluateGroovyScript(final GroovyShell gs)
-			throws DSLValidationException {
-		// Evaluate class using a FileReader, as the *-service files create a
-		// class with an illegal name
-		Object result = null;
-
-		if (this.dslContents == null) {
+	private DSLScriptCache.CompiledScript compileGroovyScript() {
+		final List<String> classpath = createCompilationClasspath();
+		final CompilerConfiguration cc = createCompilerConfiguration(BaseDslScript.class.getName(), classpath);
 
-			//FileReader reader = null;
-			SequenceInputStream sis = null;
+		String scriptText = this.dslContents;
+		if (scriptText == null) {
+			// the *-service files have an illegal class name, so the script is named explicitly
 			try {
-
-				final FileInputStream fis = new FileInputStream(dslFile);
-				final ByteArrayInputStream bis =
-						new ByteArrayInputStream(GROOVY_SERVICE_PREFIX.getBytes());
-				sis = new SequenceInputStream(bis, fis);
-				//reader = new FileReader(dslFile);
-				// using a deprecated method here as we do not have a multireader in the dependencies
-				// and not really worth another jar just for this.
-				result = gs.evaluate(sis, "dslEntity");
+				scriptText = GROOVY_SERVICE_PREFIX + FileUtils.readFileToString(dslFile);
 			} catch (final IOException e) {
 				throw new IllegalStateException("The file " + dslFile + " could not be read", e);
-			} catch (final MissingMethodException e) {
-				throw new IllegalArgumentException("Could not resolve DSL entry with name: " + e.getMethod(), e);
-			} catch (final MissingPropertyException e) {
-				throw new IllegalArgumentException("Could not resolve DSL entry with name: " + e.getProperty(), e);
-			} catch (final DSLValidationRuntimeException e) {
-				throw e.getDSLValidationException();
-			} finally {
-				if (sis != null) {
-					try {
-						sis.close();
-					} catch (final IOException e) {
-						// ignore
-					}
-				}
 			}
-		} else {
-			try {
-				result = gs.evaluate(this.dslContents, "dslEntity");
-			} catch (final CompilationFailedException e) {
-				throw new IllegalArgumentException("The file " + dslFile + " could not be compiled", e);
+		}
+
+		try {
+			return DSLScriptCache.getInstance().getScript(scriptText, DSL_SCRIPT_NAME, classpath,
+					ServiceReader.class.getClassLoader(), cc);
+		} catch (final CompilationFailedException e) {
+			if (this.dslContents == null) {
+				throw e;
 			}
+			throw new IllegalArgumentException("The file " + dslFile + " could not be compiled", e);
+		}
+	}
 
+	private Object evaluateGroovyScript(final DSLScriptCache.CompiledScript compiledScript, final Binding binding)
+			throws DSLValidationException {
+		final Script script = compiledScript.createScript(binding);
+		if (this.dslContents != null) {
+			return script.run();
+		}
+
+		try {
+			return script.run();
+		} catch (final MissingMethodException e) {
+			throw new IllegalArgumentException("Could not resolve DSL entry with name: " + e.getMethod(), e);
+		} catch (final MissingPropertyException e) {
+			throw new IllegalArgumentException("Could not resolve DSL entry with name: " + e.getProperty(), e);
+		} catch (final DSLValidationRuntimeException e) {
+			throw e.getDSLValidationException();
 		}
-		return result;
 	}
 
 	private void initPropertiesFile()
@@ -577,10 +569,7 @@ public class DSLReader {
 
 	}
 
-	private GroovyShell createGroovyShell(final LinkedHashMap<Object, Object> properties) {
-
-		final String baseClassName = BaseDslScript.class.getName();
-
+	private List<String> createCompilationClasspath() {
 		final List<String> serviceJarFiles = createJarFileListForService();
 		String classpathDir = null;
 		if (this.getWorkDir() != null) {
@@ -594,18 +583,9 @@ public class DSLReader {
 		if (classpathDir != null) {
 			serviceJarFiles.add(classpathDir);
 		}
-
-		final CompilerConfiguration cc = createCompilerConfiguration(baseClassName, serviceJarFiles);
-
-		final Binding binding = createGroovyBinding(properties);
-
-		final GroovyShell gs = new GroovyShell(ServiceReader.class.getClassLoader(), binding, cc);
-
-
-		return gs;
+		return serviceJarFiles;
 	}
 
-
 	private static CompilerConfiguration createCompilerConfiguration(final String baseClassName,
 			final List<String> extraJarFileNames) {
 		final CompilerConfiguration cc = new CompilerConfiguration();
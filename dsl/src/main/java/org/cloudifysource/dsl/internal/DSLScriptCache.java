@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyShell;
+import groovy.lang.GroovySystem;
+import groovy.lang.MetaClassRegistry;
+import groovy.lang.Script;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+/*******
+ * A bounded cache of compiled DSL scripts, shared by all the DSL readers of this JVM. A DSL that was already compiled
+ * is only executed against the binding of the new read.
+ * <p>
+ * Scripts are keyed by the SHA-1 hash of the DSL text, the script name and the compilation class path: the path and
+ * content of class path files, and the path of class path directories with the relative paths and content of the
+ * groovy and class files anywhere under them. A script is compiled again when a jar or a helper class in the recipe
+ * directory changes. The path is part of the key since the class loader of a cached script keeps loading classes from
+ * the class path it was compiled with, and is never changed. The compiler configuration is not part of the key, as all
+ * DSL readers use the same one.
+ * <p>
+ * An evicted script's classes are removed from the groovy meta class registry. Its class loader is left untouched, as
+ * a reader may still run the script, and is garbage collected once no reader uses it.
+ * <p>
+ * The cache size is set with the {@value #CACHE_SIZE_SYSTEM_PROPERTY} system property, and defaults to
+ * {@value #DEFAULT_CACHE_SIZE}. A size of 0 disables the cache.
+ *
+ * @since 2.6.0
+ */
+public final class DSLScriptCache {
+
+	/**
+	 * System property for the maximum number of compiled DSL scripts kept by the cache.
+	 */
+	public static final String CACHE_SIZE_SYSTEM_PROPERTY = "org.cloudifysource.dsl.script-cache-size";
+	private static final int DEFAULT_CACHE_SIZE = 64;
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	private static final Logger logger = Logger.getLogger(DSLScriptCache.class.getName());
+
+	private static final DSLScriptCache INSTANCE = new DSLScriptCache(Integer.getInteger(CACHE_SIZE_SYSTEM_PROPERTY,
+			DEFAULT_CACHE_SIZE));
+
+	private final int maxSize;
+	private final Map<String, CompiledScript> scripts;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong compileNanos = new AtomicLong();
+	private final AtomicLong savedCompileNanos = new AtomicLong();
+
+	/*******
+	 * Returns the DSL script cache of this JVM.
+	 *
+	 * @return the cache.
+	 */
+	public static DSLScriptCache getInstance() {
+		return INSTANCE;
+	}
+
+	DSLScriptCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.scripts = new LinkedHashMap<String, CompiledScript>(Math.max(maxSize, 1), 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CompiledScript> eldest) {
+				if (size() <= DSLScriptCache.this.maxSize) {
+					return false;
+				}
+				release(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/*******
+	 * Returns a compiled DSL script, compiling it if an identical script was not compiled yet.
+	 *
+	 * @param scriptText
+	 *            the DSL text.
+	 * @param scriptName
+	 *            the script name.
+	 * @param classpath
+	 *            the compilation class path, the same as in the compiler configuration.
+	 * @param parent
+	 *            the parent class loader of the script class loader.
+	 * @param compilerConfiguration
+	 *            the compiler configuration.
+	 * @return the compiled script.
+	 */
+	public CompiledScript getScript(final String scriptText, final String scriptName, final List<String> classpath,
+			final ClassLoader parent, final CompilerConfiguration compilerConfiguration) {
+		if (maxSize <= 0) {
+			return compile(scriptText, scriptName, parent, compilerConfiguration);
+		}
+
+		final String key = createKey(scriptText, scriptName, classpath);
+		final CompiledScript cached;
+		synchronized (scripts) {
+			cached = scripts.get(key);
+		}
+		if (cached != null) {
+			hits.incrementAndGet();
+			savedCompileNanos.addAndGet(cached.compileNanos);
+			if (logger.isLoggable(Level.FINE)) {
+				logger.fine("Using cached compiled DSL script " + scriptName + ", saved "
+						+ TimeUnit.NANOSECONDS.toMillis(cached.compileNanos) + " ms of compilation");
+			}
+			return cached;
+		}
+
+		// compiled outside the lock, a script compiled concurrently by two readers is simply compiled twice.
+		final CompiledScript compiled = compile(scriptText, scriptName, parent, compilerConfiguration);
+		synchronized (scripts) {
+			final CompiledScript concurrent = scripts.get(key);
+			if (concurrent != null) {
+				return concurrent;
+			}
+			scripts.put(key, compiled);
+		}
+		return compiled;
+	}
+
+	private CompiledScript compile(final String scriptText, final String scriptName, final ClassLoader parent,
+			final CompilerConfiguration compilerConfiguration) {
+		misses.incrementAndGet();
+		final long start = System.nanoTime();
+		final GroovyShell shell = new GroovyShell(parent, new Binding(), compilerConfiguration);
+		final Script script = shell.parse(scriptText, scriptName);
+		final long duration = System.nanoTime() - start;
+		compileNanos.addAndGet(duration);
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Compiled DSL script " + scriptName + " in " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms");
+		}
+		return new CompiledScript(script.getClass(), shell.getClassLoader(), duration);
+	}
+
+	// lets the evicted script's classes, and its class loader, be garbage collected once no reader uses them. The class
+	// loader itself is not cleared, since readers that got the script before it was evicted may still load classes.
+	private static void release(final CompiledScript script) {
+		final MetaClassRegistry registry = GroovySystem.getMetaClassRegistry();
+		for (final Class<?> loadedClass : script.classLoader.getLoadedClasses()) {
+			registry.removeMetaClass(loadedClass);
+		}
+		registry.removeMetaClass(script.scriptClass);
+	}
+
+	private static String createKey(final String scriptText, final String scriptName, final List<String> classpath) {
+		final MessageDigest digest = createDigest();
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(scriptName).append('\n');
+		for (final String entry : classpath) {
+			final File file = new File(entry);
+			sb.append(file.getAbsolutePath()).append('\n');
+			if (!file.isDirectory()) {
+				sb.append(hash(file)).append('\n');
+			} else {
+				appendClassSources(sb, file, "");
+			}
+		}
+		try {
+			digest.update(sb.toString().getBytes("UTF-8"));
+			digest.update(scriptText.getBytes("UTF-8"));
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported by this JVM", e);
+		}
+		return toHex(digest.digest());
+	}
+
+	// appends the relative path and hash of the class sources under a directory, including package directories.
+	private static void appendClassSources(final StringBuilder sb, final File directory, final String relativePath) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (final File child : files) {
+			final String childPath = relativePath + child.getName();
+			if (child.isDirectory()) {
+				if (!isSymlink(child)) {
+					appendClassSources(sb, child, childPath + "/");
+				}
+			} else if (isClassSource(child.getName())) {
+				// the path matters too, as it is the name of the class a groovy file declares.
+				sb.append(childPath).append(':').append(hash(child)).append('\n');
+			}
+		}
+	}
+
+	// linked directories are skipped, as they may link back to a parent directory.
+	private static boolean isSymlink(final File file) {
+		try {
+			return FileUtils.isSymlink(file);
+		} catch (final IOException e) {
+			return true;
+		}
+	}
+
+	// only the files a class may be loaded from, as other files in the recipe directory change at runtime.
+	private static boolean isClassSource(final String fileName) {
+		return fileName.endsWith(".groovy") || fileName.endsWith(".class");
+	}
+
+	private static String hash(final File file) {
+		if (!file.isFile()) {
+			return "missing";
+		}
+		final MessageDigest digest = createDigest();
+		final byte[] buffer = new byte[HASH_BUFFER_SIZE];
+		try {
+			final InputStream in = new FileInputStream(file);
+			try {
+				int read;
+				while ((read = in.read(buffer)) >= 0) {
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (final IOException e) {
+			// the compilation reports the file if it is needed.
+			logger.log(Level.FINE, "Failed to read class path file " + file + ": " + e.getMessage(), e);
+			return "unreadable";
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	/*******
+	 * Returns the number of reads that used a cached script.
+	 *
+	 * @return the cache hits.
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/*******
+	 * Returns the number of reads that compiled their script.
+	 *
+	 * @return the cache misses.
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/*******
+	 * Returns the total time spent compiling DSL scripts.
+	 *
+	 * @return the compile time, in milliseconds.
+	 */
+	public long getCompileTimeMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(compileNanos.get());
+	}
+
+	/*******
+	 * Returns the compile time saved by the cache, the sum of the original compile times of the cached scripts used.
+	 *
+	 * @return the saved compile time, in milliseconds.
+	 */
+	public long getCompileTimeSavedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(savedCompileNanos.get());
+	}
+
+	/*******
+	 * Returns the number of compiled scripts kept by the cache.
+	 *
+	 * @return the cache size.
+	 */
+	public int size() {
+		synchronized (scripts) {
+			return scripts.size();
+		}
+	}
+
+	/*******
+	 * A compiled DSL script.
+	 */
+	public static final class CompiledScript {
+
+		private final Class<?> scriptClass;
+		private final GroovyClassLoader classLoader;
+		private final long compileNanos;
+
+		CompiledScript(final Class<?> scriptClass, final GroovyClassLoader classLoader, final long compileNanos) {
+			this.scriptClass = scriptClass;
+			this.classLoader = classLoader;
+			this.compileNanos = compileNanos;
+		}
+
+		/*******
+		 * Creates a new instance of the script.
+		 *
+		 * @param binding
+		 *            the binding of the new instance.
+		 * @return the script.
+		 */
+		public Script createScript(final Binding binding) {
+			return InvokerHelper.createScript(scriptClass, binding);
+		}
+
+		public Class<?> getScriptClass() {
+			return scriptClass;
+		}
+
+		/*******
+		 * Returns the class loader the script was compiled by, which also loads classes from the DSL class path.
+		 *
+		 * @return the class loader.
+		 */
+		public GroovyClassLoader getClassLoader() {
+			return classLoader;
+		}
+	}
+}
@@ -125,10 +125,22 @@ public class ServiceContextImpl implements ServiceContext {
 								+ Arrays.toString(admin.getLocators()));
 			}
 		}
-		this.attributesFacade = new AttributesFacadeImpl(this, admin);
+		this.attributesFacade = new AttributesFacadeImpl(this, admin, getAttributesNearCacheSize(service));
 		initialized = true;
 	}
 
+	private int getAttributesNearCacheSize(final Service service) {
+		if (service == null || service.getCustomProperties() == null) {
+			return 0;
+		}
+		final String sizeString =
+				service.getCustomProperties().get(CloudifyConstants.CUSTOM_PROPERTY_ATTRIBUTES_NEAR_CACHE_SIZE);
+		if (sizeString == null) {
+			return 0;
+		}
+		return Integer.parseInt(sizeString);
+	}
+
 	private StorageFacade getRemoteStorage() {
 		ElasticServiceManager elasticServiceManager;
 		if (admin != null) {
@@ -12,6 +12,8 @@
  *******************************************************************************/
 package org.cloudifysource.dsl.internal.packaging;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -19,16 +21,40 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 /*********
  * Static utility methods for using zip and unzip.
+ * <p>
+ * Directories are zipped by compressing their files in parallel, and writing the compressed entries to the zip file in
+ * the order of the directory walk. Files that are already compressed, like jars and archives, are stored instead of
+ * being deflated again. Directories too large for a zip file without zip64 records are zipped on a single thread by
+ * {@link ZipOutputStream}. Zip files are extracted in parallel as well.
  * 
  * @author barakme
  * @since 1.0
@@ -36,7 +62,27 @@ import java.util.zip.ZipOutputStream;
  */
 public final class ZipUtils {
 
-	private static final int BUFFER_SIZE = 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// files up to this size are compressed into memory, larger files into a temporary file.
+	private static final int IN_MEMORY_ENTRY_LIMIT = 4 * 1024 * 1024;
+	// the number of compressed entries waiting to be written, per thread.
+	private static final int PENDING_ENTRIES_PER_THREAD = 2;
+	// the zip writer does not write zip64 records, so larger zip files are written by ZipOutputStream.
+	private static final long MAX_PARALLEL_ZIP_SIZE = Integer.MAX_VALUE;
+	private static final int MAX_PARALLEL_ZIP_ENTRIES = 0xFFFF;
+
+	private static final Set<String> STORED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+			"zip", "jar", "war", "ear", "gz", "tgz", "bz2", "tbz2", "xz", "7z", "rar", "png", "jpg", "jpeg", "gif"));
+
+	private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
 
 	private ZipUtils() {
 
@@ -91,30 +137,68 @@ public final class ZipUtils {
 	 */
 	public static void zip(final File directory, final File zipfile)
 			throws IOException {
-		final URI base = directory.toURI();
+		final List<ZipSource> sources = listSources(directory);
 		final File toZip = new File(zipfile, "");
 		toZip.setWritable(true);
+
+		long totalSize = 0;
+		for (final ZipSource source : sources) {
+			if (!source.directory) {
+				totalSize += source.file.length();
+			}
+		}
+		if (sources.size() > MAX_PARALLEL_ZIP_ENTRIES || totalSize > MAX_PARALLEL_ZIP_SIZE) {
+			zipSequentially(sources, toZip);
+		} else {
+			zipInParallel(sources, toZip);
+		}
+	}
+
+	// walks the directory in the order the entries are written.
+	private static List<ZipSource> listSources(final File directory) {
+		final URI base = directory.toURI();
+		final List<ZipSource> sources = new ArrayList<ZipSource>();
 		final Stack<File> stack = new Stack<File>();
 		stack.push(directory);
+		while (!stack.isEmpty()) {
+			final File currentDirectory = stack.pop();
+			for (final File kid : currentDirectory.listFiles()) {
+				String name = base.relativize(kid.toURI()).getPath();
+				if (kid.isDirectory()) {
+					stack.push(kid);
+					name = name.endsWith("/") ? name : name + "/";
+					sources.add(new ZipSource(kid, name, true));
+				} else {
+					sources.add(new ZipSource(kid, name, false));
+				}
+			}
+		}
+		return sources;
+	}
+
+	private static void zipSequentially(final List<ZipSource> sources, final File toZip)
+			throws IOException {
 		final OutputStream out = new FileOutputStream(toZip);
 		Closeable res = out;
 
 		try {
-			final ZipOutputStream zout = new ZipOutputStream(out);
+			final ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
 			res = zout;
-			while (!stack.isEmpty()) {
-				final File currentDirectory = stack.pop();
-				for (final File kid : currentDirectory.listFiles()) {
-					String name = base.relativize(kid.toURI()).getPath();
-					if (kid.isDirectory()) {
-						stack.push(kid);
-						name = name.endsWith("/") ? name : name + "/";
-						zout.putNextEntry(new ZipEntry(name));
-					} else {
-						zout.putNextEntry(new ZipEntry(name));
-						copy(kid, zout);
-						zout.closeEntry();
+			for (final ZipSource source : sources) {
+				final ZipEntry entry = new ZipEntry(source.name);
+				if (source.directory) {
+					zout.putNextEntry(entry);
+				} else {
+					if (isStored(source.name)) {
+						final long[] crcAndSize = crcAndSize(source.file);
+						entry.setMethod(ZipEntry.STORED);
+						entry.setCrc(crcAndSize[0]);
+						entry.setSize(crcAndSize[1]);
+						entry.setCompressedSize(crcAndSize[1]);
 					}
+					zout.putNextEntry(entry);
+					copy(source.file, zout);
+					zout.closeEntry();
 				}
 			}
 		} finally {
@@ -122,6 +206,173 @@ public final class ZipUtils {
 		}
 	}
 
+	private static void zipInParallel(final List<ZipSource> sources, final File toZip)
+			throws IOException {
+		final int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), sources.size()));
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, createThreadFactory("zip"));
+		final LinkedList<Future<CompressedEntry>> pending = new LinkedList<Future<CompressedEntry>>();
+		final ZipWriter writer = new ZipWriter(new BufferedOutputStream(new FileOutputStream(toZip), BUFFER_SIZE));
+		try {
+			for (final ZipSource source : sources) {
+				// bounds the memory held by compressed entries that were not written yet.
+				if (pending.size() >= threads * PENDING_ENTRIES_PER_THREAD) {
+					writer.write(getResult(pending.removeFirst()));
+				}
+				pending.add(executor.submit(new Callable<CompressedEntry>() {
+					@Override
+					public CompressedEntry call()
+							throws IOException {
+						return compress(source);
+					}
+				}));
+			}
+			while (!pending.isEmpty()) {
+				writer.write(getResult(pending.removeFirst()));
+			}
+			writer.finish();
+		} finally {
+			executor.shutdownNow();
+			for (final Future<CompressedEntry> future : pending) {
+				discard(future);
+			}
+			writer.close();
+		}
+	}
+
+	private static CompressedEntry compress(final ZipSource source)
+			throws IOException {
+		final CompressedEntry entry = new CompressedEntry(source);
+		if (source.directory) {
+			entry.method = ZipEntry.STORED;
+			return entry;
+		}
+
+		if (isStored(source.name)) {
+			// the data is copied from the file by the writer.
+			final long[] crcAndSize = crcAndSize(source.file);
+			entry.method = ZipEntry.STORED;
+			entry.crc = crcAndSize[0];
+			entry.size = crcAndSize[1];
+			entry.compressedSize = crcAndSize[1];
+			return entry;
+		}
+
+		entry.method = ZipEntry.DEFLATED;
+		final OutputStream target;
+		if (source.file.length() <= IN_MEMORY_ENTRY_LIMIT) {
+			entry.data = new ByteArrayOutputStream((int) source.file.length() / 2 + 1);
+			target = entry.data;
+		} else {
+			entry.tempFile = File.createTempFile("zipentry", ".tmp");
+			entry.tempFile.deleteOnExit();
+			target = new FileOutputStream(entry.tempFile);
+		}
+
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		final CRC32 crc = new CRC32();
+		final byte[] buffer = BUFFERS.get();
+		try {
+			final DeflaterOutputStream out = new DeflaterOutputStream(target, deflater, BUFFER_SIZE);
+			try {
+				final InputStream in = new FileInputStream(source.file);
+				try {
+					while (true) {
+						final int readCount = in.read(buffer);
+						if (readCount < 0) {
+							break;
+						}
+						crc.update(buffer, 0, readCount);
+						out.write(buffer, 0, readCount);
+					}
+				} finally {
+					in.close();
+				}
+				out.finish();
+			} finally {
+				out.close();
+			}
+			entry.crc = crc.getValue();
+			entry.size = deflater.getBytesRead();
+			entry.compressedSize = deflater.getBytesWritten();
+		} catch (final IOException e) {
+			entry.discard();
+			throw e;
+		} finally {
+			deflater.end();
+		}
+		return entry;
+	}
+
+	private static boolean isStored(final String name) {
+		final int index = name.lastIndexOf('.');
+		return index >= 0 && STORED_EXTENSIONS.contains(name.substring(index + 1).toLowerCase(Locale.ENGLISH));
+	}
+
+	private static long[] crcAndSize(final File file)
+			throws IOException {
+		final CRC32 crc = new CRC32();
+		final byte[] buffer = BUFFERS.get();
+		long size = 0;
+		final InputStream in = new FileInputStream(file);
+		try {
+			while (true) {
+				final int readCount = in.read(buffer);
+				if (readCount < 0) {
+					break;
+				}
+				crc.update(buffer, 0, readCount);
+				size += readCount;
+			}
+		} finally {
+			in.close();
+		}
+		return new long[] { crc.getValue(), size };
+	}
+
+	private static <T> T getResult(final Future<T> future)
+			throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a zip entry");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Failed to process zip entry: " + cause, cause);
+		}
+	}
+
+	// deletes the temporary file of an entry that was compressed but will not be written.
+	private static void discard(final Future<CompressedEntry> future) {
+		if (future.isDone() && !future.isCancelled()) {
+			try {
+				future.get().discard();
+			} catch (final Exception e) {
+				// the entry failed, nothing to delete.
+			}
+		}
+	}
+
+	private static ThreadFactory createThreadFactory(final String prefix) {
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "ZipUtils-" + prefix + "-" + THREAD_COUNTER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
 	/*************
 	 * Unzip the given zip file into the specified directory.
 	 * 
@@ -135,6 +386,8 @@ public final class ZipUtils {
 			throws IOException {
 		final ZipFile zfile = new ZipFile(zipfile);
 		try {
+			// directories are created first, so the files can be extracted in any order.
+			final List<ZipEntry> fileEntries = new ArrayList<ZipEntry>();
 			final Enumeration<? extends ZipEntry> entries = zfile.entries();
 			while (entries.hasMoreElements()) {
 				final ZipEntry entry = entries.nextElement();
@@ -153,19 +406,56 @@ public final class ZipUtils {
 							throw new IllegalStateException("cant create dir" + file.getParentFile().getAbsolutePath());
 						}
 					}
-					final InputStream in = zfile.getInputStream(entry);
-					try {
-						copy(in, file);
-					} finally {
-						in.close();
-					}
+					fileEntries.add(entry);
 				}
 			}
+			extract(zfile, fileEntries, directory);
 		} finally {
 			zfile.close();
 		}
 	}
 
+	private static void extract(final ZipFile zfile, final List<ZipEntry> entries, final File directory)
+			throws IOException {
+		final int threads = Math.min(Runtime.getRuntime().availableProcessors(), entries.size());
+		if (threads <= 1) {
+			for (final ZipEntry entry : entries) {
+				extract(zfile, entry, directory);
+			}
+			return;
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, createThreadFactory("unzip"));
+		try {
+			final List<Future<Void>> futures = new ArrayList<Future<Void>>(entries.size());
+			for (final ZipEntry entry : entries) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call()
+							throws IOException {
+						extract(zfile, entry, directory);
+						return null;
+					}
+				}));
+			}
+			for (final Future<Void> future : futures) {
+				getResult(future);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void extract(final ZipFile zfile, final ZipEntry entry, final File directory)
+			throws IOException {
+		final InputStream in = zfile.getInputStream(entry);
+		try {
+			copy(in, new File(directory, entry.getName()));
+		} finally {
+			in.close();
+		}
+	}
+
 	/***************
 	 * Unzips a specific entry from a zip file to a temporary directory.
 	 * 
@@ -208,7 +498,7 @@ public final class ZipUtils {
 
 	private static void copy(final InputStream in, final OutputStream out)
 			throws IOException {
-		final byte[] buffer = new byte[BUFFER_SIZE];
+		final byte[] buffer = BUFFERS.get();
 		while (true) {
 			final int readCount = in.read(buffer);
 			if (readCount < 0) {
@@ -237,4 +527,224 @@ public final class ZipUtils {
 			out.close();
 		}
 	}
+
+	/**
+	 * A file or directory to zip, and its entry name.
+	 */
+	private static final class ZipSource {
+
+		private final File file;
+		private final String name;
+		private final boolean directory;
+
+		ZipSource(final File file, final String name, final boolean directory) {
+			this.file = file;
+			this.name = name;
+			this.directory = directory;
+		}
+	}
+
+	/**
+	 * A zip entry ready to be written: its compressed data is in memory or in a temporary file, or, for stored
+	 * entries, in the source file itself.
+	 */
+	private static final class CompressedEntry {
+
+		private final ZipSource source;
+		private int method;
+		private long crc;
+		private long size;
+		private long compressedSize;
+		private ByteArrayOutputStream data;
+		private File tempFile;
+
+		CompressedEntry(final ZipSource source) {
+			this.source = source;
+		}
+
+		void writeData(final OutputStream out)
+				throws IOException {
+			if (data != null) {
+				data.writeTo(out);
+			} else if (tempFile != null) {
+				copy(tempFile, out);
+			} else if (!source.directory) {
+				copyStored(out);
+			}
+		}
+
+		// copies exactly the number of bytes the crc was computed for.
+		private void copyStored(final OutputStream out)
+				throws IOException {
+			final byte[] buffer = BUFFERS.get();
+			final InputStream in = new FileInputStream(source.file);
+			try {
+				long remaining = size;
+				while (remaining > 0) {
+					final int readCount = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (readCount < 0) {
+						throw new IOException("File " + source.file + " changed while it was zipped");
+					}
+					out.write(buffer, 0, readCount);
+					remaining -= readCount;
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		void discard() {
+			data = null;
+			if (tempFile != null) {
+				tempFile.delete();
+				tempFile = null;
+			}
+		}
+	}
+
+	/**
+	 * Writes compressed entries, and the central directory, in the zip file format. Zip64 records are not written, so
+	 * the zip file must be smaller than 4GB and have less than 65536 entries.
+	 */
+	private static final class ZipWriter implements Closeable {
+
+		private static final long LOCAL_HEADER_SIGNATURE = 0x04034b50L;
+		private static final long CENTRAL_HEADER_SIGNATURE = 0x02014b50L;
+		private static final long END_SIGNATURE = 0x06054b50L;
+		private static final int VERSION = 20;
+		private static final int UTF8_FLAG = 0x800;
+
+		private final OutputStream out;
+		private final long dosTime;
+		private final List<WrittenEntry> writtenEntries = new ArrayList<WrittenEntry>();
+		private long offset;
+
+		ZipWriter(final OutputStream out) {
+			this.out = out;
+			// like ZipOutputStream, entries are stamped with the time they were zipped.
+			this.dosTime = toDosTime(System.currentTimeMillis());
+		}
+
+		void write(final CompressedEntry entry)
+				throws IOException {
+			final byte[] name = entry.source.name.getBytes("UTF-8");
+			final int flags = name.length == entry.source.name.length() ? 0 : UTF8_FLAG;
+			final WrittenEntry written = new WrittenEntry(entry, name, flags, offset);
+
+			writeInt(LOCAL_HEADER_SIGNATURE);
+			writeShort(VERSION);
+			writeShort(flags);
+			writeShort(entry.method);
+			writeInt(dosTime);
+			writeInt(entry.crc);
+			writeInt(entry.compressedSize);
+			writeInt(entry.size);
+			writeShort(name.length);
+			writeShort(0);
+			writeBytes(name);
+			try {
+				entry.writeData(out);
+			} finally {
+				entry.discard();
+			}
+			offset += entry.compressedSize;
+			writtenEntries.add(written);
+		}
+
+		void finish()
+				throws IOException {
+			final long centralDirectoryOffset = offset;
+			for (final WrittenEntry written : writtenEntries) {
+				writeInt(CENTRAL_HEADER_SIGNATURE);
+				writeShort(VERSION);
+				writeShort(VERSION);
+				writeShort(written.flags);
+				writeShort(written.method);
+				writeInt(dosTime);
+				writeInt(written.crc);
+				writeInt(written.compressedSize);
+				writeInt(written.size);
+				writeShort(written.name.length);
+				// extra field, comment, disk number, internal and external attributes
+				writeShort(0);
+				writeShort(0);
+				writeShort(0);
+				writeShort(0);
+				writeInt(0);
+				writeInt(written.offset);
+				writeBytes(written.name);
+			}
+			final long centralDirectorySize = offset - centralDirectoryOffset;
+			writeInt(END_SIGNATURE);
+			writeShort(0);
+			writeShort(0);
+			writeShort(writtenEntries.size());
+			writeShort(writtenEntries.size());
+			writeInt(centralDirectorySize);
+			writeInt(centralDirectoryOffset);
+			writeShort(0);
+			out.flush();
+		}
+
+		@Override
+		public void close()
+				throws IOException {
+			out.close();
+		}
+
+		private void writeShort(final int value)
+				throws IOException {
+			out.write(value & 0xFF);
+			out.write((value >>> 8) & 0xFF);
+			offset += 2;
+		}
+
+		private void writeInt(final long value)
+				throws IOException {
+			writeShort((int) (value & 0xFFFF));
+			writeShort((int) ((value >>> 16) & 0xFFFF));
+		}
+
+		private void writeBytes(final byte[] bytes)
+				throws IOException {
+			out.write(bytes);
+			offset += bytes.length;
+		}
+
+		private static long toDosTime(final long time) {
+			final Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(time);
+			final int year = calendar.get(Calendar.YEAR);
+			if (year < 1980) {
+				return (1 << 21) | (1 << 16);
+			}
+			return ((long) (year - 1980) << 25) | ((calendar.get(Calendar.MONTH) + 1) << 21)
+					| (calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11)
+					| (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+		}
+	}
+
+	/**
+	 * The central directory record of a written entry.
+	 */
+	private static final class WrittenEntry {
+
+		private final byte[] name;
+		private final int flags;
+		private final int method;
+		private final long crc;
+		private final long size;
+		private final long compressedSize;
+		private final long offset;
+
+		WrittenEntry(final CompressedEntry entry, final byte[] name, final int flags, final long offset) {
+			this.name = name;
+			this.flags = flags;
+			this.method = entry.method;
+			this.crc = entry.crc;
+			this.size = entry.size;
+			this.compressedSize = entry.compressedSize;
+			this.offset = offset;
+		}
+	}
 }
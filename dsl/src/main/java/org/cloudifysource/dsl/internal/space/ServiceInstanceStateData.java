@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+
+package org.cloudifysource.dsl.internal.space;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
+
+import com.gigaspaces.annotation.pojo.SpaceClass;
+import com.gigaspaces.annotation.pojo.SpaceId;
+
+/**********
+ * A space entry that holds the current USM state of a service instance. Each service instance updates its entry
+ * whenever its state changes, so services that depend on it can wait for a running instance with a blocking read
+ * instead of sampling the admin API. Entries are written with a lease the USM keeps renewing, so the entry of a crashed
+ * GSC expires. Until it does, readers check that the instance is still deployed in the GSC with the entry's pid before
+ * trusting its state.
+ *
+ * @since 2.6.0
+ *
+ */
+@SpaceClass
+public class ServiceInstanceStateData {
+
+	private String id;
+	private String applicationName;
+	private String serviceName;
+	private Integer instanceId;
+	private Long gscPid;
+	private USMState state;
+
+	public ServiceInstanceStateData() {
+
+	}
+
+	/*********
+	 * Returns the id of the entry of a service instance.
+	 *
+	 * @param applicationName
+	 *            the application name.
+	 * @param serviceName
+	 *            the service name.
+	 * @param instanceId
+	 *            the instance id.
+	 * @return the entry id.
+	 */
+	public static String createId(final String applicationName, final String serviceName, final int instanceId) {
+		return applicationName + "." + serviceName + "[" + instanceId + "]";
+	}
+
+	@SpaceId(autoGenerate = false)
+	public String getId() {
+		return id;
+	}
+
+	public void setId(final String id) {
+		this.id = id;
+	}
+
+	public String getApplicationName() {
+		return applicationName;
+	}
+
+	public void setApplicationName(final String applicationName) {
+		this.applicationName = applicationName;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public void setServiceName(final String serviceName) {
+		this.serviceName = serviceName;
+	}
+
+	public Integer getInstanceId() {
+		return instanceId;
+	}
+
+	public void setInstanceId(final Integer instanceId) {
+		this.instanceId = instanceId;
+	}
+
+	public Long getGscPid() {
+		return gscPid;
+	}
+
+	public void setGscPid(final Long gscPid) {
+		this.gscPid = gscPid;
+	}
+
+	public USMState getState() {
+		return state;
+	}
+
+	public void setState(final USMState state) {
+		this.state = state;
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceInstanceStateData [id=" + id + ", applicationName=" + applicationName + ", serviceName="
+				+ serviceName + ", instanceId=" + instanceId + ", gscPid=" + gscPid + ", state=" + state + "]";
+	}
+
+}
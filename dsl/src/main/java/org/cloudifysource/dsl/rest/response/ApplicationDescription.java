@@ -35,6 +35,7 @@ public class ApplicationDescription {
 	private String applicationName;
 	private String authGroups;
 	private DeploymentState applicationState;
+	private long version;
 
 	public List<ServiceDescription> getServicesDescription() {
 		return servicesDescription;
@@ -69,4 +70,18 @@ public class ApplicationDescription {
 		return this.applicationState;
 	}
 
+	/**
+	 * Returns the version of the deployment state view this description was last changed in. Descriptions with the
+	 * same version did not change in between. 0 if the description was not served from the view.
+	 *
+	 * @return the version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(final long version) {
+		this.version = version;
+	}
+
 }
@@ -29,6 +29,7 @@ import org.cloudifysource.dsl.MaxSizeList;
 public class DeploymentEvents {
 
     private List<DeploymentEvent> events = new MaxSizeList<DeploymentEvent>(100);
+    private boolean truncated;
 
     public List<DeploymentEvent> getEvents() {
         return events;
@@ -37,4 +38,16 @@ public class DeploymentEvents {
     public void setEvents(final List<DeploymentEvent> events) {
         this.events = events;
     }
+
+    /**
+     * @return true if some of the requested events were dropped by the server before they were read.
+     * The returned events then start at the oldest event still available.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(final boolean truncated) {
+        this.truncated = truncated;
+    }
 }
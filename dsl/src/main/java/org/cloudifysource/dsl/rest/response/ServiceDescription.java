@@ -34,6 +34,7 @@ public class ServiceDescription {
 	private String applicationName;
 	private DeploymentState serviceState;
 	private String deploymentId;
+	private long version;
 
 	public ServiceDescription() {
 
@@ -96,4 +97,18 @@ public class ServiceDescription {
 		this.deploymentId = deploymentId;
 	}
 
+	/**
+	 * Returns the version of the deployment state view this description was last changed in. Descriptions with the
+	 * same version did not change in between. 0 if the description was not served from the view.
+	 *
+	 * @return the version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(final long version) {
+		this.version = version;
+	}
+
 }
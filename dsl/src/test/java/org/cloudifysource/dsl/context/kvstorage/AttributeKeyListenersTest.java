@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.ServiceCloudifyAttribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the routing of attribute notifications to the listeners of a key.
+ *
+ */
+public class AttributeKeyListenersTest {
+
+	@Test
+	public void testFailingListenerDoesNotStopOthers() {
+		final AttributeKeyListeners keyListeners = new AttributeKeyListeners();
+		final ServiceCloudifyAttribute attribute = new ServiceCloudifyAttribute("app", "service", "key", "value");
+		final AtomicInteger notified = new AtomicInteger();
+
+		keyListeners.add(attribute.getUid(), new AttributeChangeListener() {
+			@Override
+			public void attributeChanged(final AbstractCloudifyAttribute changed, final boolean removed) {
+				throw new IllegalStateException("failing listener");
+			}
+		});
+		keyListeners.add(attribute.getUid(), new AttributeChangeListener() {
+			@Override
+			public void attributeChanged(final AbstractCloudifyAttribute changed, final boolean removed) {
+				notified.incrementAndGet();
+			}
+		});
+
+		keyListeners.attributeChanged(attribute, false);
+		Assert.assertEquals(1, notified.get());
+	}
+
+	@Test
+	public void testLegacyIdIsRoutedToKeyListeners() {
+		final AttributeKeyListeners keyListeners = new AttributeKeyListeners();
+		final ServiceCloudifyAttribute attribute = new ServiceCloudifyAttribute("app", "service", "key", "value");
+		final AtomicInteger notified = new AtomicInteger();
+		keyListeners.add(attribute.getUid(), new AttributeChangeListener() {
+			@Override
+			public void attributeChanged(final AbstractCloudifyAttribute changed, final boolean removed) {
+				notified.incrementAndGet();
+			}
+		});
+
+		final ServiceCloudifyAttribute legacy = new ServiceCloudifyAttribute("app", "service", "key", "value");
+		legacy.setUid("auto-generated");
+		keyListeners.attributeChanged(legacy, false);
+		Assert.assertEquals(1, notified.get());
+	}
+}
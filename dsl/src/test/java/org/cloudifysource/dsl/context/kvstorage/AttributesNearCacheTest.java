@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.ServiceCloudifyAttribute;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AttributesNearCache}, with the management space replaced by a single attribute value.
+ *
+ */
+public class AttributesNearCacheTest {
+
+	private static final long MAX_AGE_MILLIS = 200;
+
+	private volatile Object spaceValue;
+	private final AtomicInteger reads = new AtomicInteger();
+
+	private final AttributesNearCache cache = new AttributesNearCache(null, 10, MAX_AGE_MILLIS) {
+
+		@Override
+		AbstractCloudifyAttribute read(final AbstractCloudifyAttribute template) {
+			reads.incrementAndGet();
+			if (spaceValue == null) {
+				return null;
+			}
+			return new ServiceCloudifyAttribute("app", "service", "key", spaceValue);
+		}
+	};
+
+	private final ServiceCloudifyAttribute template = new ServiceCloudifyAttribute("app", "service", "key", null);
+
+	@Test
+	public void testNotificationEvictsEntry() {
+		spaceValue = "one";
+		Assert.assertEquals("one", cache.get(template));
+		Assert.assertEquals("one", cache.get(template));
+		Assert.assertEquals(1, reads.get());
+
+		spaceValue = "two";
+		cache.attributeChanged(new ServiceCloudifyAttribute("app", "service", "key", "two"), false);
+		Assert.assertEquals("two", cache.get(template));
+		Assert.assertEquals(2, reads.get());
+	}
+
+	@Test
+	public void testMissedNotificationExpires() throws InterruptedException {
+		spaceValue = "one";
+		Assert.assertEquals("one", cache.get(template));
+
+		// changed without a notification
+		spaceValue = "two";
+		Assert.assertEquals("one", cache.get(template));
+
+		Thread.sleep(MAX_AGE_MILLIS * 2);
+		Assert.assertEquals("two", cache.get(template));
+	}
+
+	@Test
+	public void testMissingAttributeExpires() throws InterruptedException {
+		Assert.assertFalse(cache.containsKey(template));
+
+		spaceValue = "one";
+		Assert.assertFalse(cache.containsKey(template));
+
+		Thread.sleep(MAX_AGE_MILLIS * 2);
+		Assert.assertTrue(cache.containsKey(template));
+	}
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.context.kvstorage.spaceentries;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the space id generated for attributes, which allows replacing a value in a single write.
+ * 
+ */
+public class CloudifyAttributeUidTest {
+
+	@Test
+	public void testSameScopeAndKeyHaveSameUid() {
+		Assert.assertEquals(new InstanceCloudifyAttribute("app", "service", 1, "key", "a").getUid(),
+				new InstanceCloudifyAttribute("app", "service", 1, "key", "b").getUid());
+		Assert.assertEquals(new GlobalCloudifyAttribute("key", "a").getUid(),
+				new GlobalCloudifyAttribute("key", "b").getUid());
+	}
+
+	@Test
+	public void testDifferentScopesHaveDifferentUids() {
+		final String instanceUid = new InstanceCloudifyAttribute("app", "service", 1, "key", null).getUid();
+		Assert.assertFalse(instanceUid.equals(new InstanceCloudifyAttribute("app", "service", 2, "key", null).getUid()));
+		Assert.assertFalse(instanceUid.equals(new ServiceCloudifyAttribute("app", "service", "key", null).getUid()));
+		Assert.assertFalse(new ServiceCloudifyAttribute("app", "service", "key", null).getUid()
+				.equals(new ServiceCloudifyAttribute("app", "other", "key", null).getUid()));
+		Assert.assertFalse(new ApplicationCloudifyAttribute("app", "key", null).getUid()
+				.equals(new GlobalCloudifyAttribute("key", null).getUid()));
+	}
+
+	@Test
+	public void testTemplateWithoutKeyHasNoUid() {
+		Assert.assertNull(new ServiceCloudifyAttribute("app", "service", null, null).getUid());
+		Assert.assertNull(new InstanceCloudifyAttribute().getUid());
+	}
+
+	@Test
+	public void testExplicitUidIsKept() {
+		final ApplicationCloudifyAttribute attribute = new ApplicationCloudifyAttribute("app", "key", null);
+		attribute.setUid("stored");
+		Assert.assertEquals("stored", attribute.getUid());
+	}
+	@Test
+	public void testSeparatorInNamesDoesNotCollide() {
+		Assert.assertFalse(new ServiceCloudifyAttribute("a", "b", "c/d", null).getUid()
+				.equals(new ServiceCloudifyAttribute("a", "b/c", "d", null).getUid()));
+		Assert.assertFalse(new ApplicationCloudifyAttribute(null, "key", null).getUid()
+				.equals(new ApplicationCloudifyAttribute("null", "key", null).getUid()));
+	}
+
+	@Test
+	public void testScopePrefix() {
+		final String prefix = new ServiceCloudifyAttribute("a", "b", null, null).createScopeUidPrefix();
+		Assert.assertTrue(new ServiceCloudifyAttribute("a", "b", "c/d", null).getUid().startsWith(prefix));
+		Assert.assertFalse(new ServiceCloudifyAttribute("a", "b/c", "d", null).getUid().startsWith(prefix));
+		Assert.assertFalse(new ServiceCloudifyAttribute("a", "bc", "d", null).getUid().startsWith(prefix));
+	}
+}
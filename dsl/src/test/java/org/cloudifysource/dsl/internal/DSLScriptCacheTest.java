@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.internal;
+
+import groovy.lang.Binding;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DSLScriptCache}.
+ */
+public class DSLScriptCacheTest {
+
+	private static final String SCRIPT = "return name + '-' + args.size()";
+
+	private final CompilerConfiguration cc = new CompilerConfiguration();
+	private final ClassLoader parent = DSLScriptCacheTest.class.getClassLoader();
+	private final List<String> noClasspath = Collections.emptyList();
+	private File dir;
+
+	@Before
+	public void before() throws IOException {
+		dir = File.createTempFile("DSLScriptCacheTest", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void after() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private Object run(final DSLScriptCache.CompiledScript script, final String name) {
+		final Binding binding = new Binding();
+		binding.setVariable("name", name);
+		binding.setVariable("args", new String[0]);
+		return script.createScript(binding).run();
+	}
+
+	@Test
+	public void testCachedScriptRunsWithNewBinding() {
+		final DSLScriptCache cache = new DSLScriptCache(2);
+		final DSLScriptCache.CompiledScript first = cache.getScript(SCRIPT, "dslEntity", noClasspath, parent, cc);
+		final DSLScriptCache.CompiledScript second = cache.getScript(SCRIPT, "dslEntity", noClasspath, parent, cc);
+
+		Assert.assertSame(first, second);
+		Assert.assertEquals("a-0", run(first, "a"));
+		Assert.assertEquals("b-0", run(second, "b"));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(cache.getCompileTimeMillis(), cache.getCompileTimeSavedMillis());
+	}
+
+	@Test
+	public void testChangedContentIsCompiled() {
+		final DSLScriptCache cache = new DSLScriptCache(2);
+		final DSLScriptCache.CompiledScript first = cache.getScript(SCRIPT, "dslEntity", noClasspath, parent, cc);
+		final DSLScriptCache.CompiledScript second =
+				cache.getScript(SCRIPT + " + '!'", "dslEntity", noClasspath, parent, cc);
+
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals("a-0!", run(second, "a"));
+		Assert.assertEquals(2, cache.getMissCount());
+
+		cache.getScript("1", "dslEntity", noClasspath, parent, cc);
+		Assert.assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testChangedClasspathIsCompiled() throws IOException {
+		final File helper = new File(dir, "Helper.groovy");
+		FileUtils.writeStringToFile(helper, "class Helper { static String get() { 'one' } }");
+		final List<String> classpath = Arrays.asList(dir.getAbsolutePath());
+
+		final DSLScriptCache cache = new DSLScriptCache(2);
+		final DSLScriptCache.CompiledScript first = cache.getScript("Helper.get()", "dslEntity", classpath, parent, cc);
+		Assert.assertSame(first, cache.getScript("Helper.get()", "dslEntity", classpath, parent, cc));
+
+		// unrelated files in the directory do not affect the key
+		FileUtils.writeStringToFile(new File(dir, "service.out"), "output");
+		Assert.assertSame(first, cache.getScript("Helper.get()", "dslEntity", classpath, parent, cc));
+
+		FileUtils.writeStringToFile(helper, "class Helper { static String get() { 'three' } }");
+		Assert.assertNotSame(first, cache.getScript("Helper.get()", "dslEntity", classpath, parent, cc));
+	}
+
+	@Test
+	public void testChangedPackageClassIsCompiled() throws IOException {
+		final File helper = new File(dir, "helpers/Helper.groovy");
+		FileUtils.writeStringToFile(helper, "package helpers\nclass Helper { static String get() { 'one' } }");
+		final List<String> classpath = Arrays.asList(dir.getAbsolutePath());
+
+		final DSLScriptCache cache = new DSLScriptCache(2);
+		final DSLScriptCache.CompiledScript first = cache.getScript("1", "dslEntity", classpath, parent, cc);
+		Assert.assertSame(first, cache.getScript("1", "dslEntity", classpath, parent, cc));
+
+		FileUtils.writeStringToFile(helper, "package helpers\nclass Helper { static String get() { 'two' } }");
+		Assert.assertNotSame(first, cache.getScript("1", "dslEntity", classpath, parent, cc));
+	}
+
+	@Test
+	public void testSameRecipeInAnotherDirectoryIsCompiled() throws IOException {
+		final File first = new File(dir, "first");
+		final File second = new File(dir, "second");
+		FileUtils.writeStringToFile(new File(first, "Helper.groovy"), "class Helper { static String get() { 'one' } }");
+		FileUtils.copyDirectory(first, second);
+
+		// the cached class loader loads classes from the first directory only, so the second is compiled on its own.
+		final DSLScriptCache cache = new DSLScriptCache(2);
+		final DSLScriptCache.CompiledScript script =
+				cache.getScript("1", "dslEntity", Arrays.asList(first.getAbsolutePath()), parent, cc);
+		Assert.assertNotSame(script,
+				cache.getScript("1", "dslEntity", Arrays.asList(second.getAbsolutePath()), parent, cc));
+	}
+
+	@Test
+	public void testDisabledCache() {
+		final DSLScriptCache cache = new DSLScriptCache(0);
+		Assert.assertNotSame(cache.getScript(SCRIPT, "dslEntity", noClasspath, parent, cc),
+				cache.getScript(SCRIPT, "dslEntity", noClasspath, parent, cc));
+		Assert.assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.dsl.packaging;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.Stack;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.cloudifysource.dsl.internal.packaging.ZipUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ZipUtils}. The ignored {@link #benchmarkZipAndUnzip()} logs the zip and unzip times of a recipe sized
+ * directory, compared to a single threaded {@link ZipOutputStream}, and is meant to be run manually.
+ */
+public class ZipUtilsTest {
+
+	private static final Logger logger = Logger.getLogger(ZipUtilsTest.class.getName());
+
+	private static final int TEXT_FILES = 10;
+	private static final int TEXT_FILE_SIZE = 4 * 1024;
+	private static final int ARCHIVE_FILES = 2;
+	private static final int ARCHIVE_FILE_SIZE = 16 * 1024;
+	private static final int LARGE_TEXT_FILE_SIZE = 64 * 1024;
+
+	private static final int BENCHMARK_TEXT_FILES = 200;
+	private static final int BENCHMARK_TEXT_FILE_SIZE = 64 * 1024;
+	private static final int BENCHMARK_ARCHIVE_FILES = 8;
+	private static final int BENCHMARK_ARCHIVE_FILE_SIZE = 2 * 1024 * 1024;
+	private static final int BENCHMARK_LARGE_TEXT_FILE_SIZE = 6 * 1024 * 1024;
+
+	private File dir;
+
+	@Before
+	public void before() throws IOException {
+		dir = File.createTempFile("ZipUtilsTest", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@After
+	public void after() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testZipAndUnzip() throws IOException {
+		final File source = createRecipe(TEXT_FILES, TEXT_FILE_SIZE, ARCHIVE_FILES, ARCHIVE_FILE_SIZE,
+				LARGE_TEXT_FILE_SIZE);
+
+		final File referenceZip = new File(dir, "reference.zip");
+		zipWithZipOutputStream(source, referenceZip);
+		final File zip = new File(dir, "recipe.zip");
+		ZipUtils.zip(source, zip);
+		final File target = new File(dir, "target");
+		ZipUtils.unzip(zip, target);
+
+		assertSameEntries(referenceZip, zip);
+		assertSameContent(source, target);
+
+		final ZipFile zipFile = new ZipFile(zip);
+		try {
+			Assert.assertEquals(ZipEntry.STORED, zipFile.getEntry("lib/lib-0.jar").getMethod());
+			Assert.assertEquals(ZipEntry.STORED, zipFile.getEntry("lib/archive-1.tar.gz").getMethod());
+			Assert.assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("scripts/script-0.groovy").getMethod());
+			Assert.assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("large.log").getMethod());
+			Assert.assertTrue(zipFile.getEntry("scripts/nested/").isDirectory());
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Ignore
+	@Test
+	public void benchmarkZipAndUnzip() throws IOException {
+		final File source = createRecipe(BENCHMARK_TEXT_FILES, BENCHMARK_TEXT_FILE_SIZE, BENCHMARK_ARCHIVE_FILES,
+				BENCHMARK_ARCHIVE_FILE_SIZE, BENCHMARK_LARGE_TEXT_FILE_SIZE);
+
+		final File referenceZip = new File(dir, "reference.zip");
+		long start = System.currentTimeMillis();
+		zipWithZipOutputStream(source, referenceZip);
+		final long referenceTime = System.currentTimeMillis() - start;
+
+		final File zip = new File(dir, "recipe.zip");
+		start = System.currentTimeMillis();
+		ZipUtils.zip(source, zip);
+		final long zipTime = System.currentTimeMillis() - start;
+
+		final File target = new File(dir, "target");
+		start = System.currentTimeMillis();
+		ZipUtils.unzip(zip, target);
+		final long unzipTime = System.currentTimeMillis() - start;
+
+		logger.info("Zipped " + FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(source)) + " in "
+				+ zipTime + " ms (" + zip.length() + " bytes), ZipOutputStream took " + referenceTime + " ms ("
+				+ referenceZip.length() + " bytes). Unzipped in " + unzipTime + " ms");
+	}
+
+	@Test
+	public void testEmptyFilesAndDirectories() throws IOException {
+		final File source = new File(dir, "source");
+		new File(source, "empty/dir").mkdirs();
+		FileUtils.writeStringToFile(new File(source, "empty.txt"), "");
+		FileUtils.writeStringToFile(new File(source, "empty.jar"), "");
+		FileUtils.writeStringToFile(new File(source, "service name.properties"), "name=\"service\"");
+
+		final File zip = new File(dir, "recipe.zip");
+		ZipUtils.zip(source, zip);
+		final File target = new File(dir, "target");
+		ZipUtils.unzip(zip, target);
+
+		assertSameContent(source, target);
+		Assert.assertTrue(new File(target, "empty/dir").isDirectory());
+	}
+
+	private File createRecipe(final int textFiles, final int textFileSize, final int archiveFiles,
+			final int archiveFileSize, final int largeTextFileSize) throws IOException {
+		final File source = new File(dir, "source");
+		final Random random = new Random(1);
+		final File scripts = new File(source, "scripts/nested");
+		scripts.mkdirs();
+		for (int i = 0; i < textFiles; i++) {
+			final File parent = i % 2 == 0 ? scripts.getParentFile() : scripts;
+			writeText(new File(parent, "script-" + i + ".groovy"), textFileSize, random);
+		}
+		final File lib = new File(source, "lib");
+		lib.mkdirs();
+		for (int i = 0; i < archiveFiles; i++) {
+			final String name = i % 2 == 0 ? "lib-" + i + ".jar" : "archive-" + i + ".tar.gz";
+			writeRandom(new File(lib, name), archiveFileSize, random);
+		}
+		writeText(new File(source, "large.log"), largeTextFileSize, random);
+		return source;
+	}
+
+	private static void writeText(final File file, final int size, final Random random) throws IOException {
+		final String[] words = { "service", "install", "start", "context", "recipe", "cloudify", "\n", "= ", "{ }" };
+		final StringBuilder sb = new StringBuilder(size);
+		while (sb.length() < size) {
+			sb.append(words[random.nextInt(words.length)]).append(' ');
+		}
+		FileUtils.writeStringToFile(file, sb.toString());
+	}
+
+	private static void writeRandom(final File file, final int size, final Random random) throws IOException {
+		final byte[] bytes = new byte[size];
+		random.nextBytes(bytes);
+		FileUtils.writeByteArrayToFile(file, bytes);
+	}
+
+	// the way directories were zipped before entries were compressed in parallel.
+	private static void zipWithZipOutputStream(final File directory, final File zipfile) throws IOException {
+		final URI base = directory.toURI();
+		final Stack<File> stack = new Stack<File>();
+		stack.push(directory);
+		final ZipOutputStream zout = new ZipOutputStream(new FileOutputStream(zipfile));
+		try {
+			final byte[] buffer = new byte[1024];
+			while (!stack.isEmpty()) {
+				for (final File kid : stack.pop().listFiles()) {
+					String name = base.relativize(kid.toURI()).getPath();
+					if (kid.isDirectory()) {
+						stack.push(kid);
+						name = name.endsWith("/") ? name : name + "/";
+						zout.putNextEntry(new ZipEntry(name));
+					} else {
+						zout.putNextEntry(new ZipEntry(name));
+						final InputStream in = new FileInputStream(kid);
+						try {
+							int readCount;
+							while ((readCount = in.read(buffer)) >= 0) {
+								zout.write(buffer, 0, readCount);
+							}
+						} finally {
+							in.close();
+						}
+						zout.closeEntry();
+					}
+				}
+			}
+		} finally {
+			zout.close();
+		}
+	}
+
+	private static void assertSameEntries(final File expected, final File actual) throws IOException {
+		final ZipFile expectedZip = new ZipFile(expected);
+		final ZipFile actualZip = new ZipFile(actual);
+		try {
+			Assert.assertEquals(expectedZip.size(), actualZip.size());
+			final Enumeration<? extends ZipEntry> expectedEntries = expectedZip.entries();
+			final Enumeration<? extends ZipEntry> actualEntries = actualZip.entries();
+			while (expectedEntries.hasMoreElements()) {
+				final ZipEntry expectedEntry = expectedEntries.nextElement();
+				final ZipEntry actualEntry = actualEntries.nextElement();
+				Assert.assertEquals(expectedEntry.getName(), actualEntry.getName());
+				if (!expectedEntry.isDirectory()) {
+					Assert.assertEquals(expectedEntry.getCrc(), actualEntry.getCrc());
+					Assert.assertEquals(expectedEntry.getSize(), actualEntry.getSize());
+				}
+			}
+		} finally {
+			expectedZip.close();
+			actualZip.close();
+		}
+	}
+
+	private static void assertSameContent(final File expected, final File actual) throws IOException {
+		final String[] names = expected.list();
+		Assert.assertEquals(names.length, actual.list().length);
+		for (final String name : names) {
+			final File expectedFile = new File(expected, name);
+			final File actualFile = new File(actual, name);
+			if (expectedFile.isDirectory()) {
+				Assert.assertTrue(actualFile.isDirectory());
+				assertSameContent(expectedFile, actualFile);
+			} else {
+				Assert.assertTrue(FileUtils.contentEquals(expectedFile, actualFile));
+			}
+		}
+	}
+}
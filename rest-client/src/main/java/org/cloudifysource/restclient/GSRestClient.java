@@ -12,10 +12,13 @@
  ******************************************************************************/
 package org.cloudifysource.restclient;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URL;
@@ -231,6 +234,67 @@ public class GSRestClient {
 		return HTTPS.equals(url.getProtocol());
 	}
 
+	/**
+	 * Performs a REST GET operation on the given (relative) URL, and streams the response body into the given file.
+	 * The body is copied as it is received, so it is never held in memory as a whole. Used for large binary
+	 * responses, such as the machines dump.
+	 *
+	 * @param relativeUrl
+	 *            the Relative URL to the requested resource. The rest server IP and port are not required.
+	 *            <p/>
+	 *            example: "/service/dump/machines/stream" will download the dump of all machines.
+	 * @param targetFile
+	 *            The file to write the response body to. Overwritten if it exists.
+	 * @throws ErrorStatusException
+	 *             Reporting errors of all types (IO, HTTP, rest etc.)
+	 */
+	public final void getToFile(final String relativeUrl, final File targetFile) throws ErrorStatusException {
+		final String url = getFullUrl(relativeUrl);
+		final HttpGet httpMethod = new HttpGet(url);
+		try {
+			final HttpResponse response = httpClient.execute(httpMethod);
+			final int statusCode = response.getStatusLine().getStatusCode();
+			if (statusCode != CloudifyConstants.HTTP_STATUS_CODE_OK) {
+				logger.log(Level.FINE, httpMethod.getURI() + MSG_RESPONSE_CODE + statusCode);
+				if (statusCode == CloudifyConstants.HTTP_STATUS_NOT_FOUND) {
+					throw new ErrorStatusException("URL_not_found", httpMethod.getURI());
+				} else if (statusCode == CloudifyConstants.HTTP_STATUS_ACCESS_DENIED) {
+					throw new ErrorStatusException(CloudifyErrorMessages.NO_PERMISSION_ACCESS_DENIED.getName(),
+							httpMethod.getURI());
+				} else if (statusCode == CloudifyConstants.HTTP_STATUS_UNAUTHORIZED) {
+					throw new ErrorStatusException(CloudifyErrorMessages.UNAUTHORIZED.getName(),
+							response.getStatusLine().getReasonPhrase(), httpMethod.getURI());
+				}
+				throw new ErrorStatusException(REASON_CODE_COMM_ERR, httpMethod.getURI(),
+						response.getStatusLine().toString());
+			}
+			final HttpEntity entity = response.getEntity();
+			if (entity == null) {
+				throw new ErrorStatusException(REASON_CODE_COMM_ERR, httpMethod.getURI(), MSG_RESPONSE_ENTITY_NULL);
+			}
+			final OutputStream out = new BufferedOutputStream(new FileOutputStream(targetFile));
+			boolean completed = false;
+			try {
+				try {
+					entity.writeTo(out);
+				} finally {
+					out.close();
+				}
+				completed = true;
+			} finally {
+				// do not leave a partial file behind.
+				if (!completed && !targetFile.delete()) {
+					logger.warning("Failed to delete partially downloaded file: " + targetFile);
+				}
+			}
+		} catch (final IOException e) {
+			logger.log(Level.INFO, httpMethod.getURI() + MSG_REST_API_ERR, e);
+			throw new ErrorStatusException(e, REASON_CODE_COMM_ERR, httpMethod.getURI(), e.getMessage());
+		} finally {
+			httpMethod.abort();
+		}
+	}
+
 	/**
 	 * Performs a REST GET operation on the given (relative) URL, using the Admin API.
 	 *
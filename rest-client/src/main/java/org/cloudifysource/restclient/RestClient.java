@@ -73,6 +73,8 @@ public class RestClient {
 	private static final String INSTALL_APPLICATION_URL_FORMAT = "%s";
 	private static final String UPLOAD_URL_FORMAT = "%s";
 	private static final String GET_DEPLOYMENT_EVENTS_URL_FORMAT = "%s/events/?from=%s&to=%s";
+	private static final String WAIT_FOR_DEPLOYMENT_EVENTS_URL_FORMAT =
+			"%s/events/?from=%s&to=%s&waitTimeoutInSeconds=%s";
 	private static final String GET_SERVICE_DESCRIPTION_URL_FORMAT = "%s/service/%s/description";
 	private static final String GET_SERVICES_DESCRIPTION_URL_FORMAT = "%s/description";
 	private static final String GET_APPLICATION_DESCRIPTION_URL_FORMAT = "applications/%s/description";
@@ -262,6 +264,35 @@ public class RestClient {
 		});
 	}
 
+	/**
+	 * Provides access to life cycle events of a service. If no event with an index of at least {@code from} exists
+	 * yet, the server holds the request until such an event arrives or the wait timeout is reached.
+	 * 
+	 * @param deploymentId
+	 *            The deployment id given at installation time.
+	 * @param from
+	 *            The starting event index.
+	 * @param to
+	 *            The last event index. passing -1 means all events (limit to 100 at a time)
+	 * @param waitTimeoutInSeconds
+	 *            The maximum time the server should wait for new events.
+	 * @return The events. May be empty if the wait timeout was reached.
+	 * @throws RestClientException .
+	 */
+	public DeploymentEvents waitForDeploymentEvents(final String deploymentId, final int from, final int to,
+			final int waitTimeoutInSeconds)
+			throws RestClientException {
+		String url = getFormattedUrl(
+				versionedDeploymentControllerUrl, 
+				WAIT_FOR_DEPLOYMENT_EVENTS_URL_FORMAT, 
+				deploymentId, 
+				String.valueOf(from), 
+				String.valueOf(to),
+				String.valueOf(waitTimeoutInSeconds));
+		return executor.get(url, new TypeReference<Response<DeploymentEvents>>() {
+		});
+	}
+
 	/**
 	 * 
 	 * @param appName
@@ -24,9 +24,12 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.PreDestroy;
+
 import org.cloudifysource.dsl.cloud.Cloud;
 import org.cloudifysource.dsl.cloud.compute.ComputeTemplate;
 import org.cloudifysource.dsl.internal.packaging.CloudConfigurationHolder;
+import org.cloudifysource.rest.util.DeploymentStateView;
 import org.cloudifysource.rest.util.RestPollingRunnable;
 import org.cloudifysource.security.CustomPermissionEvaluator;
 import org.openspaces.admin.Admin;
@@ -51,6 +54,7 @@ public class RestConfiguration {
     private final AtomicInteger lastTemplateFileNum = new AtomicInteger(0);
     private File restTempFolder;
 	private CustomPermissionEvaluator permissionEvaluator;
+	private DeploymentStateView deploymentStateView;
 
 	/**
      * A set containing all of the executed lifecycle events. used to avoid duplicate prints.
@@ -187,4 +191,29 @@ public class RestConfiguration {
 		this.permissionEvaluator = permissionEvaluator;
 	}
 
+	/**
+	 * Returns the deployment state view shared by the controllers, creating and starting it on first use.
+	 *
+	 * @return the deployment state view.
+	 */
+	public synchronized DeploymentStateView getDeploymentStateView() {
+		if (deploymentStateView == null) {
+			final DeploymentStateView view = new DeploymentStateView(admin, gigaSpace, scheduledExecutor);
+			view.start();
+			deploymentStateView = view;
+		}
+		return deploymentStateView;
+	}
+
+	/**
+	 * Stops the deployment state view, if it was started.
+	 */
+	@PreDestroy
+	public synchronized void destroy() {
+		if (deploymentStateView != null) {
+			deploymentStateView.stop();
+			deploymentStateView = null;
+		}
+	}
+
 }
@@ -15,6 +15,7 @@ package org.cloudifysource.rest;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FileUtils;
@@ -22,6 +23,7 @@ import org.apache.commons.lang.StringUtils;
 import org.cloudifysource.dsl.cloud.Cloud;
 import org.cloudifysource.dsl.cloud.compute.CloudCompute;
 import org.cloudifysource.dsl.cloud.compute.ComputeTemplate;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.CloudifyAttributesWriter;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
 import org.cloudifysource.dsl.internal.ComputeTemplatesReader;
 import org.cloudifysource.dsl.internal.DSLException;
@@ -74,6 +76,7 @@ public class RestConfigurationFactoryBean implements FactoryBean<RestConfigurati
     public void initRestConfiguration() {
         logger.info("Initializing cloud configuration");
         config.setGigaSpace(gigaSpace);
+        migrateLegacyAttributes();
         config.setAdmin(admin);
         config.setPermissionEvaluator(permissionEvaluator);
         Cloud cloud = readCloud();
@@ -97,6 +100,18 @@ public class RestConfigurationFactoryBean implements FactoryBean<RestConfigurati
         }
     }
 	
+    private void migrateLegacyAttributes() {
+        try {
+            final int migrated = CloudifyAttributesWriter.migrateLegacyAttributes(gigaSpace);
+            if (migrated > 0) {
+                logger.info("Moved " + migrated + " attributes written by an earlier version to their derived ids");
+            }
+        } catch (final Exception e) {
+            logger.log(Level.WARNING, "Failed to migrate attributes written by an earlier version: "
+                    + e.getMessage(), e);
+        }
+    }
+
     private File createRestTempFolder() {
 		File restTempFolder;
     	if (!StringUtils.isEmpty(temporaryFolder)) {
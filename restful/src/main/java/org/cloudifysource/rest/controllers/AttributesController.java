@@ -25,10 +25,9 @@ import java.util.logging.Logger;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 
-import net.jini.core.lease.Lease;
-
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.ApplicationCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.CloudifyAttributesWriter;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.GlobalCloudifyAttribute;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.InstanceCloudifyAttribute;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.ServiceCloudifyAttribute;
@@ -50,8 +49,6 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
-import com.gigaspaces.client.WriteModifiers;
-
 /**
  * @author noak
  * @since 2.2.0
@@ -443,11 +440,9 @@ public class AttributesController {
 
 		final InstanceCloudifyAttribute attribute =
 				new InstanceCloudifyAttribute(applicationName, serviceName, instanceId, attributeName, null);
-		// take (delete)
-		final InstanceCloudifyAttribute previousValue = gigaSpace.take(attribute);
-		// write
 		attribute.setValue(attributeValue);
-		gigaSpace.write(attribute);
+		// write (replaces the previous value)
+		final InstanceCloudifyAttribute previousValue = CloudifyAttributesWriter.put(gigaSpace, attribute);
 		final Object value = previousValue != null ? previousValue.getValue() : null;
 
 		final Map<String, Object> mapResult = new HashMap<String, Object>();
@@ -520,11 +515,9 @@ public class AttributesController {
 
 		final ServiceCloudifyAttribute attribute =
 				new ServiceCloudifyAttribute(applicationName, serviceName, attributeName, null);
-		// take (delete)
-		final ServiceCloudifyAttribute previousValue = gigaSpace.take(attribute);
-		// write
 		attribute.setValue(attributeValue);
-		gigaSpace.write(attribute);
+		// write (replaces the previous value)
+		final ServiceCloudifyAttribute previousValue = CloudifyAttributesWriter.put(gigaSpace, attribute);
 		final Object value = previousValue != null ? previousValue.getValue() : null;
 
 		final Map<String, Object> mapResult = new HashMap<String, Object>();
@@ -589,11 +582,9 @@ public class AttributesController {
 
 		final ApplicationCloudifyAttribute attribute =
 				new ApplicationCloudifyAttribute(applicationName, attributeName, null);
-		// take (delete)
-		final ApplicationCloudifyAttribute previousValue = gigaSpace.take(attribute);
-		// write
 		attribute.setValue(attributeValue);
-		gigaSpace.write(attribute);
+		// write (replaces the previous value)
+		final ApplicationCloudifyAttribute previousValue = CloudifyAttributesWriter.put(gigaSpace, attribute);
 		final Object value = previousValue != null ? previousValue.getValue() : null;
 
 		final Map<String, Object> mapResult = new HashMap<String, Object>();
@@ -633,13 +624,10 @@ public class AttributesController {
 		final AbstractCloudifyAttribute[] attributesToWrite = new AbstractCloudifyAttribute[attributesMap.size()];
 		int i = 0;
 		for (final Entry<String, Object> attrEntry : attributesMap.entrySet()) {
-			final AbstractCloudifyAttribute newAttr = createCloudifyAttribute(applicationName,
-					serviceName, instanceId, attrEntry.getKey(), null);
-			gigaSpace.take(newAttr);
-			newAttr.setValue(attrEntry.getValue());
-			attributesToWrite[i++] = newAttr;
+			attributesToWrite[i++] = createCloudifyAttribute(applicationName,
+					serviceName, instanceId, attrEntry.getKey(), attrEntry.getValue());
 		}
-		gigaSpace.writeMultiple(attributesToWrite, Lease.FOREVER, WriteModifiers.UPDATE_OR_WRITE);
+		CloudifyAttributesWriter.putAll(gigaSpace, attributesToWrite);
 	}
 
 	private AbstractCloudifyAttribute createCloudifyAttribute(final String applicationName,
@@ -679,11 +667,9 @@ public class AttributesController {
 		}
 
 		final GlobalCloudifyAttribute attribute = new GlobalCloudifyAttribute(attributeName, null);
-		// take (delete)
-		final GlobalCloudifyAttribute previousValue = gigaSpace.take(attribute);
-		// write
 		attribute.setValue(attributeValue);
-		gigaSpace.write(attribute);
+		// write (replaces the previous value)
+		final GlobalCloudifyAttribute previousValue = CloudifyAttributesWriter.put(gigaSpace, attribute);
 		final Object value = previousValue != null ? previousValue.getValue() : null;
 
 		final Map<String, Object> mapResult = new HashMap<String, Object>();
@@ -35,6 +35,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import net.jini.core.discovery.LookupLocator;
 
@@ -53,6 +54,7 @@ import org.cloudifysource.dsl.internal.DSLApplicationCompilatioResult;
 import org.cloudifysource.dsl.internal.DSLServiceCompilationResult;
 import org.cloudifysource.dsl.internal.DSLUtils;
 import org.cloudifysource.dsl.internal.ServiceReader;
+import org.cloudifysource.dsl.internal.space.ServiceInstanceStateData;
 import org.cloudifysource.dsl.rest.request.InstallApplicationRequest;
 import org.cloudifysource.dsl.rest.request.InstallServiceRequest;
 import org.cloudifysource.dsl.rest.request.SetApplicationAttributesRequest;
@@ -97,7 +99,7 @@ import org.cloudifysource.rest.events.cache.EventsCacheValue;
 import org.cloudifysource.rest.exceptions.ResourceNotFoundException;
 import org.cloudifysource.rest.interceptors.ApiVersionValidationAndRestResponseBuilderInterceptor;
 import org.cloudifysource.rest.repo.UploadRepo;
-import org.cloudifysource.rest.util.ApplicationDescriptionFactory;
+import org.cloudifysource.rest.util.DeploymentStateView;
 import org.cloudifysource.rest.util.IsolationUtils;
 import org.cloudifysource.rest.util.LifecycleEventsContainer;
 import org.cloudifysource.rest.util.RestPollingRunnable;
@@ -172,7 +174,7 @@ public class DeploymentsController extends BaseRestController {
 
 	private static final Logger logger = Logger.getLogger(DeploymentsController.class.getName());
 	private static final int MAX_NUMBER_OF_EVENTS = 100;
-	private static final int REFRESH_INTERVAL_MILLIS = 500;
+	private static final int MAX_EVENTS_WAIT_TIMEOUT_SECONDS = 30;
 	private static final int DEPLOYMENT_TIMEOUT_SECONDS = 60;
 	private static final int WAIT_FOR_MANAGED_TIMEOUT_SECONDS = 10;
 	private static final int LOCAL_CLOUD_INSTANCE_MEMORY_MB = 512;
@@ -206,9 +208,18 @@ public class DeploymentsController extends BaseRestController {
 		gigaSpace = restConfig.getGigaSpace();
 		permissionEvaluator = restConfig.getPermissionEvaluator();
 		this.eventsCache = new EventsCache(restConfig.getAdmin());
+		this.eventsCache.start();
 		this.controllerHelper = new ControllerHelper(gigaSpace, restConfig.getAdmin());
 	}
 
+	/**
+	 * Stops background tasks.
+	 */
+	@PreDestroy
+	public void destroy() {
+		this.eventsCache.shutdown();
+	}
+
 	/**
 	 * Provides various meta data about the service.
 	 * 
@@ -295,6 +306,9 @@ public class DeploymentsController extends BaseRestController {
 	/**
 	 * Retrieves events based on deployment id. The deployment id may be of service or application. In the case of an
 	 * application deployment id, all services events will be returned.
+	 * If a wait timeout is specified, the request blocks until an event with an index of at least {@code from} is
+	 * available or the timeout is reached. This allows clients to long-poll for new events instead of repeatedly
+	 * polling.
 	 * 
 	 * @param deploymentId
 	 *            The deployment id given at install time.
@@ -302,6 +316,9 @@ public class DeploymentsController extends BaseRestController {
 	 *            The starting index.
 	 * @param to
 	 *            The finish index.
+	 * @param waitTimeoutInSeconds
+	 *            The maximum time to wait for new events, limited to {@value #MAX_EVENTS_WAIT_TIMEOUT_SECONDS}
+	 *            seconds. 0 (the default) means return immediately.
 	 * @return {@link org.cloudifysource.dsl.rest.response.DeploymentEvents} - The deployment events.
 	 * @throws Throwable
 	 *             Thrown in case of any error.
@@ -310,7 +327,8 @@ public class DeploymentsController extends BaseRestController {
 	public DeploymentEvents getDeploymentEvents(
 			@PathVariable final String deploymentId,
 			@RequestParam(required = false, defaultValue = "0") final int from,
-			@RequestParam(required = false, defaultValue = "-1") final int to)
+			@RequestParam(required = false, defaultValue = "-1") final int to,
+			@RequestParam(required = false, defaultValue = "0") final int waitTimeoutInSeconds)
 			throws Throwable {
 
 		// limit the default number of events returned to the client.
@@ -330,23 +348,23 @@ public class DeploymentsController extends BaseRestController {
 			throw e.getCause();
 		}
 
+		final long waitMillis = TimeUnit.SECONDS.toMillis(
+				Math.max(0, Math.min(waitTimeoutInSeconds, MAX_EVENTS_WAIT_TIMEOUT_SECONDS)));
+		final long deadline = System.currentTimeMillis() + waitMillis;
+
 		// we don't want another request to modify our object during this calculation.
+		// new events are appended by the events cache in the background, we are notified when that happens.
 		synchronized (value.getMutex()) {
-			if (!EventsUtils.eventsPresent(value.getEvents(), from, actualTo)) {
-				// enforce time restriction on refresh operations.
-				long now = System.currentTimeMillis();
-				if (now - value.getLastRefreshedTimestamp() > REFRESH_INTERVAL_MILLIS) {
-					logger.fine(EventsUtils.getThreadId() + " Some events are missing from cache. Refreshing...");
-					// refresh the cache for this deployment.
-					eventsCache.refresh(key);
-				}
-			} else {
-				logger.fine(EventsUtils.getThreadId() + " Found all relevant events in cache.");
+			long now = System.currentTimeMillis();
+			while (value.getLastEventIndex() < from && now < deadline) {
+				// releases the mutex while waiting.
+				value.getMutex().wait(deadline - now);
+				now = System.currentTimeMillis();
 			}
 
-			// return the events. this MAY or MAY NOT be the complete set of events requested.
-			// request for specific events is treated as best effort. no guarantees all events are returned.
-			return EventsUtils.extractDesiredEvents(value.getEvents(), from, actualTo);
+			// return the events. events that were already dropped from the cache are not returned,
+			// in which case the result is marked as truncated.
+			return value.getEvents(from, actualTo);
 		}
 	}
 
@@ -377,14 +395,13 @@ public class DeploymentsController extends BaseRestController {
 
 		// we don't want another request to modify our object during this calculation.
 		synchronized (value.getMutex()) {
-			eventsCache.refresh(key);
 			int lastEventId = value.getLastEventIndex();
 			if (lastEventId > 0) {
 				lastEventId = lastEventId - 1;
 			}
 			// return the events. this MAY or MAY NOT be the complete set of events requested.
 			// request for specific events is treated as best effort. no guarantees all events are returned.
-			return EventsUtils.extractDesiredEvents(value.getEvents(), lastEventId, lastEventId);
+			return value.getEvents(lastEventId, lastEventId);
 		}
 	}
 
@@ -711,9 +728,7 @@ public class DeploymentsController extends BaseRestController {
 			@PathVariable final String appName)
 			throws ResourceNotFoundException {
 
-		final ApplicationDescriptionFactory appDescriptionFactory =
-				new ApplicationDescriptionFactory(restConfig.getAdmin());
-		return appDescriptionFactory.getApplicationDescription(appName);
+		return restConfig.getDeploymentStateView().getApplicationDescription(appName);
 	}
 
 	private List<ProcessingUnit> createUninstallOrder(
@@ -948,18 +963,21 @@ public class DeploymentsController extends BaseRestController {
 			throws RestErrorException {
 
 		final String absolutePuName = ServiceUtils.getAbsolutePUName(appName, serviceName);
-		// extract the service folder
-		final File serviceDir = extractServiceDir(fileHolder.getPackedFile(), absolutePuName);
-		// get cloud overrides file
-		final File workingProjectDir = new File(serviceDir, "ext");
+		final File workingProjectDir;
+		if (fileHolder.getServiceDir() != null) {
+			// the packed file was just created from this folder, no need to extract it again.
+			workingProjectDir = fileHolder.getServiceDir();
+		} else {
+			// extract the service folder
+			final File serviceDir = extractServiceDir(fileHolder.getPackedFile(), absolutePuName);
+			workingProjectDir = new File(serviceDir, "ext");
+		}
 
 		// get properties file from working directory
 		final File servicePropertiesFile = extractServicePropertiesFile(workingProjectDir);
 
-		// merge properties with overrides files and re-pack the service folder
+		// merge properties with overrides files. The packed file is deployed as is, with the merged properties.
 		PropertiesOverridesMerger merger = new PropertiesOverridesMerger();
-		merger.setRePackFileName(absolutePuName);
-		merger.setRePackFolder(serviceDir);
 		merger.setDestMergeFile(servicePropertiesFile);
 		// first add the application properties file. least important overrides.
 		merger.setApplicationPropertiesFile(fileHolder.getApplicationPropertiesFile());
@@ -967,9 +985,8 @@ public class DeploymentsController extends BaseRestController {
 		merger.setServicePropertiesFile(servicePropertiesFile);
 		// add the overrides file, most important overrides.
 		merger.setOverridesFile(fileHolder.getServiceOverridesFile());
-		// merge and get the updates packed file (or the original one if no merge needed).
-		merger.setOriginPackedFile(fileHolder.getPackedFile());
-		File updatedPackedFile = merger.merge();
+		// merge and get the merged properties (or null if no merge needed).
+		final String mergedProperties = merger.merge();
 
 		// Read the service
 		final Service service = readService(workingProjectDir, request.getServiceFileName(), absolutePuName);
@@ -1021,7 +1038,8 @@ public class DeploymentsController extends BaseRestController {
 		deployConfig.setAbsolutePUName(absolutePuName);
 		deployConfig.setCloudOverrides(cloudOverrides);
 		deployConfig.setCloud(cloud);
-		deployConfig.setPackedFile(updatedPackedFile);
+		deployConfig.setPackedFile(fileHolder.getPackedFile());
+		deployConfig.setMergedProperties(mergedProperties);
 		deployConfig.setTemplateName(templateName);
 		deployConfig.setApplicationName(appName);
 		deployConfig.setInstallRequest(request);
@@ -1068,10 +1086,7 @@ public class DeploymentsController extends BaseRestController {
 			@PathVariable final String serviceName)
 			throws ResourceNotFoundException {
 
-		final ApplicationDescriptionFactory appDescriptionFactory =
-				new ApplicationDescriptionFactory(restConfig.getAdmin());
-
-		return appDescriptionFactory.
+		return restConfig.getDeploymentStateView().
 				getServiceDescription(ServiceUtils.getAbsolutePUName(appName, serviceName));
 	}
 
@@ -1087,12 +1102,11 @@ public class DeploymentsController extends BaseRestController {
 	public List<ServiceDescription> getServiceDescriptionListByDeploymentId(
 			@PathVariable final String deploymentId) {
 
-		final ApplicationDescriptionFactory appDescriptionFactory =
-				new ApplicationDescriptionFactory(restConfig.getAdmin());
+		final DeploymentStateView stateView = restConfig.getDeploymentStateView();
 		List<ServiceDescription> descriptions = new ArrayList<ServiceDescription>();
 		EventsCacheValue value = eventsCache.getIfExists(new EventsCacheKey(deploymentId));
 		for (ProcessingUnit pu : value.getProcessingUnits()) {
-			ServiceDescription serviceDescription = appDescriptionFactory.getServiceDescription(pu);
+			ServiceDescription serviceDescription = stateView.getServiceDescription(pu);
 			if (!serviceDescription.getInstancesDescription().isEmpty()) {
 				descriptions.add(serviceDescription);
 			} else {
@@ -1305,6 +1319,11 @@ public class DeploymentsController extends BaseRestController {
 		final ServiceCloudifyAttribute serviceAttributeTemplate =
 				new ServiceCloudifyAttribute(applicationName, serviceName, null, null);
 		gigaSpace.takeMultiple(serviceAttributeTemplate);
+		// the USM state of the service instances, read by services that depend on this one.
+		final ServiceInstanceStateData stateTemplate = new ServiceInstanceStateData();
+		stateTemplate.setApplicationName(applicationName);
+		stateTemplate.setServiceName(serviceName);
+		gigaSpace.takeMultiple(stateTemplate);
 	}
 
 	private void deleteServiceInstanceAttributes(
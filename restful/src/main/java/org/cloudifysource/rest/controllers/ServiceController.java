@@ -28,6 +28,7 @@ import static org.cloudifysource.rest.util.RestUtils.successStatus;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -38,11 +39,13 @@ import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -51,7 +54,10 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -61,9 +67,14 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -74,6 +85,7 @@ import net.jini.core.discovery.LookupLocator;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -100,10 +112,10 @@ import org.cloudifysource.dsl.internal.DSLUtils;
 import org.cloudifysource.dsl.internal.ServiceReader;
 import org.cloudifysource.dsl.internal.packaging.CloudConfigurationHolder;
 import org.cloudifysource.dsl.internal.packaging.FileAppender;
-import org.cloudifysource.dsl.internal.packaging.Packager;
 import org.cloudifysource.dsl.internal.packaging.PackagingException;
 import org.cloudifysource.dsl.internal.packaging.ZipUtils;
 import org.cloudifysource.dsl.internal.space.ServiceInstanceAttemptData;
+import org.cloudifysource.dsl.internal.space.ServiceInstanceStateData;
 import org.cloudifysource.dsl.internal.tools.ServiceDetailsHelper;
 import org.cloudifysource.dsl.rest.response.ApplicationDescription;
 import org.cloudifysource.dsl.rest.response.ControllerDetails;
@@ -111,7 +123,7 @@ import org.cloudifysource.dsl.utils.ServiceUtils;
 import org.cloudifysource.esc.driver.provisioning.CloudifyMachineProvisioningConfig;
 import org.cloudifysource.rest.ResponseConstants;
 import org.cloudifysource.rest.RestConfiguration;
-import org.cloudifysource.rest.util.ApplicationDescriptionFactory;
+import org.cloudifysource.rest.exceptions.ResourceNotFoundException;
 import org.cloudifysource.rest.util.ApplicationInstallerRunnable;
 import org.cloudifysource.rest.util.IsolationUtils;
 import org.cloudifysource.rest.util.LifecycleEventsContainer;
@@ -210,6 +222,9 @@ public class ServiceController implements ServiceDetailsProvider {
 	private static final int DEFAULT_TIME_EXTENTION_POLLING_TASK = 5;
 	private static final int TIMEOUT_WAITING_FOR_GSM_SEC = 10;
 	private static final int THREAD_POOL_SIZE = 20;
+	private static final int DUMP_CONCURRENCY = 5;
+	private static final int DUMP_BUFFER_SIZE = 64 * 1024;
+	private static final int UNDEPLOY_CONCURRENCY = 8;
 	private static final int PU_DISCOVERY_TIMEOUT_SEC = 8;
 	private static final int LIFECYCLE_EVENT_POLLING_INTERVAL_SEC = 4;
 	private static final long LIFECYCLE_EVENT_CLEANUP_INTERVAL_SEC = 60;
@@ -466,6 +481,152 @@ public class ServiceController implements ServiceDetailsProvider {
 
 	}
 
+	/**
+	 * Streams the dump of all the machines as a zip file containing one zip entry per machine. Dumps are generated
+	 * in parallel, at most {@value #DUMP_CONCURRENCY} machines at a time, and written to the response as they
+	 * complete. Each dump is staged in a temporary file, so no dump is held in memory as a whole, and is stored in
+	 * the zip file without compressing it again. Temporary files are deleted even if writing the response fails. A
+	 * machine whose dump could not be generated is represented by a text entry containing the error.
+	 *
+	 * @param processors
+	 *            The list of processors to be used.
+	 * @param response
+	 *            The response to write the zip file to.
+	 * @throws IOException
+	 *             Thrown in case writing to the response failed.
+	 * @throws InterruptedException
+	 *             Thrown in case the thread was interrupted while waiting for a dump.
+	 */
+	@RequestMapping(value = "/dump/machines/stream", method = RequestMethod.GET)
+	@PreAuthorize("isFullyAuthenticated() and hasRole('ROLE_CLOUDADMINS')")
+	public void streamMachinesDump(
+			@RequestParam(defaultValue = DEFAULT_DUMP_PROCESSORS) final String processors,
+			final HttpServletResponse response)
+			throws IOException, InterruptedException {
+		final String[] actualProcessors = getProcessorsFromRequest(processors);
+		final Machine[] machines = this.admin.getMachines().getMachines();
+
+		response.setContentType("application/zip");
+		response.setHeader("Content-Disposition", "attachment; filename=\"machines-dump.zip\"");
+
+		final ExecutorService dumpExecutor =
+				Executors.newFixedThreadPool(Math.max(1, Math.min(DUMP_CONCURRENCY, machines.length)));
+		final CompletionService<MachineDump> completionService =
+				new ExecutorCompletionService<MachineDump>(dumpExecutor);
+		// dump files not written to the response yet. once streaming ends, dumps that complete are deleted at once.
+		final Set<File> stagedFiles = new HashSet<File>();
+		final AtomicBoolean streaming = new AtomicBoolean(true);
+		try {
+			for (final Machine machine : machines) {
+				completionService.submit(new Callable<MachineDump>() {
+					@Override
+					public MachineDump call() {
+						final MachineDump machineDump = new MachineDump(machine.getHostAddress());
+						try {
+							final DumpResult dump = machine.generateDump("Rest_API", null, actualProcessors);
+							final File file = downloadDump(dump);
+							synchronized (stagedFiles) {
+								if (streaming.get()) {
+									stagedFiles.add(file);
+									machineDump.file = file;
+								} else {
+									deleteDumpFile(file);
+								}
+							}
+						} catch (final Exception e) {
+							logger.log(Level.WARNING, "Failed to generate dump of machine "
+									+ machine.getHostAddress(), e);
+							machineDump.error = e;
+						}
+						return machineDump;
+					}
+				});
+			}
+
+			final ZipOutputStream zipOut = new ZipOutputStream(response.getOutputStream());
+			for (int i = 0; i < machines.length; i++) {
+				final MachineDump machineDump = completionService.take().get();
+				if (machineDump.file != null) {
+					try {
+						writeStoredZipEntry(zipOut, machineDump.hostAddress + ".zip", machineDump.file);
+					} finally {
+						synchronized (stagedFiles) {
+							stagedFiles.remove(machineDump.file);
+						}
+						deleteDumpFile(machineDump.file);
+					}
+				} else {
+					zipOut.putNextEntry(new ZipEntry(machineDump.hostAddress + ".error.txt"));
+					zipOut.write(ExceptionUtils.getFullStackTrace(machineDump.error).getBytes("UTF-8"));
+					zipOut.closeEntry();
+				}
+			}
+			zipOut.finish();
+			zipOut.flush();
+		} catch (final ExecutionException e) {
+			// dump tasks report their failures in the result, so this is not expected.
+			throw new IOException("Failed to stream machines dump", e.getCause());
+		} finally {
+			dumpExecutor.shutdownNow();
+			synchronized (stagedFiles) {
+				streaming.set(false);
+				for (final File file : stagedFiles) {
+					deleteDumpFile(file);
+				}
+				stagedFiles.clear();
+			}
+		}
+	}
+
+	// the machine dumps are zip files already, so they are stored rather than compressed again.
+	private void writeStoredZipEntry(final ZipOutputStream zipOut, final String entryName, final File file)
+			throws IOException {
+		final CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[DUMP_BUFFER_SIZE];
+			int readCount;
+			while ((readCount = in.read(buffer)) >= 0) {
+				crc.update(buffer, 0, readCount);
+			}
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+
+		final ZipEntry entry = new ZipEntry(entryName);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(file.length());
+		entry.setCompressedSize(file.length());
+		entry.setCrc(crc.getValue());
+		in = new FileInputStream(file);
+		try {
+			zipOut.putNextEntry(entry);
+			IOUtils.copyLarge(in, zipOut);
+			zipOut.closeEntry();
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+	}
+
+	private void deleteDumpFile(final File file) {
+		if (!file.delete()) {
+			logger.warning("Failed to delete temporary dump file: " + file);
+		}
+	}
+
+	/**
+	 * The result of generating the dump of a single machine.
+	 */
+	private static final class MachineDump {
+		private final String hostAddress;
+		private File file;
+		private Exception error;
+
+		private MachineDump(final String hostAddress) {
+			this.hostAddress = hostAddress;
+		}
+	}
+
 	private String[] getProcessorsFromRequest(final String processors) {
 		final String[] parts = processors.split(",");
 
@@ -490,10 +651,7 @@ public class ServiceController implements ServiceDetailsProvider {
 
 	private byte[] getDumpRawData(final DumpResult dump,
 			final long fileSizeLimit) throws IOException, RestServiceException {
-		final File target = File.createTempFile("dump", ".zip", restTemporaryFolder);
-		target.deleteOnExit();
-
-		dump.download(target, null);
+		final File target = downloadDump(dump);
 
 		try {
 			// check for maximum file size limit
@@ -524,6 +682,14 @@ public class ServiceController implements ServiceDetailsProvider {
 
 	}
 
+	private File downloadDump(final DumpResult dump) throws IOException {
+		final File target = File.createTempFile("dump", ".zip", restTemporaryFolder);
+		target.deleteOnExit();
+
+		dump.download(target, null);
+		return target;
+	}
+
 	private CloudConfigurationHolder getCloudConfigurationFromManagementSpace() {
 		logger.info("Waiting for cloud configuration to become available in management space");
 		final CloudConfigurationHolder config = gigaSpace.read(
@@ -743,16 +909,8 @@ public class ServiceController implements ServiceDetailsProvider {
 			logger.finer("received request to list application descriptions");
 		}
 
-		final Applications apps = admin.getApplications();
-		final List<ApplicationDescription> appDescriptions = new ArrayList<ApplicationDescription>();
-		final ApplicationDescriptionFactory applicationDescriptionFactory = new ApplicationDescriptionFactory(admin);
-		for (final Application app : apps) {
-			if (!app.getName().equals(CloudifyConstants.MANAGEMENT_APPLICATION_NAME)) {
-				final ApplicationDescription applicationDescription = applicationDescriptionFactory
-						.getApplicationDescription(app);
-				appDescriptions.add(applicationDescription);
-			}
-		}
+		final List<ApplicationDescription> appDescriptions =
+				restConfig.getDeploymentStateView().getApplicationDescriptions();
 
 		return successStatus(appDescriptions);
 	}
@@ -787,8 +945,12 @@ public class ServiceController implements ServiceDetailsProvider {
 		if (app == null) {
 			throw new RestErrorException(FAILED_TO_LOCATE_APP, applicationName);
 		}
-		final ApplicationDescriptionFactory appDescriptionFactory = new ApplicationDescriptionFactory(admin);
-		final ApplicationDescription applicationDescription = appDescriptionFactory.getApplicationDescription(app);
+		final ApplicationDescription applicationDescription;
+		try {
+			applicationDescription = restConfig.getDeploymentStateView().getApplicationDescription(app.getName());
+		} catch (final ResourceNotFoundException e) {
+			throw new RestErrorException(FAILED_TO_LOCATE_APP, applicationName);
+		}
 		final List<ApplicationDescription> applicationDescriptionList = new ArrayList<ApplicationDescription>();
 		applicationDescriptionList.add(applicationDescription);
 		return successStatus(applicationDescriptionList);
@@ -1600,9 +1762,14 @@ public class ServiceController implements ServiceDetailsProvider {
 		}
 
 		final StringBuilder sb = new StringBuilder();
-		final List<ProcessingUnit> uninstallOrder = createUninstallOrder(pus,
+		final List<List<ProcessingUnit>> uninstallWaves = createUninstallWaves(pus,
 				applicationName);
-		// TODO: Add timeout.
+		final List<ProcessingUnit> uninstallOrder = new ArrayList<ProcessingUnit>(pus.length);
+		for (final List<ProcessingUnit> wave : uninstallWaves) {
+			uninstallOrder.addAll(wave);
+		}
+		// the polling task id is set before the undeploy task is scheduled
+		final AtomicReference<UUID> pollingTaskId = new AtomicReference<UUID>();
 		FutureTask<Boolean> undeployTask = null;
 		logger.log(Level.INFO, "Starting to poll for" + applicationName + " uninstall lifecycle events.");
 		if (uninstallOrder.size() > 0) {
@@ -1612,60 +1779,58 @@ public class ServiceController implements ServiceDetailsProvider {
 
 				@Override
 				public void run() {
-					for (final ProcessingUnit processingUnit : uninstallOrder) {
-						if (permissionEvaluator != null) {
-							final CloudifyAuthorizationDetails authDetails =
-									new CloudifyAuthorizationDetails(authentication);
-							final String puAuthGroups = processingUnit.getBeanLevelProperties().getContextProperties().
-									getProperty(CloudifyConstants.CONTEXT_PROPERTY_AUTH_GROUPS);
-							permissionEvaluator.verifyPermission(authDetails, puAuthGroups, "deploy");
-						}
-
-						final long undeployTimeout = TimeUnit.MINUTES.toMillis(timeoutInMinutes)
-								- (System.currentTimeMillis() - startTime);
-						try {
-							if (processingUnit.waitForManaged(TIMEOUT_WAITING_FOR_GSM_SEC,
-									TimeUnit.SECONDS) == null) {
-								logger.log(Level.WARNING,
-										"Failed to locate GSM that is managing Processing Unit "
-												+ processingUnit.getName());
-							} else {
-								logger.log(Level.INFO,
-										"Undeploying Processing Unit "
-												+ processingUnit.getName());
-								processingUnit.undeployAndWait(undeployTimeout,
-										TimeUnit.MILLISECONDS);
-								final String serviceName = ServiceUtils.getApplicationServiceName(
-										processingUnit.getName(), applicationName);
-								logger.info("Removing application service scope attributes for service " + serviceName);
-								deleteServiceAttributes(applicationName,
-										serviceName);
-
-
+					final long endTime = startTime + TimeUnit.MINUTES.toMillis(timeoutInMinutes);
+					final ExecutorService undeployExecutor = Executors.newFixedThreadPool(
+							Math.max(1, Math.min(UNDEPLOY_CONCURRENCY, uninstallOrder.size())));
+					// services are removed once undeployed, what is left was not undeployed.
+					final Set<String> notUndeployed = Collections.synchronizedSet(new LinkedHashSet<String>());
+					try {
+						for (int i = 0; i < uninstallWaves.size(); i++) {
+							// each wave gets an equal share of the remaining time, so a slow wave does not leave
+							// no time at all to the waves after it.
+							final long now = System.currentTimeMillis();
+							final long waveEndTime = now + Math.max(0, endTime - now) / (uninstallWaves.size() - i);
+							if (!undeployApplicationWave(applicationName, uninstallWaves.get(i), i + 1,
+									uninstallWaves.size(), waveEndTime, undeployExecutor, notUndeployed,
+									authentication, pollingTaskId.get())) {
+								undeployExecutor.shutdownNow();
+								return;
 							}
-						} catch (final Exception e) {
-							final String msg = "Failed to undeploy processing unit: "
-									+ processingUnit.getName()
-									+ " while uninstalling application "
-									+ applicationName
-									+ ". Uninstall will continue, but service "
-									+ processingUnit.getName()
-									+ " may remain in an unstable state";
-
-							logger.log(Level.SEVERE, msg, e);
 						}
+						// undeploys that did not complete in their wave may still complete before the timeout.
+						undeployExecutor.shutdown();
+						undeployExecutor.awaitTermination(Math.max(0, endTime - System.currentTimeMillis()),
+								TimeUnit.MILLISECONDS);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						logger.warning("Interrupted while uninstalling application " + applicationName);
+						undeployExecutor.shutdownNow();
+						return;
+					} finally {
+						undeployExecutor.shutdown();
+					}
+					if (notUndeployed.isEmpty()) {
+						logger.log(Level.INFO, "Application " + applicationName
+								+ " undeployment complete");
+					} else {
+						final String msg;
+						synchronized (notUndeployed) {
+							msg = "Application " + applicationName + " undeployment ended, but services "
+									+ notUndeployed + " were not undeployed and may remain in an unstable state";
+						}
+						logger.warning(msg);
+						addDeploymentEvent(msg, pollingTaskId.get());
 					}
-					logger.log(Level.INFO, "Application " + applicationName
-							+ " undeployment complete");
 				}
 			}, Boolean.TRUE);
-
-			((InternalAdmin) admin).scheduleAdminOperation(undeployTask);
-
 		}
 
 		final UUID lifecycleEventContainerID = startPollingForApplicationUninstallLifecycleEvents(
 				applicationName, uninstallOrder, timeoutInMinutes, undeployTask);
+		pollingTaskId.set(lifecycleEventContainerID);
+		if (undeployTask != null) {
+			((InternalAdmin) admin).scheduleAdminOperation(undeployTask);
+		}
 
 		final String errors = sb.toString();
 		if (errors.length() == 0) {
@@ -1679,6 +1844,111 @@ public class ServiceController implements ServiceDetailsProvider {
 		throw new RestErrorException(errors);
 	}
 
+	/**
+	 * Undeploys a wave of application processing units concurrently, and waits for them until the end time of the
+	 * wave. Events are added when the wave starts and ends. The services of the wave are added to notUndeployed, and
+	 * each is removed once its processing unit is undeployed.
+	 *
+	 * @return false if the uninstall was interrupted.
+	 */
+	private boolean undeployApplicationWave(final String applicationName, final List<ProcessingUnit> wave,
+			final int waveNumber, final int numberOfWaves, final long endTime,
+			final ExecutorService undeployExecutor, final Set<String> notUndeployed,
+			final Authentication authentication, final UUID pollingTaskId) {
+		final long waveStartTime = System.currentTimeMillis();
+		final List<String> serviceNames = new ArrayList<String>(wave.size());
+		for (final ProcessingUnit processingUnit : wave) {
+			if (permissionEvaluator != null) {
+				final CloudifyAuthorizationDetails authDetails =
+						new CloudifyAuthorizationDetails(authentication);
+				final String puAuthGroups = processingUnit.getBeanLevelProperties().getContextProperties().
+						getProperty(CloudifyConstants.CONTEXT_PROPERTY_AUTH_GROUPS);
+				permissionEvaluator.verifyPermission(authDetails, puAuthGroups, "deploy");
+			}
+			serviceNames.add(ServiceUtils.getApplicationServiceName(processingUnit.getName(), applicationName));
+		}
+
+		logger.info("Uninstalling services " + serviceNames + " of application " + applicationName + " (wave "
+				+ waveNumber + " of " + numberOfWaves + ")");
+		addDeploymentEvent("Uninstalling services " + serviceNames + " (step " + waveNumber + " of "
+				+ numberOfWaves + ")", pollingTaskId);
+		notUndeployed.addAll(serviceNames);
+		final List<Future<?>> futures = new ArrayList<Future<?>>(wave.size());
+		for (final ProcessingUnit processingUnit : wave) {
+			futures.add(undeployExecutor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					if (undeployApplicationProcessingUnit(applicationName, processingUnit, endTime)) {
+						notUndeployed.remove(ServiceUtils.getApplicationServiceName(processingUnit.getName(),
+								applicationName));
+					}
+				}
+			}));
+		}
+
+		try {
+			for (final Future<?> future : futures) {
+				future.get(Math.max(0, endTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+			}
+		} catch (final TimeoutException e) {
+			final String msg = "Uninstall of services " + serviceNames + " did not complete in the time given to"
+					+ " this step. Uninstall will continue, but these services may remain in an unstable state";
+			logger.warning(msg);
+			addDeploymentEvent(msg, pollingTaskId);
+			return true;
+		} catch (final ExecutionException e) {
+			// undeploy failures are handled by the undeploy task itself
+			logger.log(Level.SEVERE, "Unexpected failure while uninstalling services " + serviceNames, e);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.warning("Interrupted while uninstalling application " + applicationName);
+			return false;
+		}
+
+		addDeploymentEvent("Services " + serviceNames + " uninstalled in "
+				+ TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - waveStartTime) + " seconds",
+				pollingTaskId);
+		return true;
+	}
+
+	// returns true if the processing unit was undeployed.
+	private boolean undeployApplicationProcessingUnit(final String applicationName,
+			final ProcessingUnit processingUnit, final long endTime) {
+		final long undeployTimeout = endTime - System.currentTimeMillis();
+		try {
+			if (processingUnit.waitForManaged(TIMEOUT_WAITING_FOR_GSM_SEC,
+					TimeUnit.SECONDS) == null) {
+				logger.log(Level.WARNING,
+						"Failed to locate GSM that is managing Processing Unit "
+								+ processingUnit.getName());
+			} else {
+				logger.log(Level.INFO,
+						"Undeploying Processing Unit "
+								+ processingUnit.getName());
+				final boolean undeployed = processingUnit.undeployAndWait(Math.max(0, undeployTimeout),
+						TimeUnit.MILLISECONDS);
+				final String serviceName = ServiceUtils.getApplicationServiceName(
+						processingUnit.getName(), applicationName);
+				logger.info("Removing application service scope attributes for service " + serviceName);
+				deleteServiceAttributes(applicationName,
+						serviceName);
+				return undeployed;
+			}
+		} catch (final Exception e) {
+			final String msg = "Failed to undeploy processing unit: "
+					+ processingUnit.getName()
+					+ " while uninstalling application "
+					+ applicationName
+					+ ". Uninstall will continue, but service "
+					+ processingUnit.getName()
+					+ " may remain in an unstable state";
+
+			logger.log(Level.SEVERE, msg, e);
+		}
+		return false;
+	}
+
 	private void deleteApplicationScopeAttributes(final String applicationName) {
 		final ApplicationCloudifyAttribute applicationAttributeTemplate =
 				new ApplicationCloudifyAttribute(applicationName, null, null);
@@ -1700,6 +1970,12 @@ public class ServiceController implements ServiceDetailsProvider {
 		ServiceInstanceAttemptData[] attempts = gigaSpace.takeMultiple(template);
 		logger.info("Removed " + attempts.length + " instance attempts from management space");
 
+		// Delete instance state data related to this service
+		final ServiceInstanceStateData stateTemplate = new ServiceInstanceStateData();
+		stateTemplate.setApplicationName(applicationName);
+		stateTemplate.setServiceName(serviceName);
+		gigaSpace.takeMultiple(stateTemplate);
+
 	}
 
 	private void deleteServiceInstanceAttributes(String applicationName,
@@ -1710,7 +1986,12 @@ public class ServiceController implements ServiceDetailsProvider {
 	}
 
 
-	private List<ProcessingUnit> createUninstallOrder(
+	/**
+	 * Groups the application processing units into uninstall waves. A processing unit is in the wave after the last
+	 * wave of the processing units that depend on it, so each wave may be undeployed concurrently once the previous
+	 * waves are undeployed.
+	 */
+	private List<List<ProcessingUnit>> createUninstallWaves(
 			final ProcessingUnit[] pus, final String applicationName) {
 
 		// TODO: Refactor this - merge with createServiceOrder, as methods are
@@ -1768,23 +2049,36 @@ public class ServiceController implements ServiceDetailsProvider {
 			logger.warning("Detected a cycle in the dependencies of application: "
 					+ applicationName
 					+ " while preparing to uninstall."
-					+ " The service in this application will be uninstalled in a random order");
+					+ " The service in this application will be uninstalled one by one in a random order");
 
-			return Arrays.asList(pus);
+			final List<List<ProcessingUnit>> waves = new ArrayList<List<ProcessingUnit>>(pus.length);
+			for (final ProcessingUnit processingUnit : pus) {
+				waves.add(Arrays.asList(processingUnit));
+			}
+			return waves;
 		}
 
 		final TopologicalOrderIterator<ProcessingUnit, DefaultEdge> iterator =
 				new TopologicalOrderIterator<ProcessingUnit, DefaultEdge>(graph);
 
-		final List<ProcessingUnit> orderedList = new ArrayList<ProcessingUnit>();
+		final Map<ProcessingUnit, Integer> waveByPu = new HashMap<ProcessingUnit, Integer>();
+		final List<List<ProcessingUnit>> waves = new ArrayList<List<ProcessingUnit>>();
 		while (iterator.hasNext()) {
 			final ProcessingUnit nextPU = iterator.next();
-			if (!orderedList.contains(nextPU)) {
-				orderedList.add(nextPU);
+			if (waveByPu.containsKey(nextPU)) {
+				continue;
+			}
+			int wave = 0;
+			for (final DefaultEdge edge : graph.incomingEdgesOf(nextPU)) {
+				wave = Math.max(wave, waveByPu.get(graph.getEdgeSource(edge)) + 1);
 			}
+			waveByPu.put(nextPU, wave);
+			if (wave == waves.size()) {
+				waves.add(new ArrayList<ProcessingUnit>());
+			}
+			waves.get(wave).add(nextPU);
 		}
-		// Collections.reverse(orderedList);
-		return orderedList;
+		return waves;
 
 	}
 
@@ -2650,7 +2944,6 @@ public class ServiceController implements ServiceDetailsProvider {
 
 		Service service = null;
 		File projectDir = null;
-		File editSrcFile = srcFile;
 		if (srcFile.getName().endsWith(".zip")) {
 
 			projectDir = ServiceReader.extractProjectFile(srcFile);
@@ -2666,9 +2959,9 @@ public class ServiceController implements ServiceDetailsProvider {
 				filesToAppend.put(propertiesFile, "service proeprties file");
 				filesToAppend.put(overridesFile, "service overrides file");
 				appender.appendAll(propertiesFile, filesToAppend);
-				editSrcFile = Packager.createZipFile("temp", projectDir);
-				// FileUtils.deleteQuietly(srcFile);
-				// editSrcFile.renameTo(srcFile);
+				// the packed file is deployed as is, the USM writes the merged properties over its own.
+				propsFile.setProperty(CloudifyConstants.CONTEXT_PROPERTY_MERGED_PROPERTIES,
+						FileUtils.readFileToString(propertiesFile));
 			}
 
 			final String serviceFileName = propsFile
@@ -2722,13 +3015,13 @@ public class ServiceController implements ServiceDetailsProvider {
 
 		if (service == null) {
 			doDeploy(applicationName, serviceName, effectiveAuthGroups, templateName, agentZones,
-					editSrcFile, propsFile, selfHealing, cloudOverrides);
+					srcFile, propsFile, selfHealing, cloudOverrides);
 		} else if (service.getLifecycle() != null) {
 			doDeploy(applicationName, serviceName, effectiveAuthGroups, templateName, agentZones,
-					editSrcFile, propsFile, service,
+					srcFile, propsFile, service,
 					serviceCloudConfigurationContents, selfHealing, cloudOverrides);
 		} else if (service.getDataGrid() != null) {
-			deployDataGrid(applicationName, serviceName, effectiveAuthGroups, agentZones, editSrcFile,
+			deployDataGrid(applicationName, serviceName, effectiveAuthGroups, agentZones, srcFile,
 					propsFile, service.getDataGrid(), templateName,
 					service.isLocationAware(), cloudOverrides);
 		} else if (service.getStatelessProcessingUnit() != null) {
@@ -3876,6 +4169,24 @@ public class ServiceController implements ServiceDetailsProvider {
 		}
 	}
 
+	/**
+	 * Adds an event to the events polled by the client of a deployment.
+	 *
+	 * @param event
+	 *            the event text.
+	 * @param pollingTaskId
+	 *            the polling task id of the deployment.
+	 */
+	public void addDeploymentEvent(final String event, final UUID pollingTaskId) {
+		if (pollingTaskId == null) {
+			return;
+		}
+		final RestPollingRunnable restPollingRunnable = lifecyclePollingThreadContainer.get(pollingTaskId);
+		if (restPollingRunnable != null) {
+			restPollingRunnable.getLifecycleEventsContainer().addNonLifecycleEvents(event);
+		}
+	}
+
 	/**
 	 * Add templates to the cloud.
 	 *
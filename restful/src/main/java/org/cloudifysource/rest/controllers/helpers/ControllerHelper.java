@@ -15,11 +15,10 @@ package org.cloudifysource.rest.controllers.helpers;
 import java.util.HashMap;
 import java.util.Map;
 
-import net.jini.core.lease.Lease;
-
 import org.apache.commons.lang.StringUtils;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.AbstractCloudifyAttribute;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.ApplicationCloudifyAttribute;
+import org.cloudifysource.dsl.context.kvstorage.spaceentries.CloudifyAttributesWriter;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.GlobalCloudifyAttribute;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.InstanceCloudifyAttribute;
 import org.cloudifysource.dsl.context.kvstorage.spaceentries.ServiceCloudifyAttribute;
@@ -33,8 +32,6 @@ import org.openspaces.admin.pu.ProcessingUnit;
 import org.openspaces.admin.pu.ProcessingUnitInstance;
 import org.openspaces.core.GigaSpace;
 
-import com.gigaspaces.client.WriteModifiers;
-
 /**
  * Created with IntelliJ IDEA.
  * User: elip
@@ -273,14 +270,11 @@ public class ControllerHelper {
 
         int i = 0;
         for (final Map.Entry<String, Object> attrEntry : attributesMap.entrySet()) {
-            final AbstractCloudifyAttribute newAttr =
-                    createCloudifyAttribute(appName, serviceName, instanceId, attrEntry.getKey(), null);
-            gigaSpace.take(newAttr);
-            newAttr.setValue(attrEntry.getValue());
-            attributesToWrite[i++] = newAttr;
+            attributesToWrite[i++] = createCloudifyAttribute(appName, serviceName, instanceId,
+                    attrEntry.getKey(), attrEntry.getValue());
         }
-        // write attributes
-        gigaSpace.writeMultiple(attributesToWrite, Lease.FOREVER, WriteModifiers.UPDATE_OR_WRITE);
+        // write attributes, replacing previous values in a single operation
+        CloudifyAttributesWriter.putAll(gigaSpace, attributesToWrite);
     }
 
 }
@@ -16,12 +16,15 @@ import java.io.File;
 import java.io.IOException;
 import java.util.LinkedHashMap;
 
+import org.apache.commons.io.FileUtils;
 import org.cloudifysource.dsl.internal.CloudifyMessageKeys;
 import org.cloudifysource.dsl.internal.packaging.FileAppender;
-import org.cloudifysource.dsl.internal.packaging.Packager;
 import org.cloudifysource.rest.controllers.RestErrorException;
 
 /**
+ * Merges the application properties file, the service properties file and the overrides file of a service into the
+ * service properties file of its extracted recipe. The packed recipe is not re-packed: the merged content is returned,
+ * to be deployed with the recipe as it was uploaded.
  * 
  * @author yael
  * @since 2.6.0
@@ -36,35 +39,10 @@ public class PropertiesOverridesMerger {
 	 * This field is mandatory.
 	 */
 	private File destMergeFile;
-	/**
-	 * The name of the updated zip file.
-	 */
-	private String rePackFileName;
-	/**
-	 * The folder to re-pack after merging.
-	 * This field is mandatory.
-	 */
-	private File rePackFolder;
-	/**
-	 * The original packed file, return from merge if no merge was needed. 
-	 */
-	private File originPackedFile;
 	private File applicationPropertiesFile;
 	private File servicePropertiesFile;
 	private File overridesFile;
 
-	public void setRePackFileName(final String rePackFileName) {
-		this.rePackFileName = rePackFileName;
-	}
-
-	public void setRePackFolder(final File rePackFolder) {
-		this.rePackFolder = rePackFolder;
-	}
-
-	public void setOriginPackedFile(final File originPackedFile) {
-		this.originPackedFile = originPackedFile;
-	}
-	
 	public void setApplicationPropertiesFile(final File applicationPropertiesFile) {
 		this.applicationPropertiesFile = applicationPropertiesFile;
 	}
@@ -80,15 +58,17 @@ public class PropertiesOverridesMerger {
 	/**
 	 * Merge application properties file with service properties and overrides files.
 	 * 
-	 * @return the updated packed file or the original one if no merge needed.
+	 * @return the content of the merged properties file, or null if no merge needed.
 	 * @throws org.cloudifysource.rest.controllers.RestErrorException .
 	 */
-	public File merge() throws RestErrorException {
+	public String merge() throws RestErrorException {
 		// check if merge is necessary
 		if (applicationPropertiesFile == null && overridesFile == null) {
-			return originPackedFile;
+			return null;
+		}
+		if (destMergeFile == null) {
+			throw new RestErrorException(CloudifyMessageKeys.DEST_MERGE_FILE_MISSING.getName());
 		}
-		validateValues(originPackedFile);
 		try {
 			// append application properties, service properties and overrides files
 			LinkedHashMap<File, String> mergeFilesAndComments = new LinkedHashMap<File, String>();
@@ -98,31 +78,14 @@ public class PropertiesOverridesMerger {
 			// use FileAppender to append all files to one file and store it in the service properties file 
 			// (creates one if not exist).
 			new FileAppender(DEFAULT_MERGED_FILE_NAME).appendAll(destMergeFile, mergeFilesAndComments);
-			return Packager.createZipFile(rePackFileName, rePackFolder);
+			return FileUtils.readFileToString(destMergeFile);
 		} catch (final IOException e) {
 			throw new RestErrorException(CloudifyMessageKeys.FAILED_TO_MERGE_OVERRIDES.getName(),
-					rePackFileName, e.getMessage());
+					destMergeFile.getName(), e.getMessage());
 
 		}
 	}
 
-	private void validateValues(final File originPackedFile) throws RestErrorException {
-		if (destMergeFile == null) {
-			throw new RestErrorException(CloudifyMessageKeys.DEST_MERGE_FILE_MISSING.getName());
-		}
-		if (rePackFileName == null) {
-			String originName = originPackedFile.getName();
-			String shortOriginName = originName;
-			if (originName.endsWith(".zip")) {
-				shortOriginName = originName.split("//.zip")[0];
-			}
-			rePackFileName = shortOriginName + "_repack.zip";
-		}
-		if (rePackFolder == null) {
-			throw new RestErrorException(CloudifyMessageKeys.REPACKED_MERGE_FOLDER_MISSING.getName());
-		}
-	}
-
 	public void setDestMergeFile(final File destMergeFile) {
 		this.destMergeFile = destMergeFile;
 	}
@@ -144,6 +144,7 @@ public class ApplicationDeployerRunnable implements Runnable {
 				fileHolder.setPackedFile(packedFile);
 				fileHolder.setServiceOverridesFile(actualOverridesFile);
 				fileHolder.setApplicationPropertiesFile(applicationPropertiesFile);
+				fileHolder.setServiceDir(serviceDirectory);
 				
 				controller.installServiceInternal(
 						appName, 
@@ -48,6 +48,8 @@ public class DeploymentConfig {
 	private byte[] cloudConfig;
 
 	private String cloudOverrides;
+
+	private String mergedProperties;
 	
 	private String deploymentId;
 	
@@ -125,6 +127,14 @@ public class DeploymentConfig {
 		this.cloudOverrides = cloudOverrides;
 	}
 
+	public String getMergedProperties() {
+		return mergedProperties;
+	}
+
+	public void setMergedProperties(final String mergedProperties) {
+		this.mergedProperties = mergedProperties;
+	}
+
 	public String getDeploymentId() {
 		return deploymentId;
 	}
@@ -30,6 +30,8 @@ public class DeploymentFileHolder {
 	private File serviceOverridesFile;
 	
 	private File applicationPropertiesFile;
+
+	private File serviceDir;
 	
 	public File getPackedFile() {
 		return packedFile;
@@ -54,4 +56,18 @@ public class DeploymentFileHolder {
 	public void setApplicationPropertiesFile(final File applicationPropertiesFile) {
 		this.applicationPropertiesFile = applicationPropertiesFile;
 	}
+
+	public File getServiceDir() {
+		return serviceDir;
+	}
+
+	/**
+	 * Sets the service folder the packed file was created from, so it is not extracted again.
+	 * 
+	 * @param serviceDir
+	 *            the service folder.
+	 */
+	public void setServiceDir(final File serviceDir) {
+		this.serviceDir = serviceDir;
+	}
 }
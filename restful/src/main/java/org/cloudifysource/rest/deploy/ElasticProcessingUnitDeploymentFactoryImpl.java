@@ -650,6 +650,11 @@ public class ElasticProcessingUnitDeploymentFactoryImpl implements ElasticProces
 		setContextProperties(deployment, contextProperties);
 		deployment.addContextProperty(CloudifyConstants.CONTEXT_PROPERTY_DEPLOYMENT_ID,
 				deploymentConfig.getDeploymentId());
+		if (deploymentConfig.getMergedProperties() != null) {
+			// the packed recipe is deployed as uploaded, the USM writes the merged properties over its own.
+			deployment.addContextProperty(CloudifyConstants.CONTEXT_PROPERTY_MERGED_PROPERTIES,
+					deploymentConfig.getMergedProperties());
+		}
 
 		if (!isLocalcloud()) {
 			logger.fine("setting lrmi bind ports and container memory context properties");
@@ -15,10 +15,8 @@ package org.cloudifysource.rest.events;
 import com.gigaspaces.log.LogEntry;
 import com.gigaspaces.log.LogEntryMatcher;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 
 import java.text.MessageFormat;
-import java.util.List;
 
 import static com.gigaspaces.log.LogEntryMatchers.regex;
 
@@ -70,65 +68,6 @@ public final class EventsUtils {
     }
 
 
-    /**
-     * Given a set of events and indices, extract only events who's index is in range.
-     * @param events The events set.
-     * @param from The start index.
-     * @param to The end index.
-     * @return The requested events.
-     */
-    public static DeploymentEvents extractDesiredEvents(final DeploymentEvents events,
-                                                         final int from,
-                                                         final int to) {
-
-        DeploymentEvents desiredEvents = new DeploymentEvents();
-        for (int i = from; i <= to; i++) {
-            List<DeploymentEvent> serviceDeploymentEvents = events.getEvents();
-            DeploymentEvent serviceDeploymentEvent = retrieveEventWithIndex(i, serviceDeploymentEvents);
-            if (serviceDeploymentEvent != null) {
-                desiredEvents.getEvents().add(serviceDeploymentEvent);
-            }
-        }
-        return desiredEvents;
-    }
-
-    /**
-     * Retrieves an event with a curtain index from a list of events.
-     * @param i The index.
-     * @param serviceDeploymentEvents The events.
-     * @return a {@link DeploymentEvent} if found, null otherwise.
-     */
-    public static DeploymentEvent retrieveEventWithIndex(final int i, final List<DeploymentEvent> serviceDeploymentEvents) {
-        for (DeploymentEvent event1 : serviceDeploymentEvents) {
-            if (event1.getIndex() == i) {
-                return event1;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Given a set of events and indices, check if all index range of events is present.
-     * i.e if events contains 1,2,3 and from=1 and to=4, this will return false. you get the idea.
-     * @param events The events set.
-     * @param from The start index.
-     * @param to The end index.
-     * @return true if all events in the range are present. false otherwise.
-     */
-    public static boolean eventsPresent(final DeploymentEvents events,
-                                  final int from,
-                                  final int to) {
-
-        for (int i = from; i <= to; i++) {
-            DeploymentEvent event = retrieveEventWithIndex(i, events.getEvents());
-            if (event == null) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
     /**
      *
      * @return The id of the current thread.
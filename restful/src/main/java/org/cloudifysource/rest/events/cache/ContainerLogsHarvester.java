@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.rest.events.EventsUtils;
+import org.openspaces.admin.gsc.GridServiceContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically fetches new container logs for every deployment in the events cache, and appends them as events.
+ * <br/><br/>
+ *
+ * Each cycle resolves the containers of every cached deployment once, and then fetches the logs of all
+ * (deployment, container) pairs in parallel, using a bounded thread pool.
+ * This keeps the remote log calls off the request threads, which only read the events already in memory.
+ * Requests waiting on the mutex of a cache value are notified when new events are appended to it.
+ *
+ * @see EventsCache
+ */
+public class ContainerLogsHarvester {
+
+    private static final Logger logger = Logger.getLogger(ContainerLogsHarvester.class.getName());
+
+    private static final long DEFAULT_HARVEST_INTERVAL_MILLIS = 500;
+    private static final int DEFAULT_CONCURRENCY = 10;
+    private static final long DEFAULT_FETCH_TIMEOUT_MILLIS = 30 * 1000;
+
+    private final EventsCache eventsCache;
+    private final EventsCacheLoader loader;
+
+    private long harvestIntervalMillis = DEFAULT_HARVEST_INTERVAL_MILLIS;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private long fetchTimeoutMillis = DEFAULT_FETCH_TIMEOUT_MILLIS;
+
+    private ScheduledExecutorService scheduler;
+    private ExecutorService fetchExecutor;
+
+    // (deployment, container) pairs with a fetch in progress. a pair shares a continuous matcher,
+    // so a fetch that outlived its cycle must complete before the pair is fetched again.
+    private final Set<String> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    // fetches that did not complete within their cycle. only accessed by the harvesting thread.
+    private final Map<EventsCacheKey, List<Future<List<DeploymentEvent>>>> pending =
+            new HashMap<EventsCacheKey, List<Future<List<DeploymentEvent>>>>();
+
+    public ContainerLogsHarvester(final EventsCache eventsCache, final EventsCacheLoader loader) {
+        this.eventsCache = eventsCache;
+        this.loader = loader;
+    }
+
+    public void setHarvestIntervalMillis(final long harvestIntervalMillis) {
+        this.harvestIntervalMillis = harvestIntervalMillis;
+    }
+
+    public void setConcurrency(final int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public void setFetchTimeoutMillis(final long fetchTimeoutMillis) {
+        this.fetchTimeoutMillis = fetchTimeoutMillis;
+    }
+
+    /**
+     * Starts harvesting in the background.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        fetchExecutor = Executors.newFixedThreadPool(concurrency, createThreadFactory("ContainerLogsFetcher-"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(createThreadFactory("ContainerLogsHarvester-"));
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    harvest();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (final Exception e) {
+                    // never let an exception cancel the scheduled task.
+                    logger.log(Level.WARNING, "Failed harvesting container logs: " + e.getMessage(), e);
+                }
+            }
+        }, harvestIntervalMillis, harvestIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops harvesting. In-flight log fetches are interrupted.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        fetchExecutor.shutdownNow();
+        inFlight.clear();
+        scheduler = null;
+        fetchExecutor = null;
+    }
+
+    /**
+     * Runs a single harvesting cycle.
+     * Fetches that do not complete within the fetch timeout are not cancelled, their result is collected
+     * in the following cycle. Otherwise, the logs they fetched would be lost.
+     * @throws InterruptedException Thrown in case the thread was interrupted while waiting for log fetches.
+     */
+    public synchronized void harvest() throws InterruptedException {
+
+        final Map<EventsCacheKey, List<Future<List<DeploymentEvent>>>> fetches =
+                new LinkedHashMap<EventsCacheKey, List<Future<List<DeploymentEvent>>>>(pending);
+        pending.clear();
+
+        // harvesting must not count as an access to the entries, otherwise they would never expire.
+        final Map<EventsCacheKey, EventsCacheValue> entries = eventsCache.entries();
+        for (final EventsCacheKey key : entries.keySet()) {
+            final Set<GridServiceContainer> containers =
+                    loader.getContainerProvider().getContainersForDeployment(key.getDeploymentId());
+            if (containers == null || containers.isEmpty()) {
+                continue;
+            }
+            for (final GridServiceContainer container : containers) {
+                final String fetchId = key.getDeploymentId() + "/" + container.getUid();
+                if (!inFlight.add(fetchId)) {
+                    // still fetching since a previous cycle.
+                    continue;
+                }
+                final Future<List<DeploymentEvent>> future =
+                        fetchExecutor.submit(new Callable<List<DeploymentEvent>>() {
+
+                    @Override
+                    public List<DeploymentEvent> call() throws Exception {
+                        try {
+                            return loader.fetchNewEvents(key, container);
+                        } finally {
+                            inFlight.remove(fetchId);
+                        }
+                    }
+                });
+                futuresOf(fetches, key).add(future);
+            }
+        }
+
+        final long deadline = System.currentTimeMillis() + fetchTimeoutMillis;
+        for (final Map.Entry<EventsCacheKey, List<Future<List<DeploymentEvent>>>> entry : fetches.entrySet()) {
+            final List<DeploymentEvent> newEvents = new ArrayList<DeploymentEvent>();
+            for (final Future<List<DeploymentEvent>> future : entry.getValue()) {
+                try {
+                    newEvents.addAll(future.get(Math.max(0, deadline - System.currentTimeMillis()),
+                            TimeUnit.MILLISECONDS));
+                } catch (final ExecutionException e) {
+                    logger.log(Level.FINE, EventsUtils.getThreadId() + "Failed fetching container logs for key "
+                            + entry.getKey(), e.getCause());
+                } catch (final TimeoutException e) {
+                    logger.fine(EventsUtils.getThreadId() + "Fetching container logs for key "
+                            + entry.getKey() + " is taking long. Will collect it in the next cycle.");
+                    futuresOf(pending, entry.getKey()).add(future);
+                }
+            }
+            append(entries.get(entry.getKey()), newEvents);
+        }
+    }
+
+    private List<Future<List<DeploymentEvent>>> futuresOf(
+            final Map<EventsCacheKey, List<Future<List<DeploymentEvent>>>> fetches, final EventsCacheKey key) {
+        List<Future<List<DeploymentEvent>>> futures = fetches.get(key);
+        if (futures == null) {
+            futures = new ArrayList<Future<List<DeploymentEvent>>>();
+            fetches.put(key, futures);
+        }
+        return futures;
+    }
+
+    private void append(final EventsCacheValue value, final List<DeploymentEvent> newEvents) {
+        if (value == null) {
+            // evicted before this cycle started.
+            return;
+        }
+        synchronized (value.getMutex()) {
+            for (final DeploymentEvent event : newEvents) {
+                value.addEvent(event);
+            }
+            value.setLastRefreshedTimestamp(System.currentTimeMillis());
+            if (!newEvents.isEmpty()) {
+                value.getMutex().notifyAll();
+            }
+        }
+    }
+
+    private ThreadFactory createThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
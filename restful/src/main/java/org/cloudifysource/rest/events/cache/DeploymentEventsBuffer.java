@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.dsl.rest.response.DeploymentEvents;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Size bounded, index addressable store for deployment events.
+ * <br/><br/>
+ *
+ * Events are appended with consecutive indices and kept in a ring of fixed capacity.
+ * The event with index i lives in slot (i % capacity), so looking up a single event is O(1)
+ * and extracting a range of k events is O(k), regardless of how many events the deployment produced.
+ * Once the capacity is exceeded, the oldest events are overwritten.
+ *
+ * All methods are synchronized on the buffer itself.
+ */
+public class DeploymentEventsBuffer {
+
+    private final DeploymentEvent[] slots;
+
+    // index of the first event appended since the last reset.
+    private int baseIndex;
+
+    // index of the oldest event still retained.
+    private int firstIndex;
+
+    // index that will be assigned to the next appended event.
+    private int nextIndex;
+
+    /**
+     * @param capacity The maximum number of events retained.
+     * @param lastIndex The index preceding the first event to be appended.
+     */
+    public DeploymentEventsBuffer(final int capacity, final int lastIndex) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+        this.slots = new DeploymentEvent[capacity];
+        reset(lastIndex);
+    }
+
+    /**
+     * Discards all events and restarts the numbering.
+     * @param lastIndex The index preceding the first event to be appended.
+     */
+    public synchronized void reset(final int lastIndex) {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+        this.baseIndex = lastIndex + 1;
+        this.firstIndex = lastIndex + 1;
+        this.nextIndex = lastIndex + 1;
+    }
+
+    /**
+     * Appends an event, assigning it the next available index.
+     * @param event The event to append.
+     * @return The index assigned to the event.
+     */
+    public synchronized int add(final DeploymentEvent event) {
+        final int index = nextIndex++;
+        event.setIndex(index);
+        slots[slot(index)] = event;
+        if (nextIndex - firstIndex > slots.length) {
+            firstIndex = nextIndex - slots.length;
+        }
+        return index;
+    }
+
+    /**
+     * @param index The event index.
+     * @return The event with the given index, or null if it was never added or was already overwritten.
+     */
+    public synchronized DeploymentEvent get(final int index) {
+        if (index < firstIndex || index >= nextIndex) {
+            return null;
+        }
+        return slots[slot(index)];
+    }
+
+    /**
+     * Checks if all events in the given index range are present.
+     * An empty range (from > to) is always considered present.
+     * @param from The start index.
+     * @param to The end index (inclusive).
+     * @return true if all events in the range are present, false otherwise.
+     */
+    public synchronized boolean containsRange(final int from, final int to) {
+        if (from > to) {
+            return true;
+        }
+        return from >= firstIndex && to < nextIndex;
+    }
+
+    /**
+     * Extracts the events in the given index range. Missing indices are skipped.
+     * If events in the range were already overwritten, the returned events are marked as truncated.
+     * @param from The start index.
+     * @param to The end index (inclusive).
+     * @return The events found in the range, ordered by index.
+     */
+    public synchronized DeploymentEvents getRange(final int from, final int to) {
+        final int start = Math.max(from, firstIndex);
+        final int end = Math.min(to, nextIndex - 1);
+        final List<DeploymentEvent> range = new ArrayList<DeploymentEvent>(Math.max(end - start + 1, 0));
+        for (int i = start; i <= end; i++) {
+            range.add(slots[slot(i)]);
+        }
+        final DeploymentEvents events = new DeploymentEvents();
+        events.setEvents(range);
+        events.setTruncated(from <= to && Math.max(from, baseIndex) < firstIndex);
+        return events;
+    }
+
+    /**
+     * @return All retained events, ordered by index.
+     */
+    public synchronized DeploymentEvents getAll() {
+        return getRange(firstIndex, nextIndex - 1);
+    }
+
+    /**
+     * @return The index of the last appended event.
+     */
+    public synchronized int getLastIndex() {
+        return nextIndex - 1;
+    }
+
+    /**
+     * @return The number of retained events.
+     */
+    public synchronized int size() {
+        return nextIndex - firstIndex;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    private int slot(final int index) {
+        final int slot = index % slots.length;
+        return slot < 0 ? slot + slots.length : slot;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DeploymentEventsBuffer{" + "firstIndex=" + firstIndex
+                + ", nextIndex=" + nextIndex + ", capacity=" + slots.length + '}';
+    }
+}
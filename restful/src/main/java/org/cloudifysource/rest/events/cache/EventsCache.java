@@ -18,10 +18,11 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.cloudifysource.rest.events.LogEntryMatcherProvider;
 import org.openspaces.admin.Admin;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -36,9 +37,11 @@ import java.util.logging.Logger;
  * This class is the cache implementation for life cycle events.
  * Cache entries are deleted automatically in they haven't been accessed to in more than 5 minutes.
  *
- * Events are populated using a guava based {@link com.google.common.cache.CacheLoader}.
+ * Events are initially populated using a guava based {@link com.google.common.cache.CacheLoader}.
+ * Once started, new events are appended by a background {@link ContainerLogsHarvester}.
  *
  * @see EventsCacheLoader
+ * @see ContainerLogsHarvester
  *
  */
 public class EventsCache {
@@ -49,6 +52,8 @@ public class EventsCache {
 
     private final LoadingCache<EventsCacheKey, EventsCacheValue> eventsLoadingCache;
     private final LogEntryMatcherProvider matcherProvider;
+    private final ContainerLogsHarvester harvester;
+    private final GridServiceContainerProvider containerProvider;
     private int cacheExpirationPeriod = CACHE_EXPIRATION_MINUTES;
     private TimeUnit cacheExpirationTimeunit = TimeUnit.MINUTES;
 
@@ -61,8 +66,13 @@ public class EventsCache {
     }
 
     public EventsCache(final Admin admin) {
+        this(new IndexedGridServiceContainerProvider(admin));
+    }
+
+    public EventsCache(final GridServiceContainerProvider containerProvider) {
 
-        final EventsCacheLoader loader = new EventsCacheLoader(new AdminBasedGridServiceContainerProvider(admin));
+        this.containerProvider = containerProvider;
+        final EventsCacheLoader loader = new EventsCacheLoader(containerProvider);
 
         this.matcherProvider = loader.getMatcherProvider();
         this.eventsLoadingCache = CacheBuilder.newBuilder()
@@ -72,7 +82,7 @@ public class EventsCache {
                     @Override
                     public void onRemoval(final RemovalNotification<Object, Object> notification) {
 
-                        // the onRemoval will also be triggered on reload (RemovalCause.REPLACED)
+                        // the onRemoval will also be triggered when an entry is replaced (RemovalCause.REPLACED)
                         // in that case we don't want to remove the matcher.
                         if (notification.wasEvicted()) {
 
@@ -84,14 +94,42 @@ public class EventsCache {
                     }
                 })
                 .build(loader);
+        this.harvester = new ContainerLogsHarvester(this, loader);
+    }
+
+    /**
+     * Starts indexing the containers of deployments (when the cache was created with an {@link Admin}),
+     * and harvesting new events for all cached deployments in the background.
+     */
+    public void start() {
+        if (containerProvider instanceof IndexedGridServiceContainerProvider) {
+            ((IndexedGridServiceContainerProvider) containerProvider).start();
+        }
+        harvester.start();
     }
 
     /**
-     * Refresh the cache. this results in a call to {@link EventsCacheLoader#reload(EventsCacheKey, EventsCacheValue)}.
-     * @param key The key to refresh.
+     * Stops the background harvesting of events.
      */
-    public void refresh(final EventsCacheKey key) {
-        eventsLoadingCache.refresh(key);
+    public void shutdown() {
+        harvester.stop();
+        if (containerProvider instanceof IndexedGridServiceContainerProvider) {
+            ((IndexedGridServiceContainerProvider) containerProvider).stop();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache entries, without counting as an access to them.
+     * Unlike {@link #getIfExists(EventsCacheKey)}, this does not keep otherwise unused entries from expiring.
+     * @return The cache entries.
+     */
+    public Map<EventsCacheKey, EventsCacheValue> entries() {
+        // iterating the views of the map does not update the access time of the entries.
+        final Map<EventsCacheKey, EventsCacheValue> entries = new HashMap<EventsCacheKey, EventsCacheValue>();
+        for (final Map.Entry<EventsCacheKey, EventsCacheValue> entry : eventsLoadingCache.asMap().entrySet()) {
+            entries.put(entry.getKey(), entry.getValue());
+        }
+        return entries;
     }
 
     /**
@@ -127,13 +165,15 @@ public class EventsCache {
     
     /**
      * Adds the latest event to the events of the specified key.
+     * Requests waiting for new events of this key are notified.
      * @param key A key of ServiceDeploymentEvents
      * @param event The event to add
      */
     public void add(final EventsCacheKey key, final DeploymentEvent event) {
-    	EventsCacheValue eventsCacheValue = eventsLoadingCache.asMap().get(key);
-		DeploymentEvents events = eventsCacheValue.getEvents();
-        event.setIndex(eventsCacheValue.getLastEventIndex() + 1);
-    	events.getEvents().add(event);
+        EventsCacheValue eventsCacheValue = eventsLoadingCache.asMap().get(key);
+        synchronized (eventsCacheValue.getMutex()) {
+            eventsCacheValue.addEvent(event);
+            eventsCacheValue.getMutex().notifyAll();
+        }
     }
 }
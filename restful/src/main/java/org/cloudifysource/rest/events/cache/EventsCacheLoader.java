@@ -16,17 +16,15 @@ import com.gigaspaces.log.LogEntries;
 import com.gigaspaces.log.LogEntry;
 import com.gigaspaces.log.LogEntryMatcher;
 import com.google.common.cache.CacheLoader;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ListenableFuture;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.cloudifysource.rest.events.EventsUtils;
 import org.cloudifysource.rest.events.LogEntryMatcherProvider;
 import org.cloudifysource.rest.events.LogEntryMatcherProviderKey;
 import org.cloudifysource.rest.exceptions.ResourceNotFoundException;
 import org.openspaces.admin.gsc.GridServiceContainer;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -37,9 +35,9 @@ import java.util.logging.Logger;
  * Time: 2:09 PM
  * <br/><br/>
  * The cache loader used to load events to the events cache.
- * implements load, for initial load. and reload, for continues cache population.
+ * implements load, for initial load. new events are harvested in the background by {@link ContainerLogsHarvester}.
  *
- * Load and reload operation will execute a remote call to fetch container logs.
+ * Load and fetch operations execute a remote call to fetch container logs.
  * These logs are then translated to events and saved inside the cache.
  *
  * @see org.cloudifysource.dsl.rest.response.DeploymentEvents
@@ -64,7 +62,8 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
         logger.fine(EventsUtils.getThreadId() + "Could not find events for key " + key
                 + " in cache. Loading from container logs...");
 
-        DeploymentEvents events = new DeploymentEvents();
+        EventsCacheValue value = new EventsCacheValue();
+        value.setLastEventIndex(-1);
 
         // initial load. no events are present in the cache for this deployment.
         // iterate over all container and retrieve logs from logs cache.
@@ -75,77 +74,50 @@ public class EventsCacheLoader extends CacheLoader<EventsCacheKey, EventsCacheVa
             throw new ResourceNotFoundException("Deployment with id " + key.getDeploymentId());
         }
 
-        int index = -1;
         for (GridServiceContainer container : containersForDeployment) {
-
-            LogEntryMatcherProviderKey logEntryMatcherProviderKey = createKey(container, key);
-
-            LogEntries logEntries = container.logEntries(matcherProvider.get(logEntryMatcherProviderKey));
-            for (LogEntry logEntry : logEntries) {
-                if (logEntry.isLog()) {
-                    DeploymentEvent event = EventsUtils.logToEvent(logEntry,
-                            logEntries.getHostName(), logEntries.getHostAddress());
-                    event.setIndex(++index);
-                    events.getEvents().add(event);
-                }
+            for (DeploymentEvent event : fetchNewEvents(key, container)) {
+                value.addEvent(event);
             }
-
         }
 
-        EventsCacheValue value = new EventsCacheValue();
-        value.setLastEventIndex(index);
-        value.setEvents(events);
         value.setLastRefreshedTimestamp(System.currentTimeMillis());
         return value;
     }
 
 
-    @Override
-    public ListenableFuture<EventsCacheValue> reload(final EventsCacheKey key, final EventsCacheValue oldValue)
-            throws Exception {
-
-        logger.fine(EventsUtils.getThreadId() + "Reloading events cache entry for key " + key);
-
-        // pickup any new containers along with the old ones
-        Set<GridServiceContainer> containersForDeployment = new HashSet<GridServiceContainer>();
-
-        containersForDeployment.addAll(containerProvider.getContainersForDeployment(key.getDeploymentId()));
-
-        if (containersForDeployment.isEmpty()) {
-        	// get containers by the deployment id
-        	containersForDeployment = containerProvider.getContainersForDeployment(
-                    key.getDeploymentId());
-        }
-        if (!containersForDeployment.isEmpty()) {
-            int index = oldValue.getLastEventIndex() + 1;
-            for (GridServiceContainer container : containersForDeployment) {
-
-                // this will give us just the new logs.
-                LogEntryMatcherProviderKey logEntryMatcherProviderKey = createKey(container, key);
-                LogEntryMatcher matcher = matcherProvider.get(logEntryMatcherProviderKey);
-                LogEntries logEntries = container.logEntries(matcher);
-
-                for (LogEntry logEntry : logEntries) {
-                    if (logEntry.isLog()) {
-                        DeploymentEvent event = EventsUtils.logToEvent(
-                                logEntry, logEntries.getHostName(), logEntries.getHostAddress());
-                        event.setIndex(index++);
-                        oldValue.getEvents().getEvents().add(event);
-                    }
-                }
+    /**
+     * Executes a remote call to fetch the container logs of a deployment that were not fetched before,
+     * and translates them to events. The returned events are not indexed yet.
+     * Calls for the same key and container must not run concurrently, since they share a continuous matcher.
+     * @param key The key of the deployment.
+     * @param container The container to fetch logs from.
+     * @return The new events.
+     */
+    public List<DeploymentEvent> fetchNewEvents(final EventsCacheKey key, final GridServiceContainer container) {
+
+        // this will give us just the new logs.
+        LogEntryMatcherProviderKey logEntryMatcherProviderKey = createKey(container, key);
+        LogEntryMatcher matcher = matcherProvider.get(logEntryMatcherProviderKey);
+        LogEntries logEntries = container.logEntries(matcher);
+
+        List<DeploymentEvent> events = new ArrayList<DeploymentEvent>();
+        for (LogEntry logEntry : logEntries) {
+            if (logEntry.isLog()) {
+                events.add(EventsUtils.logToEvent(
+                        logEntry, logEntries.getHostName(), logEntries.getHostAddress()));
             }
-
-            // update refresh time.
-            oldValue.setLastRefreshedTimestamp(System.currentTimeMillis());
-            oldValue.setLastEventIndex(index - 1);
         }
-        return Futures.immediateFuture(oldValue);
+        return events;
     }
 
     public LogEntryMatcherProvider getMatcherProvider() {
         return matcherProvider;
     }
 
+    public GridServiceContainerProvider getContainerProvider() {
+        return containerProvider;
+    }
+
     private LogEntryMatcherProviderKey createKey(final GridServiceContainer container,
                                                  final EventsCacheKey key) {
         LogEntryMatcherProviderKey logEntryMatcherProviderKey = new LogEntryMatcherProviderKey();
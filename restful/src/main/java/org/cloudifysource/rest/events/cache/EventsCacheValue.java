@@ -12,11 +12,13 @@
  *******************************************************************************/
 package org.cloudifysource.rest.events.cache;
 
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
 import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.openspaces.admin.pu.ProcessingUnit;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.logging.Logger;
 
 /**
  * Created with IntelliJ IDEA.
@@ -29,9 +31,28 @@ import java.util.Set;
  */
 public class EventsCacheValue {
 
-    private DeploymentEvents events = new DeploymentEvents();
+    /**
+     * System property for the maximum number of events retained per deployment.
+     */
+    public static final String MAX_EVENTS_SYSTEM_PROPERTY = "org.cloudifysource.rest.events-cache-size";
+
+    /**
+     * Default maximum number of events retained per deployment.
+     */
+    public static final int DEFAULT_MAX_EVENTS = 1000;
+
+    // well above the largest page of events returned by the REST API, so a client that reads a full page
+    // right after the previous one never loses events.
+    private static final int MIN_MAX_EVENTS = 500;
+
+    /**
+     * Maximum number of events retained per deployment.
+     * Older events are dropped, and requests for them are answered with a truncated set of events.
+     */
+    public static final int MAX_EVENTS = readMaxEvents();
+
+    private final DeploymentEventsBuffer events = new DeploymentEventsBuffer(MAX_EVENTS, 0);
     private long lastRefreshedTimestamp;
-    private int lastEventIndex;
     private volatile Object mutex = new Object();
     private Set<ProcessingUnit> processingUnits = new HashSet<ProcessingUnit>();
 
@@ -39,12 +60,28 @@ public class EventsCacheValue {
         return processingUnits;
     }
 
+    /**
+     * @return A snapshot of all retained events.
+     */
     public DeploymentEvents getEvents() {
-        return events;
+        return events.getAll();
     }
 
-    public void setEvents(final DeploymentEvents events) {
-        this.events = events;
+    /**
+     * Appends an event, assigning it the index following the last event index.
+     * @param event The event to add.
+     */
+    public void addEvent(final DeploymentEvent event) {
+        events.add(event);
+    }
+
+    /**
+     * @param from The start index.
+     * @param to The end index.
+     * @return The events who's index is in range. Marked as truncated if events in the range were already dropped.
+     */
+    public DeploymentEvents getEvents(final int from, final int to) {
+        return events.getRange(from, to);
     }
 
     public long getLastRefreshedTimestamp() {
@@ -56,21 +93,35 @@ public class EventsCacheValue {
     }
 
     public int getLastEventIndex() {
-        return lastEventIndex;
+        return events.getLastIndex();
     }
 
+    /**
+     * Discards all events and restarts the numbering after the given index.
+     * @param lastEventIndex The index preceding the next added event.
+     */
     public void setLastEventIndex(final int lastEventIndex) {
-        this.lastEventIndex = lastEventIndex;
+        events.reset(lastEventIndex);
     }
 
     public Object getMutex() {
         return mutex;
     }
 
+    private static int readMaxEvents() {
+        final int maxEvents = Integer.getInteger(MAX_EVENTS_SYSTEM_PROPERTY, DEFAULT_MAX_EVENTS);
+        if (maxEvents < MIN_MAX_EVENTS) {
+            Logger.getLogger(EventsCacheValue.class.getName()).warning("The " + MAX_EVENTS_SYSTEM_PROPERTY
+                    + " system property is set to " + maxEvents + ", retaining the minimum of " + MIN_MAX_EVENTS
+                    + " events per deployment instead.");
+            return MIN_MAX_EVENTS;
+        }
+        return maxEvents;
+    }
+
     @Override
     public String toString() {
         return "EventsCacheValue{" + "events=" + events
-                + ", lastRefreshedTimestamp=" + lastRefreshedTimestamp
-                + ", lastEventIndex=" + lastEventIndex + ", mutex=" + mutex + '}';
+                + ", lastRefreshedTimestamp=" + lastRefreshedTimestamp + ", mutex=" + mutex + '}';
     }
 }
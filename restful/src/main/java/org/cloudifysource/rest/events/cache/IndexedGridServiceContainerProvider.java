@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.events.cache;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.gsc.GridServiceContainer;
+import org.openspaces.admin.gsc.events.GridServiceContainerAddedEventListener;
+import org.openspaces.admin.gsc.events.GridServiceContainerRemovedEventListener;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.events.ProcessingUnitAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitRemovedEventListener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Retrieves containers from an index that is maintained incrementally using {@link Admin} event listeners.
+ * <br/><br/>
+ *
+ * Like {@link AdminBasedGridServiceContainerProvider}, the containers of a deployment are the containers
+ * in the zones named after the processing units of that deployment.
+ * Instead of scanning all processing units on each call, two mappings are kept up to date:
+ * deployment id to processing unit names (processing unit added/removed events),
+ * and zone name to containers (container added/removed events).
+ *
+ * Both mappings are immutable and published together as a single snapshot, so readers never lock and always
+ * see a consistent view. Writers are serialized and replace the snapshot (copy on write).
+ */
+public class IndexedGridServiceContainerProvider implements GridServiceContainerProvider {
+
+    private static final Logger logger = Logger.getLogger(IndexedGridServiceContainerProvider.class.getName());
+
+    private final Admin admin;
+    private volatile Snapshot snapshot = new Snapshot(
+            Collections.<String, Set<String>>emptyMap(),
+            Collections.<String, Set<GridServiceContainer>>emptyMap());
+
+    private final ProcessingUnitAddedEventListener processingUnitAddedListener =
+            new ProcessingUnitAddedEventListener() {
+                @Override
+                public void processingUnitAdded(final ProcessingUnit processingUnit) {
+                    onProcessingUnitAdded(processingUnit);
+                }
+            };
+
+    private final ProcessingUnitRemovedEventListener processingUnitRemovedListener =
+            new ProcessingUnitRemovedEventListener() {
+                @Override
+                public void processingUnitRemoved(final ProcessingUnit processingUnit) {
+                    onProcessingUnitRemoved(processingUnit);
+                }
+            };
+
+    private final GridServiceContainerAddedEventListener containerAddedListener =
+            new GridServiceContainerAddedEventListener() {
+                @Override
+                public void gridServiceContainerAdded(final GridServiceContainer container) {
+                    onContainerAdded(container);
+                }
+            };
+
+    private final GridServiceContainerRemovedEventListener containerRemovedListener =
+            new GridServiceContainerRemovedEventListener() {
+                @Override
+                public void gridServiceContainerRemoved(final GridServiceContainer container) {
+                    onContainerRemoved(container);
+                }
+            };
+
+    public IndexedGridServiceContainerProvider(final Admin admin) {
+        this.admin = admin;
+    }
+
+    /**
+     * Registers the admin event listeners. Existing processing units and containers are indexed as well.
+     */
+    public void start() {
+        admin.getGridServiceContainers().getGridServiceContainerAdded().add(containerAddedListener);
+        admin.getGridServiceContainers().getGridServiceContainerRemoved().add(containerRemovedListener);
+        admin.getProcessingUnits().getProcessingUnitAdded().add(processingUnitAddedListener);
+        admin.getProcessingUnits().getProcessingUnitRemoved().add(processingUnitRemovedListener);
+    }
+
+    /**
+     * Removes the admin event listeners.
+     */
+    public void stop() {
+        admin.getProcessingUnits().getProcessingUnitRemoved().remove(processingUnitRemovedListener);
+        admin.getProcessingUnits().getProcessingUnitAdded().remove(processingUnitAddedListener);
+        admin.getGridServiceContainers().getGridServiceContainerRemoved().remove(containerRemovedListener);
+        admin.getGridServiceContainers().getGridServiceContainerAdded().remove(containerAddedListener);
+    }
+
+    @Override
+    public Set<GridServiceContainer> getContainersForDeployment(final String deploymentId) {
+
+        // read the snapshot once, so both mappings are from the same point in time.
+        final Snapshot current = snapshot;
+
+        final Set<GridServiceContainer> containers = new HashSet<GridServiceContainer>();
+        final Set<String> processingUnitNames = current.processingUnitNamesByDeployment.get(deploymentId);
+        if (processingUnitNames == null) {
+            return containers;
+        }
+        for (final String processingUnitName : processingUnitNames) {
+            final Set<GridServiceContainer> zoneContainers = current.containersByZone.get(processingUnitName);
+            if (zoneContainers != null) {
+                containers.addAll(zoneContainers);
+            }
+        }
+        return containers;
+    }
+
+    synchronized void onProcessingUnitAdded(final ProcessingUnit processingUnit) {
+        final String deploymentId = getDeploymentId(processingUnit);
+        if (deploymentId == null) {
+            return;
+        }
+        logger.fine("Indexing processing unit " + processingUnit.getName() + " of deployment " + deploymentId);
+        snapshot = snapshot.withProcessingUnit(deploymentId, processingUnit.getName());
+    }
+
+    synchronized void onProcessingUnitRemoved(final ProcessingUnit processingUnit) {
+        final String deploymentId = getDeploymentId(processingUnit);
+        if (deploymentId == null) {
+            return;
+        }
+        logger.fine("Removing processing unit " + processingUnit.getName() + " of deployment " + deploymentId
+                + " from index");
+        snapshot = snapshot.withoutProcessingUnit(deploymentId, processingUnit.getName());
+    }
+
+    synchronized void onContainerAdded(final GridServiceContainer container) {
+        Snapshot updated = snapshot;
+        for (final String zoneName : container.getZones().keySet()) {
+            updated = updated.withContainer(zoneName, container);
+        }
+        snapshot = updated;
+    }
+
+    synchronized void onContainerRemoved(final GridServiceContainer container) {
+        // the container may not report its zones anymore, so look for it in all zones.
+        Snapshot updated = snapshot;
+        for (final Map.Entry<String, Set<GridServiceContainer>> entry : snapshot.containersByZone.entrySet()) {
+            if (entry.getValue().contains(container)) {
+                updated = updated.withoutContainer(entry.getKey(), container);
+            }
+        }
+        snapshot = updated;
+    }
+
+    private String getDeploymentId(final ProcessingUnit processingUnit) {
+        return (String) processingUnit.getBeanLevelProperties().getContextProperties()
+                .get(CloudifyConstants.CONTEXT_PROPERTY_DEPLOYMENT_ID);
+    }
+
+    /**
+     * Immutable view of the index. Every modification returns a new snapshot.
+     */
+    private static final class Snapshot {
+
+        private final Map<String, Set<String>> processingUnitNamesByDeployment;
+        private final Map<String, Set<GridServiceContainer>> containersByZone;
+
+        private Snapshot(final Map<String, Set<String>> processingUnitNamesByDeployment,
+                         final Map<String, Set<GridServiceContainer>> containersByZone) {
+            this.processingUnitNamesByDeployment = processingUnitNamesByDeployment;
+            this.containersByZone = containersByZone;
+        }
+
+        Snapshot withProcessingUnit(final String deploymentId, final String processingUnitName) {
+            return new Snapshot(
+                    with(processingUnitNamesByDeployment, deploymentId, processingUnitName), containersByZone);
+        }
+
+        Snapshot withoutProcessingUnit(final String deploymentId, final String processingUnitName) {
+            return new Snapshot(
+                    without(processingUnitNamesByDeployment, deploymentId, processingUnitName), containersByZone);
+        }
+
+        Snapshot withContainer(final String zoneName, final GridServiceContainer container) {
+            return new Snapshot(processingUnitNamesByDeployment, with(containersByZone, zoneName, container));
+        }
+
+        Snapshot withoutContainer(final String zoneName, final GridServiceContainer container) {
+            return new Snapshot(processingUnitNamesByDeployment, without(containersByZone, zoneName, container));
+        }
+
+        private static <K, V> Map<K, Set<V>> with(final Map<K, Set<V>> map, final K key, final V value) {
+            final Map<K, Set<V>> copy = new HashMap<K, Set<V>>(map);
+            final Set<V> values = map.containsKey(key) ? new HashSet<V>(map.get(key)) : new HashSet<V>();
+            values.add(value);
+            copy.put(key, Collections.unmodifiableSet(values));
+            return Collections.unmodifiableMap(copy);
+        }
+
+        private static <K, V> Map<K, Set<V>> without(final Map<K, Set<V>> map, final K key, final V value) {
+            if (!map.containsKey(key)) {
+                return map;
+            }
+            final Map<K, Set<V>> copy = new HashMap<K, Set<V>>(map);
+            final Set<V> values = new HashSet<V>(map.get(key));
+            values.remove(value);
+            if (values.isEmpty()) {
+                copy.remove(key);
+            } else {
+                copy.put(key, Collections.unmodifiableSet(values));
+            }
+            return Collections.unmodifiableMap(copy);
+        }
+    }
+}
@@ -50,12 +50,27 @@ import org.openspaces.pu.service.ServiceMonitors;
  */
 public class ApplicationDescriptionFactory {
     private final Admin admin;
+    private final DeploymentStateView stateView;
 
     private static final Logger logger = Logger
             .getLogger(ApplicationDescriptionFactory.class.getName());
 
     public ApplicationDescriptionFactory(final Admin admin) {
+        this(admin, null);
+    }
+
+    /**
+     * Creates a factory that takes the USM state of instances from a deployment state view, and only falls back to
+     * the instance statistics for instances the view has no state for.
+     *
+     * @param admin
+     *            the admin.
+     * @param stateView
+     *            the deployment state view.
+     */
+    ApplicationDescriptionFactory(final Admin admin, final DeploymentStateView stateView) {
         this.admin = admin;
+        this.stateView = stateView;
     }
 
     /**
@@ -91,12 +106,29 @@ public class ApplicationDescriptionFactory {
         String applicationName = application.getName();
         List<ServiceDescription> serviceDescriptionList = getServicesDescription(
                 applicationName, application);
+        return createApplicationDescription(applicationName, getApplicationAuthorizationGroups(application),
+                serviceDescriptionList);
+    }
+
+    /**
+     * Creates an application description from the descriptions of its services.
+     *
+     * @param applicationName
+     *            the application name.
+     * @param authGroups
+     *            the authorization groups of the application.
+     * @param serviceDescriptionList
+     *            the descriptions of the application's services.
+     * @return the application description.
+     */
+    ApplicationDescription createApplicationDescription(final String applicationName, final String authGroups,
+            final List<ServiceDescription> serviceDescriptionList) {
         logger.log(Level.FINE, "Creating application description for application " + applicationName);
         final DeploymentState applicationState = getApplicationState(serviceDescriptionList);
 
         final ApplicationDescription applicationDescription = new ApplicationDescription();
         applicationDescription.setApplicationName(applicationName);
-        applicationDescription.setAuthGroups(getApplicationAuthorizationGroups(application));
+        applicationDescription.setAuthGroups(authGroups);
         applicationDescription.setServicesDescription(serviceDescriptionList);
         applicationDescription.setApplicationState(applicationState);
 
@@ -442,6 +474,12 @@ public class ApplicationDescriptionFactory {
      * @return the USM state of the specified PU instance
      */
     private USMState getInstanceUsmState(final ProcessingUnitInstance pui) {
+        if (stateView != null) {
+            final USMState viewState = stateView.getInstanceUsmState(pui);
+            if (viewState != null) {
+                return viewState;
+            }
+        }
         final ProcessingUnitInstanceStatistics statistics = pui.getStatistics();
         if (statistics == null) {
             return null;
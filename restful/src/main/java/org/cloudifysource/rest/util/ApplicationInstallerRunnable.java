@@ -16,16 +16,29 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
 import org.cloudifysource.dsl.Service;
 import org.cloudifysource.dsl.cloud.Cloud;
 import org.cloudifysource.dsl.internal.CloudifyConstants;
@@ -48,6 +61,7 @@ import com.j_spaces.kernel.Environment;
 public class ApplicationInstallerRunnable implements Runnable {
 
 	private static final int SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES = 60;
+	private static final int MAX_CONCURRENT_SERVICE_INSTALLS = 8;
 
 	private static final java.util.logging.Logger logger = java.util.logging.Logger
 			.getLogger(ApplicationInstallerRunnable.class.getName());
@@ -148,142 +162,212 @@ public class ApplicationInstallerRunnable implements Runnable {
 			final File cloudOverrides)
 			throws IOException {
 		logger.info("Installing services for application: " + applicationName + ". Async install: " + async + ". Number of services: " + this.services.size());
+
+		// the dependencies of each service that are not installed yet, and the services that depend on each service
+		final Map<String, Set<String>> pendingDependencies = new HashMap<String, Set<String>>();
+		final Map<String, List<Service>> dependentServices = new HashMap<String, List<Service>>();
+		for (final Service service : services) {
+			pendingDependencies.put(service.getName(), new HashSet<String>());
+			dependentServices.put(service.getName(), new LinkedList<Service>());
+		}
 		for (final Service service : services) {
-			logger.info("Installing service: " + service.getName() + " for application: " + applicationName);
-			service.getCustomProperties().put("usmJarPath",
-					Environment.getHomeDirectory() + "/lib/platform/usm");
-
-			final Properties contextProperties = createServiceContextProperties(
-					service, applicationName, async, cloud);
-
-			final String serviceName = service.getName();
-			final String absolutePUName = ServiceUtils.getAbsolutePUName(
-					applicationName, serviceName);
-			final File serviceDirectory = new File(appDir, serviceName);
-
-			// scan for service cloud configuration file
-
-			final File serviceCloudConfiguration = new File(serviceDirectory,
-					CloudifyConstants.SERVICE_CLOUD_CONFIGURATION_FILE_NAME);
-			byte[] serviceCloudConfigurationContents = null;
-			if (serviceCloudConfiguration.exists()) {
-				serviceCloudConfigurationContents = FileUtils
-						.readFileToByteArray(serviceCloudConfiguration);
-				FileUtils.forceDelete(serviceCloudConfiguration);
+			if (service.getDependsOn() != null) {
+				for (final String dependency : service.getDependsOn()) {
+					if (dependentServices.containsKey(dependency)) {
+						pendingDependencies.get(service.getName()).add(dependency);
+						dependentServices.get(dependency).add(service);
+					}
+				}
 			}
+		}
 
-			boolean found = false;
-
-			try {
-				// this will actually create an empty props file.
-				final FileAppender appender = new FileAppender("finalPropsFile.properties");
-				final LinkedHashMap<File, String> filesToAppend = new LinkedHashMap<File, String>();
-
-				// first add the application properties file. least important overrides.
-				// lookup application properties file
-				final File applicationPropertiesFile =
-						DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_PROPERTIES_FILE_NAME, appDir);
-				filesToAppend.put(applicationPropertiesFile, "Application Properties File");
-				// add the service properties file, second level overrides.
-				// lookup service properties file
-				final String propertiesFileName = DSLUtils.getPropertiesFileName(serviceDirectory,
-						DSLUtils.SERVICE_DSL_FILE_NAME_SUFFIX);
-				final File servicePropertiesFile = new File(serviceDirectory, propertiesFileName);
-				filesToAppend.put(servicePropertiesFile, "Service Properties File");
-				// lookup overrides file
-				File actualOverridesFile = overridesFile;
-				if (actualOverridesFile == null) {
-					// when using the CLI, the application overrides file is inside the directory
-					actualOverridesFile =
-							DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_OVERRIDES_FILE_NAME, appDir);
+		// a service is installed as soon as all its dependencies are, so independent services install in parallel
+		final ExecutorService installExecutor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(MAX_CONCURRENT_SERVICE_INSTALLS, services.size())));
+		final CompletionService<Service> completionService = new ExecutorCompletionService<Service>(installExecutor);
+		try {
+			int runningInstalls = 0;
+			// services are given in dependency order, so the first wave is submitted in that order too
+			for (final Service service : services) {
+				if (pendingDependencies.get(service.getName()).isEmpty()) {
+					submitServiceInstall(completionService, appDir, service, async);
+					++runningInstalls;
 				}
-				// add the overrides file given in the command or via REST, most important overrides.
-				filesToAppend.put(actualOverridesFile, "Overrides Properties File");
-				/*
-				 * name the merged properties file as the original properties file. this will allow all properties to be
-				 * available by anyone who parses the default properties file. (like Lifecycle scripts)
-				 */
-				appender.appendAll(servicePropertiesFile, filesToAppend);
-
-				// Pack the folder and name it absolutePuName
-				final File packedFile = Packager.pack(service, serviceDirectory, absolutePUName, null);
-				result.getApplicationFile().delete();
-				packedFile.deleteOnExit();
-				// Deployment will be done using the service's absolute PU name.
-				logger.info("Deploying PU: " + absolutePUName + ". File: "
-						+ packedFile + ". Properties: " + contextProperties);
-				final String templateName = service.getCompute() == null ? null
-						: service.getCompute().getTemplate();
-				controller.deployElasticProcessingUnit(
-						absolutePUName,
-						applicationName,
-						authGroups,
-						serviceName,
-						packedFile,
-						contextProperties,
-						templateName,
-						true,
-						0,
-						TimeUnit.SECONDS,
-						serviceCloudConfigurationContents,
-						selfHealing,
-						null /* service overrides file */,
-						cloudOverrides);
+			}
+
+			while (runningInstalls > 0) {
+				final Future<Service> future = completionService.take();
+				--runningInstalls;
+				final Service installedService;
 				try {
-					FileUtils.deleteDirectory(packedFile.getParentFile());
-				} catch (final IOException ioe) {
-					// sometimes this delete fails. Not sure why. Maybe deploy
-					// is async?
-					logger.warning("Failed to delete temporary directory: "
-							+ packedFile.getParentFile());
+					installedService = future.get();
+				} catch (final ExecutionException e) {
+					final Throwable cause = e.getCause();
+					this.controller.handleDeploymentException(
+							cause instanceof Exception ? (Exception) cause : e, this.pollingTaskId);
+					return;
 				}
 
-				if (!async) {
-					logger.info("Waiting for instance of service: " + serviceName + " of application: "	+ applicationName);
-					final boolean instanceFound = controller
-							.waitForServiceInstance(applicationName,
-									serviceName,
-									SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES,
-									TimeUnit.MINUTES);
-					if (!instanceFound) {
-						throw new TimeoutException(
-								"Service "
-										+ serviceName
-										+ " of application "
-										+ applicationName
-										+ " was installed, but no instance of the service has started after "
-										+ SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES
-										+ " minutes.");
+				for (final Service dependent : dependentServices.get(installedService.getName())) {
+					final Set<String> dependencies = pendingDependencies.get(dependent.getName());
+					dependencies.remove(installedService.getName());
+					if (dependencies.isEmpty()) {
+						submitServiceInstall(completionService, appDir, dependent, async);
+						++runningInstalls;
 					}
-					logger.info("Found instance of: " + serviceName);
 				}
-
-				found = true;
-				logger.fine("service " + service + " deployed.");
-			} catch (final Exception e) {
-				logger.log(
-						Level.SEVERE,
-						"Failed to install service: "
-								+ serviceName
-								+ " of application: "
-								+ applicationName
-								+ ". Application installation will halt. "
-								+ "Some services may already have started, and should be shutdown manually. Error was: "
-								+ e.getMessage(), e);
-				this.controller.handleDeploymentException(e, this.pollingTaskId);
-				return;
 			}
+		} catch (final InterruptedException e) {
+			logger.warning("Interrupted while installing services of application: " + applicationName
+					+ ". Application installation will halt.");
+			// the installation failed, so the polling task reports it instead of waiting for its timeout.
+			this.controller.handleDeploymentException(e, this.pollingTaskId);
+			Thread.currentThread().interrupt();
+		} finally {
+			// fail fast: installs still running are interrupted
+			installExecutor.shutdownNow();
+		}
+	}
 
-			if (!found) {
-				logger.severe("Failed to find an instance of service: "
-						+ serviceName
-						+ " while installing application "
-						+ applicationName
-						+ ". Application installation will stop. Some services may have been installed!");
-				return;
+	private void submitServiceInstall(final CompletionService<Service> completionService, final File appDir,
+			final Service service, final boolean async) {
+		completionService.submit(new Callable<Service>() {
+
+			@Override
+			public Service call() throws Exception {
+				final long start = System.currentTimeMillis();
+				try {
+					installService(appDir, service, async);
+				} catch (final Exception e) {
+					logger.log(
+							Level.SEVERE,
+							"Failed to install service: "
+									+ service.getName()
+									+ " of application: "
+									+ applicationName
+									+ ". Application installation will halt. "
+									+ "Some services may already have started, and should be shutdown manually. "
+									+ "Error was: " + e.getMessage(), e);
+					throw e;
+				}
+				final long duration = System.currentTimeMillis() - start;
+				controller.addDeploymentEvent("Service \"" + service.getName() + "\" "
+						+ (async ? "deployed" : "installed") + " in " + duration / DateUtils.MILLIS_PER_SECOND
+						+ " seconds", pollingTaskId);
+				return service;
 			}
+		});
+	}
+
+	private void installService(final File appDir, final Service service, final boolean async)
+			throws Exception {
+		logger.info("Installing service: " + service.getName() + " for application: " + applicationName);
+		service.getCustomProperties().put("usmJarPath",
+				Environment.getHomeDirectory() + "/lib/platform/usm");
+
+		final Properties contextProperties = createServiceContextProperties(
+				service, applicationName, async, cloud);
+
+		final String serviceName = service.getName();
+		final String absolutePUName = ServiceUtils.getAbsolutePUName(
+				applicationName, serviceName);
+		final File serviceDirectory = new File(appDir, serviceName);
+
+		// scan for service cloud configuration file
+
+		final File serviceCloudConfiguration = new File(serviceDirectory,
+				CloudifyConstants.SERVICE_CLOUD_CONFIGURATION_FILE_NAME);
+		byte[] serviceCloudConfigurationContents = null;
+		if (serviceCloudConfiguration.exists()) {
+			serviceCloudConfigurationContents = FileUtils
+					.readFileToByteArray(serviceCloudConfiguration);
+			FileUtils.forceDelete(serviceCloudConfiguration);
+		}
+
+		// this will actually create an empty props file.
+		final FileAppender appender = new FileAppender("finalPropsFile.properties");
+		final LinkedHashMap<File, String> filesToAppend = new LinkedHashMap<File, String>();
+
+		// first add the application properties file. least important overrides.
+		// lookup application properties file
+		final File applicationPropertiesFile =
+				DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_PROPERTIES_FILE_NAME, appDir);
+		filesToAppend.put(applicationPropertiesFile, "Application Properties File");
+		// add the service properties file, second level overrides.
+		// lookup service properties file
+		final String propertiesFileName = DSLUtils.getPropertiesFileName(serviceDirectory,
+				DSLUtils.SERVICE_DSL_FILE_NAME_SUFFIX);
+		final File servicePropertiesFile = new File(serviceDirectory, propertiesFileName);
+		filesToAppend.put(servicePropertiesFile, "Service Properties File");
+		// lookup overrides file
+		File actualOverridesFile = overridesFile;
+		if (actualOverridesFile == null) {
+			// when using the CLI, the application overrides file is inside the directory
+			actualOverridesFile =
+					DSLReader.findDefaultDSLFileIfExists(DSLUtils.APPLICATION_OVERRIDES_FILE_NAME, appDir);
+		}
+		// add the overrides file given in the command or via REST, most important overrides.
+		filesToAppend.put(actualOverridesFile, "Overrides Properties File");
+		/*
+		 * name the merged properties file as the original properties file. this will allow all properties to be
+		 * available by anyone who parses the default properties file. (like Lifecycle scripts)
+		 */
+		appender.appendAll(servicePropertiesFile, filesToAppend);
+
+		// Pack the folder and name it absolutePuName
+		final File packedFile = Packager.pack(service, serviceDirectory, absolutePUName, null);
+		result.getApplicationFile().delete();
+		packedFile.deleteOnExit();
+		// Deployment will be done using the service's absolute PU name.
+		logger.info("Deploying PU: " + absolutePUName + ". File: "
+				+ packedFile + ". Properties: " + contextProperties);
+		final String templateName = service.getCompute() == null ? null
+				: service.getCompute().getTemplate();
+		controller.deployElasticProcessingUnit(
+				absolutePUName,
+				applicationName,
+				authGroups,
+				serviceName,
+				packedFile,
+				contextProperties,
+				templateName,
+				true,
+				0,
+				TimeUnit.SECONDS,
+				serviceCloudConfigurationContents,
+				selfHealing,
+				null /* service overrides file */,
+				cloudOverrides);
+		try {
+			FileUtils.deleteDirectory(packedFile.getParentFile());
+		} catch (final IOException ioe) {
+			// sometimes this delete fails. Not sure why. Maybe deploy
+			// is async?
+			logger.warning("Failed to delete temporary directory: "
+					+ packedFile.getParentFile());
+		}
 
+		if (!async) {
+			logger.info("Waiting for instance of service: " + serviceName + " of application: "	+ applicationName);
+			final boolean instanceFound = controller
+					.waitForServiceInstance(applicationName,
+							serviceName,
+							SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES,
+							TimeUnit.MINUTES);
+			if (!instanceFound) {
+				throw new TimeoutException(
+						"Service "
+								+ serviceName
+								+ " of application "
+								+ applicationName
+								+ " was installed, but no instance of the service has started after "
+								+ SERVICE_INSTANCE_STARTUP_TIMEOUT_MINUTES
+								+ " minutes.");
+			}
+			logger.info("Found instance of: " + serviceName);
 		}
+
+		logger.fine("service " + service + " deployed.");
 	}
 
 	/**
@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2013 GigaSpaces Technologies Ltd. All rights reserved
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ *******************************************************************************/
+package org.cloudifysource.rest.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.cloudifysource.dsl.internal.CloudifyConstants.USMState;
+import org.cloudifysource.dsl.internal.space.ServiceInstanceStateData;
+import org.cloudifysource.dsl.rest.response.ApplicationDescription;
+import org.cloudifysource.dsl.rest.response.ServiceDescription;
+import org.cloudifysource.dsl.utils.ServiceUtils;
+import org.cloudifysource.dsl.utils.ServiceUtils.FullServiceName;
+import org.cloudifysource.rest.exceptions.ResourceNotFoundException;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.pu.ProcessingUnitInstance;
+import org.openspaces.admin.pu.events.ProcessingUnitAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceAddedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitInstanceRemovedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitRemovedEventListener;
+import org.openspaces.admin.pu.events.ProcessingUnitStatusChangedEvent;
+import org.openspaces.admin.pu.events.ProcessingUnitStatusChangedEventListener;
+import org.openspaces.core.GigaSpace;
+import org.openspaces.events.SpaceDataEventListener;
+import org.openspaces.events.notify.SimpleNotifyContainerConfigurer;
+import org.openspaces.events.notify.SimpleNotifyEventListenerContainer;
+import org.springframework.transaction.TransactionStatus;
+
+import com.gigaspaces.events.NotifyActionType;
+import com.j_spaces.core.client.EntryArrivedRemoteEvent;
+
+/**
+ * A materialized view of the application and service descriptions, maintained incrementally instead of being built
+ * for every request.
+ * <p>
+ * The USM state of the service instances is taken from the {@link ServiceInstanceStateData} entries the USMs write to
+ * the management space, and kept up to date with a notify container. Processing unit and processing unit instance
+ * events of the {@link Admin}, and state changes, rebuild the description of the affected service and of its
+ * application only. The statistics of an instance are only read when the view has no state for it yet.
+ * <p>
+ * The descriptions are published as a single immutable snapshot, so readers never lock and always see a consistent
+ * view. Every published snapshot has a new version, which is set on the descriptions that changed in it. Writers are
+ * serialized. As a safety net against lost notifications, the whole view is rebuilt periodically.
+ * <p>
+ * Descriptions missing from the view, like those of services that are not deployed as part of an application, are
+ * created on request by an {@link ApplicationDescriptionFactory}, as before.
+ *
+ * @since 2.6.0
+ */
+public class DeploymentStateView {
+
+	private static final Logger logger = Logger.getLogger(DeploymentStateView.class.getName());
+
+	private static final long RESYNC_INTERVAL_SECONDS = 60;
+
+	private final Admin admin;
+	private final GigaSpace managementSpace;
+	private final ScheduledExecutorService scheduledExecutor;
+	private final ApplicationDescriptionFactory factory;
+
+	// USM states by state entry id, updated by the notify container.
+	private final Map<String, USMState> instanceStates = new ConcurrentHashMap<String, USMState>();
+	private volatile Snapshot snapshot = new Snapshot(0,
+			Collections.<String, ServiceDescription>emptyMap(),
+			Collections.<String, ApplicationDescription>emptyMap());
+
+	private SimpleNotifyEventListenerContainer stateContainer;
+	private ScheduledFuture<?> resyncTask;
+
+	private final ProcessingUnitAddedEventListener processingUnitAddedListener =
+			new ProcessingUnitAddedEventListener() {
+				@Override
+				public void processingUnitAdded(final ProcessingUnit processingUnit) {
+					updateProcessingUnit(processingUnit);
+				}
+			};
+
+	private final ProcessingUnitRemovedEventListener processingUnitRemovedListener =
+			new ProcessingUnitRemovedEventListener() {
+				@Override
+				public void processingUnitRemoved(final ProcessingUnit processingUnit) {
+					removeProcessingUnit(processingUnit.getName());
+				}
+			};
+
+	private final ProcessingUnitInstanceAddedEventListener instanceAddedListener =
+			new ProcessingUnitInstanceAddedEventListener() {
+				@Override
+				public void processingUnitInstanceAdded(final ProcessingUnitInstance processingUnitInstance) {
+					updateProcessingUnit(processingUnitInstance.getProcessingUnit());
+				}
+			};
+
+	private final ProcessingUnitInstanceRemovedEventListener instanceRemovedListener =
+			new ProcessingUnitInstanceRemovedEventListener() {
+				@Override
+				public void processingUnitInstanceRemoved(final ProcessingUnitInstance processingUnitInstance) {
+					updateProcessingUnit(processingUnitInstance.getProcessingUnit());
+				}
+			};
+
+	private final ProcessingUnitStatusChangedEventListener statusChangedListener =
+			new ProcessingUnitStatusChangedEventListener() {
+				@Override
+				public void processingUnitStatusChanged(final ProcessingUnitStatusChangedEvent event) {
+					updateProcessingUnit(event.getProcessingUnit());
+				}
+			};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param admin
+	 *            the admin.
+	 * @param managementSpace
+	 *            the management space the USM states are read from, or null to read them from the instance
+	 *            statistics.
+	 * @param scheduledExecutor
+	 *            the executor of the periodic rebuild.
+	 */
+	public DeploymentStateView(final Admin admin, final GigaSpace managementSpace,
+			final ScheduledExecutorService scheduledExecutor) {
+		this.admin = admin;
+		this.managementSpace = managementSpace;
+		this.scheduledExecutor = scheduledExecutor;
+		this.factory = new ApplicationDescriptionFactory(admin, this);
+	}
+
+	/**
+	 * Registers the notify container and the admin event listeners, and schedules the periodic rebuild. Existing
+	 * processing units and states are loaded as well.
+	 */
+	public synchronized void start() {
+		if (managementSpace != null) {
+			stateContainer = new SimpleNotifyContainerConfigurer(managementSpace)
+					.template(new ServiceInstanceStateData())
+					.notifyWrite(true)
+					.notifyUpdate(true)
+					.notifyTake(true)
+					.eventListener(new SpaceDataEventListener<ServiceInstanceStateData>() {
+						@Override
+						public void onEvent(final ServiceInstanceStateData data, final GigaSpace gigaSpace,
+								final TransactionStatus txStatus, final Object source) {
+							onStateChanged(data, isTake(source));
+						}
+					})
+					.notifyContainer();
+			// read after the notify registration, so no state change is missed in between.
+			loadInstanceStates();
+		}
+
+		admin.getProcessingUnits().getProcessingUnitAdded().add(processingUnitAddedListener);
+		admin.getProcessingUnits().getProcessingUnitRemoved().add(processingUnitRemovedListener);
+		admin.getProcessingUnits().getProcessingUnitInstanceAdded().add(instanceAddedListener);
+		admin.getProcessingUnits().getProcessingUnitInstanceRemoved().add(instanceRemovedListener);
+		admin.getProcessingUnits().getProcessingUnitStatusChanged().add(statusChangedListener);
+
+		resyncTask = scheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					resync();
+				} catch (final Exception e) {
+					logger.log(Level.WARNING, "Failed to rebuild the deployment state view: " + e.getMessage(), e);
+				}
+			}
+		}, RESYNC_INTERVAL_SECONDS, RESYNC_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Removes the admin event listeners, the notify container and the periodic rebuild.
+	 */
+	public synchronized void stop() {
+		if (resyncTask != null) {
+			resyncTask.cancel(false);
+			resyncTask = null;
+		}
+		admin.getProcessingUnits().getProcessingUnitStatusChanged().remove(statusChangedListener);
+		admin.getProcessingUnits().getProcessingUnitInstanceRemoved().remove(instanceRemovedListener);
+		admin.getProcessingUnits().getProcessingUnitInstanceAdded().remove(instanceAddedListener);
+		admin.getProcessingUnits().getProcessingUnitRemoved().remove(processingUnitRemovedListener);
+		admin.getProcessingUnits().getProcessingUnitAdded().remove(processingUnitAddedListener);
+		if (stateContainer != null) {
+			stateContainer.destroy();
+			stateContainer = null;
+		}
+	}
+
+	/**
+	 * Returns the version of the current snapshot of the view.
+	 *
+	 * @return the version.
+	 */
+	public long getVersion() {
+		return snapshot.version;
+	}
+
+	/**
+	 * Returns the descriptions of all the applications in the view, except the management application.
+	 *
+	 * @return the application descriptions.
+	 */
+	public List<ApplicationDescription> getApplicationDescriptions() {
+		final Snapshot current = snapshot;
+		final List<ApplicationDescription> descriptions =
+				new ArrayList<ApplicationDescription>(current.applicationsByName.size());
+		for (final ApplicationDescription description : current.applicationsByName.values()) {
+			if (!CloudifyConstants.MANAGEMENT_APPLICATION_NAME.equals(description.getApplicationName())) {
+				descriptions.add(description);
+			}
+		}
+		return descriptions;
+	}
+
+	/**
+	 * Returns the description of an application.
+	 *
+	 * @param applicationName
+	 *            the application name.
+	 * @return the application description.
+	 * @throws ResourceNotFoundException
+	 *             if the application was not found.
+	 */
+	public ApplicationDescription getApplicationDescription(final String applicationName)
+			throws ResourceNotFoundException {
+		final ApplicationDescription description = snapshot.applicationsByName.get(applicationName);
+		if (description != null) {
+			return description;
+		}
+		return factory.getApplicationDescription(applicationName);
+	}
+
+	/**
+	 * Returns the description of a service.
+	 *
+	 * @param absolutePuName
+	 *            the full service name (<application name>.<service name>).
+	 * @return the service description.
+	 * @throws ResourceNotFoundException
+	 *             if the service was not found.
+	 */
+	public ServiceDescription getServiceDescription(final String absolutePuName)
+			throws ResourceNotFoundException {
+		final ServiceDescription description = snapshot.servicesByPuName.get(absolutePuName);
+		if (description != null) {
+			return description;
+		}
+		return factory.getServiceDescription(absolutePuName);
+	}
+
+	/**
+	 * Returns the description of the service of a processing unit.
+	 *
+	 * @param processingUnit
+	 *            the processing unit.
+	 * @return the service description.
+	 */
+	public ServiceDescription getServiceDescription(final ProcessingUnit processingUnit) {
+		final ServiceDescription description = snapshot.servicesByPuName.get(processingUnit.getName());
+		if (description != null) {
+			return description;
+		}
+		return factory.getServiceDescription(processingUnit);
+	}
+
+	/**
+	 * Returns the USM state of an instance, as last written to the management space.
+	 *
+	 * @param processingUnitInstance
+	 *            the processing unit instance.
+	 * @return the USM state, or null if the view has no state for the instance.
+	 */
+	USMState getInstanceUsmState(final ProcessingUnitInstance processingUnitInstance) {
+		final FullServiceName fullServiceName = getFullServiceName(processingUnitInstance.getProcessingUnit()
+				.getName());
+		if (fullServiceName == null) {
+			return null;
+		}
+		return instanceStates.get(ServiceInstanceStateData.createId(fullServiceName.getApplicationName(),
+				fullServiceName.getServiceName(), processingUnitInstance.getInstanceId()));
+	}
+
+	void onStateChanged(final ServiceInstanceStateData data, final boolean removed) {
+		if (removed || data.getState() == null) {
+			instanceStates.remove(data.getId());
+		} else {
+			instanceStates.put(data.getId(), data.getState());
+		}
+		final ProcessingUnit processingUnit = admin.getProcessingUnits().getProcessingUnit(
+				ServiceUtils.getAbsolutePUName(data.getApplicationName(), data.getServiceName()));
+		if (processingUnit != null) {
+			updateProcessingUnit(processingUnit);
+		}
+	}
+
+	synchronized void updateProcessingUnit(final ProcessingUnit processingUnit) {
+		final FullServiceName fullServiceName = getFullServiceName(processingUnit.getName());
+		if (fullServiceName == null) {
+			return;
+		}
+		final long version = snapshot.version + 1;
+		final ServiceDescription serviceDescription = createServiceDescription(processingUnit, version);
+		final Snapshot updated = serviceDescription == null
+				? snapshot.withoutService(processingUnit.getName())
+				: snapshot.withService(processingUnit.getName(), keepVersion(serviceDescription));
+		publish(withApplication(updated, fullServiceName.getApplicationName(), processingUnit, version));
+	}
+
+	synchronized void removeProcessingUnit(final String processingUnitName) {
+		final FullServiceName fullServiceName = getFullServiceName(processingUnitName);
+		if (fullServiceName == null) {
+			return;
+		}
+		logger.fine("Removing processing unit " + processingUnitName + " from the deployment state view");
+		final long version = snapshot.version + 1;
+		publish(withApplication(snapshot.withoutService(processingUnitName), fullServiceName.getApplicationName(),
+				null, version));
+	}
+
+	/**
+	 * Rebuilds the whole view from the management space and the admin.
+	 */
+	synchronized void resync() {
+		if (managementSpace != null) {
+			loadInstanceStates();
+		}
+		final long version = snapshot.version + 1;
+		final Map<String, ServiceDescription> servicesByPuName = new HashMap<String, ServiceDescription>();
+		final Map<String, ProcessingUnit> processingUnitsByApplication = new HashMap<String, ProcessingUnit>();
+		for (final ProcessingUnit processingUnit : admin.getProcessingUnits()) {
+			final FullServiceName fullServiceName = getFullServiceName(processingUnit.getName());
+			if (fullServiceName == null) {
+				continue;
+			}
+			final ServiceDescription description = createServiceDescription(processingUnit, version);
+			if (description != null) {
+				servicesByPuName.put(processingUnit.getName(), keepVersion(description));
+			}
+			processingUnitsByApplication.put(fullServiceName.getApplicationName(), processingUnit);
+		}
+
+		Snapshot updated = new Snapshot(version, Collections.unmodifiableMap(servicesByPuName),
+				Collections.<String, ApplicationDescription>emptyMap());
+		for (final Map.Entry<String, ProcessingUnit> entry : processingUnitsByApplication.entrySet()) {
+			updated = withApplication(updated, entry.getKey(), entry.getValue(), version);
+		}
+		publish(updated);
+	}
+
+	// rebuilds the description of an application from the service descriptions of the updated snapshot.
+	private Snapshot withApplication(final Snapshot updated, final String applicationName,
+			final ProcessingUnit processingUnit, final long version) {
+		final ApplicationDescription description =
+				createApplicationDescription(updated, applicationName, processingUnit, version);
+		final ApplicationDescription previous = snapshot.applicationsByName.get(applicationName);
+		if (description != null && previous != null && isSameApplication(previous, description)) {
+			description.setVersion(previous.getVersion());
+		}
+		return updated.withApplication(applicationName, description, version);
+	}
+
+	private void loadInstanceStates() {
+		final ServiceInstanceStateData[] states = managementSpace.readMultiple(new ServiceInstanceStateData());
+		final Map<String, USMState> loaded = new HashMap<String, USMState>();
+		for (final ServiceInstanceStateData state : states) {
+			if (state.getState() != null) {
+				loaded.put(state.getId(), state.getState());
+			}
+		}
+		instanceStates.keySet().retainAll(loaded.keySet());
+		instanceStates.putAll(loaded);
+	}
+
+	private void publish(final Snapshot updated) {
+		snapshot = updated;
+		if (logger.isLoggable(Level.FINEST)) {
+			logger.finest("Published deployment state view version " + updated.version);
+		}
+	}
+
+	// returns null if the description could not be created, so the request falls back to the factory.
+	private ServiceDescription createServiceDescription(final ProcessingUnit processingUnit, final long version) {
+		try {
+			final ServiceDescription description = factory.getServiceDescription(processingUnit);
+			description.setVersion(version);
+			return description;
+		} catch (final RuntimeException e) {
+			logger.log(Level.FINE, "Failed to create the description of service " + processingUnit.getName()
+					+ ": " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	private ApplicationDescription createApplicationDescription(final Snapshot current,
+			final String applicationName, final ProcessingUnit processingUnit, final long version) {
+		final List<ServiceDescription> serviceDescriptions = new ArrayList<ServiceDescription>();
+		for (final ServiceDescription description : current.servicesByPuName.values()) {
+			if (applicationName.equals(description.getApplicationName())) {
+				serviceDescriptions.add(description);
+			}
+		}
+		if (serviceDescriptions.isEmpty()) {
+			return null;
+		}
+
+		String authGroups = null;
+		if (processingUnit != null) {
+			authGroups = processingUnit.getBeanLevelProperties().getContextProperties()
+					.getProperty(CloudifyConstants.CONTEXT_PROPERTY_AUTH_GROUPS);
+		} else {
+			final ApplicationDescription previous = current.applicationsByName.get(applicationName);
+			if (previous != null) {
+				authGroups = previous.getAuthGroups();
+			}
+		}
+		final ApplicationDescription description =
+				factory.createApplicationDescription(applicationName, authGroups, serviceDescriptions);
+		description.setVersion(version);
+		return description;
+	}
+
+	// keeps the version of a service description that did not change since the current snapshot.
+	private ServiceDescription keepVersion(final ServiceDescription description) {
+		final ServiceDescription previous = snapshot.servicesByPuName.get(ServiceUtils.getAbsolutePUName(
+				description.getApplicationName(), description.getServiceName()));
+		if (previous != null && isSameService(previous, description)) {
+			description.setVersion(previous.getVersion());
+		}
+		return description;
+	}
+
+	private static boolean isSameService(final ServiceDescription previous, final ServiceDescription current) {
+		if (previous.getServiceState() != current.getServiceState()
+				|| previous.getInstanceCount() != current.getInstanceCount()
+				|| previous.getPlannedInstances() != current.getPlannedInstances()
+				|| previous.getInstancesDescription().size() != current.getInstancesDescription().size()) {
+			return false;
+		}
+		for (int i = 0; i < previous.getInstancesDescription().size(); i++) {
+			final String previousStatus = previous.getInstancesDescription().get(i).getInstanceStatus();
+			final String currentStatus = current.getInstancesDescription().get(i).getInstanceStatus();
+			if (previous.getInstancesDescription().get(i).getInstanceId()
+					!= current.getInstancesDescription().get(i).getInstanceId()
+					|| !previousStatus.equals(currentStatus)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSameApplication(final ApplicationDescription previous,
+			final ApplicationDescription current) {
+		if (previous.getApplicationState() != current.getApplicationState()
+				|| previous.getServicesDescription().size() != current.getServicesDescription().size()) {
+			return false;
+		}
+		for (final ServiceDescription service : current.getServicesDescription()) {
+			if (service.getVersion() > previous.getVersion()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static FullServiceName getFullServiceName(final String processingUnitName) {
+		if (processingUnitName.lastIndexOf('.') < 0) {
+			return null;
+		}
+		return ServiceUtils.getFullServiceName(processingUnitName);
+	}
+
+	private static boolean isTake(final Object source) {
+		if (source instanceof EntryArrivedRemoteEvent) {
+			return NotifyActionType.NOTIFY_TAKE.equals(((EntryArrivedRemoteEvent) source).getNotifyActionType());
+		}
+		return false;
+	}
+
+	/**
+	 * Immutable snapshot of the view. Every modification returns a new snapshot.
+	 */
+	private static final class Snapshot {
+
+		private final long version;
+		private final Map<String, ServiceDescription> servicesByPuName;
+		private final Map<String, ApplicationDescription> applicationsByName;
+
+		private Snapshot(final long version, final Map<String, ServiceDescription> servicesByPuName,
+				final Map<String, ApplicationDescription> applicationsByName) {
+			this.version = version;
+			this.servicesByPuName = servicesByPuName;
+			this.applicationsByName = applicationsByName;
+		}
+
+		Snapshot withService(final String processingUnitName, final ServiceDescription description) {
+			final Map<String, ServiceDescription> copy = new HashMap<String, ServiceDescription>(servicesByPuName);
+			copy.put(processingUnitName, description);
+			return new Snapshot(version, Collections.unmodifiableMap(copy), applicationsByName);
+		}
+
+		Snapshot withoutService(final String processingUnitName) {
+			if (!servicesByPuName.containsKey(processingUnitName)) {
+				return this;
+			}
+			final Map<String, ServiceDescription> copy = new HashMap<String, ServiceDescription>(servicesByPuName);
+			copy.remove(processingUnitName);
+			return new Snapshot(version, Collections.unmodifiableMap(copy), applicationsByName);
+		}
+
+		// a null description removes the application.
+		Snapshot withApplication(final String applicationName, final ApplicationDescription description,
+				final long newVersion) {
+			final Map<String, ApplicationDescription> copy =
+					new HashMap<String, ApplicationDescription>(applicationsByName);
+			if (description == null) {
+				copy.remove(applicationName);
+			} else {
+				copy.put(applicationName, description);
+			}
+			return new Snapshot(newVersion, servicesByPuName, Collections.unmodifiableMap(copy));
+		}
+	}
+}
@@ -2,8 +2,6 @@ package org.cloudifysource.rest.events;
 
 import com.gigaspaces.log.LogEntry;
 import junit.framework.Assert;
-import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.dsl.rest.response.DeploymentEvents;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.openspaces.admin.gsc.GridServiceContainer;
@@ -32,74 +30,6 @@ public class EventsUtilsTest {
 
     }
 
-    @Test
-    public void testExtractDesiredEvents() throws Exception {
-
-        DeploymentEvents events = createEvents(0, 10);
-
-        // test subset
-        Assert.assertEquals(createEvents(0, 4).getEvents(), EventsUtils.extractDesiredEvents(events, 0, 4).getEvents());
-
-        // test entire set
-        Assert.assertEquals(createEvents(0, 10).getEvents(), EventsUtils.extractDesiredEvents(events, 0, 10).getEvents());
-
-        // test empty set
-        Assert.assertEquals(createEvents(0, -1).getEvents(), EventsUtils.extractDesiredEvents(events, 11, 15).getEvents());
-
-        // test over set
-        Assert.assertEquals(createEvents(0, 10).getEvents(), EventsUtils.extractDesiredEvents(events, 0, 100).getEvents());
-
-        // test one event
-        Assert.assertEquals(createEvents(0, 0).getEvents(), EventsUtils.extractDesiredEvents(events, 0, 0).getEvents());
-    }
-
-    @Test
-    public void testRetrieveEventWithIndex() throws Exception {
-
-        DeploymentEvents events = createEvents(0, 10);
-
-        // test existing index
-        Assert.assertEquals(createEvents(0, 0).getEvents().get(0), EventsUtils.retrieveEventWithIndex(0, events.getEvents()));
-
-        // test non-existing index
-        Assert.assertNull(EventsUtils.retrieveEventWithIndex(15, events.getEvents()));
-
-
-    }
-
-    @Test
-    public void testEventsPresent() throws Exception {
-
-        DeploymentEvents events = createEvents(0, 10);
-
-        // test entire set
-        Assert.assertTrue(EventsUtils.eventsPresent(events, 0, 10));
-
-        // test subset set
-        Assert.assertTrue(EventsUtils.eventsPresent(events, 5, 8));
-
-        // test over set
-        Assert.assertFalse(EventsUtils.eventsPresent(events, 0, 15));
-
-
-    }
-
-    private DeploymentEvents createEvents(final int from, final int to) {
-        DeploymentEvents events = new DeploymentEvents();
-        for (int i = from; i <= to ; i++) {
-            DeploymentEvent event = createEvent(i);
-            events.getEvents().add(event);
-        }
-        return events;
-    }
-
-    private DeploymentEvent createEvent(int i) {
-        DeploymentEvent event = new DeploymentEvent();
-        event.setIndex(i);
-        event.setDescription("Event-" + i);
-        return event;
-    }
-
     private GridServiceContainer createMockContainer(final String containerUid) {
         GridServiceContainer mockContainer = Mockito.mock(GridServiceContainer.class);
         Mockito.when(mockContainer.getUid()).thenReturn(containerUid);
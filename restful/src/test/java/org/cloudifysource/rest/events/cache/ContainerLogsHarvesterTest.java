@@ -0,0 +1,120 @@
+package org.cloudifysource.rest.events.cache;
+
+import com.gigaspaces.log.LogEntries;
+import com.gigaspaces.log.LogEntry;
+import com.gigaspaces.log.LogEntryMatcher;
+import junit.framework.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openspaces.admin.gsc.GridServiceContainer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tests for {@link ContainerLogsHarvester}.
+ */
+public class ContainerLogsHarvesterTest {
+
+    private static final int LOG_ENTRIES_BATCH_SIZE = 10;
+    private static final int NUMBER_OF_CONTAINERS = 3;
+
+    @Test
+    public void testHarvestAppendsEventsFromAllContainers() throws Exception {
+
+        MockGridServiceContainerProvider provider = new MockGridServiceContainerProvider();
+        EventsCache cache = new EventsCache(provider);
+        ContainerLogsHarvester harvester = new ContainerLogsHarvester(cache, new EventsCacheLoader(provider));
+        harvester.setHarvestIntervalMillis(Long.MAX_VALUE / 2);
+        harvester.start();
+        try {
+            EventsCacheKey key = new EventsCacheKey("deploymentId");
+            EventsCacheValue value = new EventsCacheValue();
+            cache.put(key, value);
+
+            harvester.harvest();
+            Assert.assertEquals(NUMBER_OF_CONTAINERS * LOG_ENTRIES_BATCH_SIZE, value.getLastEventIndex());
+            Assert.assertTrue(value.getLastRefreshedTimestamp() > 0);
+
+            harvester.harvest();
+            Assert.assertEquals(2 * NUMBER_OF_CONTAINERS * LOG_ENTRIES_BATCH_SIZE, value.getLastEventIndex());
+        } finally {
+            harvester.stop();
+        }
+    }
+
+    @Test
+    public void testHarvestWithEmptyCache() throws Exception {
+
+        MockGridServiceContainerProvider provider = new MockGridServiceContainerProvider();
+        EventsCache cache = new EventsCache(provider);
+        ContainerLogsHarvester harvester = new ContainerLogsHarvester(cache, new EventsCacheLoader(provider));
+        harvester.setHarvestIntervalMillis(Long.MAX_VALUE / 2);
+        harvester.start();
+        try {
+            harvester.harvest();
+            Assert.assertEquals(0, provider.calls);
+        } finally {
+            harvester.stop();
+        }
+    }
+
+    /**
+     * This provider returns {@value #NUMBER_OF_CONTAINERS} containers for each deployment id.
+     * Each container gives 10 different log lines each time a call to
+     * {@link GridServiceContainer#logEntries(com.gigaspaces.log.LogEntryMatcher)} is executed.
+     */
+    private class MockGridServiceContainerProvider implements GridServiceContainerProvider {
+
+        private int calls;
+        private final Set<GridServiceContainer> containers = new HashSet<GridServiceContainer>();
+
+        MockGridServiceContainerProvider() {
+            for (int i = 0; i < NUMBER_OF_CONTAINERS; i++) {
+                containers.add(createMockContainer());
+            }
+        }
+
+        @Override
+        public Set<GridServiceContainer> getContainersForDeployment(final String deploymentId) {
+            calls++;
+            return containers;
+        }
+
+        private GridServiceContainer createMockContainer()  {
+
+            GridServiceContainer mockContainer = Mockito.mock(GridServiceContainer.class);
+            Mockito.when(mockContainer.logEntries(Mockito.any(LogEntryMatcher.class)))
+                    .thenAnswer(new Answer<LogEntries>() {
+                        @Override
+                        public LogEntries answer(final InvocationOnMock invocation) {
+                            return createMockLogEntries();
+                        }
+                    });
+            Mockito.when(mockContainer.getUid()).thenReturn(UUID.randomUUID().toString());
+            return mockContainer;
+        }
+
+        private LogEntries createMockLogEntries() {
+
+            List<LogEntry> logEntries = new ArrayList<LogEntry>();
+            for (int i = 0; i < LOG_ENTRIES_BATCH_SIZE; i++) {
+                LogEntry entry = Mockito.mock(LogEntry.class);
+                Mockito.when(entry.isLog()).thenReturn(true);
+                Mockito.when(entry.getText()).thenReturn("USMLOGGER - Event" + i);
+                logEntries.add(entry);
+            }
+
+            LogEntries mockLogEntries = Mockito.mock(LogEntries.class);
+            Mockito.when(mockLogEntries.iterator()).thenReturn(logEntries.iterator());
+            Mockito.when(mockLogEntries.getHostAddress()).thenReturn("hostAddress");
+            Mockito.when(mockLogEntries.getHostName()).thenReturn("hostName");
+            return mockLogEntries;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package org.cloudifysource.rest.events.cache;
+
+import java.util.List;
+
+import junit.framework.Assert;
+import org.cloudifysource.dsl.rest.response.DeploymentEvent;
+import org.cloudifysource.dsl.rest.response.DeploymentEvents;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeploymentEventsBuffer}.
+ */
+public class DeploymentEventsBufferTest {
+
+    private static final int CAPACITY = 10;
+
+    @Test
+    public void testAddAssignsConsecutiveIndices() throws Exception {
+
+        DeploymentEventsBuffer buffer = new DeploymentEventsBuffer(CAPACITY, -1);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(i, buffer.add(createEvent("Event-" + i)));
+        }
+        Assert.assertEquals(4, buffer.getLastIndex());
+        Assert.assertEquals(5, buffer.size());
+        Assert.assertEquals("Event-3", buffer.get(3).getDescription());
+        Assert.assertNull(buffer.get(5));
+    }
+
+    @Test
+    public void testOldestEventsAreOverwritten() throws Exception {
+
+        DeploymentEventsBuffer buffer = new DeploymentEventsBuffer(CAPACITY, -1);
+        for (int i = 0; i < 25; i++) {
+            buffer.add(createEvent("Event-" + i));
+        }
+
+        Assert.assertEquals(CAPACITY, buffer.size());
+        Assert.assertNull(buffer.get(14));
+        Assert.assertEquals("Event-15", buffer.get(15).getDescription());
+        Assert.assertEquals("Event-24", buffer.get(24).getDescription());
+
+        Assert.assertTrue(buffer.containsRange(15, 24));
+        Assert.assertFalse(buffer.containsRange(14, 24));
+        Assert.assertFalse(buffer.containsRange(15, 25));
+    }
+
+    @Test
+    public void testGetRange() throws Exception {
+
+        DeploymentEventsBuffer buffer = new DeploymentEventsBuffer(CAPACITY, -1);
+        for (int i = 0; i <= 10; i++) {
+            buffer.add(createEvent("Event-" + i));
+        }
+
+        // test subset
+        List<DeploymentEvent> events = buffer.getRange(3, 5).getEvents();
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(3, events.get(0).getIndex());
+        Assert.assertEquals(5, events.get(2).getIndex());
+
+        // test over set, index 0 was already overwritten
+        events = buffer.getRange(0, 100).getEvents();
+        Assert.assertEquals(CAPACITY, events.size());
+        Assert.assertEquals(1, events.get(0).getIndex());
+        Assert.assertEquals(10, events.get(CAPACITY - 1).getIndex());
+
+        // test empty set
+        Assert.assertTrue(buffer.getRange(11, 15).getEvents().isEmpty());
+    }
+
+    @Test
+    public void testTruncatedRange() throws Exception {
+
+        DeploymentEventsBuffer buffer = new DeploymentEventsBuffer(CAPACITY, -1);
+        for (int i = 0; i < CAPACITY; i++) {
+            buffer.add(createEvent("Event-" + i));
+        }
+
+        // nothing was dropped yet
+        Assert.assertFalse(buffer.getRange(0, 100).isTruncated());
+
+        buffer.add(createEvent("Event-" + CAPACITY));
+        DeploymentEvents events = buffer.getRange(0, 100);
+        Assert.assertTrue(events.isTruncated());
+        Assert.assertEquals(1, events.getEvents().get(0).getIndex());
+        Assert.assertFalse(buffer.getRange(1, 100).isTruncated());
+        Assert.assertFalse(buffer.getRange(20, 30).isTruncated());
+    }
+
+    @Test
+    public void testReset() throws Exception {
+
+        DeploymentEventsBuffer buffer = new DeploymentEventsBuffer(CAPACITY, 0);
+        Assert.assertEquals(1, buffer.add(createEvent("first")));
+
+        buffer.reset(-1);
+        Assert.assertEquals(0, buffer.size());
+        Assert.assertNull(buffer.get(1));
+        Assert.assertEquals(0, buffer.add(createEvent("first")));
+    }
+
+    private DeploymentEvent createEvent(final String description) {
+        DeploymentEvent event = new DeploymentEvent();
+        event.setDescription(description);
+        return event;
+    }
+}
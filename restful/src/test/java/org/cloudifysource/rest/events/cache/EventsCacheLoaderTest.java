@@ -19,10 +19,8 @@ package org.cloudifysource.rest.events.cache;
 import com.gigaspaces.log.LogEntries;
 import com.gigaspaces.log.LogEntry;
 import com.gigaspaces.log.LogEntryMatcher;
-import com.google.common.util.concurrent.ListenableFuture;
 import junit.framework.Assert;
 import org.cloudifysource.dsl.rest.response.DeploymentEvent;
-import org.cloudifysource.rest.events.EventsUtils;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.openspaces.admin.gsc.GridServiceContainer;
@@ -52,38 +50,27 @@ public class EventsCacheLoaderTest {
 
         // test all events are present and indexed correctly.
         List<DeploymentEvent> events = loadedValue.getEvents().getEvents();
+        Assert.assertEquals(LOG_ENTRIES_BATCH_SIZE, events.size());
         for (int i = 0; i < LOG_ENTRIES_BATCH_SIZE; i++) {
-            DeploymentEvent event = EventsUtils.retrieveEventWithIndex(i, events);
-            Assert.assertNotNull(event);
+            Assert.assertEquals(i, events.get(i).getIndex());
         }
 
 
     }
 
     @Test
-    public void testReload() throws Exception {
+    public void testFetchNewEvents() throws Exception {
 
         EventsCacheLoader loader = new EventsCacheLoader(new MockOneGridServiceContainerProvider());
 
         EventsCacheKey eventsCacheKey = new EventsCacheKey("deploymentId");
-        EventsCacheValue oldValue = loader.load(eventsCacheKey);
-
-        // reload the cache.
-        ListenableFuture<EventsCacheValue> reloadedValue = loader.reload(eventsCacheKey, oldValue);
-
-        // test old and new values are the same reference
-        EventsCacheValue events = reloadedValue.get();
-        Assert.assertSame(events, oldValue);
-
-        // test last event index was updated correctly
-        Assert.assertEquals(2 * LOG_ENTRIES_BATCH_SIZE - 1, oldValue.getLastEventIndex());
-
-        // test events were updated
-        for (int i = 0; i < LOG_ENTRIES_BATCH_SIZE * 2; i++) {
-            DeploymentEvent event = EventsUtils.retrieveEventWithIndex(i, events.getEvents().getEvents());
-            Assert.assertNotNull(event);
-        }
+        loader.load(eventsCacheKey);
 
+        // test only the logs written since the load are fetched
+        GridServiceContainer container = loader.getContainerProvider()
+                .getContainersForDeployment(eventsCacheKey.getDeploymentId()).iterator().next();
+        List<DeploymentEvent> events = loader.fetchNewEvents(eventsCacheKey, container);
+        Assert.assertEquals(LOG_ENTRIES_BATCH_SIZE, events.size());
     }
 
     /**
@@ -0,0 +1,95 @@
+package org.cloudifysource.rest.events.cache;
+
+import junit.framework.Assert;
+import org.cloudifysource.dsl.internal.CloudifyConstants;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.openspaces.admin.Admin;
+import org.openspaces.admin.gsc.GridServiceContainer;
+import org.openspaces.admin.pu.ProcessingUnit;
+import org.openspaces.admin.zone.Zone;
+import org.openspaces.core.properties.BeanLevelProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Tests for {@link IndexedGridServiceContainerProvider}.
+ */
+public class IndexedGridServiceContainerProviderTest {
+
+    private static final String DEPLOYMENT_ID = "deploymentId";
+
+    @Test
+    public void testContainersOfDeployment() throws Exception {
+
+        IndexedGridServiceContainerProvider provider =
+                new IndexedGridServiceContainerProvider(Mockito.mock(Admin.class));
+
+        GridServiceContainer tomcatContainer = createMockContainer("default.tomcat");
+        GridServiceContainer mysqlContainer = createMockContainer("default.mysql");
+        GridServiceContainer otherContainer = createMockContainer("other.service");
+        provider.onContainerAdded(tomcatContainer);
+        provider.onContainerAdded(mysqlContainer);
+        provider.onContainerAdded(otherContainer);
+
+        // containers are only returned once their processing unit is known.
+        Assert.assertTrue(provider.getContainersForDeployment(DEPLOYMENT_ID).isEmpty());
+
+        provider.onProcessingUnitAdded(createMockProcessingUnit("default.tomcat", DEPLOYMENT_ID));
+        provider.onProcessingUnitAdded(createMockProcessingUnit("default.mysql", DEPLOYMENT_ID));
+        provider.onProcessingUnitAdded(createMockProcessingUnit("other.service", "otherDeploymentId"));
+
+        Set<GridServiceContainer> containers = provider.getContainersForDeployment(DEPLOYMENT_ID);
+        Assert.assertEquals(2, containers.size());
+        Assert.assertTrue(containers.contains(tomcatContainer));
+        Assert.assertTrue(containers.contains(mysqlContainer));
+    }
+
+    @Test
+    public void testRemovals() throws Exception {
+
+        IndexedGridServiceContainerProvider provider =
+                new IndexedGridServiceContainerProvider(Mockito.mock(Admin.class));
+
+        GridServiceContainer firstContainer = createMockContainer("default.tomcat");
+        GridServiceContainer secondContainer = createMockContainer("default.tomcat");
+        ProcessingUnit processingUnit = createMockProcessingUnit("default.tomcat", DEPLOYMENT_ID);
+        provider.onContainerAdded(firstContainer);
+        provider.onContainerAdded(secondContainer);
+        provider.onProcessingUnitAdded(processingUnit);
+
+        // snapshots returned before a change are not affected by it.
+        Set<GridServiceContainer> before = provider.getContainersForDeployment(DEPLOYMENT_ID);
+        provider.onContainerRemoved(firstContainer);
+        Assert.assertEquals(2, before.size());
+
+        Set<GridServiceContainer> containers = provider.getContainersForDeployment(DEPLOYMENT_ID);
+        Assert.assertEquals(1, containers.size());
+        Assert.assertTrue(containers.contains(secondContainer));
+
+        provider.onProcessingUnitRemoved(processingUnit);
+        Assert.assertTrue(provider.getContainersForDeployment(DEPLOYMENT_ID).isEmpty());
+    }
+
+    private GridServiceContainer createMockContainer(final String zoneName) {
+        GridServiceContainer container = Mockito.mock(GridServiceContainer.class);
+        Map<String, Zone> zones = new HashMap<String, Zone>();
+        zones.put(zoneName, Mockito.mock(Zone.class));
+        Mockito.when(container.getZones()).thenReturn(zones);
+        return container;
+    }
+
+    private ProcessingUnit createMockProcessingUnit(final String name, final String deploymentId) {
+        ProcessingUnit processingUnit = Mockito.mock(ProcessingUnit.class);
+        Properties contextProperties = new Properties();
+        contextProperties.setProperty(CloudifyConstants.CONTEXT_PROPERTY_DEPLOYMENT_ID, deploymentId);
+        BeanLevelProperties beanLevelProperties = new BeanLevelProperties();
+        beanLevelProperties.setContextProperties(contextProperties);
+        Mockito.when(processingUnit.getName()).thenReturn(name);
+        Mockito.when(processingUnit.getBeanLevelProperties()).thenReturn(beanLevelProperties);
+        return processingUnit;
+    }
+}